@@ -5,4 +5,18 @@ ALTER TABLE m_audit_prop_value
 ALTER TABLE m_audit_ref_value
   ALTER COLUMN id BIGINT AUTO_INCREMENT;
 
-DROP TABLE m_exclusion;
\ No newline at end of file
+DROP TABLE m_exclusion;
+
+ALTER TABLE m_assignment ADD fullObject BLOB;
+ALTER TABLE m_object ADD splitContainersCount INTEGER;
+
+CREATE TABLE m_task_work_bucket (
+  owner_oid        VARCHAR(36) NOT NULL,
+  sequentialNumber INTEGER     NOT NULL,
+  fullObject       BLOB,
+  state            INTEGER     NOT NULL,
+  worker_oid       VARCHAR(36),
+  PRIMARY KEY (owner_oid, sequentialNumber)
+);
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state);
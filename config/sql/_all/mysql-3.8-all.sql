@@ -119,6 +119,7 @@ CREATE TABLE m_assignment (
   creatorRef_relation     VARCHAR(157),
   creatorRef_targetOid    VARCHAR(36),
   creatorRef_type         INTEGER,
+  fullObject              LONGBLOB,
   lifecycleState          VARCHAR(255),
   modifierRef_relation    VARCHAR(157),
   modifierRef_targetOid   VARCHAR(36),
@@ -407,6 +408,7 @@ CREATE TABLE m_object (
   objectTypeClass       INTEGER,
   polysCount            SMALLINT,
   referencesCount       SMALLINT,
+  splitContainersCount  INTEGER,
   stringsCount          SMALLINT,
   tenantRef_relation    VARCHAR(157),
   tenantRef_targetOid   VARCHAR(36),
@@ -619,6 +621,17 @@ CREATE TABLE m_task_dependent (
   DEFAULT CHARACTER SET utf8
   COLLATE utf8_bin
   ENGINE = InnoDB;
+CREATE TABLE m_task_work_bucket (
+  owner_oid        VARCHAR(36) NOT NULL,
+  sequentialNumber INTEGER     NOT NULL,
+  fullObject       LONGBLOB,
+  state            INTEGER     NOT NULL,
+  worker_oid       VARCHAR(36),
+  PRIMARY KEY (owner_oid, sequentialNumber)
+)
+  DEFAULT CHARACTER SET utf8
+  COLLATE utf8_bin
+  ENGINE = InnoDB;
 CREATE TABLE m_user_employee_type (
   user_oid     VARCHAR(36) NOT NULL,
   employeeType VARCHAR(255)
@@ -1068,6 +1081,8 @@ CREATE INDEX iTaskWfEndTimestamp
   ON m_task (wfEndTimestamp);
 CREATE INDEX iTaskWfRequesterOid
   ON m_task (wfRequesterRef_targetOid);
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state);
 CREATE INDEX iTaskWfObjectOid
   ON m_task (wfObjectRef_targetOid);
 CREATE INDEX iTaskWfTargetOid
@@ -622,6 +622,17 @@ CREATE TABLE m_task_dependent (
   DEFAULT CHARACTER SET utf8mb4
   COLLATE utf8mb4_bin
   ENGINE = InnoDB;
+CREATE TABLE m_task_work_bucket (
+  owner_oid        VARCHAR(36) CHARSET utf8 COLLATE utf8_bin NOT NULL,
+  sequentialNumber INTEGER                                   NOT NULL,
+  fullObject       LONGBLOB,
+  state            INTEGER                                   NOT NULL,
+  worker_oid       VARCHAR(36) CHARSET utf8 COLLATE utf8_bin,
+  PRIMARY KEY (owner_oid, sequentialNumber)
+)
+  DEFAULT CHARACTER SET utf8mb4
+  COLLATE utf8mb4_bin
+  ENGINE = InnoDB;
 CREATE TABLE m_user_employee_type (
   user_oid     VARCHAR(36)  CHARSET utf8 COLLATE utf8_bin NOT NULL,
   employeeType VARCHAR(255)
@@ -1063,6 +1074,8 @@ CREATE INDEX iTaskWfEndTimestamp
   ON m_task (wfEndTimestamp);
 CREATE INDEX iTaskWfRequesterOid
   ON m_task (wfRequesterRef_targetOid);
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state);
 CREATE INDEX iTaskWfObjectOid
   ON m_task (wfObjectRef_targetOid);
 CREATE INDEX iTaskWfTargetOid
@@ -1334,4 +1347,9 @@ ALTER TABLE m_user
 ALTER TABLE m_value_policy
   ADD CONSTRAINT fk_value_policy FOREIGN KEY (oid) REFERENCES m_object (oid);
 
+ALTER TABLE m_assignment
+  ADD COLUMN fullObject LONGBLOB;
+ALTER TABLE m_object
+  ADD COLUMN splitContainersCount INTEGER;
+
 commit;
@@ -622,6 +622,14 @@ CREATE TABLE m_task_dependent (
   task_oid  VARCHAR2(36 CHAR) NOT NULL,
   dependent VARCHAR2(255 CHAR)
 ) INITRANS 30;
+CREATE TABLE m_task_work_bucket (
+  owner_oid        VARCHAR2(36 CHAR) NOT NULL,
+  sequentialNumber NUMBER(10, 0)     NOT NULL,
+  fullObject       BLOB,
+  state            NUMBER(10, 0)     NOT NULL,
+  worker_oid       VARCHAR2(36 CHAR),
+  PRIMARY KEY (owner_oid, sequentialNumber)
+) INITRANS 30;
 CREATE TABLE m_user_employee_type (
   user_oid     VARCHAR2(36 CHAR) NOT NULL,
   employeeType VARCHAR2(255 CHAR)
@@ -984,6 +992,8 @@ CREATE INDEX iTaskWfEndTimestamp
   ON m_task (wfEndTimestamp) INITRANS 30;
 CREATE INDEX iTaskWfRequesterOid
   ON m_task (wfRequesterRef_targetOid) INITRANS 30;
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state) INITRANS 30;
 CREATE INDEX iTaskWfObjectOid
   ON m_task (wfObjectRef_targetOid) INITRANS 30;
 CREATE INDEX iTaskWfTargetOid
@@ -1255,4 +1265,9 @@ ALTER TABLE m_user
 ALTER TABLE m_value_policy
   ADD CONSTRAINT fk_value_policy FOREIGN KEY (oid) REFERENCES m_object;
 
+ALTER TABLE m_assignment
+  ADD fullObject BLOB;
+ALTER TABLE m_object
+  ADD splitContainersCount NUMBER(10, 0);
+
 commit;
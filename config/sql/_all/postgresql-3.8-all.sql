@@ -102,6 +102,7 @@ CREATE TABLE m_assignment (
   creatorRef_relation     VARCHAR(157),
   creatorRef_targetOid    VARCHAR(36),
   creatorRef_type         INT4,
+  fullObject              BYTEA,
   lifecycleState          VARCHAR(255),
   modifierRef_relation    VARCHAR(157),
   modifierRef_targetOid   VARCHAR(36),
@@ -327,6 +328,7 @@ CREATE TABLE m_object (
   objectTypeClass       INT4,
   polysCount            INT2,
   referencesCount       INT2,
+  splitContainersCount  INT4,
   stringsCount          INT2,
   tenantRef_relation    VARCHAR(157),
   tenantRef_targetOid   VARCHAR(36),
@@ -488,6 +490,14 @@ CREATE TABLE m_task_dependent (
   task_oid  VARCHAR(36) NOT NULL,
   dependent VARCHAR(255)
 );
+CREATE TABLE m_task_work_bucket (
+  owner_oid        VARCHAR(36) NOT NULL,
+  sequentialNumber INT4        NOT NULL,
+  fullObject       BYTEA,
+  state            INT4        NOT NULL,
+  worker_oid       VARCHAR(36),
+  PRIMARY KEY (owner_oid, sequentialNumber)
+);
 CREATE TABLE m_user_employee_type (
   user_oid     VARCHAR(36) NOT NULL,
   employeeType VARCHAR(255)
@@ -858,6 +868,8 @@ CREATE INDEX iTaskWfEndTimestamp
   ON m_task (wfEndTimestamp);
 CREATE INDEX iTaskWfRequesterOid
   ON m_task (wfRequesterRef_targetOid);
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state);
 CREATE INDEX iTaskWfObjectOid
   ON m_task (wfObjectRef_targetOid);
 CREATE INDEX iTaskWfTargetOid
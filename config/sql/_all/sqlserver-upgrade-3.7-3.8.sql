@@ -620,6 +620,14 @@ CREATE TABLE m_task_dependent (
   task_oid  NVARCHAR(36) COLLATE database_default NOT NULL,
   dependent NVARCHAR(255) COLLATE database_default
 );
+CREATE TABLE m_task_work_bucket (
+  owner_oid        NVARCHAR(36) COLLATE database_default NOT NULL,
+  sequentialNumber INT                                   NOT NULL,
+  fullObject       VARBINARY(MAX),
+  state            INT                                   NOT NULL,
+  worker_oid       NVARCHAR(36) COLLATE database_default,
+  PRIMARY KEY (owner_oid, sequentialNumber)
+);
 CREATE TABLE m_user_employee_type (
   user_oid     NVARCHAR(36) COLLATE database_default NOT NULL,
   employeeType NVARCHAR(255) COLLATE database_default
@@ -982,6 +990,8 @@ CREATE INDEX iTaskWfEndTimestamp
   ON m_task (wfEndTimestamp);
 CREATE INDEX iTaskWfRequesterOid
   ON m_task (wfRequesterRef_targetOid);
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state);
 CREATE INDEX iTaskWfObjectOid
   ON m_task (wfObjectRef_targetOid);
 CREATE INDEX iTaskWfTargetOid
@@ -1253,4 +1263,9 @@ ALTER TABLE m_user
 ALTER TABLE m_value_policy
   ADD CONSTRAINT fk_value_policy FOREIGN KEY (oid) REFERENCES m_object;
 
+ALTER TABLE m_assignment
+  ADD fullObject VARBINARY(MAX);
+ALTER TABLE m_object
+  ADD splitContainersCount INT;
+
 GO
@@ -102,6 +102,7 @@ CREATE TABLE m_assignment (
   creatorRef_relation     VARCHAR2(157 CHAR),
   creatorRef_targetOid    VARCHAR2(36 CHAR),
   creatorRef_type         NUMBER(10, 0),
+  fullObject              BLOB,
   lifecycleState          VARCHAR2(255 CHAR),
   modifierRef_relation    VARCHAR2(157 CHAR),
   modifierRef_targetOid   VARCHAR2(36 CHAR),
@@ -327,6 +328,7 @@ CREATE TABLE m_object (
   objectTypeClass       NUMBER(10, 0),
   polysCount            NUMBER(5, 0),
   referencesCount       NUMBER(5, 0),
+  splitContainersCount  NUMBER(10, 0),
   stringsCount          NUMBER(5, 0),
   tenantRef_relation    VARCHAR2(157 CHAR),
   tenantRef_targetOid   VARCHAR2(36 CHAR),
@@ -488,6 +490,14 @@ CREATE TABLE m_task_dependent (
   task_oid  VARCHAR2(36 CHAR) NOT NULL,
   dependent VARCHAR2(255 CHAR)
 ) INITRANS 30;
+CREATE TABLE m_task_work_bucket (
+  owner_oid        VARCHAR2(36 CHAR) NOT NULL,
+  sequentialNumber NUMBER(10, 0)     NOT NULL,
+  fullObject       BLOB,
+  state            NUMBER(10, 0)     NOT NULL,
+  worker_oid       VARCHAR2(36 CHAR),
+  PRIMARY KEY (owner_oid, sequentialNumber)
+) INITRANS 30;
 CREATE TABLE m_user_employee_type (
   user_oid     VARCHAR2(36 CHAR) NOT NULL,
   employeeType VARCHAR2(255 CHAR)
@@ -858,6 +868,8 @@ CREATE INDEX iTaskWfEndTimestamp
   ON m_task (wfEndTimestamp) INITRANS 30;
 CREATE INDEX iTaskWfRequesterOid
   ON m_task (wfRequesterRef_targetOid) INITRANS 30;
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state) INITRANS 30;
 CREATE INDEX iTaskWfObjectOid
   ON m_task (wfObjectRef_targetOid) INITRANS 30;
 CREATE INDEX iTaskWfTargetOid
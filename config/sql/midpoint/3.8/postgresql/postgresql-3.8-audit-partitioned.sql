@@ -0,0 +1,194 @@
+-- Time-partitioned layout of audit tables (PostgreSQL 13 or newer).
+--
+-- Run after postgresql-3.8.sql on a database with empty audit tables; the audit tables are re-created
+-- as partitioned ones. (Existing audit data have to be migrated manually, e.g. by renaming the old tables
+-- before running this script and copying the rows afterwards.)
+--
+-- Then set <auditPartitioning>monthly</auditPartitioning> (or daily) in the repository configuration.
+-- midPoint then creates partitions in advance (on start and during audit cleanup) and cleans up old audit
+-- records by dropping whole partitions.
+--
+-- m_audit_event is partitioned by timestampValue. Child tables do not contain the timestamp, so they are
+-- partitioned by record_id. To make this possible, audit event IDs contain the day of the event timestamp:
+-- id = YYYYMMDD * 10^10 + (sequence value mod 10^10). So each event and its child rows end up in partitions
+-- covering the same time period. Time range searches are restricted to relevant partitions of m_audit_event;
+-- child rows are looked up by record_id in the respective partition only.
+-- (The ID is changed by a trigger, so the JDBC driver has to return generated keys - which is the default.)
+--
+-- Rows not fitting any partition go to default partitions; they are removed by regular (row-by-row) cleanup.
+
+DROP TABLE IF EXISTS m_audit_delta, m_audit_item, m_audit_prop_value, m_audit_ref_value, m_audit_event CASCADE;
+
+CREATE SEQUENCE IF NOT EXISTS m_audit_event_id_seq;
+
+CREATE TABLE m_audit_event (
+  id                INT8      NOT NULL DEFAULT nextval('m_audit_event_id_seq'),
+  attorneyName      VARCHAR(255),
+  attorneyOid       VARCHAR(36),
+  channel           VARCHAR(255),
+  eventIdentifier   VARCHAR(255),
+  eventStage        INT4,
+  eventType         INT4,
+  hostIdentifier    VARCHAR(255),
+  initiatorName     VARCHAR(255),
+  initiatorOid      VARCHAR(36),
+  initiatorType     INT4,
+  message           VARCHAR(1024),
+  nodeIdentifier    VARCHAR(255),
+  outcome           INT4,
+  parameter         VARCHAR(255),
+  remoteHostAddress VARCHAR(255),
+  result            VARCHAR(255),
+  sessionIdentifier VARCHAR(255),
+  targetName        VARCHAR(255),
+  targetOid         VARCHAR(36),
+  targetOwnerName   VARCHAR(255),
+  targetOwnerOid    VARCHAR(36),
+  targetOwnerType   INT4,
+  targetType        INT4,
+  taskIdentifier    VARCHAR(255),
+  taskOID           VARCHAR(255),
+  timestampValue    TIMESTAMP,
+  PRIMARY KEY (id, timestampValue)
+) PARTITION BY RANGE (timestampValue);
+CREATE TABLE m_audit_delta (
+  checksum          VARCHAR(32) NOT NULL,
+  record_id         INT8        NOT NULL,
+  delta             BYTEA,
+  deltaOid          VARCHAR(36),
+  deltaType         INT4,
+  fullResult        BYTEA,
+  objectName_norm   VARCHAR(255),
+  objectName_orig   VARCHAR(255),
+  resourceName_norm VARCHAR(255),
+  resourceName_orig VARCHAR(255),
+  resourceOid       VARCHAR(36),
+  status            INT4,
+  PRIMARY KEY (record_id, checksum)
+) PARTITION BY RANGE (record_id);
+CREATE TABLE m_audit_item (
+  changedItemPath VARCHAR(255) NOT NULL,
+  record_id       INT8         NOT NULL,
+  PRIMARY KEY (record_id, changedItemPath)
+) PARTITION BY RANGE (record_id);
+CREATE TABLE m_audit_prop_value (
+  id        BIGSERIAL NOT NULL,
+  name      VARCHAR(255),
+  record_id INT8      NOT NULL,
+  value     VARCHAR(1024),
+  PRIMARY KEY (id, record_id)
+) PARTITION BY RANGE (record_id);
+CREATE TABLE m_audit_ref_value (
+  id              BIGSERIAL NOT NULL,
+  name            VARCHAR(255),
+  oid             VARCHAR(36),
+  record_id       INT8      NOT NULL,
+  targetName_norm VARCHAR(255),
+  targetName_orig VARCHAR(255),
+  type            VARCHAR(255),
+  PRIMARY KEY (id, record_id)
+) PARTITION BY RANGE (record_id);
+
+CREATE INDEX iTimestampValue
+  ON m_audit_event (timestampValue);
+CREATE INDEX iAuditEventId
+  ON m_audit_event (id);
+CREATE INDEX iAuditDeltaRecordId
+  ON m_audit_delta (record_id);
+CREATE INDEX iChangedItemPath
+  ON m_audit_item (changedItemPath);
+CREATE INDEX iAuditItemRecordId
+  ON m_audit_item (record_id);
+CREATE INDEX iAuditPropValRecordId
+  ON m_audit_prop_value (record_id);
+CREATE INDEX iAuditRefValRecordId
+  ON m_audit_ref_value (record_id);
+
+CREATE TABLE m_audit_event_default PARTITION OF m_audit_event DEFAULT;
+CREATE TABLE m_audit_delta_default PARTITION OF m_audit_delta DEFAULT;
+CREATE TABLE m_audit_item_default PARTITION OF m_audit_item DEFAULT;
+CREATE TABLE m_audit_prop_value_default PARTITION OF m_audit_prop_value DEFAULT;
+CREATE TABLE m_audit_ref_value_default PARTITION OF m_audit_ref_value DEFAULT;
+
+-- ID of an audit event: the day of the timestamp followed by 10 digits of the sequence value
+CREATE OR REPLACE FUNCTION m_audit_id(ts TIMESTAMP, seq INT8)
+  RETURNS INT8 AS $$
+BEGIN
+  RETURN to_char(coalesce(ts, now()), 'YYYYMMDD')::INT8 * 10000000000 + seq % 10000000000;
+END;
+$$ LANGUAGE plpgsql STABLE;
+
+CREATE OR REPLACE FUNCTION m_audit_event_set_id()
+  RETURNS TRIGGER AS $$
+BEGIN
+  NEW.id := m_audit_id(NEW.timestampValue, NEW.id);
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER m_audit_event_set_id
+  BEFORE INSERT ON m_audit_event
+  FOR EACH ROW EXECUTE FUNCTION m_audit_event_set_id();
+
+-- Creates partitions (if not existing) for all periods ('month' or 'day') overlapping [from_ts, to_ts).
+-- Partition names are <table>_<from>_<to>, e.g. m_audit_event_20181001_20181101. Returns # of periods created.
+CREATE OR REPLACE FUNCTION m_audit_create_partitions(period VARCHAR, from_ts TIMESTAMP, to_ts TIMESTAMP)
+  RETURNS INT4 AS $$
+DECLARE
+  child_tables VARCHAR[] := ARRAY['m_audit_delta', 'm_audit_item', 'm_audit_prop_value', 'm_audit_ref_value'];
+  lower_ts TIMESTAMP := date_trunc(period, from_ts);
+  upper_ts TIMESTAMP;
+  suffix VARCHAR;
+  child_table VARCHAR;
+  created INT4 := 0;
+BEGIN
+  WHILE lower_ts < to_ts LOOP
+    upper_ts := lower_ts + ('1 ' || period)::INTERVAL;
+    suffix := to_char(lower_ts, 'YYYYMMDD') || '_' || to_char(upper_ts, 'YYYYMMDD');
+    IF to_regclass('m_audit_event_' || suffix) IS NULL THEN
+      BEGIN
+        EXECUTE format('CREATE TABLE %I PARTITION OF m_audit_event FOR VALUES FROM (%L) TO (%L)',
+                       'm_audit_event_' || suffix, lower_ts, upper_ts);
+        FOREACH child_table IN ARRAY child_tables LOOP
+          EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%s) TO (%s)',
+                         child_table || '_' || suffix, child_table, m_audit_id(lower_ts, 0), m_audit_id(upper_ts, 0));
+        END LOOP;
+        created := created + 1;
+      EXCEPTION WHEN check_violation OR invalid_object_definition THEN
+        -- default partition already contains rows for this period (they stay there),
+        -- or the period overlaps existing partitions (e.g. after switching from monthly to daily partitioning)
+        RAISE NOTICE 'Audit partitions for % cannot be created: %', suffix, SQLERRM;
+      END;
+    END IF;
+    lower_ts := upper_ts;
+  END LOOP;
+  RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops partitions (of all audit tables) covering only the time before older_than. Returns # of periods dropped.
+CREATE OR REPLACE FUNCTION m_audit_drop_partitions(older_than TIMESTAMP)
+  RETURNS INT4 AS $$
+DECLARE
+  tables VARCHAR[] := ARRAY['m_audit_delta', 'm_audit_item', 'm_audit_prop_value', 'm_audit_ref_value', 'm_audit_event'];
+  partition_name VARCHAR;
+  suffix VARCHAR;
+  audit_table VARCHAR;
+  dropped INT4 := 0;
+BEGIN
+  FOR partition_name IN
+    SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+    WHERE i.inhparent = 'm_audit_event'::regclass AND c.relname ~ '^m_audit_event_\d{8}_\d{8}$'
+    ORDER BY c.relname
+  LOOP
+    suffix := substring(partition_name FROM '\d{8}_\d{8}$');
+    IF to_timestamp(split_part(suffix, '_', 2), 'YYYYMMDD')::TIMESTAMP <= older_than THEN
+      FOREACH audit_table IN ARRAY tables LOOP
+        EXECUTE format('DROP TABLE IF EXISTS %I', audit_table || '_' || suffix);
+      END LOOP;
+      dropped := dropped + 1;
+    END IF;
+  END LOOP;
+  RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
@@ -102,6 +102,7 @@ CREATE TABLE m_assignment (
   creatorRef_relation     NVARCHAR(157) COLLATE database_default,
   creatorRef_targetOid    NVARCHAR(36) COLLATE database_default,
   creatorRef_type         INT,
+  fullObject              VARBINARY(MAX),
   lifecycleState          NVARCHAR(255) COLLATE database_default,
   modifierRef_relation    NVARCHAR(157) COLLATE database_default,
   modifierRef_targetOid   NVARCHAR(36) COLLATE database_default,
@@ -327,6 +328,7 @@ CREATE TABLE m_object (
   objectTypeClass       INT,
   polysCount            SMALLINT,
   referencesCount       SMALLINT,
+  splitContainersCount  INT,
   stringsCount          SMALLINT,
   tenantRef_relation    NVARCHAR(157) COLLATE database_default,
   tenantRef_targetOid   NVARCHAR(36) COLLATE database_default,
@@ -488,6 +490,14 @@ CREATE TABLE m_task_dependent (
   task_oid  NVARCHAR(36) COLLATE database_default NOT NULL,
   dependent NVARCHAR(255) COLLATE database_default
 );
+CREATE TABLE m_task_work_bucket (
+  owner_oid        NVARCHAR(36) COLLATE database_default NOT NULL,
+  sequentialNumber INT                                   NOT NULL,
+  fullObject       VARBINARY(MAX),
+  state            INT                                   NOT NULL,
+  worker_oid       NVARCHAR(36) COLLATE database_default,
+  PRIMARY KEY (owner_oid, sequentialNumber)
+);
 CREATE TABLE m_user_employee_type (
   user_oid     NVARCHAR(36) COLLATE database_default NOT NULL,
   employeeType NVARCHAR(255) COLLATE database_default
@@ -858,6 +868,8 @@ CREATE INDEX iTaskWfEndTimestamp
   ON m_task (wfEndTimestamp);
 CREATE INDEX iTaskWfRequesterOid
   ON m_task (wfRequesterRef_targetOid);
+CREATE INDEX iTaskWorkBucketState
+  ON m_task_work_bucket (owner_oid, state);
 CREATE INDEX iTaskWfObjectOid
   ON m_task (wfObjectRef_targetOid);
 CREATE INDEX iTaskWfTargetOid
@@ -17,6 +17,7 @@ package com.evolveum.midpoint.web.page.admin.reports.dto;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.wicket.Component;
 
 import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.audit.api.AuditResultHandler;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.util.exception.CommunicationException;
 import com.evolveum.midpoint.util.exception.ConfigurationException;
@@ -74,10 +76,18 @@ public class AuditEventRecordProvider extends BaseSortableDataProvider<AuditEven
 	private static final String AUDIT_RECORDS_QUERY_ITEMS_CHANGED = " right join aer.changedItems as item";
 	private static final String AUDIT_RECORDS_QUERY_REF_VALUES = " left outer join aer.referenceValues as rv";
 	private static final String AUDIT_RECORDS_QUERY_COUNT = "select count(*) ";
-	private static final String AUDIT_RECORDS_ORDER_BY = " order by aer.timestamp desc";
+	// the same order as used by streamRecords, so offset-based and keyset-based pages are consistent
+	private static final String AUDIT_RECORDS_ORDER_BY = " order by aer.timestamp desc, aer.id desc";
 	private static final String SET_FIRST_RESULT_PARAMETER = "setFirstResult";
 	private static final String SET_MAX_RESULTS_PARAMETER = "setMaxResults";
 
+	// Position after the last page fetched, so that the following page can continue after its last record
+	// instead of letting the database skip all the preceding records. Valid only for the same filter.
+	private long keysetFirst = -1;
+	private Long keysetTimestamp;
+	private Long keysetRepoId;
+	private Map<String, Object> keysetParameters;
+
 	public AuditEventRecordProvider(Component component, @Nullable String auditEventQuery, @NotNull SerializableSupplier<Map<String, Object>> parametersSupplier) {
 		super(component);
 		this.auditEventQuery = auditEventQuery;
@@ -87,7 +97,7 @@ public class AuditEventRecordProvider extends BaseSortableDataProvider<AuditEven
 	@Override
 	public Iterator<AuditEventRecordType> internalIterator(long first, long count) {
 		saveCurrentPage(first, count);
-		List<AuditEventRecordType> recordsList = listRecords(true, first, count);
+		List<AuditEventRecordType> recordsList = listRecords(first, count);
 		return recordsList.iterator();
 	}
 
@@ -103,17 +113,23 @@ public class AuditEventRecordProvider extends BaseSortableDataProvider<AuditEven
 		}
  	}
 
-	private List<AuditEventRecordType> listRecords(boolean ordered, long first, long count) {
+	/**
+	 * The first page and the pages following the last one displayed are fetched using keyset pagination
+	 * (streamRecords). Other pages (e.g. jumping to the last one) and queries joining changed items or reference
+	 * values, which streamRecords does not support, are fetched using offset.
+	 */
+	private List<AuditEventRecordType> listRecords(long first, long count) {
 		Map<String, Object> parameters = parametersSupplier.get();
-		String query = generateFullQuery(parameters, ordered, false);
-
-        parameters.put(SET_FIRST_RESULT_PARAMETER, (int) first);
-        parameters.put(SET_MAX_RESULTS_PARAMETER, (int) count);
+		List<String> conditions = generateConditions(parameters);
 
-        List<AuditEventRecord> auditRecords;
+		List<AuditEventRecord> auditRecords;
 		try {
-			Task task = getPage().createSimpleTask("listRecords");
-			auditRecords = getAuditService().listRecords(query, parameters, task, task.getResult());
+			if (auditEventQuery == null && !isFilteredOnJoinedItems(parameters)
+					&& (first == 0 || first == keysetFirst && parameters.equals(keysetParameters))) {
+				auditRecords = streamRecords(String.join(" and ", conditions), parameters, first == 0, (int) count);
+			} else {
+				auditRecords = listRecordsByOffset(parameters, first, count);
+			}
 		} catch (SecurityViolationException | SchemaException | ObjectNotFoundException | ExpressionEvaluationException | CommunicationException | ConfigurationException e) {
 			// TODO: proper error handling (MID-3536)
 			throw new SystemException(e.getMessage(), e);
@@ -121,6 +137,15 @@ public class AuditEventRecordProvider extends BaseSortableDataProvider<AuditEven
 		if (auditRecords == null) {
 			auditRecords = new ArrayList<>();
 		}
+		AuditEventRecord last = !auditRecords.isEmpty() ? auditRecords.get(auditRecords.size() - 1) : null;
+		if (last != null && last.getTimestamp() != null && last.getRepoId() != null) {
+			keysetFirst = first + auditRecords.size();
+			keysetTimestamp = last.getTimestamp();
+			keysetRepoId = last.getRepoId();
+			keysetParameters = parameters;
+		} else {
+			keysetFirst = -1;
+		}
 		List<AuditEventRecordType> auditRecordList = new ArrayList<>();
 		for (AuditEventRecord record : auditRecords){
 			auditRecordList.add(record.createAuditEventRecordType());
@@ -128,6 +153,44 @@ public class AuditEventRecordProvider extends BaseSortableDataProvider<AuditEven
 		return auditRecordList;
 	}
 
+	private List<AuditEventRecord> streamRecords(String conditions, Map<String, Object> parameters, boolean fromStart, int count)
+			throws SecurityViolationException, SchemaException, ObjectNotFoundException, ExpressionEvaluationException, CommunicationException, ConfigurationException {
+		AuditEventRecord after = null;
+		if (!fromStart) {
+			after = new AuditEventRecord();
+			after.setTimestamp(keysetTimestamp);
+			after.setRepoId(keysetRepoId);
+		}
+		List<AuditEventRecord> auditRecords = new ArrayList<>();
+		AuditResultHandler handler = new AuditResultHandler() {
+			@Override
+			public boolean handle(AuditEventRecord auditRecord) {
+				auditRecords.add(auditRecord);
+				return auditRecords.size() < count;
+			}
+
+			@Override
+			public int getProgress() {
+				return auditRecords.size();
+			}
+		};
+		Task task = getPage().createSimpleTask("streamRecords");
+		getAuditService().streamRecords(conditions, new HashMap<>(parameters), after, true, count, handler, task, task.getResult());
+		return auditRecords;
+	}
+
+	private List<AuditEventRecord> listRecordsByOffset(Map<String, Object> parameters, long first, long count)
+			throws SecurityViolationException, SchemaException, ObjectNotFoundException, ExpressionEvaluationException, CommunicationException, ConfigurationException {
+		String query = generateFullQuery(parameters, true, false);
+
+		Map<String, Object> queryParameters = new HashMap<>(parameters);
+		queryParameters.put(SET_FIRST_RESULT_PARAMETER, (int) first);
+		queryParameters.put(SET_MAX_RESULTS_PARAMETER, (int) count);
+
+		Task task = getPage().createSimpleTask("listRecords");
+		return getAuditService().listRecords(query, queryParameters, task, task.getResult());
+	}
+
 	@SuppressWarnings("unused")
 	@Nullable
 	public String getAuditEventQuery() {
@@ -136,6 +199,35 @@ public class AuditEventRecordProvider extends BaseSortableDataProvider<AuditEven
 
 	private String generateFullQuery(Map<String, Object> parameters, boolean ordered, boolean isCount) {
 		String query = auditEventQuery;
+		boolean filteredOnChangedItem = parameters.get(PARAMETER_CHANGED_ITEM) != null;
+		boolean filteredOnValueRefTargetNames = filteredOnValueRefTargetNames(parameters);
+		List<String> conditions = generateConditions(parameters);
+		if (query == null) {
+			query = AUDIT_RECORDS_QUERY_CORE;
+			if (filteredOnChangedItem) {
+				query += AUDIT_RECORDS_QUERY_ITEMS_CHANGED;
+			}
+			if (filteredOnValueRefTargetNames) {
+				query += AUDIT_RECORDS_QUERY_REF_VALUES;
+			}
+			if (!conditions.isEmpty()) {
+				query += " where ";
+			}
+		}
+		if (isCount) {
+			query = AUDIT_RECORDS_QUERY_COUNT + query;
+		}
+		query += conditions.stream().collect(Collectors.joining(" and "));
+		if (ordered) {
+			query += AUDIT_RECORDS_ORDER_BY;
+		}
+		return query;
+	}
+
+	/**
+	 * Creates conditions for the filter parameters that are set; parameters that are not set are removed from the map.
+	 */
+	private List<String> generateConditions(Map<String, Object> parameters) {
 		boolean filteredOnChangedItem = parameters.get(PARAMETER_CHANGED_ITEM) != null;
 		boolean filteredOnValueRefTargetNames = filteredOnValueRefTargetNames(parameters);
 		List<String> conditions = new ArrayList<>();
@@ -211,26 +303,11 @@ public class AuditEventRecordProvider extends BaseSortableDataProvider<AuditEven
 		} else {
 			parameters.remove(PARAMETER_VALUE_REF_TARGET_NAMES);
 		}
-		if (query == null) {
-			query = AUDIT_RECORDS_QUERY_CORE;
-			if (filteredOnChangedItem) {
-				query += AUDIT_RECORDS_QUERY_ITEMS_CHANGED;
-			}
-			if (filteredOnValueRefTargetNames) {
-				query += AUDIT_RECORDS_QUERY_REF_VALUES;
-			}
-			if (!conditions.isEmpty()) {
-				query += " where ";
-			}
-		}
-		if (isCount) {
-			query = AUDIT_RECORDS_QUERY_COUNT + query;
-		}
-		query += conditions.stream().collect(Collectors.joining(" and "));
-		if (ordered) {
-			query += AUDIT_RECORDS_ORDER_BY;
-		}
-		return query;
+		return conditions;
+	}
+
+	private boolean isFilteredOnJoinedItems(Map<String, Object> parameters) {
+		return parameters.get(PARAMETER_CHANGED_ITEM) != null || filteredOnValueRefTargetNames(parameters);
 	}
 
 	private boolean filteredOnValueRefTargetNames(Map<String, Object> parameters2) {
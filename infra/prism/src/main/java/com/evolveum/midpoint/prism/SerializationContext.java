@@ -16,6 +16,10 @@
 
 package com.evolveum.midpoint.prism;
 
+import com.evolveum.midpoint.prism.path.ItemPath;
+
+import java.util.Collection;
+
 /**
  * Everything we want to maintain during the serialization process.
  * (First of all, processing options.)
@@ -50,6 +54,10 @@ public class SerializationContext implements Cloneable {
         return ctx != null && SerializationOptions.isSerializeForExport(ctx.getOptions());
     }
 
+    public static Collection<ItemPath> getItemsToSkip(SerializationContext ctx) {
+        return ctx != null ? SerializationOptions.getItemsToSkip(ctx.getOptions()) : null;
+    }
+
     public static SerializationContext forOptions(SerializationOptions options) {
         return new SerializationContext(options);
     }
@@ -16,6 +16,11 @@
 
 package com.evolveum.midpoint.prism;
 
+import com.evolveum.midpoint.prism.path.ItemPath;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
 /**
  * @author Pavol Mederly
  */
@@ -31,6 +36,12 @@ public class SerializationOptions implements Cloneable {
 	 */
 	private boolean serializeForExport;
 
+	/**
+	 * Items that are left out from the serialized form. Paths are relative to the serialized object
+	 * (or value) and must not contain container IDs.
+	 */
+	private Collection<ItemPath> itemsToSkip;
+
 //	private NameQualificationStrategy itemTypeQualificationStrategy;
 //	private NameQualificationStrategy itemPathQualificationStrategy;
 //	private NameQualificationStrategy genericQualificationStrategy;
@@ -89,6 +100,24 @@ public class SerializationOptions implements Cloneable {
     	return options != null && options.isSerializeForExport();
 	}
 
+	public Collection<ItemPath> getItemsToSkip() {
+		return itemsToSkip;
+	}
+
+	public void setItemsToSkip(Collection<ItemPath> itemsToSkip) {
+		this.itemsToSkip = itemsToSkip;
+	}
+
+	public static SerializationOptions createItemsToSkip(Collection<ItemPath> itemsToSkip) {
+		SerializationOptions serializationOptions = new SerializationOptions();
+		serializationOptions.setItemsToSkip(itemsToSkip);
+		return serializationOptions;
+	}
+
+	public static Collection<ItemPath> getItemsToSkip(SerializationOptions options) {
+		return options != null ? options.getItemsToSkip() : null;
+	}
+
 	//	public ItemNameQualificationStrategy getItemNameQualificationStrategy() {
 //		return itemNameQualificationStrategy;
 //	}
@@ -149,6 +178,7 @@ public class SerializationOptions implements Cloneable {
 		clone.serializeReferenceNames = serializeReferenceNames;
 		clone.itemNameQualificationStrategy = itemNameQualificationStrategy;
 		clone.serializeForExport = serializeForExport;
+		clone.itemsToSkip = itemsToSkip != null ? new ArrayList<>(itemsToSkip) : null;
 		return clone;
 	}
 }
@@ -16,6 +16,8 @@
 package com.evolveum.midpoint.prism.marshaller;
 
 import com.evolveum.midpoint.prism.*;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.path.NameItemPathSegment;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.schema.SchemaRegistry;
 import com.evolveum.midpoint.prism.util.PrismUtil;
@@ -290,6 +292,10 @@ public class PrismMarshaller {
 				QName elementName = itemDef.getName();
 				Item<?,?> item = containerVal.findItem(elementName);
 				if (item != null) {
+					if (isSkipped(item, ctx)) {
+						marshaledItems.add(elementName);
+						continue;
+					}
 					XNode xsubnode = marshalItemContent(item, getItemDefinition(containerVal, item), ctx);
 					xmap.put(elementName, xsubnode);
 					marshaledItems.add(elementName);
@@ -301,7 +307,7 @@ public class PrismMarshaller {
 		if (containerVal.getItems() != null){
 			for (Item<?,?> item : containerVal.getItems()) {
 				QName elementName = item.getElementName();
-				if (marshaledItems.contains(elementName)) {
+				if (marshaledItems.contains(elementName) || isSkipped(item, ctx)) {
 					continue;
 				}
 				XNode xsubnode = marshalItemContent(item, getItemDefinition(containerVal, item), ctx);
@@ -310,6 +316,28 @@ public class PrismMarshaller {
 		}
 	}
 
+	private boolean isSkipped(Item<?, ?> item, SerializationContext ctx) {
+		Collection<ItemPath> itemsToSkip = SerializationContext.getItemsToSkip(ctx);
+		if (itemsToSkip == null || itemsToSkip.isEmpty()) {
+			return false;
+		}
+		ItemPath itemPath = null;
+		for (ItemPath itemToSkip : itemsToSkip) {
+			// cheap check first, so the item path is computed only for candidate items
+			NameItemPathSegment lastNamed = itemToSkip.lastNamed();
+			if (lastNamed == null || !QNameUtil.match(lastNamed.getName(), item.getElementName())) {
+				continue;
+			}
+			if (itemPath == null) {
+				itemPath = item.getPath().removeIdentifiers();
+			}
+			if (itemPath.equivalent(itemToSkip)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private <C extends Containerable> ItemDefinition getItemDefinition(PrismContainerValue<C> cval, Item<?, ?> item) {
 		if (item.getDefinition() != null) {
 			return item.getDefinition();
@@ -16,7 +16,9 @@
 
 package com.evolveum.midpoint.prism;
 
+import com.evolveum.midpoint.prism.foo.UserType;
 import com.evolveum.midpoint.prism.lex.dom.DomLexicalProcessor;
+import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.prism.xnode.PrimitiveXNode;
 import com.evolveum.midpoint.util.PrettyPrinter;
@@ -27,11 +29,13 @@ import org.xml.sax.SAXException;
 
 import javax.xml.namespace.QName;
 import java.io.IOException;
+import java.util.Arrays;
 
-import static com.evolveum.midpoint.prism.PrismInternalTestUtil.DEFAULT_NAMESPACE_PREFIX;
-import static com.evolveum.midpoint.prism.PrismInternalTestUtil.displayTestTitle;
+import static com.evolveum.midpoint.prism.PrismInternalTestUtil.*;
 import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
 
 /**
  * @author mederly
@@ -75,4 +79,31 @@ public class TestXmlSerialization {
             assertTrue(e.getMessage().contains("Invalid character"), "Didn't get expected error message");
         }
     }
+
+	@Test
+	public void testSkipItems() throws Exception {
+		final String TEST_NAME = "testSkipItems";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		PrismContext prismContext = PrismTestUtil.getPrismContext();
+		PrismObject<UserType> user = prismContext.parseObject(USER_JACK_FILE_XML);
+		SerializationOptions options = SerializationOptions.createItemsToSkip(
+				Arrays.asList(new ItemPath(USER_FULLNAME_QNAME), USER_ASSIGNMENT_DESCRIPTION_PATH));
+
+		// WHEN
+		String xml = prismContext.xmlSerializer().options(options).serialize(user);
+
+		// THEN
+		System.out.println("Serialized user:\n" + xml);
+		PrismObject<UserType> reparsed = prismContext.parseObject(xml);
+		assertNull("fullName was not skipped", reparsed.findProperty(USER_FULLNAME_QNAME));
+		assertNotNull("description was skipped", reparsed.findProperty(USER_DESCRIPTION_QNAME));
+		PrismContainer<?> assignment = reparsed.findContainer(USER_ASSIGNMENT_QNAME);
+		assertEquals("Wrong # of assignments", 2, assignment.size());
+		for (PrismContainerValue<?> assignmentValue : assignment.getValues()) {
+			assertNull("assignment/description was not skipped", assignmentValue.findProperty(USER_DESCRIPTION_QNAME));
+		}
+		assertNotNull("Original object was changed", user.findProperty(USER_FULLNAME_QNAME));
+	}
 }
@@ -27,6 +27,7 @@ public class CachingStatistics implements DebugDumpable {
 	private long requests = 0;
 	private long hits = 0;
 	private long misses = 0;
+	private long evictions = 0;
 
 	public long getRequests() {
 		return requests;
@@ -64,17 +65,40 @@ public class CachingStatistics implements DebugDumpable {
 		this.misses++;
 	}
 
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized void setEvictions(long evictions) {
+		this.evictions = evictions;
+	}
+
+	public synchronized void recordEviction() {
+		this.evictions++;
+	}
+
+	/**
+	 * Adds values from other statistics (e.g. when merging thread-local statistics into global ones).
+	 */
+	public synchronized void add(CachingStatistics other) {
+		this.requests += other.requests;
+		this.hits += other.hits;
+		this.misses += other.misses;
+		this.evictions += other.evictions;
+	}
+
 	public CachingStatistics clone() {
 		CachingStatistics clone = new CachingStatistics();
 		clone.requests = this.requests;
 		clone.hits = this.hits;
 		clone.misses = this.misses;
+		clone.evictions = this.evictions;
 		return clone;
 	}
 
 	@Override
 	public String toString() {
-		return "CachingStatistics(requests=" + requests + ", hits=" + hits + ", misses=" + misses + ")";
+		return "CachingStatistics(requests=" + requests + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ")";
 	}
 
 	@Override
@@ -82,7 +106,8 @@ public class CachingStatistics implements DebugDumpable {
 		StringBuilder sb = DebugUtil.createTitleStringBuilderLn(CachingStatistics.class, indent);
 		DebugUtil.debugDumpWithLabelLn(sb, "requests", requests, indent);
 		DebugUtil.debugDumpWithLabelLn(sb, "hits", hits, indent);
-		DebugUtil.debugDumpWithLabel(sb, "misses", misses, indent);
+		DebugUtil.debugDumpWithLabelLn(sb, "misses", misses, indent);
+		DebugUtil.debugDumpWithLabel(sb, "evictions", evictions, indent);
 		return sb.toString();
 	}
 
@@ -55,10 +55,25 @@ public enum InternalCounters {
 
 	REPOSITORY_READ_COUNT("repositoryReadCount", "repository read count", null),
 
+	/**
+	 * Version checks done by the global repository cache for entries with expired TTL.
+	 */
+	REPOSITORY_CACHE_VERSION_CHECK_COUNT("repositoryCacheVersionCheckCount", "repository cache version check count", null),
+
+	/**
+	 * Global repository cache invalidations received from other cluster nodes.
+	 */
+	REPOSITORY_CACHE_REMOTE_INVALIDATION_COUNT("repositoryCacheRemoteInvalidationCount", "repository cache remote invalidation count", null),
+
 	PRISM_OBJECT_COMPARE_COUNT("prismObjectCompareCount", "prism object compare count", null),
 
 	PRISM_OBJECT_CLONE_COUNT("prismObjectCloneCount", "prism object clone count", null),
 
+	/**
+	 * Cached (immutable) prism objects that were handed out to read-only callers without cloning.
+	 */
+	PRISM_OBJECT_CLONE_AVOIDED_COUNT("prismObjectCloneAvoidedCount", "prism object clone avoided count", null),
+
 	ROLE_EVALUATION_COUNT("roleEvaluationCount", "role evaluation count", InternalOperationClasses.ROLE_EVALUATIONS),
 
 	ROLE_EVALUATION_SKIP_COUNT("roleEvaluationSkipCount", "role evaluation skip count", null),
@@ -48,6 +48,7 @@ public class InternalMonitor implements PrismMonitor, DebugDumpable {
 
 	private static CachingStatistics resourceCacheStats = new CachingStatistics();
 	private static CachingStatistics connectorCacheStats = new CachingStatistics();
+	private static CachingStatistics repositoryCacheStats = new CachingStatistics();
 
 	private static boolean cloneTimingEnabled = false;
 	private static long prismObjectCloneDurationNanos = 0;
@@ -145,6 +146,13 @@ public class InternalMonitor implements PrismMonitor, DebugDumpable {
 		return connectorCacheStats;
 	}
 
+	/**
+	 * Statistics of thread-local repository caches. They are merged here when the respective cache is destroyed.
+	 */
+	public static CachingStatistics getRepositoryCacheStats() {
+		return repositoryCacheStats;
+	}
+
 	public static void recordConnectorOperation(String name) {
 		long count = recordCountInternal(InternalCounters.CONNECTOR_OPERATION_COUNT);
 		if (isTrace(InternalCounters.CONNECTOR_OPERATION_COUNT)) {
@@ -249,6 +257,7 @@ public class InternalMonitor implements PrismMonitor, DebugDumpable {
 		traceMap.clear();
 		resourceCacheStats = new CachingStatistics();
 		connectorCacheStats = new CachingStatistics();
+		repositoryCacheStats = new CachingStatistics();
 		inspector = null;
 	}
 
@@ -277,7 +286,8 @@ public class InternalMonitor implements PrismMonitor, DebugDumpable {
 			DebugUtil.debugDumpWithLabelLn(sb, "prismObjectCloneDuration", (prismObjectCloneDurationNanos/1000000)+" ms (" + prismObjectCloneDurationNanos + " ns)", indent + 1);
 		}
 		DebugUtil.debugDumpWithLabelLn(sb, "resourceCacheStats", resourceCacheStats, indent + 1);
-		DebugUtil.debugDumpWithLabel(sb, "connectorCacheStats", connectorCacheStats, indent + 1);
+		DebugUtil.debugDumpWithLabelLn(sb, "connectorCacheStats", connectorCacheStats, indent + 1);
+		DebugUtil.debugDumpWithLabel(sb, "repositoryCacheStats", repositoryCacheStats, indent + 1);
 		return sb.toString();
 	}
 }
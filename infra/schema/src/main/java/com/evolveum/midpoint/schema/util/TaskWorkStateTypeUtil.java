@@ -46,6 +46,7 @@ public class TaskWorkStateTypeUtil {
 			WorkBucketsManagementType buckets = cfg.getBuckets();
 			return MiscUtil.getFirstNonNull(
 					buckets.getNumericSegmentation(),
+					buckets.getAdaptiveNumericSegmentation(),
 					buckets.getStringSegmentation(),
 					buckets.getOidSegmentation(),
 					buckets.getExplicitSegmentation(),
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.audit.api.AuditResultHandler;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
@@ -57,6 +58,16 @@ public interface ModelAuditService {
     List<AuditEventRecord> listRecords(String query, Map<String, Object> params, Task task, OperationResult parentResult)
     		throws SecurityViolationException, SchemaException, ObjectNotFoundException, ExpressionEvaluationException, CommunicationException, ConfigurationException;
 
+    /**
+     * Passes matching audit records to the handler page by page, using keyset pagination.
+     * See {@link com.evolveum.midpoint.audit.api.AuditService#streamRecords}.
+     *
+     * @throws UnsupportedOperationException if object retrieval is not supported
+     */
+    void streamRecords(String conditions, Map<String, Object> params, AuditEventRecord after, boolean descending,
+            int pageSize, AuditResultHandler handler, Task task, OperationResult parentResult)
+    		throws SecurityViolationException, SchemaException, ObjectNotFoundException, ExpressionEvaluationException, CommunicationException, ConfigurationException;
+
     /**
      * @throws UnsupportedOperationException if object retrieval is not supported
      */
@@ -15,38 +15,36 @@
  */
 package com.evolveum.midpoint.model.impl;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.cxf.common.util.Base64Utility;
 import org.apache.cxf.jaxrs.client.WebClient;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
-import com.evolveum.midpoint.model.api.ModelInteractionService;
-import com.evolveum.midpoint.model.api.ModelService;
-import com.evolveum.midpoint.model.impl.security.NodeAuthenticationToken;
 import com.evolveum.midpoint.model.impl.security.RestAuthenticationMethod;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.CacheInvalidationEventUtil;
 import com.evolveum.midpoint.repo.api.CacheListener;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.SearchResultList;
-import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.result.OperationResult;
-import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.task.api.TaskManager;
-import com.evolveum.midpoint.util.exception.CommunicationException;
-import com.evolveum.midpoint.util.exception.ConfigurationException;
-import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
-import com.evolveum.midpoint.util.exception.SecurityViolationException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.FunctionLibraryType;
@@ -54,56 +52,93 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.InfrastructureConfig
 import com.evolveum.midpoint.xml.ns._public.common.common_3.NodeType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemObjectsType;
 
+/**
+ * Propagates cache invalidation events originating on this node to other nodes in the cluster.
+ *
+ * Events are sent asynchronously (in order) by a single dispatcher thread, so the modifying thread is not
+ * blocked by REST calls. Repository objects are sent only if cluster invalidation is configured for the repository
+ * cache and their type is held in the global cache. Events received from other nodes are dispatched locally only (clusterwide = false),
+ * so they are not sent any further.
+ */
 @Component
 public class ClusterCacheListener implements CacheListener {
 	
 	private static final Trace LOGGER = TraceManager.getTrace(ClusterCacheListener.class);
+
+	private static final String OPERATION_INVALIDATE_CACHE = ClusterCacheListener.class.getName() + ".invalidateCache";
+
+	private static final int QUEUE_CAPACITY = 10000;
 	
-	@Autowired private ModelService modelService;
-	@Autowired private ModelInteractionService modelInteractionService;
+	@Autowired
+	@Qualifier("cacheRepositoryService")
+	private RepositoryCache repositoryService;
 	@Autowired private TaskManager taskManager;
 	@Autowired private CacheDispatcher cacheDispatcher;
 	@Autowired private PrismContext prismContext;
+
+	private ExecutorService executor;
 	
 	@PostConstruct
 	public void addListener() {
+		// if the queue is full, the event is sent by the caller thread (we must not lose any invalidation)
+		executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(QUEUE_CAPACITY), r -> {
+					Thread thread = new Thread(r, "cluster-cache-invalidation");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
 		cacheDispatcher.registerCacheListener(this);
 	}
 
+	@PreDestroy
+	public void removeListener() {
+		cacheDispatcher.unregisterCacheListener(this);
+		executor.shutdown();
+	}
+
 	@Override
-	public <O extends ObjectType> void invalidateCache(Class<O> type, String oid) {
-		
-		if (!FunctionLibraryType.class.equals(type)) {
-			LOGGER.trace("Type {} not yet supported for cache clearance. Skipping.", type);
+	public <O extends ObjectType> void invalidateCache(Class<O> type, String oid, boolean clusterwide) {
+
+		if (!clusterwide) {
+			LOGGER.trace("Skipping cluster-wide cache clearing for {}:{}, the event came from other node.", type, oid);
 			return;
 		}
-		
-		String nodeId = taskManager.getNodeId();
-		
-		Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-		if (authentication instanceof NodeAuthenticationToken) {
-			LOGGER.trace("Skipping cluster-wide cache celaring, other nodes were already called.");
+
+		// function libraries are cached outside the repository cache; "all types" affects them as well
+		if (type != null && !FunctionLibraryType.class.equals(type) && !repositoryService.isClusterInvalidationNeeded(type)) {
+			LOGGER.trace("Type {} is not cached globally with cluster invalidation. Skipping.", type);
+			return;
 		}
-		
-		
-		Task task = taskManager.createTaskInstance("invalidateCache");
-		OperationResult result = task.getResult();
+
+		executor.execute(() -> sendInvalidationEvent(type, oid));
+	}
+
+	private <O extends ObjectType> void sendInvalidationEvent(Class<O> type, String oid) {
+
+		String nodeId = taskManager.getNodeId();
+
+		OperationResult result = new OperationResult(OPERATION_INVALIDATE_CACHE);
 		
 		SearchResultList<PrismObject<NodeType>> resultList;
 		try {
-			
 			ObjectQuery query = QueryBuilder.queryFor(NodeType.class, prismContext).not().item(NodeType.F_NODE_IDENTIFIER).eq(nodeId).build();
-			resultList = modelService.searchObjects(NodeType.class, query, null, task, result);
-		} catch (SchemaException | ObjectNotFoundException | SecurityViolationException | CommunicationException
-				| ConfigurationException | ExpressionEvaluationException e) {
+			resultList = repositoryService.searchObjects(NodeType.class, query, null, result);
+		} catch (SchemaException e) {
 			LOGGER.warn("Cannot find nodes for clearing cache on them. Skipping..");
 			return;
 		}
+
+		if (resultList.isEmpty()) {
+			LOGGER.trace("No other nodes, skipping cache clearing");
+			return;
+		}
 		
 		SystemConfigurationType systemConfig;
 		try {
-			systemConfig = modelInteractionService.getSystemConfiguration(result);
+			systemConfig = repositoryService.getObject(SystemConfigurationType.class,
+					SystemObjectsType.SYSTEM_CONFIGURATION.value(), null, result).asObjectable();
 		} catch (ObjectNotFoundException | SchemaException e) {
 			LOGGER.warn("Cannot load system configuration. Cannot determine the url for REST calls without it.");
 			return;
@@ -119,23 +154,30 @@ public class ClusterCacheListener implements CacheListener {
 			LOGGER.warn("No intra cluster http url pattern specified, skipping cache clearing");
 			return;
 		}
+
+		String path = "/event/" + CacheInvalidationEventUtil.toEventType(type);
+		if (StringUtils.isNotEmpty(oid)) {
+			path += "/" + oid;
+		}
 		
 		for (PrismObject<NodeType> node : resultList.getList()) {
 			NodeType nodeType = node.asObjectable();
 			
 			String httpPattern = clusterHttpPattern.replace("$host", nodeType.getHostname());
-			
-			WebClient client = WebClient.create(httpPattern + "/ws/rest");
-			client.header("Authorization", RestAuthenticationMethod.CLUSTER.getMethod());// + " " + Base64Utility.encode((nodeIdentifier).getBytes()));
-			
-			client.path("/event/" + ObjectTypes.getRestTypeFromClass(type));
-			Response response = client.post(null);
 
-			LOGGER.info("Cluster-wide cache clearance finished with status {}, {}", response.getStatusInfo().getStatusCode(), response.getStatusInfo().getReasonPhrase());
-			
+			try {
+				WebClient client = WebClient.create(httpPattern + "/ws/rest");
+				client.header("Authorization", RestAuthenticationMethod.CLUSTER.getMethod());
+
+				client.path(path);
+				Response response = client.post(null);
+
+				LOGGER.debug("Cache clearance on node {} ({}) finished with status {}, {}", nodeType.getNodeIdentifier(), path,
+						response.getStatusInfo().getStatusCode(), response.getStatusInfo().getReasonPhrase());
+			} catch (RuntimeException e) {
+				LoggingUtils.logUnexpectedException(LOGGER, "Couldn't clear cache on node {}", e, nodeType.getNodeIdentifier());
+			}
 		}
-		
-		
 	}
 
 }
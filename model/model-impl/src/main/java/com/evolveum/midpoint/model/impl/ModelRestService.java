@@ -35,6 +35,7 @@ import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.prism.query.QueryJaxbConvertor;
 import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.CacheInvalidationEventUtil;
 import com.evolveum.midpoint.schema.DefinitionProcessingOption;
 import com.evolveum.midpoint.schema.DeltaConvertor;
 import com.evolveum.midpoint.schema.GetOperationOptions;
@@ -1069,12 +1070,20 @@ public class ModelRestService {
 	@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, "application/yaml"})
 	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, "application/yaml"})
 	public Response executeClusterEvent(@PathParam("type") String type, @Context MessageContext mc) {
+		return executeClusterEvent(type, "", mc);
+	}
+
+	@POST
+	@Path("/event/{type}/{oid}")
+	@Consumes({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, "application/yaml"})
+	@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, "application/yaml"})
+	public Response executeClusterEvent(@PathParam("type") String type, @PathParam("oid") String oid, @Context MessageContext mc) {
 		//TODO: task??
 		Task task = RestServiceUtil.initRequest(mc);
 		OperationResult result = new OperationResult(OPERATION_EXECUTE_CLUSTER_EVENT);
-		String oid = "";
-		Class clazz = ObjectTypes.getClassFromRestType(type);
-		cacheDispatcher.dispatch(clazz, oid);
+		Class<? extends ObjectType> clazz = CacheInvalidationEventUtil.fromEventType(type);     // null means all types
+		// the event came from another node, so it must not be propagated further
+		cacheDispatcher.dispatch(clazz, oid, false);
 		
 		result.recordSuccess();
 		Response response = RestServiceUtil.createResponse(Response.Status.OK, result);
@@ -28,6 +28,7 @@ import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.audit.api.AuditEventRecord;
 import com.evolveum.midpoint.audit.api.AuditEventStage;
+import com.evolveum.midpoint.audit.api.AuditResultHandler;
 import com.evolveum.midpoint.audit.api.AuditService;
 import com.evolveum.midpoint.model.api.ModelAuditService;
 import com.evolveum.midpoint.model.api.ModelAuthorizationAction;
@@ -87,6 +88,13 @@ public class AuditController implements ModelAuditService {
 		return auditService.listRecords(query, params);
 	}
 
+	@Override
+	public void streamRecords(String conditions, Map<String, Object> params, AuditEventRecord after, boolean descending,
+			int pageSize, AuditResultHandler handler, Task task, OperationResult result) throws SecurityViolationException, SchemaException, ObjectNotFoundException, ExpressionEvaluationException, CommunicationException, ConfigurationException {
+		authorize(ModelAuthorizationAction.AUDIT_READ, task, result);
+		auditService.streamRecords(conditions, params, after, descending, pageSize, handler);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.evolveum.midpoint.audit.api.AuditService#countObjects(java.lang.String, java.util.Map)
 	 */
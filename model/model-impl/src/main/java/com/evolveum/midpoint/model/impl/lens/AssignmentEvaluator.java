@@ -15,8 +15,10 @@
  */
 package com.evolveum.midpoint.model.impl.lens;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -88,6 +90,8 @@ public class AssignmentEvaluator<F extends FocusType> {
 	
 	private static final Trace LOGGER = TraceManager.getTrace(AssignmentEvaluator.class);
 
+	private static final String OP_PREFETCH_TARGETS = AssignmentEvaluator.class.getName() + ".prefetchTargets";
+
 	// "Configuration parameters"
 	private final RepositoryService repository;
 	private final ObjectDeltaObject<F> focusOdo;
@@ -635,6 +639,84 @@ public class AssignmentEvaluator<F extends FocusType> {
 		}
 	}
 
+	/**
+	 * Fetches targets of given assignments (or inducements) using one repository call per target type.
+	 * The objects land in the repository cache, so resolveTargets can take them from there.
+	 * Only assignments that pass the cheap checks done before target resolution are considered; ones with
+	 * a condition are left out, as the condition is evaluated only later.
+	 * Problems are ignored here; they are reported when the targets are resolved one by one.
+	 */
+	private void prefetchTargets(AssignmentPathSegmentImpl segment, List<AssignmentType> assignments, boolean inducements,
+			QName relation, EvaluationContext ctx) {
+		if (assignments.size() < 2) {
+			return;
+		}
+		Map<Class<? extends ObjectType>, List<String>> oidsByType = new HashMap<>();
+		for (AssignmentType assignment : assignments) {
+			ObjectReferenceType targetRef = assignment.getTargetRef();
+			if (targetRef == null || targetRef.getOid() == null || targetRef.getType() == null) {
+				continue;
+			}
+			if (!isTargetToBeResolved(segment, assignment, inducements, relation, ctx)) {
+				continue;
+			}
+			Class<? extends ObjectType> targetClass = prismContext.getSchemaRegistry().determineCompileTimeClass(targetRef.getType());
+			if (targetClass != null) {
+				oidsByType.computeIfAbsent(targetClass, k -> new ArrayList<>()).add(targetRef.getOid());
+			}
+		}
+		for (Map.Entry<Class<? extends ObjectType>, List<String>> entry : oidsByType.entrySet()) {
+			if (entry.getValue().size() < 2) {
+				continue;
+			}
+			OperationResult result = ctx.result.createMinorSubresult(OP_PREFETCH_TARGETS);
+			result.addParam("type", entry.getKey().getSimpleName());
+			result.addParam("count", entry.getValue().size());
+			try {
+				repository.getObjects(entry.getKey(), entry.getValue(), null, result);
+				result.computeStatusIfUnknown();
+			} catch (SchemaException | RuntimeException e) {
+				LOGGER.debug("Couldn't prefetch assignment targets {}: {}", entry.getValue(), e.getMessage(), e);
+				result.recordHandledError(e);
+			}
+		}
+	}
+
+	/**
+	 * Approximates the checks that precede target resolution in evaluateAssignment/evaluateInducement,
+	 * evaluateFromSegment and evaluateSegmentContent, skipping the expensive ones (conditions).
+	 */
+	private boolean isTargetToBeResolved(AssignmentPathSegmentImpl segment, AssignmentType assignment, boolean inducement,
+			QName relation, EvaluationContext ctx) {
+		if (inducement) {
+			try {
+				if (!isInducementApplicableToFocusType(assignment.getFocusType())) {
+					return false;
+				}
+			} catch (SchemaException e) {
+				return false;           // reported when the inducement is evaluated
+			}
+			if (!isAllowedByLimitations(segment, assignment, ctx)) {
+				return false;
+			}
+		} else if (ObjectTypeUtil.isDelegationRelation(relation) && !isAllowedByLimitations(segment, assignment, ctx)) {
+			return false;
+		}
+		if (assignment.getCondition() != null) {
+			return false;
+		}
+		if (!LensUtil.isAssignmentValid(focusOdo.getNewObject().asObjectable(), assignment, now, activationComputer)) {
+			return false;
+		}
+		QName nextRelation = getRelation(assignment);
+		if (loginMode) {
+			return ObjectTypeUtil.processRelationOnLogin(nextRelation);
+		} else {
+			return isChanged(ctx.primaryAssignmentMode) || ObjectTypeUtil.processRelationOnRecompute(nextRelation)
+					|| shouldEvaluateAllAssignmentRelationsOnRecompute();
+		}
+	}
+
 	@NotNull
 	private <O extends ObjectType> List<PrismObject<O>> resolveTargetsFromFilter(Class<O> targetClass,
 			SearchFilterType filter, AssignmentPathSegmentImpl segment,
@@ -730,6 +812,7 @@ public class AssignmentEvaluator<F extends FocusType> {
 		// we need to evaluate assignments also for disabled targets, because of target policy rules
 		// ... but only for direct ones!
 		if (isTargetValid || ctx.assignmentPath.size() == 1) {
+			prefetchTargets(segment, targetType.getAssignment(), false, relation, ctx);
 			for (AssignmentType roleAssignment : targetType.getAssignment()) {
 				evaluateAssignment(segment, relativeMode, isValid, ctx, targetType, relation, roleAssignment);
 			}
@@ -748,6 +831,7 @@ public class AssignmentEvaluator<F extends FocusType> {
 		// Computation of isMatchingOrder will ensure that we won't collect any unwanted content.
 		
 		if (targetType instanceof AbstractRoleType) {
+			prefetchTargets(segment, ((AbstractRoleType) targetType).getInducement(), true, relation, ctx);
 			for (AssignmentType roleInducement : ((AbstractRoleType)targetType).getInducement()) {
 				evaluateInducement(segment, relativeMode, isValid, ctx, targetType, roleInducement);
 			}
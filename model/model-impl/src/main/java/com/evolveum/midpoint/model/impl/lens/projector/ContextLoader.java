@@ -17,6 +17,7 @@ package com.evolveum.midpoint.model.impl.lens.projector;
 
 import static com.evolveum.midpoint.schema.internals.InternalsConfig.consistencyChecks;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -501,6 +502,7 @@ public class ContextLoader {
 		if (linkRef == null) {
 			return;
 		}
+		prefetchLinkedShadows(context, linkRef, result);
 		for (PrismReferenceValue linkRefVal : linkRef.getValues()) {
 			String oid = linkRefVal.getOid();
 			if (StringUtils.isBlank(oid)) {
@@ -558,6 +560,32 @@ public class ContextLoader {
 		}
 	}
 
+	/**
+	 * Loads repository shadows for all links that are going to be loaded, using a single repository call.
+	 * The shadows land in the repository cache, so the following provisioning (noFetch) calls do not need
+	 * to go to the repository one by one.
+	 */
+	private <F extends FocusType> void prefetchLinkedShadows(LensContext<F> context, PrismReference linkRef,
+			OperationResult result) {
+		List<String> oids = new ArrayList<>();
+		for (PrismReferenceValue linkRefVal : linkRef.getValues()) {
+			String oid = linkRefVal.getOid();
+			if (StringUtils.isNotBlank(oid) && linkRefVal.getObject() == null && findAccountContext(oid, context) == null) {
+				oids.add(oid);
+			}
+		}
+		if (oids.size() < 2) {
+			return;
+		}
+		try {
+			cacheRepositoryService.getObjects(ShadowType.class, oids, null, result);
+		} catch (SchemaException | RuntimeException e) {
+			// shadows will be loaded one by one later, reporting any problems there
+			LOGGER.debug("Couldn't prefetch linked shadows {}: {}", oids, e.getMessage(), e);
+			result.muteLastSubresultError();
+		}
+	}
+
 	private <F extends FocusType> void loadLinkRefsFromDelta(LensContext<F> context, PrismObject<F> focus,
 			ObjectDelta<F> focusPrimaryDelta, Task task, OperationResult result) throws SchemaException,
 			ObjectNotFoundException, CommunicationException, ConfigurationException,
@@ -14,14 +14,10 @@ import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
-import org.apache.commons.collections.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
@@ -33,8 +29,7 @@ public class AuditReindexTaskHandler implements TaskHandler {
 
 	private static final String taskName = "AuditReindex";
 
-	private int maxResults = 20;
-	private int firstResult = 0;
+	private static final int PAGE_SIZE = 100;
 
 	@Autowired
 	protected AuditService auditService;
@@ -63,7 +58,7 @@ public class AuditReindexTaskHandler implements TaskHandler {
 			public boolean handle(AuditEventRecord auditRecord) {
 
 				auditService.reindexEntry(auditRecord);
-				processedObjects.incrementAndGet();
+				runResult.setProgress((long) processedObjects.incrementAndGet());
 
 				return true;
 			}
@@ -86,22 +81,7 @@ public class AuditReindexTaskHandler implements TaskHandler {
 						"Unexpected ObjectAlreadyExistsException when updating task progress/expectedTotal",
 						e);
 			}
-			Map<String, Object> params = new HashMap<>();
-			while (true) {
-				params.put("setFirstResult", firstResult);
-				params.put("setMaxResults", maxResults);
-				List<AuditEventRecord> records = auditService.listRecords(null, params);
-				if (CollectionUtils.isNotEmpty(records)){
-					for (AuditEventRecord record : records) {
-						resultHandler.handle(record);
-						runResult.setProgress((long) resultHandler.getProgress());
-					}
-					firstResult += maxResults;
-					maxResults = (int) ((expectedTotal - firstResult) > maxResults ? maxResults : (expectedTotal - firstResult));
-				} else {
-					break;
-				}
-			}
+			auditService.streamRecords(null, null, null, false, PAGE_SIZE, resultHandler);
 			opResult.recordSuccess();
 
 		} catch (ObjectNotFoundException e) {
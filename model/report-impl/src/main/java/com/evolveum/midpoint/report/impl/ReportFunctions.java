@@ -97,24 +97,66 @@ public class ReportFunctions {
 
     public <O extends ObjectType> List<PrismObject<O>> resolveLinkRefs(Collection<ObjectReferenceType> refs, Class type) {
 
-        List<PrismObject<O>> objects = new ArrayList<>();
-
+        List<String> oids = new ArrayList<>();
         for (ObjectReferenceType ref : refs) {
             Class clazz = getClassForType(ref.getType());
-            if (!clazz.equals(type)) {
-                continue;
+            if (clazz.equals(type) && ref.getOid() != null) {
+                oids.add(ref.getOid());
             }
-            Task task = taskManager.createTaskInstance();
-            OperationResult parentResult = task.getResult();
-            try {
-                PrismObject<O> obj = model.getObject(type, ref.getOid(), SelectorOptions.createCollection(GetOperationOptions.createResolveNames()), task, parentResult);
-                objects.add(obj);
-            } catch (ObjectNotFoundException | SchemaException | SecurityViolationException | CommunicationException | ConfigurationException | ExpressionEvaluationException e) {
-                // TODO Auto-generated catch block
-                LOGGER.error("Could not get object with oid " + ref.getOid() + ". Reason: " + e.getMessage());
+        }
 
+        Map<String, PrismObject<O>> objectsByOid = getObjects(type, oids,
+                SelectorOptions.createCollection(GetOperationOptions.createResolveNames()));
+        List<PrismObject<O>> objects = new ArrayList<>();
+        for (String oid : oids) {
+            PrismObject<O> obj = objectsByOid.get(oid);
+            if (obj != null) {
+                objects.add(obj);
             }
+        }
+        return objects;
+    }
 
+    /**
+     * Gets objects with given OIDs using a single search (instead of getting them one by one).
+     * Objects that were not found are logged and skipped.
+     *
+     * Shadows are still got one by one: provisioning does not search for shadows without resource
+     * and object class specified, and a shadow fetched by OID contains the current state from the resource.
+     */
+    private <O extends ObjectType> Map<String, PrismObject<O>> getObjects(Class<O> type, Collection<String> oids,
+            Collection<SelectorOptions<GetOperationOptions>> options) {
+        Map<String, PrismObject<O>> objects = new HashMap<>();
+        if (oids.isEmpty()) {
+            return objects;
+        }
+        Task task = taskManager.createTaskInstance();
+        OperationResult parentResult = task.getResult();
+        if (ShadowType.class.isAssignableFrom(type)) {
+            for (String oid : oids) {
+                try {
+                    objects.put(oid, model.getObject(type, oid, options, task, parentResult));
+                } catch (ObjectNotFoundException | SchemaException | SecurityViolationException | CommunicationException | ConfigurationException | ExpressionEvaluationException e) {
+                    LOGGER.error("Could not get object with oid " + oid + ". Reason: " + e.getMessage());
+                }
+            }
+            return objects;
+        }
+        try {
+            ObjectQuery query = QueryBuilder.queryFor(type, prismContext)
+                    .id(oids.toArray(new String[0]))
+                    .build();
+            for (PrismObject<O> obj : model.searchObjects(type, query, options, task, parentResult)) {
+                objects.put(obj.getOid(), obj);
+            }
+        } catch (ObjectNotFoundException | SchemaException | SecurityViolationException | CommunicationException | ConfigurationException | ExpressionEvaluationException e) {
+            LOGGER.error("Could not get objects with oids " + oids + ". Reason: " + e.getMessage());
+            return objects;
+        }
+        for (String oid : oids) {
+            if (!objects.containsKey(oid)) {
+                LOGGER.error("Could not get object with oid " + oid + ". Reason: object was not found");
+            }
         }
         return objects;
     }
@@ -175,6 +217,8 @@ public class ReportFunctions {
         if (assignments == null) {
             return resolvedAssignments;
         }
+        List<Object> targetsOrOids = new ArrayList<>();
+        List<String> oids = new ArrayList<>();
         for (AssignmentType assignment : assignments) {
             Class clazz = null;
             String oid = null;
@@ -199,19 +243,23 @@ public class ReportFunctions {
             }
 
             if (assignment.getTarget() != null) {
-                resolvedAssignments.add((PrismObject<O>) assignment.getTarget().asPrismObject());
-                continue;
+                targetsOrOids.add(assignment.getTarget().asPrismObject());
+            } else {
+                targetsOrOids.add(oid);
+                if (oid != null) {
+                    oids.add(oid);
+                }
             }
+        }
 
-            Task task = taskManager.createTaskInstance();
-            try {
-                PrismObject<O> obj = model.getObject(type, oid, null, task, task.getResult());
+        Map<String, PrismObject<O>> objectsByOid = getObjects(type, oids, null);
+        for (Object targetOrOid : targetsOrOids) {
+            PrismObject<O> obj = targetOrOid instanceof PrismObject
+                    ? (PrismObject<O>) targetOrOid
+                    : objectsByOid.get(targetOrOid);
+            if (obj != null) {
                 resolvedAssignments.add(obj);
-            } catch (ObjectNotFoundException | SchemaException | SecurityViolationException | CommunicationException | ConfigurationException | ExpressionEvaluationException e) {
-                LOGGER.error("Could not get object with oid " + oid + ". Reason: " + e.getMessage());
-
             }
-
         }
 
         return resolvedAssignments;
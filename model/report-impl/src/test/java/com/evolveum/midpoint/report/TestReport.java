@@ -15,23 +15,30 @@
  */
 package com.evolveum.midpoint.report;
 
+import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertTrue;
 
 import java.io.File;
+import java.util.List;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Test;
 
+import com.evolveum.midpoint.audit.api.AuditService;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.report.impl.ReportFunctions;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.test.util.MidPointTestConstants;
 import com.evolveum.midpoint.test.util.TestUtil;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ReportType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 
 /**
  * Basic report tests.
@@ -48,12 +55,19 @@ public class TestReport extends AbstractReportIntegrationTest {
 	protected final static File REPORT_USER_LIST_SCRIPT_FILE = new File(TEST_DIR, "report-user-list-script.xml"); 
 	protected final static String REPORT_USER_LIST_SCRIPT_OID = "222bf2b8-c89b-11e7-bf36-ebd4e4d45a80";
 
+	protected final static File RESOURCE_DUMMY_FILE = new File(TEST_DIR_COMMON, "resource-dummy.xml");
+	protected final static String RESOURCE_DUMMY_OID = "10000000-0000-0000-0000-000000000004";
+
+	@Autowired protected AuditService auditService;
+
 	@Override
 	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
 		super.initSystem(initTask, initResult);
 		
 		repoAddObjectFromFile(REPORT_USER_LIST_FILE, RoleType.class, initResult);
 		repoAddObjectFromFile(REPORT_USER_LIST_SCRIPT_FILE, RoleType.class, initResult);
+
+		initDummyResourcePirate(null, RESOURCE_DUMMY_FILE, RESOURCE_DUMMY_OID, initTask, initResult);
 	}
 
 
@@ -120,4 +134,32 @@ public class TestReport extends AbstractReportIntegrationTest {
       File targetFile = new File(MidPointTestConstants.TARGET_DIR_PATH, "report-users.pdf");
       assertTrue("Target file is not there", targetFile.exists());
   }
+
+  /**
+   * Link refs point to shadows; they have to be resolved even if provisioning cannot search for them by OID.
+   */
+  @Test
+  public void test300ResolveShadowLinkRefs() throws Exception {
+	  final String TEST_NAME = "test300ResolveShadowLinkRefs";
+      displayTestTitle(TEST_NAME);
+
+      Task task = createTask(TEST_NAME);
+      OperationResult result = task.getResult();
+
+      assignAccount(USER_JACK_OID, RESOURCE_DUMMY_OID, null, task, result);
+      PrismObject<UserType> userJack = getUser(USER_JACK_OID);
+      String shadowOid = getSingleLinkOid(userJack);
+
+      ReportFunctions reportFunctions = new ReportFunctions(prismContext, modelService, taskManager, auditService);
+
+      // WHEN
+      displayWhen(TEST_NAME);
+      List<PrismObject<ShadowType>> shadows = reportFunctions.resolveLinkRefs(userJack.asObjectable().getLinkRef(), ShadowType.class);
+
+      // THEN
+      displayThen(TEST_NAME);
+      display("Resolved shadows", shadows);
+      assertEquals("Wrong # of resolved shadows", 1, shadows.size());
+      assertEquals("Wrong shadow OID", shadowOid, shadows.get(0).getOid());
+  }
 }
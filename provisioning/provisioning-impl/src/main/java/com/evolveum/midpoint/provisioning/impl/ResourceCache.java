@@ -24,6 +24,8 @@ import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ResourceType;
 
@@ -104,6 +106,7 @@ public class ResourceCache {
 
 				return null;
 			}
+			InternalMonitor.recordCount(InternalCounters.PRISM_OBJECT_CLONE_AVOIDED_COUNT);
 			return cachedResource;
 		} else {
 			return cachedResource.clone();
@@ -46,6 +46,22 @@ public interface AuditService {
 
     void listRecordsIterative(String query, Map<String, Object> params, AuditResultHandler auditResultHandler);
 
+    /**
+     * Passes audit records matching given conditions to the handler, ordered by timestamp and repository ID.
+     * Records are fetched in pages using keyset pagination: each page starts right after the last record
+     * of the previous one, so no offsets are used and the result is never held in memory as a whole.
+     * Records without timestamp are not returned.
+     *
+     * @param conditions HQL conditions on the audit record (alias "aer"), e.g. "aer.targetOid = :targetOid";
+     *                   null means all records
+     * @param after record to continue after (e.g. the last one displayed); null means to start from the beginning
+     * @param descending true to get the newest records first
+     * @param pageSize number of records fetched at once
+     * @throws UnsupportedOperationException if object retrieval is not supported
+     */
+    void streamRecords(String conditions, Map<String, Object> params, AuditEventRecord after, boolean descending,
+            int pageSize, AuditResultHandler auditResultHandler);
+
     /**
      * Reindex items, e.g. if new columns were created for audit table according to which the search should be possible
      */
@@ -188,6 +188,12 @@ public class LoggerAuditServiceImpl implements AuditService {
 
 	}
 
+	@Override
+	public void streamRecords(String conditions, Map<String, Object> params, AuditEventRecord after, boolean descending,
+			int pageSize, AuditResultHandler auditResultHandler) {
+		throw new UnsupportedOperationException("Object retrieval not supported");
+	}
+
 	@Override
 	public void reindexEntry(AuditEventRecord record) {
 		throw new UnsupportedOperationException("Reindex entry not supported");
@@ -23,5 +23,14 @@ public interface CacheDispatcher {
 	public void registerCacheListener(CacheListener cacheListener);
 	public void unregisterCacheListener(CacheListener cacheListener);
 	
+	/**
+	 * Dispatches the invalidation event to local listeners; cluster-aware listeners propagate it to other nodes.
+	 */
 	public <O extends ObjectType> void dispatch(Class<O> type, String oid);
+
+	/**
+	 * Dispatches the invalidation event to local listeners. If clusterwide is false (e.g. when the event
+	 * was received from another node), listeners must not propagate it any further.
+	 */
+	public <O extends ObjectType> void dispatch(Class<O> type, String oid, boolean clusterwide);
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.repo.api;
+
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Conversion of object types to and from the type part of cluster cache invalidation events (/event/{type}/{oid}).
+ *
+ * @author mederly
+ */
+public class CacheInvalidationEventUtil {
+
+	/**
+	 * Event type meaning "all types" (i.e. type = null in {@link CacheListener#invalidateCache}).
+	 */
+	public static final String ALL_TYPES = "all";
+
+	public static String toEventType(Class<? extends ObjectType> type) {
+		return type != null ? ObjectTypes.getRestTypeFromClass(type) : ALL_TYPES;
+	}
+
+	/**
+	 * @return null if all types are affected; ObjectType (sent by older nodes instead of "all") is treated the same way
+	 */
+	@SuppressWarnings("unchecked")
+	public static Class<? extends ObjectType> fromEventType(String eventType) {
+		if (ALL_TYPES.equals(eventType) || ObjectTypes.OBJECT.getRestType().equals(eventType)) {
+			return null;
+		}
+		return ObjectTypes.getClassFromRestType(eventType);
+	}
+}
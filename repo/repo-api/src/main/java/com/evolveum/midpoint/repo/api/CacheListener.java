@@ -20,6 +20,11 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 public interface CacheListener {
 
-	public <O extends ObjectType> void invalidateCache(Class<O> type, String oid);
+	/**
+	 * @param type Type of the object that was changed (or null if all types are affected).
+	 * @param oid OID of the object that was changed (or null/empty if all objects of the type are affected).
+	 * @param clusterwide Whether the event originated on this node and should be propagated to other nodes.
+	 */
+	public <O extends ObjectType> void invalidateCache(Class<O> type, String oid, boolean clusterwide);
 	
 }
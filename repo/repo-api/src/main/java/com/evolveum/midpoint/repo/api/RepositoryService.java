@@ -118,6 +118,7 @@ public interface RepositoryService {
 
     String CLASS_NAME_WITH_DOT = RepositoryService.class.getName() + ".";
     String GET_OBJECT = CLASS_NAME_WITH_DOT + "getObject";
+    String GET_OBJECTS = CLASS_NAME_WITH_DOT + "getObjects";
     @Deprecated
     String LIST_ACCOUNT_SHADOW = CLASS_NAME_WITH_DOT + "listAccountShadowOwner";
     String ADD_OBJECT = CLASS_NAME_WITH_DOT + "addObject";
@@ -137,6 +138,13 @@ public interface RepositoryService {
     String SEARCH_SHADOW_OWNER = CLASS_NAME_WITH_DOT + "searchShadowOwner";
 	String ADVANCE_SEQUENCE = CLASS_NAME_WITH_DOT + "advanceSequence";
 	String RETURN_UNUSED_VALUES_TO_SEQUENCE = CLASS_NAME_WITH_DOT + "returnUnusedValuesToSequence";
+	String CLAIM_WORK_BUCKET = CLASS_NAME_WITH_DOT + "claimWorkBucket";
+	String ADD_WORK_BUCKETS = CLASS_NAME_WITH_DOT + "addWorkBuckets";
+	String GET_WORK_BUCKETS = CLASS_NAME_WITH_DOT + "getWorkBuckets";
+	String GET_LAST_WORK_BUCKET = CLASS_NAME_WITH_DOT + "getLastWorkBucket";
+	String CHANGE_DELEGATED_WORK_BUCKET_STATE = CLASS_NAME_WITH_DOT + "changeDelegatedWorkBucketState";
+	String RECLAIM_WORK_BUCKETS = CLASS_NAME_WITH_DOT + "reclaimWorkBuckets";
+	String DELETE_WORK_BUCKETS = CLASS_NAME_WITH_DOT + "deleteWorkBuckets";
 	String EXECUTE_QUERY_DIAGNOSTICS = CLASS_NAME_WITH_DOT + "executeQueryDiagnostics";
 
 	String KEY_DIAG_DATA = "repositoryDiagData";			// see GetOperationOptions.attachDiagData
@@ -163,6 +171,29 @@ public interface RepositoryService {
 			OperationResult parentResult)
 			throws ObjectNotFoundException, SchemaException;
 
+	/**
+	 * Returns objects for provided OIDs, fetching them in as few storage round trips as possible.
+	 *
+	 * Unlike getObject, this method does not fail if some of the objects do not exist or are not
+	 * of the requested type: such OIDs are simply not present in the returned list. Objects are
+	 * returned in the order of provided OIDs; duplicate OIDs are returned only once.
+	 *
+	 * @param oids
+	 *            OIDs of the objects to get
+	 * @param parentResult
+	 *            parent OperationResult (in/out)
+	 * @return Objects fetched from repository (existing ones only)
+	 *
+	 * @throws SchemaException
+	 *             error dealing with storage schema
+	 * @throws IllegalArgumentException
+	 *             wrong OID format, etc.
+	 */
+	@NotNull
+	<T extends ObjectType> SearchResultList<PrismObject<T>> getObjects(Class<T> type, Collection<String> oids,
+			Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult)
+			throws SchemaException;
+
 //	<T extends ObjectType> PrismObject<T> getContainerValue(Class<T> type, String oid, long id,
 //															Collection<SelectorOptions<GetOperationOptions>> options,
 //															OperationResult parentResult)
@@ -533,6 +564,62 @@ public interface RepositoryService {
 	 */
 	void returnUnusedValuesToSequence(String oid, Collection<Long> unusedValues, OperationResult parentResult) throws ObjectNotFoundException, SchemaException;
 
+	// Work buckets stored in a table (see WorkBucketStorageType.TABLE). The buckets are identified by the coordinator task OID
+	// and their sequential number. They are not part of the coordinator task object.
+
+	/**
+	 * Takes a READY bucket of the coordinator task (the one with the lowest sequential number, if possible) and marks
+	 * it as DELEGATED to the worker task.
+	 *
+	 * This operation is atomic. If two workers (even on different nodes) claim a bucket at the same time then
+	 * different buckets are returned. Workers do not wait for each other if the database supports skipping locked rows.
+	 *
+	 * @return the claimed bucket; null if there is no READY bucket
+	 */
+	WorkBucketType claimWorkBucket(String coordinatorOid, String workerOid, OperationResult parentResult) throws SchemaException;
+
+	/**
+	 * Stores new buckets for the coordinator task. Buckets in DELEGATED state are recorded as delegated to the given worker.
+	 *
+	 * @throws ObjectAlreadyExistsException a bucket with the same sequential number already exists (e.g. it was
+	 *         created by another worker in the meanwhile); no bucket is stored in such case
+	 */
+	void addWorkBuckets(String coordinatorOid, List<WorkBucketType> buckets, String workerOid, OperationResult parentResult)
+			throws ObjectAlreadyExistsException, SchemaException;
+
+	/**
+	 * @param state state of buckets to return; null means all buckets
+	 * @return buckets sorted by sequential number
+	 */
+	@NotNull
+	List<WorkBucketType> getWorkBuckets(String coordinatorOid, WorkBucketStateType state, OperationResult parentResult)
+			throws SchemaException;
+
+	/**
+	 * @return bucket with the highest sequential number (in any state); null if there are no buckets
+	 */
+	WorkBucketType getLastWorkBucket(String coordinatorOid, OperationResult parentResult) throws SchemaException;
+
+	/**
+	 * Changes the state of a bucket that is delegated to the given worker (typically to COMPLETE or back to READY).
+	 *
+	 * @return false if the bucket does not exist or is not delegated to the worker (anymore)
+	 */
+	boolean changeDelegatedWorkBucketState(String coordinatorOid, int sequentialNumber, String workerOid,
+			WorkBucketStateType newState, OperationResult parentResult);
+
+	/**
+	 * Returns DELEGATED buckets back to READY state, unless they are delegated to one of the live workers.
+	 *
+	 * @return number of reclaimed buckets
+	 */
+	int reclaimWorkBuckets(String coordinatorOid, Collection<String> liveWorkerOids, OperationResult parentResult);
+
+	/**
+	 * Deletes all the buckets of the coordinator task.
+	 */
+	void deleteWorkBuckets(String coordinatorOid, OperationResult parentResult);
+
     /**
 	 * Provide repository run-time configuration and diagnostic information.
 	 */
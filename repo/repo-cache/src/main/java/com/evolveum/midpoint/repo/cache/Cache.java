@@ -16,101 +16,396 @@
 
 package com.evolveum.midpoint.repo.cache;
 
-import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.internals.CachingStatistics;
+import com.evolveum.midpoint.util.DebugDumpable;
+import com.evolveum.midpoint.util.DebugUtil;
 import com.evolveum.midpoint.util.caching.AbstractCache;
-import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 
 /**
+ * Thread-local repository cache content.
+ *
+ * Objects, versions and query results are kept in LRU order and are bounded both by entry count and by total weight
+ * (approximate number of prism items and values held). When a limit is exceeded, least recently used query results
+ * are evicted first, then least recently used objects.
+ *
+ * Query results are additionally indexed by object type, so that invalidation after a modification touches only
+ * the entries of the modified type.
+ *
+ * The cache also remembers (for a short time) objects that were not found, and owners of shadows as returned
+ * by searchShadowOwner. Both are kept coherent by RepositoryCache on add/modify/delete operations executed in this
+ * thread; the time limit protects against changes done by other threads or nodes.
+ *
  * @author Pavol Mederly
  */
-public class Cache extends AbstractCache {
+public class Cache extends AbstractCache implements DebugDumpable {
 
     private static final Trace LOGGER = TraceManager.getTrace(Cache.class);
 
-    private Map<String, PrismObject<? extends ObjectType>> objects = new HashMap<>();
-    private Map<String, String> versions = new HashMap<>();
-    private Map<QueryKey, SearchResultList> queries = new HashMap<>();
+    private static final int TOP_TYPES_TO_DUMP = 10;
+
+    // Limits are node-wide; they are set by RepositoryCache from midpoint.repository configuration.
+    private static volatile int maxObjects = 10000;
+    private static volatile int maxQueries = 1000;
+    private static volatile long maxWeight = 2000000L;
+    private static volatile long notFoundTimeToLive = 1000L;
+
+    private final Map<String, ObjectEntry> objects = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> versions = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return maxObjects > 0 && size() > maxObjects;
+        }
+    };
+    private final Map<QueryKey, QueryEntry> queries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Class<? extends ObjectType>, Set<QueryKey>> queriesByType = new HashMap<>();
+    private final Map<String, NotFoundEntry> notFound = new LinkedHashMap<String, NotFoundEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, NotFoundEntry> eldest) {
+            return maxObjects > 0 && size() > maxObjects;
+        }
+    };
+    private final Map<String, ShadowOwnerEntry> shadowOwners = new LinkedHashMap<String, ShadowOwnerEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ShadowOwnerEntry> eldest) {
+            return maxObjects > 0 && size() > maxObjects;
+        }
+    };
+
+    private long objectsWeight = 0;
+    private long queriesWeight = 0;
+
+    private final CachingStatistics statistics = new CachingStatistics();
+
+    private static class ObjectEntry {
+        private final PrismObject<? extends ObjectType> object;
+        private final long weight;
+
+        private ObjectEntry(PrismObject<? extends ObjectType> object, long weight) {
+            this.object = object;
+            this.weight = weight;
+        }
+    }
+
+    private static class QueryEntry {
+        private final SearchResultList result;
+        private final long weight;
+
+        private QueryEntry(SearchResultList result, long weight) {
+            this.result = result;
+            this.weight = weight;
+        }
+    }
+
+    private static class NotFoundEntry {
+        private final Set<Class<? extends ObjectType>> types = new HashSet<>();
+        private long validUntil;
+    }
+
+    private static class ShadowOwnerEntry {
+        private final String ownerOid;          // null = the shadow has no owner
+        private final long validUntil;
+
+        private ShadowOwnerEntry(String ownerOid, long validUntil) {
+            this.ownerOid = ownerOid;
+            this.validUntil = validUntil;
+        }
+    }
+
+    /**
+     * Sets the limits for caches created from now on (and for existing ones when they grow).
+     * Zero or negative value means "unlimited".
+     */
+    public static void setLimits(int maxObjects, int maxQueries, long maxWeight) {
+        Cache.maxObjects = maxObjects;
+        Cache.maxQueries = maxQueries;
+        Cache.maxWeight = maxWeight;
+    }
+
+    /**
+     * Sets how long (in milliseconds) "object not found" and "shadow has no owner" results are remembered.
+     * Zero or negative value switches this negative caching off.
+     */
+    public static void setNotFoundTimeToLive(long notFoundTimeToLive) {
+        Cache.notFoundTimeToLive = notFoundTimeToLive;
+    }
 
     public int size() {
-        return objects.size() + versions.size() + queries.size();
+        return objects.size() + versions.size() + queries.size() + notFound.size() + shadowOwners.size();
+    }
+
+    public long getWeight() {
+        return objectsWeight + queriesWeight;
+    }
+
+    public CachingStatistics getStatistics() {
+        return statistics;
     }
 
     @Override
     public String description() {
-        return "O:"+objects.size()+", V:"+versions.size()+", Q:"+queries.size();
+        return "O:"+objects.size()+", V:"+versions.size()+", Q:"+queries.size()+", N:"+notFound.size()
+                +", S:"+shadowOwners.size()+", W:"+getWeight();
     }
 
     public PrismObject<? extends ObjectType> getObject(String oid) {
-        return objects.get(oid);
+        ObjectEntry entry = objects.get(oid);
+        recordAccess(entry != null);
+        return entry != null ? entry.object : null;
     }
 
     public void putObject(String oid, PrismObject<? extends ObjectType> object) {
-        objects.put(oid, object);
+        long weight = estimateWeight(object);
+        ObjectEntry previous = objects.put(oid, new ObjectEntry(object, weight));
+        if (previous != null) {
+            objectsWeight -= previous.weight;
+        }
+        objectsWeight += weight;
         versions.put(oid, object.getVersion());
+        enforceLimits();
     }
 
     public void removeObject(String oid) {
-        objects.remove(oid);
+        ObjectEntry previous = objects.remove(oid);
+        if (previous != null) {
+            objectsWeight -= previous.weight;
+        }
         versions.remove(oid);
+        notFound.remove(oid);
+    }
+
+    /**
+     * Returns true if the object was recently found not to exist when asked for given type or its supertype.
+     */
+    public boolean isNotFound(Class<? extends ObjectType> type, String oid) {
+        NotFoundEntry entry = notFound.get(oid);
+        if (entry != null && entry.validUntil < System.currentTimeMillis()) {
+            notFound.remove(oid);
+            entry = null;
+        }
+        boolean hit = false;
+        if (entry != null) {
+            for (Class<? extends ObjectType> notFoundType : entry.types) {
+                if (notFoundType.isAssignableFrom(type)) {
+                    hit = true;
+                    break;
+                }
+            }
+        }
+        recordAccess(hit);
+        return hit;
     }
 
-    public <T extends ObjectType> void putQueryResult(Class<T> type, ObjectQuery query, SearchResultList searchResultList, PrismContext prismContext) {
-        QueryKey queryKey = createQueryKey(type, query, prismContext);
-        if (queryKey != null) {     // TODO BRUTAL HACK
-            queries.put(queryKey, searchResultList);
+    public void putNotFound(Class<? extends ObjectType> type, String oid) {
+        long timeToLive = notFoundTimeToLive;
+        if (timeToLive <= 0) {
+            return;
         }
+        NotFoundEntry entry = notFound.computeIfAbsent(oid, k -> new NotFoundEntry());
+        entry.types.add(type);
+        entry.validUntil = System.currentTimeMillis() + timeToLive;
+    }
+
+    public boolean containsShadowOwner(String shadowOid) {
+        ShadowOwnerEntry entry = shadowOwners.get(shadowOid);
+        if (entry != null && entry.ownerOid == null && entry.validUntil < System.currentTimeMillis()) {
+            shadowOwners.remove(shadowOid);
+            entry = null;
+        }
+        recordAccess(entry != null);
+        return entry != null;
+    }
+
+    /**
+     * Returns OID of the owner of given shadow, or null if the shadow has no owner (or if the owner is not known).
+     */
+    public String getShadowOwner(String shadowOid) {
+        ShadowOwnerEntry entry = shadowOwners.get(shadowOid);
+        return entry != null ? entry.ownerOid : null;
+    }
+
+    /**
+     * Remembers the owner of a shadow. Null owner OID (i.e. "no owner") is remembered only for a short time.
+     */
+    public void putShadowOwner(String shadowOid, String ownerOid) {
+        if (ownerOid == null) {
+            long timeToLive = notFoundTimeToLive;
+            if (timeToLive > 0) {
+                shadowOwners.put(shadowOid, new ShadowOwnerEntry(null, System.currentTimeMillis() + timeToLive));
+            }
+        } else {
+            shadowOwners.put(shadowOid, new ShadowOwnerEntry(ownerOid, Long.MAX_VALUE));
+        }
+    }
+
+    public void removeShadowOwner(String shadowOid) {
+        shadowOwners.remove(shadowOid);
+    }
+
+    /**
+     * Removes all shadow owner entries that point to given owner.
+     */
+    public void removeShadowOwnersOf(String ownerOid) {
+        shadowOwners.values().removeIf(entry -> ownerOid.equals(entry.ownerOid));
+    }
+
+    public <T extends ObjectType> void putQueryResult(Class<T> type, ObjectQuery query, SearchResultList searchResultList) {
+        QueryKey queryKey = new QueryKey(type, query);
+        long weight = 1;
+        for (Object object : searchResultList) {
+            weight += estimateWeight((PrismObject<?>) object);
+        }
+        QueryEntry previous = queries.put(queryKey, new QueryEntry(searchResultList, weight));
+        if (previous != null) {
+            queriesWeight -= previous.weight;
+        }
+        queriesWeight += weight;
+        queriesByType.computeIfAbsent(type, k -> new HashSet<>()).add(queryKey);
+        enforceLimits();
     }
 
     public void clearQueryResults() {
         queries.clear();
+        queriesByType.clear();
+        queriesWeight = 0;
     }
 
+    /**
+     * Removes results of queries that could contain objects of given type, i.e. queries over the type or its supertypes.
+     */
     public <T extends ObjectType> void clearQueryResults(Class<T> type) {
-        // TODO implement more efficiently
         int removed = 0;
-        Iterator<Map.Entry<QueryKey, SearchResultList>> iterator = queries.entrySet().iterator();
+        Iterator<Map.Entry<Class<? extends ObjectType>, Set<QueryKey>>> iterator = queriesByType.entrySet().iterator();
         while (iterator.hasNext()) {
-            if (type.equals(iterator.next().getKey().getType())) {
-                iterator.remove();
-                removed++;
+            Map.Entry<Class<? extends ObjectType>, Set<QueryKey>> typeEntry = iterator.next();
+            if (!typeEntry.getKey().isAssignableFrom(type)) {
+                continue;
             }
+            for (QueryKey key : typeEntry.getValue()) {
+                QueryEntry entry = queries.remove(key);
+                if (entry != null) {
+                    queriesWeight -= entry.weight;
+                    removed++;
+                }
+            }
+            iterator.remove();
         }
         LOGGER.trace("Removed {} query result entries of type {}", removed, type);
     }
 
-    public SearchResultList getQueryResult(Class<? extends ObjectType> type, ObjectQuery query, PrismContext prismContext) {
-        QueryKey queryKey = createQueryKey(type, query, prismContext);
-        if (queryKey != null) {         // TODO BRUTAL HACK
-            return queries.get(queryKey);
+    public SearchResultList getQueryResult(Class<? extends ObjectType> type, ObjectQuery query) {
+        QueryEntry entry = queries.get(new QueryKey(type, query));
+        recordAccess(entry != null);
+        return entry != null ? entry.result : null;
+    }
+
+    public String getObjectVersion(String oid) {
+        String version = versions.get(oid);
+        recordAccess(version != null);
+        return version;
+    }
+
+    public void putObjectVersion(String oid, String version) {
+        versions.put(oid, version);
+    }
+
+    private void recordAccess(boolean hit) {
+        statistics.recordRequest();
+        if (hit) {
+            statistics.recordHit();
         } else {
-            return null;
+            statistics.recordMiss();
         }
     }
 
-    private QueryKey createQueryKey(Class<? extends ObjectType> type, ObjectQuery query, PrismContext prismContext) {
-        try {
-            return new QueryKey(type, query, prismContext);
-        } catch (Exception e) {     // TODO THIS IS REALLY UGLY HACK - query converter / prism serializer refuse to serialize some queries - should be fixed RSN!
-            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't create query key. Although this particular exception is harmless, please fix prism implementation!", e);
-            return null;            // we "treat" it so that we simply pretend the entry is not in the cache and/or refuse to enter it into the cache
+    private void enforceLimits() {
+        int maxQueries = Cache.maxQueries;
+        while (maxQueries > 0 && queries.size() > maxQueries) {
+            evictEldestQuery();
+        }
+        int maxObjects = Cache.maxObjects;
+        while (maxObjects > 0 && objects.size() > maxObjects) {
+            evictEldestObject();
+        }
+        long maxWeight = Cache.maxWeight;
+        while (maxWeight > 0 && getWeight() > maxWeight && (!queries.isEmpty() || objects.size() > 1)) {
+            if (!queries.isEmpty()) {
+                evictEldestQuery();
+            } else {
+                evictEldestObject();
+            }
         }
     }
 
-    public String getObjectVersion(String oid) {
-        return versions.get(oid);
+    private void evictEldestQuery() {
+        Iterator<Map.Entry<QueryKey, QueryEntry>> iterator = queries.entrySet().iterator();
+        Map.Entry<QueryKey, QueryEntry> eldest = iterator.next();
+        queriesWeight -= eldest.getValue().weight;
+        iterator.remove();
+        Set<QueryKey> keysOfType = queriesByType.get(eldest.getKey().getType());
+        if (keysOfType != null) {
+            keysOfType.remove(eldest.getKey());
+        }
+        statistics.recordEviction();
+        LOGGER.trace("Evicted query result for {} (weight {})", eldest.getKey().getType(), eldest.getValue().weight);
     }
 
-    public void putObjectVersion(String oid, String version) {
-        versions.put(oid, version);
+    private void evictEldestObject() {
+        Iterator<Map.Entry<String, ObjectEntry>> iterator = objects.entrySet().iterator();
+        Map.Entry<String, ObjectEntry> eldest = iterator.next();
+        objectsWeight -= eldest.getValue().weight;
+        iterator.remove();
+        versions.remove(eldest.getKey());
+        statistics.recordEviction();
+        LOGGER.trace("Evicted object {} (weight {})", eldest.getKey(), eldest.getValue().weight);
+    }
+
+    /**
+     * Approximate size of the object: number of prism items and values it consists of.
+     */
+    static long estimateWeight(PrismObject<?> object) {
+        if (object == null) {
+            return 0;
+        }
+        long[] count = new long[1];
+        object.accept(visitable -> count[0]++);
+        return count[0];
+    }
+
+    @Override
+    public String debugDump(int indent) {
+        StringBuilder sb = DebugUtil.createTitleStringBuilderLn(Cache.class, indent);
+        DebugUtil.debugDumpWithLabelLn(sb, "objects", objects.size(), indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "versions", versions.size(), indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "queries", queries.size(), indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "not found", notFound.size(), indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "shadow owners", shadowOwners.size(), indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "objects weight", objectsWeight, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "queries weight", queriesWeight, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "statistics", statistics.toString(), indent + 1);
+        DebugUtil.debugDumpLabel(sb, "top types by weight", indent + 1);
+        Map<String, Long> weightsByType = new HashMap<>();
+        Map<String, Integer> countsByType = new HashMap<>();
+        for (ObjectEntry entry : objects.values()) {
+            Class<?> type = entry.object.getCompileTimeClass();
+            String typeName = type != null ? type.getSimpleName() : "(unknown)";
+            weightsByType.merge(typeName, entry.weight, Long::sum);
+            countsByType.merge(typeName, 1, Integer::sum);
+        }
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(weightsByType.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> entry : sorted.subList(0, Math.min(TOP_TYPES_TO_DUMP, sorted.size()))) {
+            sb.append("\n");
+            DebugUtil.debugDumpWithLabel(sb, entry.getKey(),
+                    entry.getValue() + " (" + countsByType.get(entry.getKey()) + " objects)", indent + 2);
+        }
+        return sb.toString();
     }
 }
@@ -22,8 +22,8 @@ import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.springframework.stereotype.Component;
 
@@ -32,7 +32,7 @@ public class CacheDispatcherImpl implements CacheDispatcher {
 
     private static final Trace LOGGER = TraceManager.getTrace(CacheDispatcherImpl.class);
 
-    private List<CacheListener> cacheListeners = new ArrayList<>();
+    private List<CacheListener> cacheListeners = new CopyOnWriteArrayList<>();
 
     @Override
     public synchronized void registerCacheListener(CacheListener cacheListener) {
@@ -54,8 +54,13 @@ public class CacheDispatcherImpl implements CacheDispatcher {
 
     @Override
     public <O extends ObjectType> void dispatch(Class<O> type, String oid) {
-        for (CacheListener listenter : cacheListeners) {
-            listenter.invalidateCache(type, oid);
+        dispatch(type, oid, true);
+    }
+
+    @Override
+    public <O extends ObjectType> void dispatch(Class<O> type, String oid, boolean clusterwide) {
+        for (CacheListener listener : cacheListeners) {
+            listener.invalidateCache(type, oid, clusterwide);
         }
     }
 }
@@ -49,8 +49,11 @@ public class CacheObject<T extends ObjectType> {
         return object.getVersion();
     }
 
+    /**
+     * Returns the cached object itself. It is immutable and shared; callers that need to modify it have to clone it.
+     */
     public PrismObject<T> getObject() {
-        return object.clone();
+        return object;
     }
 
     public void setTimeToLive(long timeToLive) {
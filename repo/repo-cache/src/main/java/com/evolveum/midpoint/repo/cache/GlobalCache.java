@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-wide cache of selected object types, shared by all threads.
+ *
+ * Objects are partitioned by type. Each type has its own configuration (max entries, time to live); types without
+ * configuration are not cached at all. When a type partition is full, the least recently used entry is evicted.
+ * Type partitions are access-ordered maps, so an eviction costs O(1) regardless of maxEntries.
+ */
+class GlobalCache {
+
+    private static final Trace LOGGER = TraceManager.getTrace(GlobalCache.class);
+
+    private final Map<Class<? extends ObjectType>, GlobalCacheTypeConfiguration> configurations = new ConcurrentHashMap<>();
+    private final Map<Class<? extends ObjectType>, Map<String, CacheObject>> objects = new ConcurrentHashMap<>();    // values are synchronized LRU maps
+
+    /**
+     * Incremented on each invalidation. Used to avoid storing objects that were read from the repository
+     * concurrently with an invalidation (and therefore might be stale).
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    void configure(Class<? extends ObjectType> type, int maxEntries, long timeToLive) {
+        configurations.put(type, new GlobalCacheTypeConfiguration(maxEntries, timeToLive));
+        LOGGER.debug("Global cache configured for {}: maxEntries={}, timeToLive={} ms", type.getSimpleName(), maxEntries, timeToLive);
+    }
+
+    GlobalCacheTypeConfiguration getConfiguration(Class<? extends ObjectType> type) {
+        return configurations.get(type);
+    }
+
+    /**
+     * @param type Null means any type.
+     * @return true if the type or any of its subtypes is cached
+     */
+    boolean isConfigured(Class<? extends ObjectType> type) {
+        if (type == null) {
+            return !configurations.isEmpty();
+        }
+        for (Class<? extends ObjectType> configuredType : configurations.keySet()) {
+            if (type.isAssignableFrom(configuredType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends ObjectType> CacheObject<T> get(Class<T> type, String oid) {
+        Map<String, CacheObject> typeObjects = objects.get(type);
+        return typeObjects != null ? typeObjects.get(oid) : null;
+    }
+
+    /**
+     * Stores the object unless an invalidation occurred since invalidationCountBefore was obtained.
+     */
+    <T extends ObjectType> void put(Class<T> type, CacheObject<T> cacheObject, long invalidationCountBefore) {
+        Map<String, CacheObject> typeObjects = objects.computeIfAbsent(type,
+                k -> Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true)));
+        String oid = cacheObject.getObjectOid();
+        synchronized (typeObjects) {
+            typeObjects.put(oid, cacheObject);
+            if (invalidationCount.get() != invalidationCountBefore) {
+                // the object might have been changed after we read it
+                LOGGER.trace("Invalidation occurred while reading {}:{}, not caching the object", type.getSimpleName(), oid);
+                typeObjects.remove(oid, cacheObject);
+                return;
+            }
+            GlobalCacheTypeConfiguration configuration = configurations.get(type);
+            if (configuration != null && configuration.getMaxEntries() > 0) {
+                while (typeObjects.size() > configuration.getMaxEntries()) {
+                    evictEldest(type, typeObjects);
+                }
+            }
+        }
+    }
+
+    void remove(Class<? extends ObjectType> type, String oid) {
+        Map<String, CacheObject> typeObjects = objects.get(type);
+        if (typeObjects != null) {
+            typeObjects.remove(oid);
+        }
+    }
+
+    /**
+     * Removes entries affected by a change of given object.
+     *
+     * @param type Type of the object. Entries of the type and all its subtypes are affected. Null means all types.
+     * @param oid OID of the object. Null or empty means all objects of given type(s).
+     */
+    void invalidate(Class<? extends ObjectType> type, String oid) {
+        invalidationCount.incrementAndGet();
+        for (Map.Entry<Class<? extends ObjectType>, Map<String, CacheObject>> entry : objects.entrySet()) {
+            if (type != null && !type.isAssignableFrom(entry.getKey())) {
+                continue;
+            }
+            if (StringUtils.isEmpty(oid)) {
+                entry.getValue().clear();
+            } else {
+                entry.getValue().remove(oid);
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Map<String, CacheObject> typeObjects : objects.values()) {
+            size += typeObjects.size();
+        }
+        return size;
+    }
+
+    // must be called while holding the lock on typeObjects
+    private void evictEldest(Class<? extends ObjectType> type, Map<String, CacheObject> typeObjects) {
+        Iterator<Map.Entry<String, CacheObject>> iterator = typeObjects.entrySet().iterator();
+        Map.Entry<String, CacheObject> eldest = iterator.next();
+        LOGGER.trace("Evicting {}:{} from global cache", type.getSimpleName(), eldest.getKey());
+        iterator.remove();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+/**
+ * Global cache settings for a single object type.
+ */
+class GlobalCacheTypeConfiguration {
+
+    /**
+     * Maximum number of cached objects of the type; zero or negative means unlimited.
+     */
+    private final int maxEntries;
+
+    /**
+     * How long (in milliseconds) an entry is considered valid without checking its version in the repository.
+     */
+    private final long timeToLive;
+
+    GlobalCacheTypeConfiguration(int maxEntries, long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+    }
+
+    int getMaxEntries() {
+        return maxEntries;
+    }
+
+    long getTimeToLive() {
+        return timeToLive;
+    }
+
+    @Override
+    public String toString() {
+        return "GlobalCacheTypeConfiguration{maxEntries=" + maxEntries + ", timeToLive=" + timeToLive + '}';
+    }
+}
@@ -16,29 +16,32 @@
 
 package com.evolveum.midpoint.repo.cache;
 
-import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
-import com.evolveum.midpoint.prism.query.QueryJaxbConvertor;
-import com.evolveum.midpoint.util.exception.SchemaException;
-import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
-import com.evolveum.prism.xml.ns._public.query_3.QueryType;
 
 /**
+ * Key of a cached query result. Uses structural equality of the query (filter tree, paging) instead of
+ * serializing it, so creating and comparing the keys is cheap.
+ *
  * @author Pavol Mederly
  */
 public class QueryKey {
 
-    private Class<? extends ObjectType> type;
-    private QueryType query;
+    private final Class<? extends ObjectType> type;
+    private final ObjectQuery query;
+    private final int hashCode;
 
-    public <T extends ObjectType> QueryKey(Class<T> type, ObjectQuery query, PrismContext prismContext) {
+    public <T extends ObjectType> QueryKey(Class<T> type, ObjectQuery query) {
         this.type = type;
-        try {
-            this.query = query != null ? QueryJaxbConvertor.createQueryType(query, prismContext) : null;
-        } catch (SchemaException e) {
-            throw new SystemException(e);
-        }
+        // the client may modify the query after the search, so we keep our own copy
+        this.query = query != null ? query.clone() : null;
+        this.hashCode = computeHashCode();
+    }
+
+    private int computeHashCode() {
+        int result = type != null ? type.hashCode() : 0;
+        result = 31 * result + (query != null ? query.hashCode() : 0);
+        return result;
     }
 
     @Override
@@ -48,17 +51,16 @@ public class QueryKey {
 
         QueryKey queryKey = (QueryKey) o;
 
-        if (query != null ? !query.equals(queryKey.query) : queryKey.query != null) return false;
+        if (hashCode != queryKey.hashCode) return false;
         if (type != null ? !type.equals(queryKey.type) : queryKey.type != null) return false;
+        if (query != null ? !query.equals(queryKey.query) : queryKey.query != null) return false;
 
         return true;
     }
 
     @Override
     public int hashCode() {
-        int result = type != null ? type.hashCode() : 0;
-        result = 31 * result + (query != null ? query.hashCode() : 0);
-        return result;
+        return hashCode;
     }
 
     public Class<? extends ObjectType> getType() {
@@ -19,11 +19,16 @@ import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
 import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismReferenceValue;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ReferenceDelta;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.*;
 import com.evolveum.midpoint.repo.api.query.ObjectFilterExpressionEvaluator;
 import com.evolveum.midpoint.schema.*;
+import com.evolveum.midpoint.schema.internals.CachingStatistics;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.util.DiagnosticContextHolder;
 import com.evolveum.midpoint.util.exception.CommunicationException;
@@ -37,6 +42,8 @@ import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,11 +54,20 @@ import javax.annotation.PostConstruct;
 import javax.xml.namespace.QName;
 import java.util.*;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Read-through write-through per-session repository cache.
  *
+ * Besides the thread-local cache there is a global (node-wide) cache for selected object types.
+ * Its entries are kept coherent either by periodic version checks (cacheMaxTTL) or, if cacheClusterInvalidation
+ * is enabled, by invalidation events that are dispatched via {@link CacheDispatcher} on every modification,
+ * both locally and from other cluster nodes. In the latter case entries are served from memory until invalidated;
+ * as invalidation messages can get lost, their version is still checked after cacheClusterInvalidationTTL
+ * (seconds, default 10 minutes) as a backstop.
+ *
+ * Global caching can be tuned per type, e.g. globalCache/RoleType/maxEntries and globalCache/RoleType/timeToLive
+ * (seconds). Roles, orgs and services are cached only if configured in this way.
+ *
  * TODO doc
  * TODO logging perf measurements
  *
@@ -59,14 +75,38 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  */
 @Component(value="cacheRepositoryService")
-public class RepositoryCache implements RepositoryService {
+public class RepositoryCache implements RepositoryService, CacheListener {
 
 	private static final Trace LOGGER = TraceManager.getTrace(RepositoryCache.class);
 	private static final Trace PERFORMANCE_ADVISOR = TraceManager.getPerformanceAdvisorTrace();
 
 	private static final String CONFIGURATION_COMPONENT = "midpoint.repository";
 	private static final String PROPERTY_CACHE_MAX_TTL = "cacheMaxTTL";
+	private static final String PROPERTY_CACHE_CLUSTER_INVALIDATION = "cacheClusterInvalidation";
+	private static final String PROPERTY_CACHE_CLUSTER_INVALIDATION_TTL = "cacheClusterInvalidationTTL";
+	private static final String PROPERTY_CACHE_MAX_OBJECTS = "cacheMaxObjects";
+	private static final String PROPERTY_CACHE_MAX_QUERIES = "cacheMaxQueries";
+	private static final String PROPERTY_CACHE_MAX_WEIGHT = "cacheMaxWeight";
+	private static final String PROPERTY_CACHE_NOT_FOUND_TTL = "cacheNotFoundTTL";
+
+	private static final int DEFAULT_CACHE_MAX_OBJECTS = 10000;
+	private static final int DEFAULT_CACHE_MAX_QUERIES = 1000;
+	private static final long DEFAULT_CACHE_MAX_WEIGHT = 2000000L;
+	private static final long DEFAULT_CACHE_NOT_FOUND_TTL = 1000L;       // milliseconds
+	private static final long DEFAULT_CACHE_CLUSTER_INVALIDATION_TTL = 600L;     // seconds
+
+	private static final String PROPERTY_GLOBAL_CACHE = "globalCache";
+	private static final String PROPERTY_MAX_ENTRIES = "maxEntries";
+	private static final String PROPERTY_TIME_TO_LIVE = "timeToLive";
+
+	/**
+	 * Types that are globally cached by default (if cacheMaxTTL or cacheClusterInvalidation is set).
+	 */
+	private static final Set<Class<? extends ObjectType>> GLOBAL_CACHE_DEFAULT_TYPES;
 
+	/**
+	 * Types that can be globally cached if configured explicitly.
+	 */
 	private static final Set<Class<? extends ObjectType>> GLOBAL_CACHE_SUPPORTED_TYPES;
 
 	static {
@@ -77,12 +117,18 @@ public class RepositoryCache implements RepositoryService {
 		set.add(SystemConfigurationType.class);
 		set.add(ValuePolicyType.class);
 
+		GLOBAL_CACHE_DEFAULT_TYPES = Collections.unmodifiableSet(new HashSet<>(set));
+
+		set.add(RoleType.class);
+		set.add(OrgType.class);
+		set.add(ServiceType.class);
+
 		GLOBAL_CACHE_SUPPORTED_TYPES = Collections.unmodifiableSet(set);
 	}
 
 	private static final ThreadLocal<Cache> cacheInstance = new ThreadLocal<>();
 
-	private static final Map<CacheKey, CacheObject> globalCache = new ConcurrentHashMap<>();
+	private final GlobalCache globalCache = new GlobalCache();
 
 	@Autowired private RepositoryService repositoryService;
 
@@ -95,6 +141,14 @@ public class RepositoryCache implements RepositoryService {
 
 	private long cacheMaxTTL;
 
+	private boolean clusterInvalidation;
+
+	/**
+	 * Minimal time to live of global cache entries if cluster invalidation is used (milliseconds).
+	 * Guards against lost invalidation messages.
+	 */
+	private long clusterInvalidationTTL;
+
 	private static final Random RND = new Random();
 
 	private Integer modifyRandomDelayRange;
@@ -102,15 +156,61 @@ public class RepositoryCache implements RepositoryService {
 	public RepositoryCache() {
     }
 
+	/**
+	 * Used to create standalone instances (e.g. simulated cluster nodes in tests).
+	 */
+	RepositoryCache(RepositoryService repositoryService, PrismContext prismContext, CacheDispatcher cacheDispatcher,
+			long cacheMaxTTL, boolean clusterInvalidation) {
+		this(repositoryService, prismContext, cacheDispatcher, cacheMaxTTL, clusterInvalidation,
+				DEFAULT_CACHE_CLUSTER_INVALIDATION_TTL * 1000);
+	}
+
+	RepositoryCache(RepositoryService repositoryService, PrismContext prismContext, CacheDispatcher cacheDispatcher,
+			long cacheMaxTTL, boolean clusterInvalidation, long clusterInvalidationTTL) {
+		this.repositoryService = repositoryService;
+		this.prismContext = prismContext;
+		this.cacheDispatcher = cacheDispatcher;
+		this.cacheMaxTTL = cacheMaxTTL;
+		this.clusterInvalidation = clusterInvalidation;
+		this.clusterInvalidationTTL = clusterInvalidationTTL;
+		for (Class<? extends ObjectType> type : GLOBAL_CACHE_DEFAULT_TYPES) {
+			globalCache.configure(type, 0, cacheMaxTTL);
+		}
+		cacheDispatcher.registerCacheListener(this);
+	}
+
+	/**
+	 * Sets global cache parameters for given type (used in tests).
+	 */
+	void configureGlobalCache(Class<? extends ObjectType> type, int maxEntries, long timeToLive) {
+		globalCache.configure(type, maxEntries, timeToLive);
+	}
 
 	@PostConstruct
 	public void initialize() {
-		Integer cacheMaxTTL = midpointConfiguration.getConfiguration(CONFIGURATION_COMPONENT)
-				.getInt(PROPERTY_CACHE_MAX_TTL,0);
+		Configuration configuration = midpointConfiguration.getConfiguration(CONFIGURATION_COMPONENT);
+		Integer cacheMaxTTL = configuration.getInt(PROPERTY_CACHE_MAX_TTL,0);
 		if (cacheMaxTTL == null || cacheMaxTTL < 0) {
 			cacheMaxTTL = 0;
 		}
 		this.cacheMaxTTL = cacheMaxTTL * 1000;
+		this.clusterInvalidation = configuration.getBoolean(PROPERTY_CACHE_CLUSTER_INVALIDATION, false);
+		this.clusterInvalidationTTL = configuration.getLong(PROPERTY_CACHE_CLUSTER_INVALIDATION_TTL,
+				DEFAULT_CACHE_CLUSTER_INVALIDATION_TTL) * 1000;
+		Cache.setLimits(configuration.getInt(PROPERTY_CACHE_MAX_OBJECTS, DEFAULT_CACHE_MAX_OBJECTS),
+				configuration.getInt(PROPERTY_CACHE_MAX_QUERIES, DEFAULT_CACHE_MAX_QUERIES),
+				configuration.getLong(PROPERTY_CACHE_MAX_WEIGHT, DEFAULT_CACHE_MAX_WEIGHT));
+		Cache.setNotFoundTimeToLive(configuration.getLong(PROPERTY_CACHE_NOT_FOUND_TTL, DEFAULT_CACHE_NOT_FOUND_TTL));
+		for (Class<? extends ObjectType> type : GLOBAL_CACHE_SUPPORTED_TYPES) {
+			String prefix = PROPERTY_GLOBAL_CACHE + "." + type.getSimpleName() + ".";
+			boolean configured = configuration.containsKey(prefix + PROPERTY_MAX_ENTRIES)
+					|| configuration.containsKey(prefix + PROPERTY_TIME_TO_LIVE);
+			if (configured || GLOBAL_CACHE_DEFAULT_TYPES.contains(type)) {
+				globalCache.configure(type, configuration.getInt(prefix + PROPERTY_MAX_ENTRIES, 0),
+						configuration.getLong(prefix + PROPERTY_TIME_TO_LIVE, cacheMaxTTL) * 1000);
+			}
+		}
+		cacheDispatcher.registerCacheListener(this);
 	}
 
 	private static Cache getCache() {
@@ -121,7 +221,9 @@ public class RepositoryCache implements RepositoryService {
 	}
 
 	public static void destroy() {
+		Cache cache = getCache();
 		Cache.destroy(cacheInstance, LOGGER);
+		recordStatistics(cache);
 	}
 
 	public static void enter() {
@@ -129,7 +231,18 @@ public class RepositoryCache implements RepositoryService {
 	}
 
 	public static void exit() {
-		Cache.exit(cacheInstance, LOGGER);
+		Cache cache = Cache.exit(cacheInstance, LOGGER);
+		if (!exists()) {
+			recordStatistics(cache);
+		}
+	}
+
+	private static void recordStatistics(Cache destroyedCache) {
+		if (destroyedCache != null) {
+			CachingStatistics statistics = destroyedCache.getStatistics();
+			log("Cache: Destroyed {}, {}", destroyedCache.description(), statistics);
+			InternalMonitor.getRepositoryCacheStats().add(statistics);
+		}
 	}
 
 	public static boolean exists() {
@@ -145,7 +258,12 @@ public class RepositoryCache implements RepositoryService {
 	}
 
 	public static String debugDump() {
-		return Cache.debugDump(cacheInstance);
+		Cache cache = getCache();
+		if (cache == null) {
+			return Cache.debugDump(cacheInstance);
+		} else {
+			return Cache.debugDump(cacheInstance) + "\n" + cache.debugDump(1);
+		}
 	}
 
 	@Override
@@ -170,19 +288,147 @@ public class RepositoryCache implements RepositoryService {
 				log("Cache: HIT{} {} ({})", readOnly ? "" : "(clone)", oid, type.getSimpleName());
 				return cloneIfNecessary(object, readOnly);
 			}
+			if (cache.isNotFound(type, oid)) {
+				log("Cache: HIT(not found) {} ({})", oid, type.getSimpleName());
+				throw createCachedNotFoundException(type, oid, options, parentResult);
+			}
 			log("Cache: MISS {} ({})", oid, type.getSimpleName());
 		}
 
-		PrismObject<T> object = getObjectTryGlobalCache(type, oid, options, parentResult);
-		cacheObject(cache, object, readOnly);
-        return object;
+		PrismObject<T> object;
+		try {
+			object = getObjectTryGlobalCache(type, oid, options, parentResult);
+		} catch (ObjectNotFoundException e) {
+			if (cache != null) {
+				cache.putNotFound(type, oid);
+			}
+			throw e;
+		}
+		cacheObject(cache, object);
+		return cloneIfNecessary(object, readOnly);
 	}
 
+	/**
+	 * Objects found in the local or global cache are served from there; only the remaining ones are fetched
+	 * from the repository, using a single getObjects call. Results (including "not found" ones) are cached
+	 * in the same way as in getObject.
+	 */
+	@NotNull
+	@Override
+	public <T extends ObjectType> SearchResultList<PrismObject<T>> getObjects(Class<T> type, Collection<String> oids,
+			Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult) throws SchemaException {
+
+		Set<String> distinctOids = new LinkedHashSet<>(oids);
+		boolean readOnly = GetOperationOptions.isReadOnly(SelectorOptions.findRootOptions(options));
+		boolean globalCaching = supportsGlobalCaching(type, options);
+		Cache cache;
+		if (!isCacheable(type) || !nullOrHarmlessOptions(options)) {
+			log("Cache: PASS {} objects ({})", distinctOids.size(), type.getSimpleName());
+			cache = null;
+		} else {
+			cache = getCache();
+		}
+
+		Map<String, PrismObject<T>> objects = new HashMap<>();
+		List<String> oidsToFetch = new ArrayList<>();
+		for (String oid : distinctOids) {
+			if (cache != null) {
+				PrismObject<T> object = (PrismObject) cache.getObject(oid);
+				if (object != null && type.isAssignableFrom(object.getCompileTimeClass())) {
+					log("Cache: HIT{} {} ({})", readOnly ? "" : "(clone)", oid, type.getSimpleName());
+					objects.put(oid, object);
+					continue;
+				}
+				if (cache.isNotFound(type, oid)) {
+					log("Cache: HIT(not found) {} ({})", oid, type.getSimpleName());
+					continue;
+				}
+			}
+			if (globalCaching) {
+				CacheObject<T> cacheObject = globalCache.get(type, oid);
+				if (cacheObject != null && !shouldCheckVersion(cacheObject)) {
+					log("Cache: Global HIT {} ({})", oid, type.getSimpleName());
+					PrismObject<T> object = cacheObject.getObject();
+					cacheObject(cache, object);
+					objects.put(oid, object);
+					continue;
+				}
+			}
+			oidsToFetch.add(oid);
+		}
+
+		if (!oidsToFetch.isEmpty()) {
+			log("Cache: MISS {} of {} objects ({})", oidsToFetch.size(), distinctOids.size(), type.getSimpleName());
+			long invalidationCountBefore = globalCache.getInvalidationCount();
+			SearchResultList<PrismObject<T>> fetched;
+			Long startTime = repoOpStart();
+			try {
+				fetched = repositoryService.getObjects(type, oidsToFetch, options, parentResult);
+			} finally {
+				repoOpEnd(startTime);
+			}
+			for (PrismObject<T> object : fetched) {
+				// fetched objects are returned to the caller, so the caches get a single immutable copy
+				if (globalCaching || cache != null) {
+					PrismObject<T> immutableObject = object.createImmutableClone();
+					if (globalCaching) {
+						long ttl = System.currentTimeMillis() + getTimeToLive(type);
+						globalCache.put(type, new CacheObject<>(immutableObject, ttl), invalidationCountBefore);
+					}
+					cacheObject(cache, immutableObject);
+				}
+				objects.put(object.getOid(), object);
+			}
+			if (cache != null) {
+				for (String oid : oidsToFetch) {
+					if (!objects.containsKey(oid)) {
+						cache.putNotFound(type, oid);
+					}
+				}
+			}
+		}
+
+		SearchResultList<PrismObject<T>> rv = new SearchResultList<>(new ArrayList<>(objects.size()));
+		for (String oid : distinctOids) {
+			PrismObject<T> object = objects.get(oid);
+			if (object != null) {
+				rv.add(cloneIfNecessary(object, readOnly));
+			}
+		}
+		return rv;
+	}
+
+	/**
+	 * Creates the exception for a cached "not found" result, recording it into the operation result in the same way
+	 * as the repository does.
+	 */
+	private <T extends ObjectType> ObjectNotFoundException createCachedNotFoundException(Class<T> type, String oid,
+			Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult) {
+		OperationResult result = parentResult.createMinorSubresult(GET_OBJECT);
+		result.addParam("type", type.getName());
+		result.addParam("oid", oid);
+		ObjectNotFoundException e = new ObjectNotFoundException("Object of type '" + type.getSimpleName() + "' with oid '"
+				+ oid + "' was not found.", null, oid);
+		if (GetOperationOptions.isAllowNotFound(SelectorOptions.findRootOptions(options))) {
+			result.computeStatus();
+		} else {
+			result.recordFatalError(e.getMessage(), e);
+		}
+		return e;
+	}
+
+	/**
+	 * Cached objects are immutable and shared between threads. Read-only callers get them as they are;
+	 * others get a private (mutable) copy. Objects that are not shared (i.e. mutable ones) are returned directly.
+	 */
 	private <T extends ObjectType> PrismObject<T> cloneIfNecessary(PrismObject<T> object, boolean readOnly) {
+		if (!object.isImmutable()) {
+			return object;
+		}
 		if (readOnly) {
+			InternalMonitor.recordCount(InternalCounters.PRISM_OBJECT_CLONE_AVOIDED_COUNT);
 			return object;
 		}
-
 		return object.clone();
 	}
 
@@ -195,7 +441,7 @@ public class RepositoryCache implements RepositoryService {
 		}
 
 		CacheKey key = new CacheKey(type, oid);
-		CacheObject<T> cacheObject = globalCache.get(key);
+		CacheObject<T> cacheObject = globalCache.get(type, oid);
 
         PrismObject<T> object;
         if (cacheObject == null) {
@@ -210,17 +456,15 @@ public class RepositoryCache implements RepositoryService {
                 } else {
 
                     // version matches, renew ttl
-                    cacheObject.setTimeToLive(System.currentTimeMillis() + cacheMaxTTL);
+                    cacheObject.setTimeToLive(System.currentTimeMillis() + getTimeToLive(type));
 
                     log("Cache: Global HIT, version check {}", key);
                     object = cacheObject.getObject();
                 }
             }
         }
-
-		boolean readOnly = GetOperationOptions.isReadOnly(SelectorOptions.findRootOptions(options));
-
-		return cloneIfNecessary(object, readOnly);
+		// the object is either shared (immutable) or a fresh one; the caller clones it if needed
+		return object;
 	}
 
 	private <T extends ObjectType> PrismObject<T> getObjectInternal(Class<T> type, String oid, Collection<SelectorOptions<GetOperationOptions>> options,
@@ -277,6 +521,12 @@ public class RepositoryCache implements RepositoryService {
 			// Invalidate the cache entry if it happens to be there
 			cache.removeObject(oid);
 			cache.clearQueryResults(object.getCompileTimeClass());
+			if (object.asObjectable() instanceof FocusType) {
+				// the new focus may own some shadows
+				for (ObjectReferenceType linkRef : ((FocusType) object.asObjectable()).getLinkRef()) {
+					cache.removeShadowOwner(linkRef.getOid());
+				}
+			}
 		}
 		return oid;
 	}
@@ -299,7 +549,7 @@ public class RepositoryCache implements RepositoryService {
 		if (cache == null) {
 			log("Cache: NULL ({})", type.getSimpleName());
 		} else {
-			SearchResultList queryResult = cache.getQueryResult(type, query, prismContext);
+			SearchResultList queryResult = cache.getQueryResult(type, query);
 			if (queryResult != null) {
 				if (readOnly) {
 					log("Cache: HIT {} ({})", query, type.getSimpleName());
@@ -321,11 +571,15 @@ public class RepositoryCache implements RepositoryService {
 			repoOpEnd(startTime);
 		}
 		if (cache != null && options == null) {
+			// the result is returned to the caller, so the cache gets immutable copies of the objects
+			SearchResultList<PrismObject<T>> immutableObjects =
+					new SearchResultList<>(new ArrayList<>(objects.size()), objects.getMetadata());
 			for (PrismObject<T> object : objects) {
-				cacheObject(cache, object, readOnly);
+				PrismObject<T> immutableObject = toImmutable(object);
+				cacheObject(cache, immutableObject);
+				immutableObjects.add(immutableObject);
 			}
-			// TODO cloning before storing into cache?
-			cache.putQueryResult(type, query, objects, prismContext);
+			cache.putQueryResult(type, query, immutableObjects);
 		}
 		return objects;
 	}
@@ -353,7 +607,7 @@ public class RepositoryCache implements RepositoryService {
 		ResultHandler<T> myHandler = new ResultHandler<T>() {
 			@Override
 			public boolean handle(PrismObject<T> object, OperationResult parentResult) {
-				cacheObject(cache, object, GetOperationOptions.isReadOnly(SelectorOptions.findRootOptions(options)));
+				cacheObject(cache, object);
 				return handler.handle(object, parentResult);
 			}
 		};
@@ -445,6 +699,35 @@ public class RepositoryCache implements RepositoryService {
 			// this changes the object. We are too lazy to apply changes ourselves, so just invalidate
 			// the object in cache
 			invalidateCacheEntry(type, oid);
+			invalidateShadowOwners(type, oid, modifications);
+		}
+	}
+
+	/**
+	 * Shadow owners are determined by linkRef values, so any linkRef change invalidates the entries of the shadows
+	 * involved as well as all the entries pointing to the modified focus.
+	 */
+	private <T extends ObjectType> void invalidateShadowOwners(Class<T> type, String oid,
+			Collection<? extends ItemDelta> modifications) {
+		Cache cache = getCache();
+		if (cache == null || !(type.isAssignableFrom(FocusType.class) || FocusType.class.isAssignableFrom(type))) {
+			return;
+		}
+		ReferenceDelta linkRefDelta = ItemDelta.findReferenceModification(modifications, FocusType.F_LINK_REF);
+		if (linkRefDelta == null) {
+			return;
+		}
+		cache.removeShadowOwnersOf(oid);
+		removeShadowOwners(cache, linkRefDelta.getValuesToAdd());
+		removeShadowOwners(cache, linkRefDelta.getValuesToDelete());
+		removeShadowOwners(cache, linkRefDelta.getValuesToReplace());
+	}
+
+	private void removeShadowOwners(Cache cache, Collection<PrismReferenceValue> linkRefValues) {
+		if (linkRefValues != null) {
+			for (PrismReferenceValue linkRefValue : linkRefValues) {
+				cache.removeShadowOwner(linkRefValue.getOid());
+			}
 		}
 	}
 
@@ -455,9 +738,26 @@ public class RepositoryCache implements RepositoryService {
 			cache.clearQueryResults(type);
 		}
 
-		globalCache.remove(new CacheKey(type, oid));
+		// global cache entries are removed in invalidateCache (we are registered as a listener)
 		cacheDispatcher.dispatch(type, oid);
-		
+	}
+
+	@Override
+	public <O extends ObjectType> void invalidateCache(Class<O> type, String oid, boolean clusterwide) {
+		if (!clusterwide) {
+			InternalMonitor.recordCount(InternalCounters.REPOSITORY_CACHE_REMOTE_INVALIDATION_COUNT);
+		}
+		log("Cache: Global invalidation {}:{}", type != null ? type.getSimpleName() : "(all types)", oid);
+		// the type may be a supertype of the type the object was cached under, so subtypes are invalidated as well
+		globalCache.invalidate(type, oid);
+	}
+
+	/**
+	 * Modifications have to be propagated to other nodes only if cluster invalidation is switched on
+	 * and objects of given type (or its subtypes) are kept in the global cache. Null type means all types.
+	 */
+	public boolean isClusterInvalidationNeeded(Class<? extends ObjectType> type) {
+		return clusterInvalidation && globalCache.isConfigured(type);
 	}
 
 	@Override
@@ -469,13 +769,34 @@ public class RepositoryCache implements RepositoryService {
 		} finally {
 			repoOpEnd(startTime);
 			invalidateCacheEntry(type, oid);
+			Cache cache = getCache();
+			if (cache != null) {
+				cache.removeShadowOwner(oid);
+				if (type.isAssignableFrom(FocusType.class) || FocusType.class.isAssignableFrom(type)) {
+					cache.removeShadowOwnersOf(oid);
+				}
+			}
 		}
 	}
 
 	@Override
 	public <F extends FocusType> PrismObject<F> searchShadowOwner(
 			String shadowOid, Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult) {
-		// TODO cache the search operation?
+		Cache cache = nullOrHarmlessOptions(options) ? getCache() : null;
+		boolean readOnly = GetOperationOptions.isReadOnly(SelectorOptions.findRootOptions(options));
+		if (cache != null && cache.containsShadowOwner(shadowOid)) {
+			String ownerOid = cache.getShadowOwner(shadowOid);
+			if (ownerOid == null) {
+				log("Cache: HIT(no owner) {}", shadowOid);
+				return null;
+			}
+			PrismObject<F> ownerObject = (PrismObject<F>) cache.getObject(ownerOid);
+			if (ownerObject != null) {
+				log("Cache: HIT owner {} of {}", ownerOid, shadowOid);
+				return cloneIfNecessary(ownerObject, readOnly);
+			}
+			// owner object itself was invalidated or evicted, so we have to ask the repository
+		}
 		PrismObject<F> ownerObject;
 		Long startTime = repoOpStart();
 		try {
@@ -483,8 +804,11 @@ public class RepositoryCache implements RepositoryService {
 		} finally {
 			repoOpEnd(startTime);
 		}
-		if (ownerObject != null && nullOrHarmlessOptions(options)) {
-			cacheObject(getCache(), ownerObject, GetOperationOptions.isReadOnly(SelectorOptions.findRootOptions(options)));
+		if (cache != null) {
+			cache.putShadowOwner(shadowOid, ownerObject != null ? ownerObject.getOid() : null);
+			if (ownerObject != null) {
+				cacheObject(cache, ownerObject);
+			}
 		}
 		return ownerObject;
 	}
@@ -604,19 +928,20 @@ public class RepositoryCache implements RepositoryService {
 		}
     }
 
-    private <T extends ObjectType> void cacheObject(Cache cache, PrismObject<T> object, boolean readOnly) {
+	/**
+	 * Only immutable objects are cached, so they can be shared (e.g. with the global cache). Mutable objects
+	 * belong to the caller and are never frozen here; an immutable copy is cached instead.
+	 */
+    private <T extends ObjectType> void cacheObject(Cache cache, PrismObject<T> object) {
 		if (cache != null) {
-			PrismObject<ObjectType> objectToCache;
-			if (readOnly) {
-				object.setImmutable(true);
-				objectToCache = (PrismObject<ObjectType>) object;
-			} else {
-				objectToCache = (PrismObject<ObjectType>) object.clone();
-			}
-			cache.putObject(object.getOid(), objectToCache);
+			cache.putObject(object.getOid(), toImmutable(object));
 		}
 	}
 
+	private <T extends ObjectType> PrismObject<T> toImmutable(PrismObject<T> object) {
+		return object.isImmutable() ? object : object.createImmutableClone();
+	}
+
 	private <T extends ObjectType> void cacheObjectVersion(Cache cache, String oid, String version) {
 		if (cache != null) {
 			cache.putObjectVersion(oid, version);
@@ -667,7 +992,7 @@ public class RepositoryCache implements RepositoryService {
 		}
 	}
 
-	private void log(String message, Object... params) {
+	private static void log(String message, Object... params) {
 		if (LOGGER.isTraceEnabled()) {
 			LOGGER.trace(message, params);
 		}
@@ -700,6 +1025,83 @@ public class RepositoryCache implements RepositoryService {
 		}
 	}
 
+	// work buckets are not part of the task object, so nothing is cached nor invalidated here
+
+	@Override
+	public WorkBucketType claimWorkBucket(String coordinatorOid, String workerOid, OperationResult parentResult)
+			throws SchemaException {
+		Long startTime = repoOpStart();
+		try {
+			return repositoryService.claimWorkBucket(coordinatorOid, workerOid, parentResult);
+		} finally {
+			repoOpEnd(startTime);
+		}
+	}
+
+	@Override
+	public void addWorkBuckets(String coordinatorOid, List<WorkBucketType> buckets, String workerOid,
+			OperationResult parentResult) throws ObjectAlreadyExistsException, SchemaException {
+		Long startTime = repoOpStart();
+		try {
+			repositoryService.addWorkBuckets(coordinatorOid, buckets, workerOid, parentResult);
+		} finally {
+			repoOpEnd(startTime);
+		}
+	}
+
+	@NotNull
+	@Override
+	public List<WorkBucketType> getWorkBuckets(String coordinatorOid, WorkBucketStateType state, OperationResult parentResult)
+			throws SchemaException {
+		Long startTime = repoOpStart();
+		try {
+			return repositoryService.getWorkBuckets(coordinatorOid, state, parentResult);
+		} finally {
+			repoOpEnd(startTime);
+		}
+	}
+
+	@Override
+	public WorkBucketType getLastWorkBucket(String coordinatorOid, OperationResult parentResult) throws SchemaException {
+		Long startTime = repoOpStart();
+		try {
+			return repositoryService.getLastWorkBucket(coordinatorOid, parentResult);
+		} finally {
+			repoOpEnd(startTime);
+		}
+	}
+
+	@Override
+	public boolean changeDelegatedWorkBucketState(String coordinatorOid, int sequentialNumber, String workerOid,
+			WorkBucketStateType newState, OperationResult parentResult) {
+		Long startTime = repoOpStart();
+		try {
+			return repositoryService.changeDelegatedWorkBucketState(coordinatorOid, sequentialNumber, workerOid, newState, parentResult);
+		} finally {
+			repoOpEnd(startTime);
+		}
+	}
+
+	@Override
+	public int reclaimWorkBuckets(String coordinatorOid, Collection<String> liveWorkerOids, OperationResult parentResult) {
+		Long startTime = repoOpStart();
+		try {
+			return repositoryService.reclaimWorkBuckets(coordinatorOid, liveWorkerOids, parentResult);
+		} finally {
+			repoOpEnd(startTime);
+		}
+	}
+
+	@Override
+	public void deleteWorkBuckets(String coordinatorOid, OperationResult parentResult) {
+		Long startTime = repoOpStart();
+		try {
+			repositoryService.deleteWorkBuckets(coordinatorOid, parentResult);
+		} finally {
+			repoOpEnd(startTime);
+		}
+	}
+
 	@Override
 	public RepositoryQueryDiagResponse executeQueryDiagnostics(RepositoryQueryDiagRequest request, OperationResult result) {
 		Long startTime = repoOpStart();
@@ -763,31 +1165,54 @@ public class RepositoryCache implements RepositoryService {
 	private <T extends ObjectType> boolean supportsGlobalCaching(
 			Class<T> type, Collection<SelectorOptions<GetOperationOptions>> options) {
 
-		if (cacheMaxTTL <= 0) {
+		GlobalCacheTypeConfiguration configuration = globalCache.getConfiguration(type);
+		if (configuration == null) {
 			return false;
 		}
 
-		if (!GLOBAL_CACHE_SUPPORTED_TYPES.contains(type)) {
+		if (configuration.getTimeToLive() <= 0 && !clusterInvalidation) {
 			return false;
 		}
 
-		if (options != null && !options.isEmpty()) {    //todo support probably raw flag
+		if (options != null && !options.isEmpty() && !isReadOnlyOnly(options)) {    //todo support probably raw flag
 			return false;
 		}
 
 		return true;
 	}
 
+	/**
+	 * Read-only flag does not influence the object content, so such requests can be served from the global cache.
+	 */
+	private boolean isReadOnlyOnly(Collection<SelectorOptions<GetOperationOptions>> options) {
+		if (options.size() != 1) {
+			return false;
+		}
+		SelectorOptions<GetOperationOptions> option = options.iterator().next();
+		return option.isRoot() && GetOperationOptions.createReadOnly().equals(option.getOptions());
+	}
+
 	private <T extends ObjectType> void removeObject(Class<T> type, String oid) {
 		Validate.notNull(type, "Type must not be null");
 		Validate.notNull(oid, "Oid must not be null");
 
-		globalCache.remove(new CacheKey(type, oid));
+		globalCache.remove(type, oid);
+	}
+
+	private long getTimeToLive(Class<? extends ObjectType> type) {
+		GlobalCacheTypeConfiguration configuration = globalCache.getConfiguration(type);
+		long timeToLive = configuration != null ? configuration.getTimeToLive() : cacheMaxTTL;
+		if (clusterInvalidation) {
+			// modifications (local or remote) evict the entry; the version check is only a backstop for lost messages
+			return Math.max(timeToLive, clusterInvalidationTTL);
+		}
+		return timeToLive;
 	}
 
 	private boolean hasVersionChanged(CacheKey key, CacheObject object, OperationResult result)
 			throws ObjectNotFoundException, SchemaException {
 
+		InternalMonitor.recordCount(InternalCounters.REPOSITORY_CACHE_VERSION_CHECK_COUNT);
 		try {
 			String version = repositoryService.getVersion(object.getObjectType(), object.getObjectOid(), result);
 
@@ -809,17 +1234,18 @@ public class RepositoryCache implements RepositoryService {
 
 		log("Cache: Global MISS {}", key);
 
+		long invalidationCountBefore = globalCache.getInvalidationCount();
 		try {
-			PrismObject object = getObjectInternal(key.getType(), key.getOid(), options, result);
+			PrismObject<T> object = getObjectInternal((Class<T>) key.getType(), key.getOid(), options, result);
 
-			long ttl = System.currentTimeMillis() + cacheMaxTTL;
-			CacheObject<T> cacheObject = new CacheObject<>(object, ttl);
+			long ttl = System.currentTimeMillis() + getTimeToLive(key.getType());
+			CacheObject<T> cacheObject = new CacheObject<>(object.createImmutableClone(), ttl);
 
-			globalCache.put(key, cacheObject);
+			globalCache.put((Class<T>) key.getType(), cacheObject, invalidationCountBefore);
 
-			return cacheObject.getObject();
+			return object;
 		} catch (ObjectNotFoundException | SchemaException ex) {
-			globalCache.remove(key);
+			globalCache.remove(key.getType(), key.getOid());
 
 			throw ex;
 		}
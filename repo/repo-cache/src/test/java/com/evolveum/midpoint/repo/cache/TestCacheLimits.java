@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+/**
+ * Tests LRU eviction and statistics of the thread-local repository cache.
+ */
+public class TestCacheLimits {
+
+	@AfterMethod
+	public void resetLimits() {
+		Cache.setLimits(0, 0, 0);
+	}
+
+	@Test
+	public void test100EvictByCount() {
+		System.out.println("===[ test100EvictByCount ]===");
+		Cache.setLimits(3, 0, 0);
+		Cache cache = new Cache();
+
+		for (int i = 1; i <= 3; i++) {
+			cache.putObject("oid" + i, createUser("oid" + i));
+		}
+		assertNotNull(cache.getObject("oid1"));         // oid1 is now the most recently used one
+		cache.putObject("oid4", createUser("oid4"));
+
+		System.out.println(cache.debugDump());
+		assertNotNull(cache.getObject("oid1"));
+		assertNull("oid2 should be evicted", cache.getObject("oid2"));
+		assertNotNull(cache.getObject("oid3"));
+		assertNotNull(cache.getObject("oid4"));
+		assertEquals("Wrong # of evictions", 1, cache.getStatistics().getEvictions());
+		assertEquals("Wrong # of hits", 4, cache.getStatistics().getHits());
+		assertEquals("Wrong # of misses", 1, cache.getStatistics().getMisses());
+	}
+
+	@Test
+	public void test110EvictByWeight() {
+		System.out.println("===[ test110EvictByWeight ]===");
+		long objectWeight = Cache.estimateWeight(createUser("oid0"));
+		System.out.println("Object weight: " + objectWeight);
+		Cache.setLimits(0, 0, objectWeight * 2);
+		Cache cache = new Cache();
+
+		for (int i = 1; i <= 5; i++) {
+			cache.putObject("oid" + i, createUser("oid" + i));
+		}
+
+		System.out.println(cache.debugDump());
+		assertEquals("Wrong weight", objectWeight * 2, cache.getWeight());
+		assertEquals("Wrong # of evictions", 3, cache.getStatistics().getEvictions());
+		assertNotNull(cache.getObject("oid5"));
+		assertNull(cache.getObject("oid1"));
+	}
+
+	private PrismObject<UserType> createUser(String oid) {
+		PrismObject<UserType> user = new PrismObject<>(SchemaConstants.C_USER, UserType.class);
+		user.setOid(oid);
+		user.setVersion("1");
+		return user;
+	}
+}
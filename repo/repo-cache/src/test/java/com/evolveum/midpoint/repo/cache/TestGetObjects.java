@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Tests getObjects: only objects not present in the local or global cache are fetched from the repository.
+ */
+public class TestGetObjects {
+
+	private static final String ROLE_OID_PREFIX = "00000000-0000-0000-0000-00000000";
+
+	@BeforeClass
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	@BeforeMethod
+	public void enterCache() {
+		RepositoryCache.enter();
+	}
+
+	@AfterMethod
+	public void exitCache() {
+		RepositoryCache.exit();
+	}
+
+	@Test
+	public void test100FetchOnlyMisses() throws Exception {
+		System.out.println("===[ test100FetchOnlyMisses ]===");
+		FakeRepository repository = new FakeRepository(oid(1), oid(2), oid(3));
+		RepositoryCache cache = createCache(repository);
+
+		cache.getObject(RoleType.class, oid(2), null, new OperationResult("get"));
+
+		List<PrismObject<RoleType>> roles = cache.getObjects(RoleType.class,
+				Arrays.asList(oid(3), oid(2), oid(4), oid(1), oid(3)), null, new OperationResult("getObjects"));
+
+		assertOids(roles, oid(3), oid(2), oid(1));
+		assertEquals("Wrong # of getObjects calls", 1, repository.multiReads.size());
+		assertEquals("Wrong OIDs fetched", new TreeSet<>(Arrays.asList(oid(1), oid(3), oid(4))),
+				new TreeSet<>(repository.multiReads.get(0)));
+
+		// everything (including "not found" result) is cached now
+		roles = cache.getObjects(RoleType.class, Arrays.asList(oid(1), oid(2), oid(3), oid(4)), null,
+				new OperationResult("getObjects"));
+		assertOids(roles, oid(1), oid(2), oid(3));
+		assertEquals("Wrong # of getObjects calls", 1, repository.multiReads.size());
+
+		cache.getObject(RoleType.class, oid(3), null, new OperationResult("get"));
+		try {
+			cache.getObject(RoleType.class, oid(4), null, new OperationResult("get"));
+			fail("Unexpected success");
+		} catch (ObjectNotFoundException e) {
+			System.out.println("Expected exception: " + e.getMessage());
+		}
+		assertEquals("Wrong # of getObject calls", 1, repository.reads);
+	}
+
+	@Test
+	public void test110GlobalCache() throws Exception {
+		System.out.println("===[ test110GlobalCache ]===");
+		FakeRepository repository = new FakeRepository(oid(1), oid(2));
+		RepositoryCache cache = createCache(repository);
+		cache.configureGlobalCache(RoleType.class, 0, 60000L);
+
+		cache.getObjects(RoleType.class, Arrays.asList(oid(1), oid(2)), null, new OperationResult("getObjects"));
+		RepositoryCache.exit();
+		RepositoryCache.enter();
+
+		// not in the (new) local cache, but still in the global one
+		List<PrismObject<RoleType>> roles = cache.getObjects(RoleType.class, Arrays.asList(oid(1), oid(2)), null,
+				new OperationResult("getObjects"));
+		assertOids(roles, oid(1), oid(2));
+		assertEquals("Wrong # of getObjects calls", 1, repository.multiReads.size());
+		for (PrismObject<RoleType> role : roles) {
+			assertEquals("Returned object is immutable", false, role.isImmutable());
+		}
+	}
+
+	private RepositoryCache createCache(FakeRepository repository) {
+		return new RepositoryCache(repository.asRepositoryService(), null, new CacheDispatcherImpl(), 0, true);
+	}
+
+	private void assertOids(List<PrismObject<RoleType>> objects, String... expected) {
+		List<String> oids = new ArrayList<>();
+		objects.forEach(o -> oids.add(o.getOid()));
+		assertEquals("Wrong objects returned", Arrays.asList(expected), oids);
+	}
+
+	private static String oid(int number) {
+		return ROLE_OID_PREFIX + String.format("%04d", number);
+	}
+
+	/**
+	 * Repository with roles having given OIDs.
+	 */
+	private static class FakeRepository {
+
+		private final Set<String> existing;
+		private final List<Collection<String>> multiReads = new ArrayList<>();
+		private int reads;
+
+		private FakeRepository(String... oids) {
+			existing = new TreeSet<>(Arrays.asList(oids));
+		}
+
+		private RepositoryService asRepositoryService() {
+			return (RepositoryService) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] { RepositoryService.class }, (proxy, method, args) -> invoke(method, args));
+		}
+
+		private synchronized Object invoke(Method method, Object[] args) throws ObjectNotFoundException {
+			switch (method.getName()) {
+				case "getObject":
+					reads++;
+					String oid = (String) args[1];
+					if (!existing.contains(oid)) {
+						throw new ObjectNotFoundException("Object " + oid + " was not found", oid);
+					}
+					return createRole(oid);
+				case "getObjects":
+					Collection<String> oids = new ArrayList<>((Collection<String>) args[1]);
+					multiReads.add(oids);
+					SearchResultList<PrismObject<RoleType>> rv = new SearchResultList<>(new ArrayList<>());
+					for (String requested : oids) {
+						if (existing.contains(requested)) {
+							rv.add(createRole(requested));
+						}
+					}
+					return rv;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		}
+
+		private PrismObject<RoleType> createRole(String oid) {
+			PrismObject<RoleType> object = new PrismObject<>(new QName(SchemaConstants.NS_C, "role"), RoleType.class);
+			object.setOid(oid);
+			object.setVersion("1");
+			return object;
+		}
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.api.CacheDispatcher;
+import com.evolveum.midpoint.repo.api.CacheInvalidationEventUtil;
+import com.evolveum.midpoint.repo.api.CacheListener;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Simulates a cluster of nodes in a single JVM. Each node has its own repository cache and cache dispatcher;
+ * the nodes share one (fake) repository and invalidation events are passed between them synchronously,
+ * in the same way as ClusterCacheListener does it via REST (including the conversion of the type to the event
+ * type and back). Each node has also a listener standing for caches outside the repository cache.
+ */
+public class TestGlobalCacheClusterInvalidation {
+
+	private static final String OID = "00000000-0000-0000-0000-000000000001";
+	private static final int NODES = 3;
+	private static final int READS = 100;
+	private static final long CLUSTER_INVALIDATION_TTL = 200L;
+
+	/**
+	 * Only types held in the global cache are propagated, and only if cluster invalidation is switched on.
+	 */
+	@Test
+	public void test050ClusterInvalidationNeeded() throws Exception {
+		System.out.println("===[ test050ClusterInvalidationNeeded ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache withoutInvalidation = createCluster(repository, 0, false).get(0);
+		RepositoryCache withInvalidation = createCluster(repository, 0, true).get(0);
+
+		assertFalse("Invalidation needed without cluster invalidation", withoutInvalidation.isClusterInvalidationNeeded(SystemConfigurationType.class));
+		assertTrue("Invalidation not needed for a cached type", withInvalidation.isClusterInvalidationNeeded(SystemConfigurationType.class));
+		assertTrue("Invalidation not needed for all types", withInvalidation.isClusterInvalidationNeeded(null));
+		assertFalse("Invalidation needed for a type that is not cached", withInvalidation.isClusterInvalidationNeeded(RoleType.class));
+
+		withInvalidation.configureGlobalCache(RoleType.class, 0, 60000L);
+		assertTrue("Invalidation not needed for a cached type", withInvalidation.isClusterInvalidationNeeded(RoleType.class));
+		assertTrue("Invalidation not needed for a supertype of a cached type", withInvalidation.isClusterInvalidationNeeded(AbstractRoleType.class));
+	}
+
+	@Test
+	public void test100ReadsWithClusterInvalidation() throws Exception {
+		System.out.println("===[ test100ReadsWithClusterInvalidation ]===");
+		FakeRepository repository = new FakeRepository();
+		List<RepositoryCache> nodes = createCluster(repository, 0, true);
+		long versionChecksBefore = InternalMonitor.getCount(InternalCounters.REPOSITORY_CACHE_VERSION_CHECK_COUNT);
+
+		readAll(nodes, READS, 0);
+
+		System.out.println("Repository reads: " + repository.reads + ", version checks: " + repository.versionChecks);
+		assertEquals("Wrong # of repository reads", NODES, repository.reads.get());
+		assertEquals("Wrong # of version checks", 0, repository.versionChecks.get());
+		assertEquals("Wrong # of version checks (internal monitor)", 0,
+				InternalMonitor.getCount(InternalCounters.REPOSITORY_CACHE_VERSION_CHECK_COUNT) - versionChecksBefore);
+	}
+
+	@Test
+	public void test110ModifyOnOneNode() throws Exception {
+		System.out.println("===[ test110ModifyOnOneNode ]===");
+		FakeRepository repository = new FakeRepository();
+		List<RepositoryCache> nodes = createCluster(repository, 0, true);
+		readAll(nodes, 1, 0);
+		long remoteInvalidationsBefore = InternalMonitor.getCount(InternalCounters.REPOSITORY_CACHE_REMOTE_INVALIDATION_COUNT);
+
+		nodes.get(0).modifyObject(SystemConfigurationType.class, OID, Collections.emptyList(), new OperationResult("modify"));
+
+		for (RepositoryCache node : nodes) {
+			PrismObject<SystemConfigurationType> object = node.getObject(SystemConfigurationType.class, OID, null, new OperationResult("get"));
+			assertEquals("Stale object in node cache", "2", object.getVersion());
+		}
+		assertEquals("Wrong # of repository reads", 2 * NODES, repository.reads.get());
+		assertEquals("Wrong # of version checks", 0, repository.versionChecks.get());
+		assertEquals("Wrong # of remote invalidations", NODES - 1,
+				InternalMonitor.getCount(InternalCounters.REPOSITORY_CACHE_REMOTE_INVALIDATION_COUNT) - remoteInvalidationsBefore);
+	}
+
+	/**
+	 * Invalidation messages are lost (as if the REST call failed). Entries are still version-checked
+	 * after cluster invalidation TTL expires, so the nodes do not serve stale objects forever.
+	 */
+	@Test
+	public void test200LostInvalidation() throws Exception {
+		System.out.println("===[ test200LostInvalidation ]===");
+		FakeRepository repository = new FakeRepository();
+		AtomicBoolean deliveryFailing = new AtomicBoolean();
+		List<RepositoryCache> nodes = createCluster(repository, 0, true, CLUSTER_INVALIDATION_TTL, deliveryFailing);
+		readAll(nodes, 1, 0);
+
+		deliveryFailing.set(true);
+		nodes.get(0).modifyObject(SystemConfigurationType.class, OID, Collections.emptyList(), new OperationResult("modify"));
+		Thread.sleep(2 * CLUSTER_INVALIDATION_TTL);
+
+		for (RepositoryCache node : nodes) {
+			PrismObject<SystemConfigurationType> object = node.getObject(SystemConfigurationType.class, OID, null, new OperationResult("get"));
+			assertEquals("Stale object in node cache", "2", object.getVersion());
+		}
+		System.out.println("Repository reads: " + repository.reads + ", version checks: " + repository.versionChecks);
+		assertEquals("Wrong # of repository reads", 2 * NODES, repository.reads.get());
+		assertEquals("Wrong # of version checks", NODES - 1, repository.versionChecks.get());
+	}
+
+	/**
+	 * "Invalidate all" event reaches repository caches as well as other caches on all nodes.
+	 */
+	@Test
+	public void test300InvalidateAll() throws Exception {
+		System.out.println("===[ test300InvalidateAll ]===");
+		FakeRepository repository = new FakeRepository();
+		List<CacheDispatcher> dispatchers = new ArrayList<>();
+		List<RecordingListener> otherCaches = new ArrayList<>();
+		List<RepositoryCache> nodes = createCluster(repository, 0, true, 600000L, new AtomicBoolean(), dispatchers, otherCaches);
+		readAll(nodes, 1, 0);
+
+		dispatchers.get(0).dispatch(null, null);
+
+		readAll(nodes, 1, 0);
+		assertEquals("Wrong # of repository reads", 2 * NODES, repository.reads.get());
+		for (RecordingListener otherCache : otherCaches) {
+			assertEquals("Wrong events received by other cache", Collections.singletonList("all"), otherCache.events);
+		}
+	}
+
+	private List<RepositoryCache> createCluster(FakeRepository fakeRepository, long cacheMaxTTL, boolean clusterInvalidation) {
+		return createCluster(fakeRepository, cacheMaxTTL, clusterInvalidation, 600000L, new AtomicBoolean());
+	}
+
+	private List<RepositoryCache> createCluster(FakeRepository fakeRepository, long cacheMaxTTL, boolean clusterInvalidation,
+			long clusterInvalidationTTL, AtomicBoolean deliveryFailing) {
+		return createCluster(fakeRepository, cacheMaxTTL, clusterInvalidation, clusterInvalidationTTL, deliveryFailing,
+				new ArrayList<>(), new ArrayList<>());
+	}
+
+	private List<RepositoryCache> createCluster(FakeRepository fakeRepository, long cacheMaxTTL, boolean clusterInvalidation,
+			long clusterInvalidationTTL, AtomicBoolean deliveryFailing, List<CacheDispatcher> dispatchers,
+			List<RecordingListener> otherCaches) {
+		RepositoryService repository = fakeRepository.asRepositoryService();
+		List<RepositoryCache> nodes = new ArrayList<>();
+		for (int i = 0; i < NODES; i++) {
+			CacheDispatcherImpl dispatcher = new CacheDispatcherImpl();
+			dispatchers.add(dispatcher);
+			nodes.add(new RepositoryCache(repository, null, dispatcher, cacheMaxTTL, clusterInvalidation, clusterInvalidationTTL));
+			RecordingListener otherCache = new RecordingListener();
+			dispatcher.registerCacheListener(otherCache);
+			otherCaches.add(otherCache);
+		}
+		for (CacheDispatcher dispatcher : dispatchers) {
+			dispatcher.registerCacheListener(new SimulatedClusterListener(dispatcher, dispatchers, deliveryFailing));
+		}
+		return nodes;
+	}
+
+	private void readAll(List<RepositoryCache> nodes, int count, long delay) throws Exception {
+		for (int i = 0; i < count; i++) {
+			for (RepositoryCache node : nodes) {
+				node.getObject(SystemConfigurationType.class, OID, null, new OperationResult("get"));
+			}
+			if (delay > 0) {
+				Thread.sleep(delay);
+			}
+		}
+	}
+
+	private static class SimulatedClusterListener implements CacheListener {
+
+		private final CacheDispatcher localDispatcher;
+		private final List<CacheDispatcher> allDispatchers;
+		private final AtomicBoolean deliveryFailing;
+
+		private SimulatedClusterListener(CacheDispatcher localDispatcher, List<CacheDispatcher> allDispatchers,
+				AtomicBoolean deliveryFailing) {
+			this.localDispatcher = localDispatcher;
+			this.allDispatchers = allDispatchers;
+			this.deliveryFailing = deliveryFailing;
+		}
+
+		@Override
+		public <O extends ObjectType> void invalidateCache(Class<O> type, String oid, boolean clusterwide) {
+			if (!clusterwide || deliveryFailing.get()) {
+				return;
+			}
+			String eventType = CacheInvalidationEventUtil.toEventType(type);      // as sent over REST
+			for (CacheDispatcher dispatcher : allDispatchers) {
+				if (dispatcher != localDispatcher) {
+					dispatcher.dispatch(CacheInvalidationEventUtil.fromEventType(eventType), oid, false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stands for a cache outside the repository cache (e.g. function libraries); records the events it gets.
+	 */
+	private static class RecordingListener implements CacheListener {
+
+		private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public <O extends ObjectType> void invalidateCache(Class<O> type, String oid, boolean clusterwide) {
+			events.add(type != null ? type.getSimpleName() : "all");
+		}
+	}
+
+	/**
+	 * Repository containing a single system configuration object. Modification only increments its version.
+	 */
+	private static class FakeRepository {
+
+		private final AtomicInteger reads = new AtomicInteger();
+		private final AtomicInteger versionChecks = new AtomicInteger();
+		private int version = 1;
+
+		private PrismObject<SystemConfigurationType> createObject() {
+			PrismObject<SystemConfigurationType> object =
+					new PrismObject<>(SchemaConstants.C_SYSTEM_CONFIGURATION, SystemConfigurationType.class);
+			object.setOid(OID);
+			object.setVersion(String.valueOf(version));
+			return object;
+		}
+
+		private RepositoryService asRepositoryService() {
+			return (RepositoryService) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] { RepositoryService.class }, (proxy, method, args) -> invoke(method.getName()));
+		}
+
+		private synchronized Object invoke(String methodName) {
+			switch (methodName) {
+				case "getObject":
+					reads.incrementAndGet();
+					return createObject();
+				case "getVersion":
+					versionChecks.incrementAndGet();
+					return String.valueOf(version);
+				case "modifyObject":
+					version++;
+					return null;
+				default:
+					throw new UnsupportedOperationException(methodName);
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.internals.InternalCounters;
+import com.evolveum.midpoint.schema.internals.InternalMonitor;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import org.testng.annotations.Test;
+
+import javax.xml.namespace.QName;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests per-type configuration of the global cache.
+ */
+public class TestGlobalCacheTypes {
+
+	private static final String ROLE_OID_PREFIX = "00000000-0000-0000-0000-00000000";
+
+	@Test
+	public void test100RolesNotCachedByDefault() throws Exception {
+		System.out.println("===[ test100RolesNotCachedByDefault ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+
+		getRole(cache, 1);
+		getRole(cache, 1);
+
+		assertEquals("Wrong # of repository reads", 2, repository.reads.get());
+	}
+
+	@Test
+	public void test110RolesCachedIfConfigured() throws Exception {
+		System.out.println("===[ test110RolesCachedIfConfigured ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+		cache.configureGlobalCache(RoleType.class, 0, 60000L);
+
+		getRole(cache, 1);
+		PrismObject<RoleType> role = getRole(cache, 1);
+
+		assertEquals("Wrong # of repository reads", 1, repository.reads.get());
+		assertTrue("Returned object is immutable", !role.isImmutable());
+	}
+
+	@Test
+	public void test120MaxEntries() throws Exception {
+		System.out.println("===[ test120MaxEntries ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+		cache.configureGlobalCache(RoleType.class, 2, 60000L);
+
+		getRole(cache, 1);
+		getRole(cache, 2);
+		getRole(cache, 3);
+		assertEquals("Wrong # of repository reads", 3, repository.reads.get());
+
+		// only two of the three roles are still cached
+		getRole(cache, 1);
+		getRole(cache, 2);
+		getRole(cache, 3);
+		assertTrue("Wrong # of repository reads: " + repository.reads.get(), repository.reads.get() > 3);
+	}
+
+	@Test
+	public void test130LeastRecentlyUsedEvicted() throws Exception {
+		System.out.println("===[ test130LeastRecentlyUsedEvicted ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+		cache.configureGlobalCache(RoleType.class, 2, 60000L);
+
+		getRole(cache, 1);
+		getRole(cache, 2);
+		getRole(cache, 1);          // hit; role 2 is now the least recently used one
+		getRole(cache, 3);          // evicts role 2
+		assertEquals("Wrong # of repository reads", 3, repository.reads.get());
+
+		getRole(cache, 1);
+		getRole(cache, 3);
+		assertEquals("Wrong # of repository reads", 3, repository.reads.get());
+		getRole(cache, 2);
+		assertEquals("Wrong # of repository reads", 4, repository.reads.get());
+	}
+
+	@Test
+	public void test200InvalidateBySupertype() throws Exception {
+		System.out.println("===[ test200InvalidateBySupertype ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+		cache.configureGlobalCache(RoleType.class, 0, 60000L);
+
+		getRole(cache, 1);
+		getRole(cache, 2);
+
+		// e.g. an event from another node that knows only the abstract type
+		cache.invalidateCache(AbstractRoleType.class, oid(1), false);
+
+		getRole(cache, 1);
+		getRole(cache, 2);
+		assertEquals("Wrong # of repository reads", 3, repository.reads.get());
+
+		cache.invalidateCache(AbstractRoleType.class, null, false);
+
+		getRole(cache, 1);
+		getRole(cache, 2);
+		assertEquals("Wrong # of repository reads", 5, repository.reads.get());
+	}
+
+	@Test
+	public void test300ReadOnlySharing() throws Exception {
+		System.out.println("===[ test300ReadOnlySharing ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+		cache.configureGlobalCache(RoleType.class, 0, 60000L);
+		Collection<SelectorOptions<GetOperationOptions>> readOnly =
+				SelectorOptions.createCollection(GetOperationOptions.createReadOnly());
+		long avoidedBefore = InternalMonitor.getCount(InternalCounters.PRISM_OBJECT_CLONE_AVOIDED_COUNT);
+
+		// object fetched from the repository belongs to the caller, the cache keeps its own copy
+		PrismObject<RoleType> fetched = cache.getObject(RoleType.class, oid(1), readOnly, new OperationResult("get"));
+		PrismObject<RoleType> first = cache.getObject(RoleType.class, oid(1), readOnly, new OperationResult("get"));
+		PrismObject<RoleType> second = cache.getObject(RoleType.class, oid(1), readOnly, new OperationResult("get"));
+		PrismObject<RoleType> mutable = getRole(cache, 1);
+
+		assertTrue("Fetched object was made immutable", !fetched.isImmutable());
+		assertNotSame("Fetched object is cached", fetched, first);
+		assertSame("Read-only callers do not share the object", first, second);
+		assertTrue("Shared object is not immutable", first.isImmutable());
+		assertNotSame("Mutable copy was not created", first, mutable);
+		assertTrue("Returned copy is immutable", !mutable.isImmutable());
+		mutable.setVersion("2");
+		assertEquals("Shared object was modified", "1", first.getVersion());
+		assertEquals("Wrong # of clones avoided", 2,
+				InternalMonitor.getCount(InternalCounters.PRISM_OBJECT_CLONE_AVOIDED_COUNT) - avoidedBefore);
+	}
+
+	private RepositoryCache createCache(FakeRepository repository) {
+		return new RepositoryCache(repository.asRepositoryService(), null, new CacheDispatcherImpl(), 0, true);
+	}
+
+	private PrismObject<RoleType> getRole(RepositoryCache cache, int number) throws Exception {
+		return cache.getObject(RoleType.class, oid(number), null, new OperationResult("get"));
+	}
+
+	private static String oid(int number) {
+		return ROLE_OID_PREFIX + String.format("%04d", number);
+	}
+
+	/**
+	 * Repository that returns a role for any OID.
+	 */
+	private static class FakeRepository {
+
+		private final AtomicInteger reads = new AtomicInteger();
+
+		private RepositoryService asRepositoryService() {
+			return (RepositoryService) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] { RepositoryService.class }, (proxy, method, args) -> {
+						if (!"getObject".equals(method.getName())) {
+							throw new UnsupportedOperationException(method.getName());
+						}
+						reads.incrementAndGet();
+						return createRole((String) args[1]);
+					});
+		}
+
+		private PrismObject<? extends ObjectType> createRole(String oid) {
+			PrismObject<RoleType> object = new PrismObject<>(new QName(SchemaConstants.NS_C, "role"), RoleType.class);
+			object.setOid(oid);
+			object.setVersion("1");
+			return object;
+		}
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismReferenceValue;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ReferenceDelta;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Tests caching of "object not found" results and of shadow owners in the thread-local cache.
+ */
+public class TestNegativeCache {
+
+	private static final String USER_OID = "00000000-0000-0000-0000-000000001001";
+	private static final String SHADOW_OID = "00000000-0000-0000-0000-000000002001";
+	private static final String SHADOW_OID_2 = "00000000-0000-0000-0000-000000002002";
+
+	@BeforeClass
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	@BeforeMethod
+	public void enterCache() {
+		RepositoryCache.enter();
+	}
+
+	@AfterMethod
+	public void exitCache() {
+		RepositoryCache.exit();
+	}
+
+	@Test
+	public void test100NotFoundIsCached() throws Exception {
+		System.out.println("===[ test100NotFoundIsCached ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+
+		assertNotFound(cache, UserType.class, USER_OID);
+		assertNotFound(cache, UserType.class, USER_OID);
+		assertEquals("Wrong # of repository reads", 1, repository.reads.get());
+
+		// "not found as user" does not mean "not found as focus"
+		assertNotFound(cache, FocusType.class, USER_OID);
+		assertEquals("Wrong # of repository reads", 2, repository.reads.get());
+		assertNotFound(cache, UserType.class, USER_OID);
+		assertEquals("Wrong # of repository reads", 2, repository.reads.get());
+
+		// unrelated type
+		assertNotFound(cache, ShadowType.class, USER_OID);
+		assertEquals("Wrong # of repository reads", 3, repository.reads.get());
+	}
+
+	@Test
+	public void test110AddInvalidatesNotFound() throws Exception {
+		System.out.println("===[ test110AddInvalidatesNotFound ]===");
+		FakeRepository repository = new FakeRepository();
+		RepositoryCache cache = createCache(repository);
+
+		assertNotFound(cache, UserType.class, USER_OID);
+		cache.addObject(createUser(), null, new OperationResult("add"));
+
+		PrismObject<UserType> user = cache.getObject(UserType.class, USER_OID, null, new OperationResult("get"));
+		assertNotNull("No user", user);
+		assertEquals("Wrong # of repository reads", 2, repository.reads.get());
+	}
+
+	@Test
+	public void test200ShadowOwnerIsCached() throws Exception {
+		System.out.println("===[ test200ShadowOwnerIsCached ]===");
+		FakeRepository repository = new FakeRepository();
+		repository.users.put(USER_OID, createUser());
+		repository.owners.put(SHADOW_OID, USER_OID);
+		RepositoryCache cache = createCache(repository);
+
+		for (int i = 0; i < 3; i++) {
+			PrismObject<FocusType> owner = cache.searchShadowOwner(SHADOW_OID, null, new OperationResult("search"));
+			assertNotNull("No owner", owner);
+			assertEquals("Wrong owner", USER_OID, owner.getOid());
+		}
+		assertEquals("Wrong # of owner searches", 1, repository.ownerSearches.get());
+
+		// unlinking the shadow
+		cache.modifyObject(UserType.class, USER_OID, Collections.singletonList(createLinkRefReplace(SHADOW_OID_2)),
+				new OperationResult("modify"));
+
+		assertNull("Unexpected owner", cache.searchShadowOwner(SHADOW_OID, null, new OperationResult("search")));
+		assertEquals("Wrong # of owner searches", 2, repository.ownerSearches.get());
+	}
+
+	@Test
+	public void test210NoOwnerIsCached() throws Exception {
+		System.out.println("===[ test210NoOwnerIsCached ]===");
+		FakeRepository repository = new FakeRepository();
+		repository.users.put(USER_OID, createUser());
+		RepositoryCache cache = createCache(repository);
+
+		assertNull("Unexpected owner", cache.searchShadowOwner(SHADOW_OID_2, null, new OperationResult("search")));
+		assertNull("Unexpected owner", cache.searchShadowOwner(SHADOW_OID_2, null, new OperationResult("search")));
+		assertEquals("Wrong # of owner searches", 1, repository.ownerSearches.get());
+
+		// linking the shadow
+		cache.modifyObject(UserType.class, USER_OID, Collections.singletonList(createLinkRefReplace(SHADOW_OID_2)),
+				new OperationResult("modify"));
+
+		PrismObject<FocusType> owner = cache.searchShadowOwner(SHADOW_OID_2, null, new OperationResult("search"));
+		assertNotNull("No owner", owner);
+		assertEquals("Wrong # of owner searches", 2, repository.ownerSearches.get());
+	}
+
+	private RepositoryCache createCache(FakeRepository repository) {
+		return new RepositoryCache(repository.asRepositoryService(), null, new CacheDispatcherImpl(), 0, false);
+	}
+
+	private void assertNotFound(RepositoryCache cache, Class<? extends ObjectType> type, String oid) throws Exception {
+		try {
+			cache.getObject(type, oid, null, new OperationResult("get"));
+			fail("Unexpected success");
+		} catch (ObjectNotFoundException e) {
+			System.out.println("Expected exception: " + e.getMessage());
+		}
+	}
+
+	private PrismObject<UserType> createUser() {
+		PrismObject<UserType> user = new PrismObject<>(SchemaConstants.C_USER, UserType.class);
+		user.setOid(USER_OID);
+		user.setVersion("1");
+		return user;
+	}
+
+	private ItemDelta<?, ?> createLinkRefReplace(String shadowOid) {
+		return ReferenceDelta.createModificationReplace(FocusType.F_LINK_REF, UserType.class,
+				PrismTestUtil.getPrismContext(), shadowOid);
+	}
+
+	/**
+	 * Repository with users; shadow ownership is kept in a separate map and updated by linkRef replace deltas.
+	 */
+	private static class FakeRepository {
+
+		private final AtomicInteger reads = new AtomicInteger();
+		private final AtomicInteger ownerSearches = new AtomicInteger();
+		private final Map<String, PrismObject<UserType>> users = new HashMap<>();
+		private final Map<String, String> owners = new HashMap<>();
+
+		private RepositoryService asRepositoryService() {
+			return (RepositoryService) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class[] { RepositoryService.class }, (proxy, method, args) -> invoke(method, args));
+		}
+
+		private synchronized Object invoke(Method method, Object[] args) throws ObjectNotFoundException {
+			switch (method.getName()) {
+				case "getObject":
+					reads.incrementAndGet();
+					PrismObject<UserType> user = users.get((String) args[1]);
+					if (user == null || !((Class<?>) args[0]).isAssignableFrom(UserType.class)) {
+						throw new ObjectNotFoundException("Object " + args[1] + " was not found", (String) args[1]);
+					}
+					return user.clone();
+				case "addObject":
+					PrismObject<UserType> added = (PrismObject<UserType>) args[0];
+					users.put(added.getOid(), added.clone());
+					return added.getOid();
+				case "searchShadowOwner":
+					ownerSearches.incrementAndGet();
+					String ownerOid = owners.get((String) args[0]);
+					return ownerOid != null ? users.get(ownerOid).clone() : null;
+				case "modifyObject":
+					String oid = (String) args[1];
+					ReferenceDelta linkRefDelta = ItemDelta.findReferenceModification(
+							(Collection<? extends ItemDelta>) args[2], FocusType.F_LINK_REF);
+					if (linkRefDelta != null) {
+						owners.values().removeIf(oid::equals);
+						for (PrismReferenceValue value : linkRefDelta.getValuesToReplace()) {
+							owners.put(value.getOid(), oid);
+						}
+					}
+					return null;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		}
+	}
+}
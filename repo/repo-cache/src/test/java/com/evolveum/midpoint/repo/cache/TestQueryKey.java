@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.cache;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.QueryJaxbConvertor;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.query_3.QueryType;
+import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests structural query cache keys and compares their cost with keys based on query serialization.
+ */
+public class TestQueryKey {
+
+	private static final int ITERATIONS = 20000;
+	private static final String ROLE_OID = "c0c010c0-d34d-b33f-f00d-111111111111";
+
+	@BeforeSuite
+	public void setup() throws SchemaException, SAXException, IOException {
+		PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+	}
+
+	@Test
+	public void test100EqualQueries() throws Exception {
+		System.out.println("===[ test100EqualQueries ]===");
+		QueryKey key1 = new QueryKey(RoleType.class, createRoleQuery("r1", ROLE_OID));
+		QueryKey key2 = new QueryKey(RoleType.class, createRoleQuery("r1", ROLE_OID));
+		QueryKey key3 = new QueryKey(RoleType.class, createRoleQuery("r2", ROLE_OID));
+		QueryKey key4 = new QueryKey(AbstractRoleType.class, createRoleQuery("r1", ROLE_OID));
+
+		assertEquals("Keys for equal queries differ", key1, key2);
+		assertEquals("Hash codes for equal queries differ", key1.hashCode(), key2.hashCode());
+		assertFalse("Keys for different queries are equal", key1.equals(key3));
+		assertFalse("Keys for different types are equal", key1.equals(key4));
+		assertEquals("Keys for null queries differ", new QueryKey(UserType.class, null), new QueryKey(UserType.class, null));
+	}
+
+	@Test
+	public void test110QueryModifiedAfterKeyCreation() throws Exception {
+		System.out.println("===[ test110QueryModifiedAfterKeyCreation ]===");
+		ObjectQuery query = createRoleQuery("r1", ROLE_OID);
+		QueryKey key = new QueryKey(RoleType.class, query);
+		Map<QueryKey, String> map = new HashMap<>();
+		map.put(key, "result");
+
+		query.setPaging(ObjectPaging.createPaging(0, 10));
+
+		assertNotNull("Entry not found", map.get(new QueryKey(RoleType.class, createRoleQuery("r1", ROLE_OID))));
+		assertTrue("Entry found for modified query", map.get(new QueryKey(RoleType.class, query)) == null);
+	}
+
+	/**
+	 * Repeated lookup of role/association queries: structural key vs. the former key based on QueryType serialization.
+	 */
+	@Test
+	public void test200KeyCreationPerformance() throws Exception {
+		System.out.println("===[ test200KeyCreationPerformance ]===");
+		PrismContext prismContext = PrismTestUtil.getPrismContext();
+		Map<Object, String> structuralMap = new HashMap<>();
+		Map<Object, String> serializedMap = new HashMap<>();
+		for (int i = 0; i < 100; i++) {
+			ObjectQuery query = createRoleQuery("r" + i, ROLE_OID);
+			structuralMap.put(new QueryKey(RoleType.class, query), "r" + i);
+			serializedMap.put(QueryJaxbConvertor.createQueryType(query, prismContext), "r" + i);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			ObjectQuery query = createRoleQuery("r" + (i % 100), ROLE_OID);
+			assertNotNull(structuralMap.get(new QueryKey(RoleType.class, query)));
+		}
+		long structural = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			ObjectQuery query = createRoleQuery("r" + (i % 100), ROLE_OID);
+			QueryType queryType = QueryJaxbConvertor.createQueryType(query, prismContext);
+			assertNotNull(serializedMap.get(queryType));
+		}
+		long serialized = System.nanoTime() - start;
+
+		System.out.println("Structural keys: " + structural / ITERATIONS + " ns per lookup");
+		System.out.println("Serialized keys: " + serialized / ITERATIONS + " ns per lookup");
+	}
+
+	private ObjectQuery createRoleQuery(String name, String inducedRoleOid) {
+		return QueryBuilder.queryFor(RoleType.class, PrismTestUtil.getPrismContext())
+				.item(ObjectType.F_NAME).eqPoly(name)
+				.and().item(AbstractRoleType.F_INDUCEMENT, AssignmentType.F_TARGET_REF).ref(inducedRoleOid)
+				.build();
+	}
+}
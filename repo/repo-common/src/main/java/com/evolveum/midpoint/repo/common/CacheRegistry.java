@@ -55,9 +55,9 @@ public class CacheRegistry implements CacheListener {
 	}
 	
 	@Override
-	public <O extends ObjectType> void invalidateCache(Class<O> type, String oid) {
+	public <O extends ObjectType> void invalidateCache(Class<O> type, String oid, boolean clusterwide) {
 		
-		if (FunctionLibraryType.class.equals(type)) {
+		if (type == null || FunctionLibraryType.class.equals(type)) {
 			clearAllCaches();
 		}
 	}
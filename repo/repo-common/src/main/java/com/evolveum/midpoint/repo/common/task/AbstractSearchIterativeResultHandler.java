@@ -37,6 +37,7 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -69,7 +70,9 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	private boolean enableIterationStatistics = true;				// whether we want to collect these statistics at all
 	private boolean enableSynchronizationStatistics = false;		// whether we want to collect sync statistics
 	private boolean enableActionsExecutedStatistics = false;		// whether we want to collect repo objects statistics
-	private BlockingQueue<ProcessingRequest> requestQueue;
+	private BlockingQueue<List<ProcessingRequest>> requestQueue;		// requests are handed over to workers in batches
+	private int batchSize = 1;
+	private List<ProcessingRequest> currentBatch;						// batch being filled by the coordinator
 	private AtomicBoolean stopRequestedByAnyWorker = new AtomicBoolean(false);
 	private final long startTime;
 
@@ -168,24 +171,36 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 
 		ProcessingRequest request = new ProcessingRequest(object);
 		if (requestQueue != null) {
-			// by not putting anything in the parent result we hope the status will be SUCCESS
-			try {
-				while (!requestQueue.offer(request, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
-					if (shouldStop(parentResult)) {
-						return false;
-					}
-				}
-			} catch (InterruptedException e) {
-				recordInterrupted(parentResult);
+			currentBatch.add(request);
+			if (currentBatch.size() >= batchSize && !submitCurrentBatch(parentResult)) {
 				return false;
 			}
 		} else {
-			processRequest(request, coordinatorTask, parentResult);			// coordinator is also a worker here
+			processRequests(Collections.singletonList(request), coordinatorTask, parentResult);		// coordinator is also a worker here
 		}
 
 		return !shouldStop(parentResult);
 	}
 
+	private boolean submitCurrentBatch(OperationResult parentResult) {
+		if (currentBatch.isEmpty()) {
+			return true;
+		}
+		// by not putting anything in the parent result we hope the status will be SUCCESS
+		try {
+			while (!requestQueue.offer(currentBatch, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				if (shouldStop(parentResult)) {
+					return false;
+				}
+			}
+		} catch (InterruptedException e) {
+			recordInterrupted(parentResult);
+			return false;
+		}
+		currentBatch = new ArrayList<>(batchSize);
+		return true;
+	}
+
 	// stop can be requested either internally (by handler or error in any worker thread)
 	// or externally (by the task manager)
 	private boolean shouldStop(OperationResult parentResult) {
@@ -255,6 +270,9 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 	}
 
 	public void completeProcessing(Task task, OperationResult result) {
+		if (requestQueue != null && !stopRequestedByAnyWorker.get() && coordinatorTask.canRun()) {
+			submitCurrentBatch(result);						// the last (incomplete) batch
+		}
 		signalAllItemsSubmitted();
 		waitForCompletion(result);      		// in order to provide correct statistics results, we have to wait until all child tasks finish
 		updateOperationResult(result);
@@ -275,15 +293,15 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			workerSpecificResult.addArbitraryObjectAsContext("subtaskName", workerTask.getName());
 
 			while (workerTask.canRun()) {
-				ProcessingRequest request;
+				List<ProcessingRequest> requests;
 				try {
-					request = requestQueue.poll(WORKER_THREAD_WAIT_FOR_REQUEST, TimeUnit.MILLISECONDS);
+					requests = requestQueue.poll(WORKER_THREAD_WAIT_FOR_REQUEST, TimeUnit.MILLISECONDS);
 				} catch (InterruptedException e) {
 					LOGGER.trace("Interrupted when waiting for next request", e);
 					return;
 				}
-				if (request != null) {
-					processRequest(request, workerTask, workerSpecificResult);
+				if (requests != null) {
+					processRequests(requests, workerTask, workerSpecificResult);
 				} else {
 					if (allItemsSubmitted) {
 						LOGGER.trace("queue is empty and nothing more is expected - exiting");
@@ -294,7 +312,44 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		}
 	}
 
-	private void processRequest(ProcessingRequest request, Task workerTask, OperationResult parentResult) {
+	/**
+	 * Processes a batch of requests in one repository cache scope. Task progress and operation statistics
+	 * of the coordinator are updated once per batch.
+	 */
+	private void processRequests(List<ProcessingRequest> requests, Task workerTask, OperationResult parentResult) {
+		int processed = 0;
+		try {
+			RepositoryCache.enter();
+			for (ProcessingRequest request : requests) {
+				if (processed > 0 && (!workerTask.canRun() || stopRequestedByAnyWorker.get())) {
+					LOGGER.trace("Stopping processing of the batch after {} object(s) out of {}", processed, requests.size());
+					break;
+				}
+				processed++;
+				if (!processRequest(request, workerTask, parentResult)) {
+					stopRequestedByAnyWorker.set(true);
+				}
+			}
+		} finally {
+			RepositoryCache.exit();
+
+			// parentResult is worker-thread-specific result (because of concurrency issues)
+			// or parentResult as obtained in handle(..) method in single-thread scenario
+			parentResult.summarize();
+
+			synchronized (coordinatorTask) {
+				coordinatorTask.setProgress(objectsProcessed.get());
+				if (requestQueue != null) {
+					workerTask.setProgress(workerTask.getProgress() + processed);
+				}
+				// todo report current op result?
+				coordinatorTask.storeOperationStatsIfNeeded();  // for persistent tasks written asynchronously
+			}
+		}
+	}
+
+	// returns false if the processing should stop
+	private boolean processRequest(ProcessingRequest request, Task workerTask, OperationResult parentResult) {
 
 		PrismObject<O> object = request.object;
 
@@ -310,8 +365,6 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 
 		try {
 
-			RepositoryCache.enter();
-
 			if (LOGGER.isTraceEnabled()) {
 				LOGGER.trace("{} starting for {} {}", getProcessShortNameCapitalized(), object, getContextDesc());
 			}
@@ -355,27 +408,12 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			}
 			cont = processError(object, e, result);
 		} finally {
-			RepositoryCache.exit();
-
 			long duration = System.currentTimeMillis()-startTime;
 			long total = totalTimeProcessing.addAndGet(duration);
 			int progress = objectsProcessed.incrementAndGet();
 
 			result.addContext(OperationResult.CONTEXT_PROGRESS, progress);
 
-			// parentResult is worker-thread-specific result (because of concurrency issues)
-			// or parentResult as obtained in handle(..) method in single-thread scenario
-			parentResult.summarize();
-
-			synchronized (coordinatorTask) {
-				coordinatorTask.setProgress(progress);
-				if (requestQueue != null) {
-					workerTask.setProgress(workerTask.getProgress()+1);
-				}
-				// todo report current op result?
-				coordinatorTask.storeOperationStatsIfNeeded();  // includes savePendingModifications
-			}
-
 			if (logObjectProgress) {
 				if (LOGGER.isInfoEnabled()) {
 					LOGGER.info("{} object {} {} done with status {} (this one: {} ms, avg: {} ms) (total progress: {}, wall clock avg: {} ms)",
@@ -392,9 +430,7 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 					result.debugDump());
 		}
 
-		if (!cont) {
-			stopRequestedByAnyWorker.set(true);
-		}
+		return cont;
 	}
 
 	// may be overridden
@@ -477,8 +513,13 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 			return;             // nothing to do
 		}
 
+		Integer configuredBatchSize = getWorkerBatchSize(coordinatorTask);
+		batchSize = configuredBatchSize != null && configuredBatchSize > 1 ? configuredBatchSize : 1;
+		currentBatch = new ArrayList<>(batchSize);
+
 		int queueSize = threadsCount*2;				// actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
 		requestQueue = new ArrayBlockingQueue<>(queueSize);
+		LOGGER.trace("Using {} worker threads with batch size of {}", threadsCount, batchSize);
 
 		workerSpecificResults = new ArrayList<>(threadsCount);
 
@@ -516,5 +557,14 @@ public abstract class AbstractSearchIterativeResultHandler<O extends ObjectType>
 		}
 	}
 
+	protected Integer getWorkerBatchSize(Task task) {
+		PrismProperty<Integer> batchSizePrismProperty = task.getExtensionProperty(SchemaConstants.MODEL_EXTENSION_WORKER_BATCH_SIZE);
+		if (batchSizePrismProperty != null && batchSizePrismProperty.getRealValue() != null) {
+			return batchSizePrismProperty.getRealValue();
+		} else {
+			return null;
+		}
+	}
+
 
 }
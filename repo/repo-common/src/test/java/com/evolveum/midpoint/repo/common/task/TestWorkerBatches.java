@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.repo.common.task;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.task.quartzimpl.TaskQuartzImpl;
+import com.evolveum.midpoint.test.AbstractIntegrationTest;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.IterativeTaskInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+
+/**
+ * Tests hand-off of objects to worker threads in batches (workerBatchSize), including the last incomplete batch
+ * and stopping in the middle of a batch.
+ *
+ * @author mederly
+ */
+@ContextConfiguration(locations = "classpath:ctx-repo-common-test-main.xml")
+@DirtiesContext
+@Listeners({ com.evolveum.midpoint.tools.testng.AlphabeticalMethodInterceptor.class })
+public class TestWorkerBatches extends AbstractIntegrationTest {
+
+	private static final long LATCH_TIMEOUT = 10000L;
+
+	@Override
+	public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+	}
+
+	@Test
+	public void test100LastIncompleteBatch() throws Exception {
+		final String TEST_NAME = "test100LastIncompleteBatch";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task coordinatorTask = createCoordinatorTask(TEST_NAME, 2, 3);
+		OperationResult result = coordinatorTask.getResult();
+		Set<String> processed = ConcurrentHashMap.newKeySet();
+		TestHandler handler = new TestHandler(coordinatorTask) {
+			@Override
+			protected boolean handleObject(PrismObject<UserType> object, Task workerTask, OperationResult result) {
+				processed.add(object.getOid());
+				result.recordSuccess();
+				return true;
+			}
+		};
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		handler.createWorkerThreads(coordinatorTask, result);
+		int submitted = submit(handler, 10, result);
+		handler.completeProcessing(coordinatorTask, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertEquals("Wrong # of submitted objects", 10, submitted);
+		assertEquals("Wrong # of processed objects", 10, processed.size());
+		assertEquals("Wrong # of errors", 0, handler.getErrors());
+		assertProgress(coordinatorTask, handler, 10);
+		assertIterativeStatistics(coordinatorTask, 10, 0);
+		assertSuccess(result);
+	}
+
+	/**
+	 * A failure stops the processing: the rest of the batch is skipped and the last batch is not submitted.
+	 */
+	@Test
+	public void test110StopRequestedByWorker() throws Exception {
+		final String TEST_NAME = "test110StopRequestedByWorker";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task coordinatorTask = createCoordinatorTask(TEST_NAME, 1, 5);
+		OperationResult result = coordinatorTask.getResult();
+		CountDownLatch allSubmitted = new CountDownLatch(1);
+		TestHandler handler = new TestHandler(coordinatorTask) {
+			@Override
+			protected boolean handleObject(PrismObject<UserType> object, Task workerTask, OperationResult result) {
+				switch (object.getName().getOrig()) {
+					case "user1":
+						awaitQuietly(allSubmitted);     // first batch is processed only after the coordinator is done
+						break;
+					case "user2":
+						throw new SystemException("Simulated failure");
+				}
+				result.recordSuccess();
+				return true;
+			}
+		};
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		handler.createWorkerThreads(coordinatorTask, result);
+		submit(handler, 7, result);         // one full batch (5) and an incomplete one (2)
+		allSubmitted.countDown();
+		waitForWorkersProgress(coordinatorTask, 2);        // i.e. until the worker gives up the first batch
+		handler.completeProcessing(coordinatorTask, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertEquals("Wrong # of errors", 1, handler.getErrors());
+		assertProgress(coordinatorTask, handler, 2);
+		assertIterativeStatistics(coordinatorTask, 1, 1);
+	}
+
+	/**
+	 * Worker task that can no longer run stops after the current object.
+	 */
+	@Test
+	public void test120WorkerCannotRun() throws Exception {
+		final String TEST_NAME = "test120WorkerCannotRun";
+		displayTestTitle(TEST_NAME);
+
+		// GIVEN
+		Task coordinatorTask = createCoordinatorTask(TEST_NAME, 1, 5);
+		OperationResult result = coordinatorTask.getResult();
+		CountDownLatch allSubmitted = new CountDownLatch(1);
+		TestHandler handler = new TestHandler(coordinatorTask) {
+			@Override
+			protected boolean handleObject(PrismObject<UserType> object, Task workerTask, OperationResult result) {
+				switch (object.getName().getOrig()) {
+					case "user1":
+						awaitQuietly(allSubmitted);
+						break;
+					case "user3":
+						((TaskQuartzImpl) workerTask).unsetCanRun();        // as if the task was suspended
+						break;
+				}
+				result.recordSuccess();
+				return true;
+			}
+		};
+
+		// WHEN
+		displayWhen(TEST_NAME);
+		handler.createWorkerThreads(coordinatorTask, result);
+		submit(handler, 5, result);
+		allSubmitted.countDown();
+		handler.completeProcessing(coordinatorTask, result);
+
+		// THEN
+		displayThen(TEST_NAME);
+		assertEquals("Wrong # of errors", 0, handler.getErrors());
+		assertProgress(coordinatorTask, handler, 3);
+		assertIterativeStatistics(coordinatorTask, 3, 0);
+	}
+
+	private Task createCoordinatorTask(String name, int workerThreads, int workerBatchSize) throws Exception {
+		Task task = createTask(TestWorkerBatches.class.getName() + "." + name);
+		task.setExtensionPropertyValueTransient(SchemaConstants.MODEL_EXTENSION_WORKER_THREADS, workerThreads);
+		task.setExtensionPropertyValueTransient(SchemaConstants.MODEL_EXTENSION_WORKER_BATCH_SIZE, workerBatchSize);
+		task.resetIterativeTaskInformation(null);
+		return task;
+	}
+
+	// returns number of objects accepted before the handler asked to stop
+	private int submit(TestHandler handler, int count, OperationResult result) {
+		for (int i = 1; i <= count; i++) {
+			UserType user = new UserType(prismContext);
+			user.setOid("00000000-0000-0000-0000-0000000000" + String.format("%02d", i));
+			user.setName(new PolyStringType("user" + i));
+			if (!handler.handle(user.asPrismObject(), result)) {
+				return i;
+			}
+		}
+		return count;
+	}
+
+	private void waitForWorkersProgress(Task coordinatorTask, long expected) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (getWorkersProgress(coordinatorTask) < expected) {
+			if (System.currentTimeMillis() - start > LATCH_TIMEOUT) {
+				throw new AssertionError("Workers progress of " + expected + " was not reached in " + LATCH_TIMEOUT + " ms");
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	private long getWorkersProgress(Task coordinatorTask) {
+		long progress = 0;
+		synchronized (coordinatorTask) {        // worker progress is updated under this lock
+			for (Task worker : coordinatorTask.getLightweightAsynchronousSubtasks()) {
+				progress += worker.getProgress();
+			}
+		}
+		return progress;
+	}
+
+	private void assertProgress(Task coordinatorTask, TestHandler handler, long expected) {
+		assertEquals("Wrong handler progress", expected, handler.getProgress());
+		assertEquals("Wrong coordinator task progress", expected, coordinatorTask.getProgress());
+		assertEquals("Wrong sum of worker tasks progress", expected, getWorkersProgress(coordinatorTask));
+	}
+
+	private void assertIterativeStatistics(Task coordinatorTask, int successes, int failures) {
+		IterativeTaskInformationType info = coordinatorTask.getAggregatedLiveOperationStats().getIterativeTaskInformation();
+		display("Iterative task information", info);
+		assertEquals("Wrong success count", successes, info.getTotalSuccessCount());
+		assertEquals("Wrong failure count", failures, info.getTotalFailureCount());
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			assertTrue("Timed out waiting for the coordinator", latch.await(LATCH_TIMEOUT, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			throw new SystemException(e);
+		}
+	}
+
+	private abstract class TestHandler extends AbstractSearchIterativeResultHandler<UserType> {
+
+		TestHandler(Task coordinatorTask) {
+			super(coordinatorTask, TestWorkerBatches.class.getName(), "test", null, taskManager);
+		}
+	}
+}
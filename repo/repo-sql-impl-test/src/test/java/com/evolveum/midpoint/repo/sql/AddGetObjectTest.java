@@ -877,5 +877,42 @@ public class AddGetObjectTest extends BaseSQLRepoTest {
         AssertJUnit.assertEquals("asdf", r.getOperation());
         AssertJUnit.assertEquals(OperationResultStatusType.FATAL_ERROR, r.getStatus());
     }
+
+    @Test
+    public void getObjects() throws Exception {
+        OperationResult result = new OperationResult("getObjects");
+
+        List<String> oids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UserType user = new UserType(prismContext);
+            user.setName(new PolyStringType("getObjects" + i));
+            oids.add(repositoryService.addObject(user.asPrismObject(), null, result));
+        }
+        String missingOid = "00000000-0000-0000-0000-00000000ffff";
+
+        List<String> requested = Arrays.asList(oids.get(2), missingOid, oids.get(0), oids.get(2), oids.get(1));
+        List<PrismObject<UserType>> users = repositoryService.getObjects(UserType.class, requested, null, result);
+
+        AssertJUnit.assertEquals("Wrong # of objects", 3, users.size());
+        AssertJUnit.assertEquals(oids.get(2), users.get(0).getOid());
+        AssertJUnit.assertEquals(oids.get(0), users.get(1).getOid());
+        AssertJUnit.assertEquals(oids.get(1), users.get(2).getOid());
+        AssertJUnit.assertEquals("getObjects0", users.get(1).asObjectable().getName().getOrig());
+
+        List<PrismObject<FocusType>> foci = repositoryService.getObjects(FocusType.class, oids, null, result);
+        AssertJUnit.assertEquals("Wrong # of objects", 3, foci.size());
+
+        // objects of other types are skipped, just like the missing ones
+        RoleType role = new RoleType(prismContext);
+        role.setName(new PolyStringType("getObjectsRole"));
+        String roleOid = repositoryService.addObject(role.asPrismObject(), null, result);
+        List<String> mixed = Arrays.asList(oids.get(0), roleOid, oids.get(1));
+        List<PrismObject<RoleType>> roles = repositoryService.getObjects(RoleType.class, mixed, null, result);
+        AssertJUnit.assertEquals("Wrong # of objects", 1, roles.size());
+        AssertJUnit.assertEquals(roleOid, roles.get(0).getOid());
+
+        result.computeStatus();
+        AssertJUnit.assertFalse("Operation failed: " + result.getStatus(), result.isError());
+    }
 }
 
@@ -20,15 +20,19 @@ import com.evolveum.midpoint.audit.api.AuditEventRecord;
 import com.evolveum.midpoint.audit.api.AuditEventStage;
 import com.evolveum.midpoint.audit.api.AuditEventType;
 import com.evolveum.midpoint.audit.api.AuditReferenceValue;
+import com.evolveum.midpoint.audit.api.AuditResultHandler;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.sql.SqlRepositoryConfiguration.AuditWriteMode;
 import com.evolveum.midpoint.repo.sql.data.audit.RAuditEventRecord;
 import com.evolveum.midpoint.repo.sql.util.DtoTranslationException;
 import com.evolveum.midpoint.repo.sql.util.SimpleTaskAdapter;
 import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import org.hibernate.query.Query;
@@ -37,9 +41,12 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 
 /**
  * @author mederly
@@ -130,6 +137,281 @@ public class AuditTest extends BaseSQLRepoTest {
 		auditService.audit(record, new SimpleTaskAdapter());
 	}
 
+	@Test
+	public void test200AsyncWriter() throws Exception {
+		LOGGER.info("===[ test200AsyncWriter ]===");
+		long countBefore = countAuditRecords();
+		setAsyncAuditConfiguration(AuditWriteMode.ASYNC, new File("target/audit-spill-" + System.currentTimeMillis()));
+		try {
+			SqlAuditServiceImpl service = createSqlAuditService();
+			AsyncAuditWriter writer = service.getAsyncWriter();
+
+			// WHEN
+			for (int i = 0; i < 25; i++) {
+				service.audit(createRecord("async-" + i), new SimpleTaskAdapter());
+			}
+			writer.shutdown();
+
+			// THEN
+			System.out.println(writer.getStatistics());
+			assertEquals("Wrong # of written records", 25, writer.getWritten());
+			assertEquals("Wrong # of failed records", 0, writer.getFailed());
+			assertEquals("Wrong # of audit records in repo", countBefore + 25, countAuditRecords());
+			assertTrue("Records were not batched", writer.getBatches() < 25);
+			AuditEventRecord last = getAuditEventRecord((int) countBefore + 25, (int) countBefore + 24);
+			assertEquals("Wrong property of the last record", Collections.singleton("async-24"), last.getPropertyValues("prop"));
+			assertEquals("Wrong # of references of the last record", 1, last.getReferenceValues("ref").size());
+		} finally {
+			resetAsyncAuditConfiguration();
+		}
+	}
+
+	@Test
+	public void test210AsyncWriterSpill() throws Exception {
+		LOGGER.info("===[ test210AsyncWriterSpill ]===");
+		long countBefore = countAuditRecords();
+		File spillDir = new File("target/audit-spill-" + System.currentTimeMillis());
+		SqlAuditServiceImpl service = createSqlAuditService();
+		AtomicBoolean repoDown = new AtomicBoolean(true);
+		AsyncAuditWriter.BatchWriter batchWriter = records -> {
+			if (repoDown.get()) {
+				throw new SystemException("Repository is down");
+			}
+			service.writeBatch(records);
+		};
+
+		// WHEN (records cannot be written)
+		AsyncAuditWriter writer = new AsyncAuditWriter(batchWriter, AuditWriteMode.ASYNC_SPILL, 10, 4, 30000L, spillDir);
+		writer.start();
+		for (int i = 0; i < 5; i++) {
+			writer.submit(createRepoRecord("spill-" + i));
+		}
+		writer.shutdown();
+
+		// THEN
+		System.out.println(writer.getStatistics());
+		assertEquals("Wrong # of spilled records", 5, writer.getSpilled());
+		assertEquals("Wrong # of failed records", 0, writer.getFailed());
+		assertTrue("No spill files", getSpillFiles(spillDir).length > 0);
+
+		// WHEN (repository is up again)
+		repoDown.set(false);
+		AsyncAuditWriter writer2 = new AsyncAuditWriter(batchWriter, AuditWriteMode.ASYNC_SPILL, 10, 4, 30000L, spillDir);
+		writer2.start();
+		writer2.shutdown();
+
+		// THEN
+		System.out.println(writer2.getStatistics());
+		assertEquals("Wrong # of written records", 5, writer2.getWritten());
+		assertEquals("Spill files were not deleted", 0, getSpillFiles(spillDir).length);
+		assertEquals("Wrong # of audit records in repo", countBefore + 5, countAuditRecords());
+	}
+
+	/**
+	 * A spill file containing a record that can never be written must not block the replay of other spill files.
+	 */
+	@Test
+	public void test220AsyncWriterUnwritableSpillFile() throws Exception {
+		LOGGER.info("===[ test220AsyncWriterUnwritableSpillFile ]===");
+		long countBefore = countAuditRecords();
+		File spillDir = new File("target/audit-spill-" + System.currentTimeMillis());
+		setAsyncAuditConfiguration(AuditWriteMode.ASYNC_SPILL, spillDir);
+		try {
+			// GIVEN: one spill file with a record that violates column length, another one with a correct record
+			SqlAuditServiceImpl service = createSqlAuditService();
+			UserType badInitiator = new UserType(prismContext).name("bad-initiator");
+			badInitiator.setOid("too-long-oid-0000000000000000000000000000000000000000");
+			AuditEventRecord badRecord = createRecord("spill-bad");
+			badRecord.setInitiator(badInitiator.asPrismObject());
+			service.audit(badRecord, new SimpleTaskAdapter());
+			service.getAsyncWriter().shutdown();
+			assertEquals("Wrong # of spilled records", 1, service.getAsyncWriter().getSpilled());
+
+			AsyncAuditWriter downWriter = new AsyncAuditWriter(records -> {
+				throw new SystemException("Repository is down");
+			}, AuditWriteMode.ASYNC_SPILL, 10, 4, 30000L, spillDir);
+			downWriter.start();
+			downWriter.submit(createRepoRecord("spill-good"));
+			downWriter.shutdown();
+			assertEquals("Wrong # of spill files", 2, getSpillFiles(spillDir).length);
+
+			// WHEN
+			SqlAuditServiceImpl service2 = createSqlAuditService();
+			AsyncAuditWriter writer2 = service2.getAsyncWriter();
+			writer2.shutdown();
+
+			// THEN
+			System.out.println(writer2.getStatistics());
+			assertEquals("Wrong # of written records", 1, writer2.getWritten());
+			assertEquals("Wrong # of failed records", 1, writer2.getFailed());
+			assertEquals("Spill files were not processed", 0, getSpillFiles(spillDir).length);
+			File[] failedFiles = spillDir.listFiles((dir, name) -> name.endsWith(".failed"));
+			assertEquals("Wrong # of failed spill files", 1, failedFiles != null ? failedFiles.length : 0);
+			assertEquals("Wrong # of audit records in repo", countBefore + 1, countAuditRecords());
+		} finally {
+			resetAsyncAuditConfiguration();
+		}
+	}
+
+	private void setAsyncAuditConfiguration(AuditWriteMode mode, File spillDir) {
+		SqlRepositoryConfiguration configuration = baseHelper.getConfiguration();
+		configuration.setAuditWriteMode(mode);
+		configuration.setAuditQueueSize(10);
+		configuration.setAuditBatchSize(4);
+		configuration.setAuditSpillDir(spillDir.getPath());
+	}
+
+	private void resetAsyncAuditConfiguration() {
+		baseHelper.getConfiguration().setAuditWriteMode(AuditWriteMode.SYNC);
+	}
+
+	// a separate instance, as the asynchronous writer is created only once per audit service
+	private SqlAuditServiceImpl createSqlAuditService() throws Exception {
+		SqlAuditServiceImpl service = (SqlAuditServiceImpl) applicationContext.getBean(SqlAuditServiceFactory.class)
+				.getAuditService();
+		applicationContext.getAutowireCapableBeanFactory().autowireBean(service);
+		return service;
+	}
+
+	@Test
+	public void test300StreamRecords() throws Exception {
+		LOGGER.info("===[ test300StreamRecords ]===");
+
+		// GIVEN
+		final int COUNT = 13;
+		OperationResult result = new OperationResult("test300StreamRecords");
+		UserType initiator = new UserType(prismContext).name("stream-initiator");
+		repositoryService.addObject(initiator.asPrismObject(), null, result);
+
+		long timestamp = System.currentTimeMillis() - 3600000L;
+		for (int i = 0; i < COUNT; i++) {
+			AuditEventRecord record = new AuditEventRecord();
+			record.setParameter("stream");
+			record.setTimestamp(timestamp + (i / 2) * 1000L);           // pairs of records share the timestamp
+			record.setInitiator(initiator.asPrismObject());
+			record.addPropertyValue("index", String.valueOf(i));
+			auditService.audit(record, new SimpleTaskAdapter());
+		}
+		Map<String, Object> params = new HashMap<>();
+		params.put("parameter", "stream");
+
+		// WHEN
+		List<AuditEventRecord> ascending = streamRecords(params, null, false, 4, Integer.MAX_VALUE);
+		List<AuditEventRecord> descending = streamRecords(params, null, true, 5, Integer.MAX_VALUE);
+		List<AuditEventRecord> firstPart = streamRecords(params, null, false, 3, 6);
+		List<AuditEventRecord> secondPart = streamRecords(params, firstPart.get(firstPart.size() - 1), false, 3, Integer.MAX_VALUE);
+
+		// THEN
+		assertEquals("Wrong # of records", COUNT, ascending.size());
+		for (int i = 0; i < COUNT; i++) {
+			AuditEventRecord record = ascending.get(i);
+			assertEquals("Wrong record #" + i, Collections.singleton(String.valueOf(i)), record.getPropertyValues("index"));
+			assertEquals("Wrong initiator in record #" + i, initiator.getOid(), record.getInitiator().getOid());
+			assertEquals("Wrong initiator name in record #" + i, "stream-initiator", record.getInitiator().getName().getOrig());
+		}
+		List<AuditEventRecord> reversed = new ArrayList<>(descending);
+		Collections.reverse(reversed);
+		assertEquals("Wrong descending order", getRepoIds(ascending), getRepoIds(reversed));
+		assertEquals("Wrong # of records in the first part", 6, firstPart.size());
+		List<AuditEventRecord> continued = new ArrayList<>(firstPart);
+		continued.addAll(secondPart);
+		assertEquals("Wrong records when continuing", getRepoIds(ascending), getRepoIds(continued));
+	}
+
+	/**
+	 * Objects referenced from audit records are resolved including assignments stored outside the full object.
+	 */
+	@Test
+	public void test310ResolveSplitContainers() throws Exception {
+		LOGGER.info("===[ test310ResolveSplitContainers ]===");
+
+		// GIVEN
+		OperationResult result = new OperationResult("test310ResolveSplitContainers");
+		baseHelper.getConfiguration().setSplitContainerStorage(true);
+		try {
+			UserType initiator = new UserType(prismContext).name("split-initiator");
+			initiator.getAssignment().add(new AssignmentType(prismContext)
+					.description("split assignment")
+					.targetRef("a9e4cf25-5e1b-4b4e-8c4e-3d7a0b6f1c02", RoleType.COMPLEX_TYPE));
+			repositoryService.addObject(initiator.asPrismObject(), null, result);
+
+			AuditEventRecord record = new AuditEventRecord();
+			record.setParameter("split");
+			record.setInitiator(initiator.asPrismObject());
+			auditService.audit(record, new SimpleTaskAdapter());
+			Map<String, Object> params = new HashMap<>();
+			params.put("parameter", "split");
+
+			// WHEN
+			List<AuditEventRecord> records = streamRecords(params, null, false, 10, Integer.MAX_VALUE);
+
+			// THEN
+			assertEquals("Wrong # of records", 1, records.size());
+			UserType resolved = records.get(0).getInitiator().asObjectable();
+			assertEquals("Wrong # of assignments of the initiator", 1, resolved.getAssignment().size());
+			assertEquals("Wrong assignment of the initiator", "split assignment",
+					resolved.getAssignment().get(0).getDescription());
+		} finally {
+			baseHelper.getConfiguration().setSplitContainerStorage(false);
+		}
+	}
+
+	private List<AuditEventRecord> streamRecords(Map<String, Object> params, AuditEventRecord after, boolean descending,
+			int pageSize, int limit) {
+		List<AuditEventRecord> records = new ArrayList<>();
+		auditService.streamRecords("aer.parameter = :parameter", params, after, descending, pageSize, new AuditResultHandler() {
+			@Override
+			public boolean handle(AuditEventRecord auditRecord) {
+				records.add(auditRecord);
+				return records.size() < limit;
+			}
+
+			@Override
+			public int getProgress() {
+				return records.size();
+			}
+		});
+		return records;
+	}
+
+	private List<Long> getRepoIds(List<AuditEventRecord> records) {
+		List<Long> rv = new ArrayList<>();
+		for (AuditEventRecord record : records) {
+			rv.add(record.getRepoId());
+		}
+		return rv;
+	}
+
+	private AuditEventRecord createRecord(String parameter) {
+		AuditEventRecord record = new AuditEventRecord();
+		record.setParameter(parameter);
+		record.addPropertyValue("prop", parameter);
+		record.addReferenceValue("ref", new AuditReferenceValue("oid-" + parameter, UserType.COMPLEX_TYPE, new PolyString(parameter)));
+		return record;
+	}
+
+	private RAuditEventRecord createRepoRecord(String parameter) throws DtoTranslationException {
+		return RAuditEventRecord.toRepo(createRecord(parameter), prismContext, true);
+	}
+
+	private long countAuditRecords() {
+		Session session = getFactory().openSession();
+		try {
+			session.beginTransaction();
+			Number count = (Number) session.createQuery("select count(*) from " + RAuditEventRecord.class.getSimpleName())
+					.uniqueResult();
+			session.getTransaction().commit();
+			return count.longValue();
+		} finally {
+			session.close();
+		}
+	}
+
+	private File[] getSpillFiles(File spillDir) {
+		File[] files = spillDir.listFiles((dir, name) -> name.endsWith(".spill"));
+		return files != null ? files : new File[0];
+	}
+
 	private AuditEventRecord getAuditEventRecord(int expectedCount, int index) {
 		Session session = getFactory().openSession();
 		try {
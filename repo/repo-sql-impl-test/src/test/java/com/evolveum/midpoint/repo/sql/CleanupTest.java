@@ -138,6 +138,36 @@ public class CleanupTest extends BaseSQLRepoTest {
         AssertJUnit.assertTrue("finished: " + finished + ", mark: " + mark, finished.after(mark));
     }
 
+    /**
+     * Partitioning is not supported by H2, so the cleanup should fall back to deleting individual records.
+     */
+    @Test
+    public void testAuditCleanupMaxAgePartitioned() throws Exception {
+        SqlRepositoryConfiguration config = baseHelper.getConfiguration();
+        config.setAuditPartitioning(SqlRepositoryConfiguration.AuditPartitioning.MONTHLY);
+        try {
+            //GIVEN
+            prepareAuditEventRecords();
+
+            //WHEN
+            Calendar calendar = create_2013_07_12_12_00_Calendar();
+            calendar.add(Calendar.HOUR_OF_DAY, 1);
+            calendar.add(Calendar.MINUTE, 1);
+
+            final long NOW = System.currentTimeMillis();
+            CleanupPolicyType policy = createPolicy(calendar, NOW);
+
+            OperationResult result = new OperationResult("Cleanup audit");
+            auditService.cleanupAudit(policy, result);
+            result.recomputeStatus();
+
+            //THEN
+            assertAndReturnAuditEventRecord(result);
+        } finally {
+            config.setAuditPartitioning(SqlRepositoryConfiguration.AuditPartitioning.NONE);
+        }
+    }
+
     @Test
     public void testAuditCleanupMaxRecords() throws Exception {
         //GIVEN
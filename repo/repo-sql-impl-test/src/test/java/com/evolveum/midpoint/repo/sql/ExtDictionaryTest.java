@@ -20,6 +20,7 @@ import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.PrismPropertyDefinitionImpl;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.repo.sql.data.common.any.RExtItem;
+import com.evolveum.midpoint.repo.sql.data.common.dictionary.ExtItemDictionary;
 import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
 import com.evolveum.midpoint.schema.constants.MidPointConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -42,6 +43,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
 /**
@@ -124,4 +127,51 @@ public class ExtDictionaryTest extends BaseSQLRepoTest {
         }
         session.close();
     }
+
+    @Test
+    public void test110LockFreeLookups() throws Exception {
+        addUserWithExtension("warm-up");          // makes sure the item exists and the dictionary is loaded
+
+        SqlPerformanceMonitor monitor = ((SqlRepositoryServiceImpl) repositoryService).getPerformanceMonitor();
+        long acquisitionsBefore = monitor.getLockAcquisitions(ExtItemDictionary.LOCK_NAME);
+        long readsBefore = monitor.getLockFreeReads(ExtItemDictionary.LOCK_NAME);
+
+        List<TestingThread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final int thread1 = i;
+            TestingThread thread = new TestingThread(() -> {
+                try {
+                    for (int j = 0; j < 5; j++) {
+                        addUserWithExtension("lf-" + thread1 + "-" + j);
+                    }
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new SystemException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (TestingThread thread : threads) {
+            thread.join(60000L);
+            if (thread.throwable != null) {
+                fail("Exception in " + thread + ": " + thread.throwable);
+            }
+        }
+
+        assertEquals("Dictionary was locked", acquisitionsBefore, monitor.getLockAcquisitions(ExtItemDictionary.LOCK_NAME));
+        long reads = monitor.getLockFreeReads(ExtItemDictionary.LOCK_NAME) - readsBefore;
+        assertTrue("Too few lock-free reads: " + reads, reads >= THREADS * 5);
+    }
+
+    private void addUserWithExtension(String name) throws Exception {
+        UserType user = new UserType(prismContext).name(name);
+        PrismPropertyDefinitionImpl<String> propertyDefinition = new PrismPropertyDefinitionImpl<>(
+                new QName(NS_TEST, "lockFree"), DOMUtil.XSD_STRING, prismContext);
+        PrismProperty<String> property = propertyDefinition.instantiate();
+        property.setRealValue("value");
+        user.asPrismObject().addExtensionItem(property);
+        repositoryService.addObject(user.asPrismObject(), null, new OperationResult("addObject"));
+    }
 }
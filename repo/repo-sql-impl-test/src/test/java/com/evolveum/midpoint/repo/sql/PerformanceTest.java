@@ -2,6 +2,7 @@ package com.evolveum.midpoint.repo.sql;
 
 import com.evolveum.midpoint.prism.*;
 import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.repo.sql.helpers.ObjectUpdater;
 import com.evolveum.midpoint.repo.sql.type.XMLGregorianCalendarType;
 import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -13,10 +14,12 @@ import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
+import org.testng.AssertJUnit;
 import org.testng.annotations.Test;
 
 import javax.xml.namespace.QName;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 /**
@@ -124,6 +127,95 @@ public class PerformanceTest extends BaseSQLRepoTest {
         LOGGER.info("xxx>> time: {} ms, per get: {} ms", duration, (double) duration/COUNT);
     }
 
+    /**
+     * Compares the former serialize-parse-serialize way of creating m_object.fullObject with the single-pass
+     * serialization (skipping items not stored in full object) used by ObjectUpdater now.
+     */
+    @Test(enabled = false)
+    public void test400FullObjectSerialization() throws Exception {
+        PrismObject<UserType> user = createUserType(1, UUID.randomUUID().toString()).asPrismObject();
+        user.asObjectable().setJpegPhoto(new byte[20000]);
+        PrismObject<TaskType> task = createTaskWithResult();
+
+        benchmarkFullObjectSerialization("user", user);
+        benchmarkFullObjectSerialization("task", task);
+    }
+
+    private <T extends ObjectType> void benchmarkFullObjectSerialization(String label, PrismObject<T> object)
+            throws SchemaException {
+        Collection<ItemPath> itemsToSkip = ObjectUpdater.getItemsNotStoredInFullObject(object.getCompileTimeClass());
+
+        PrismObject<T> legacy = prismContext.parseObject(serializeFullObjectLegacy(object, itemsToSkip));
+        PrismObject<T> singlePass = prismContext.parseObject(serializeFullObject(object, itemsToSkip));
+        AssertJUnit.assertTrue("Single-pass serialization differs for " + label, legacy.equivalent(singlePass));
+
+        final int WARMUP = 200;
+        final int COUNT = 2000;
+        for (int i = 0; i < WARMUP; i++) {
+            serializeFullObjectLegacy(object, itemsToSkip);
+            serializeFullObject(object, itemsToSkip);
+        }
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long bytes = threadBean.getThreadAllocatedBytes(threadId);
+        long time = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            serializeFullObjectLegacy(object, itemsToSkip);
+        }
+        long legacyTime = (System.nanoTime() - time) / COUNT;
+        long legacyBytes = (threadBean.getThreadAllocatedBytes(threadId) - bytes) / COUNT;
+
+        bytes = threadBean.getThreadAllocatedBytes(threadId);
+        time = System.nanoTime();
+        for (int i = 0; i < COUNT; i++) {
+            serializeFullObject(object, itemsToSkip);
+        }
+        long singlePassTime = (System.nanoTime() - time) / COUNT;
+        long singlePassBytes = (threadBean.getThreadAllocatedBytes(threadId) - bytes) / COUNT;
+
+        LOGGER.info("xxx>> {}: serialize-parse-serialize {} us/op, {} bytes/op; single pass {} us/op, {} bytes/op",
+                label, legacyTime / 1000, legacyBytes, singlePassTime / 1000, singlePassBytes);
+    }
+
+    private <T extends ObjectType> String serializeFullObjectLegacy(PrismObject<T> object,
+            Collection<ItemPath> itemsToSkip) throws SchemaException {
+        String xml = prismContext.xmlSerializer().serialize(object);
+        PrismObject<T> parsed = prismContext.parseObject(xml);
+        for (ItemPath path : itemsToSkip) {
+            parsed.removeItem(path, Item.class);
+        }
+        return prismContext.xmlSerializer().serialize(parsed);
+    }
+
+    private <T extends ObjectType> String serializeFullObject(PrismObject<T> object,
+            Collection<ItemPath> itemsToSkip) throws SchemaException {
+        return prismContext.xmlSerializer().options(SerializationOptions.createItemsToSkip(itemsToSkip)).serialize(object);
+    }
+
+    private PrismObject<TaskType> createTaskWithResult() throws SchemaException {
+        TaskType task = new TaskType();
+        task.setOid(UUID.randomUUID().toString());
+        task.setName(createPoly("Task with a large result"));
+        task.setTaskIdentifier(UUID.randomUUID().toString());
+        task.setExecutionStatus(TaskExecutionStatusType.RUNNABLE);
+        task.setHandlerUri("http://midpoint.evolveum.com/xml/ns/public/model/synchronization/task/live-sync/handler-3");
+
+        OperationResult result = new OperationResult("test400");
+        for (int i = 0; i < 200; i++) {
+            OperationResult subresult = result.createSubresult("test400.operation" + i);
+            subresult.addParam("index", i);
+            subresult.recordSuccess();
+        }
+        result.computeStatus();
+        task.setResult(result.createOperationResultType());
+
+        PrismObject<TaskType> prism = task.asPrismObject();
+        prismContext.adopt(prism);
+        return prism;
+    }
+
 
     private ResourceType createResource(int resourceId) throws SchemaException, IOException {
         PrismObject<ResourceType> prism = prismContext.parseObject(new File(FOLDER_BASIC, "resource-opendj.xml"));
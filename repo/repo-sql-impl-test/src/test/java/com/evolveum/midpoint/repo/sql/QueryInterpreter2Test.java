@@ -176,7 +176,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .item(F_NAME).eqPoly("asdf", "asdf").matchingNorm().build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -201,7 +201,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .item(F_NAME).eqPoly("asdf", "asdf").matchingOrig().build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -226,7 +226,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .item(F_NAME).eqPoly("asdf", "asdf").build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -251,7 +251,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .item(UserType.F_ORGANIZATION).eqPoly("guľôčka v jamôčke").matchingNorm().build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.organization o\n" +
@@ -279,7 +279,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .item(UserType.F_ORGANIZATION).eqPoly("asdf", "asdf").matchingOrig().build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.organization o\n" +
@@ -304,7 +304,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .item(UserType.F_ORGANIZATION).eqPoly("asdf", "asdf").matchingStrict().build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.organization o\n" +
@@ -332,7 +332,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.organization o\n" +
@@ -361,7 +361,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.organization o\n" +
@@ -391,7 +391,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .item(UserType.F_ORGANIZATION).eqPoly("asdf", "asdf").matchingOrig()
                     .build();
             String expected = "select\n" +
-                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount\n" +
+                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.organization o2\n" +
@@ -418,7 +418,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     .build();
 
             String expected = "select\n" +
-                    "  t.oid, t.fullObject, t.stringsCount, t.longsCount, t.datesCount, t.referencesCount, t.polysCount, t.booleansCount\n" +
+                    "  t.oid, t.fullObject, t.stringsCount, t.longsCount, t.datesCount, t.referencesCount, t.polysCount, t.booleansCount, t.splitContainersCount\n" +
                     "from\n" +
                     "  RTask t\n" +
                     "    left join t.dependent d\n" +
@@ -467,7 +467,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  t.datesCount,\n" +
                     "  t.referencesCount,\n" +
                     "  t.polysCount,\n" +
-                    "  t.booleansCount\n" +
+                    "  t.booleansCount, t.splitContainersCount\n" +
                     "from\n" +
                     "  RTask t\n" +
                     "where\n" +
@@ -498,7 +498,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -529,7 +529,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 			String real = realQuery.getQuery().getQueryString();
 
             String expected = "select\n" +
-                    "  g.oid, g.fullObject, g.stringsCount, g.longsCount, g.datesCount, g.referencesCount, g.polysCount, g.booleansCount\n" +
+                    "  g.oid, g.fullObject, g.stringsCount, g.longsCount, g.datesCount, g.referencesCount, g.polysCount, g.booleansCount, g.splitContainersCount\n" +
                     "from\n" +
                     "  RGenericObject g\n" +
                     "    left join g.longs l with ( l.ownerType = :ownerType and l.itemId = :itemId )\n" +
@@ -560,7 +560,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 			String real = ((RQueryImpl) realQuery).getQuery().getQueryString();
 
             String expected = "select\n" +
-                    "  g.oid, g.fullObject, g.stringsCount, g.longsCount, g.datesCount, g.referencesCount, g.polysCount, g.booleansCount\n" +
+                    "  g.oid, g.fullObject, g.stringsCount, g.longsCount, g.datesCount, g.referencesCount, g.polysCount, g.booleansCount, g.splitContainersCount\n" +
                     "from\n" +
                     "  RGenericObject g\n" +
                     "    left join g.longs l with ( l.ownerType = :ownerType and l.itemId = :itemId )\n" +
@@ -590,7 +590,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
             String real = getInterpretedQuery2(session, ShadowType.class,
                     new File(TEST_DIR, "query-account-by-non-existing-attribute.xml"));
             String expected = "select\n" +
-                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount\n" +
+                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount, s.splitContainersCount\n" +
                     "from\n" +
                     "  RShadow s\n" +
                     "    left join s.strings s2 with ( s2.ownerType = :ownerType and 1=0 )\n" +
@@ -609,7 +609,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
             String real = getInterpretedQuery2(session, ShadowType.class,
                     new File(TEST_DIR, "query-account-by-attribute.xml"));
             String expected = "select\n" +
-                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount\n" +
+                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount, s.splitContainersCount\n" +
                     "from\n" +
                     "  RShadow s\n" +
                     "    left join s.strings s2 with ( s2.ownerType = :ownerType and s2.itemId = :itemId )\n" +
@@ -629,7 +629,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     getQuery(new File(TEST_DIR, "query-account-by-attribute-and-extension-value.xml"), ShadowType.class), false,
                     null);
             String expected = "select\n" +
-                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount\n" +
+                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount, s.splitContainersCount\n" +
                     "from\n" +
                     "  RShadow s\n" +
                     "    left join s.strings s2 with ( s2.ownerType = :ownerType and s2.itemId = :itemId )\n" +
@@ -672,7 +672,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     getQuery(new File(TEST_DIR, "query-or-composite.xml"), ShadowType.class), false, null);
 
             String expected = "select\n" +
-                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount\n" +
+                    "  s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount, s.splitContainersCount\n" +
                     "from\n" +
                     "  RShadow s\n" +
                     "    left join s.strings s2 with ( s2.ownerType = :ownerType and s2.itemId = :itemId )\n" +
@@ -733,7 +733,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -768,7 +768,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -805,7 +805,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -838,7 +838,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  s.datesCount,\n"
                     + "  s.referencesCount,\n"
                     + "  s.polysCount,\n"
-                    + "  s.booleansCount\n"
+                    + "  s.booleansCount, s.splitContainersCount\n"
                     + "from\n"
                     + "  RShadow s\n"
                     + "where\n"
@@ -876,7 +876,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -906,7 +906,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  u.datesCount,\n"
 					+ "  u.referencesCount,\n"
 					+ "  u.polysCount,\n"
-					+ "  u.booleansCount\n"
+					+ "  u.booleansCount, u.splitContainersCount\n"
 					+ "from\n"
 					+ "  RUser u\n"
 					+ "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n"
@@ -945,7 +945,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  u.datesCount,\n"
 					+ "  u.referencesCount,\n"
 					+ "  u.polysCount,\n"
-					+ "  u.booleansCount\n"
+					+ "  u.booleansCount, u.splitContainersCount\n"
 					+ "from\n"
 					+ "  RUser u\n"
 					+ "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n"
@@ -992,7 +992,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -1021,7 +1021,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -1046,7 +1046,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -1071,7 +1071,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -1098,7 +1098,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.employeeType e\n" +
@@ -1125,7 +1125,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  c.datesCount,\n" +
                     "  c.referencesCount,\n" +
                     "  c.polysCount,\n" +
-                    "  c.booleansCount\n" +
+                    "  c.booleansCount, c.splitContainersCount\n" +
                     "from\n" +
                     "  RConnector c\n" +
                     "where\n" +
@@ -1149,7 +1149,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  s.datesCount,\n" +
                     "  s.referencesCount,\n" +
                     "  s.polysCount,\n" +
-                    "  s.booleansCount\n" +
+                    "  s.booleansCount, s.splitContainersCount\n" +
                     "from\n" +
                     "  RShadow s\n" +
                     "    left join s.strings s2 with ( s2.ownerType = :ownerType and s2.itemId = :itemId )\n" +
@@ -1190,7 +1190,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.linkRef l\n" +
@@ -1220,7 +1220,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  u.datesCount,\n"
                     + "  u.referencesCount,\n"
                     + "  u.polysCount,\n"
-                    + "  u.booleansCount\n"
+                    + "  u.booleansCount, u.splitContainersCount\n"
                     + "from\n"
                     + "  RUser u\n"
                     + "    left join u.linkRef l\n"
@@ -1247,7 +1247,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  u.datesCount,\n"
                     + "  u.referencesCount,\n"
                     + "  u.polysCount,\n"
-                    + "  u.booleansCount\n"
+                    + "  u.booleansCount, u.splitContainersCount\n"
                     + "from\n"
                     + "  RUser u\n"
                     + "    left join u.linkRef l\n"
@@ -1287,7 +1287,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -1329,7 +1329,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -1375,7 +1375,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -1414,7 +1414,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -1451,7 +1451,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
             String real = getInterpretedQuery2(session, ObjectType.class, query);
 
             String expected = "select\n" +
-                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount\n" +
+                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.trigger t\n" +
@@ -1483,7 +1483,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
             String real = getInterpretedQuery2(session, ObjectType.class, query);
 
             String expected = "select\n" +
-                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount\n" +
+                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.trigger t\n" +
@@ -1512,7 +1512,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -1549,7 +1549,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  r.datesCount,\n" +
                     "  r.referencesCount,\n" +
                     "  r.polysCount,\n" +
-                    "  r.booleansCount\n" +
+                    "  r.booleansCount, r.splitContainersCount\n" +
                     "from\n" +
                     "  RRole r\n" +
                     "    left join r.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -1584,7 +1584,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  r.datesCount,\n" +
                     "  r.referencesCount,\n" +
                     "  r.polysCount,\n" +
-                    "  r.booleansCount\n" +
+                    "  r.booleansCount, r.splitContainersCount\n" +
                     "from\n" +
                     "  RRole r\n" +
                     "    left join r.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -1621,7 +1621,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
             String real = getInterpretedQuery2(session, UserType.class, query);
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -1653,7 +1653,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 
             // correct translation but the filter is wrong: we need to point to THE SAME timestamp -> i.e. ForValue should be used here
             String expected = "select\n" +
-                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount\n" +
+                    "  o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.trigger t\n" +
@@ -1754,7 +1754,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -1839,7 +1839,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  ROrg o\n" +
                     "where\n" +
@@ -1871,7 +1871,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 		            + "  u.datesCount,\n"
 		            + "  u.referencesCount,\n"
 		            + "  u.polysCount,\n"
-		            + "  u.booleansCount\n"
+		            + "  u.booleansCount, u.splitContainersCount\n"
 		            + "from\n"
 		            + "  RUser u\n"
 		            + "where\n"
@@ -1911,7 +1911,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 		            + "  u.datesCount,\n"
 		            + "  u.referencesCount,\n"
 		            + "  u.polysCount,\n"
-		            + "  u.booleansCount\n"
+		            + "  u.booleansCount, u.splitContainersCount\n"
 		            + "from\n"
 		            + "  RUser u\n"
 		            + "where\n"
@@ -1954,7 +1954,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  ROrg o\n" +
                     "where\n" +
@@ -1986,7 +1986,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  u.datesCount,\n"
 					+ "  u.referencesCount,\n"
 					+ "  u.polysCount,\n"
-					+ "  u.booleansCount\n"
+					+ "  u.booleansCount, u.splitContainersCount\n"
 					+ "from\n"
 					+ "  RUser u\n"
 					+ "where\n"
@@ -2025,7 +2025,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  u.datesCount,\n"
 					+ "  u.referencesCount,\n"
 					+ "  u.polysCount,\n"
-					+ "  u.booleansCount\n"
+					+ "  u.booleansCount, u.splitContainersCount\n"
 					+ "from\n"
 					+ "  RUser u\n"
 					+ "where\n"
@@ -2094,7 +2094,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  ROrg o\n" +
                     "where\n" +
@@ -2160,7 +2160,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -2207,7 +2207,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -2262,7 +2262,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -2332,7 +2332,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -2449,7 +2449,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -2516,7 +2516,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -2553,7 +2553,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -2579,7 +2579,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -2608,7 +2608,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  r.datesCount,\n" +
                     "  r.referencesCount,\n" +
                     "  r.polysCount,\n" +
-                    "  r.booleansCount\n" +
+                    "  r.booleansCount, r.splitContainersCount\n" +
                     "from\n" +
                     "  RReportOutput r\n" +
                     "where\n" +
@@ -2640,7 +2640,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +                       // TODO - why not RUser here? we unnecessarily join all of RObject subtypes...
                     "where\n" +
@@ -2702,7 +2702,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -2742,7 +2742,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.strings s with ( s.ownerType = :ownerType and s.itemId = :itemId )\n" +
@@ -2776,7 +2776,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.linkRef l\n" +
@@ -2819,7 +2819,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "    left join o.orgType o2\n" +
@@ -2866,7 +2866,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  o.datesCount,\n"
 					+ "  o.referencesCount,\n"
 					+ "  o.polysCount,\n"
-					+ "  o.booleansCount\n"
+					+ "  o.booleansCount, o.splitContainersCount\n"
 					+ "from\n"
 					+ "  RObject o\n"
 					+ "where\n"
@@ -2891,7 +2891,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                         .item(roleDef, RoleType.F_OWNER_REF).ref("c0c010c0-d34d-b33f-f00d-111111111111")
                     .build();
             String real = getInterpretedQuery2(session, ObjectType.class, query);
-            String expected = "select o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount\n"
+            String expected = "select o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount\n"
                     + "from\n"
                     + "  RObject o\n"
                     + "where\n"
@@ -2940,7 +2940,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  o.datesCount,\n"
                     + "  o.referencesCount,\n"
                     + "  o.polysCount,\n"
-                    + "  o.booleansCount\n"
+                    + "  o.booleansCount, o.splitContainersCount\n"
                     + "from\n"
                     + "  RObject o\n"
                     + "where\n"
@@ -3013,7 +3013,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  g.datesCount,\n" +
                     "  g.referencesCount,\n" +
                     "  g.polysCount,\n" +
-                    "  g.booleansCount\n" +
+                    "  g.booleansCount, g.splitContainersCount\n" +
                     "from\n" +
                     "  RGenericObject g\n" +
                     "    left join g.strings s with ( s.ownerType = :ownerType and s.itemId = :itemId )\n" +
@@ -3086,7 +3086,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  g.datesCount,\n" +
                     "  g.referencesCount,\n" +
                     "  g.polysCount,\n" +
-                    "  g.booleansCount\n" +
+                    "  g.booleansCount, g.splitContainersCount\n" +
                     "from\n" +
                     "  RGenericObject g\n" +
                     "    left join g.booleans b with ( b.ownerType = :ownerType and b.itemId = :itemId )\n" +
@@ -3141,7 +3141,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -3205,7 +3205,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  u.datesCount,\n"
 					+ "  u.referencesCount,\n"
 					+ "  u.polysCount,\n"
-					+ "  u.booleansCount\n"
+					+ "  u.booleansCount, u.splitContainersCount\n"
 					+ "from\n"
 					+ "  RUser u\n"
 					+ "    left join u.strings s with (\n"
@@ -3237,7 +3237,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  g.datesCount,\n"
 					+ "  g.referencesCount,\n"
 					+ "  g.polysCount,\n"
-					+ "  g.booleansCount\n"
+					+ "  g.booleansCount, g.splitContainersCount\n"
 					+ "from\n"
 					+ "  RGenericObject g\n"
 					+ "    left join g.references r with (\n"
@@ -3711,7 +3711,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.linkRef l\n" +
@@ -3750,7 +3750,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.linkRef l\n" +
@@ -3847,7 +3847,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "order by u.activation.administrativeStatus asc";
@@ -3956,7 +3956,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  u.datesCount,\n" +
                     "  u.referencesCount,\n" +
                     "  u.polysCount,\n" +
-                    "  u.booleansCount\n" +
+                    "  u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -4094,7 +4094,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 
             String real = getInterpretedQuery2(session, UserType.class, query);
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.assignments a with a.assignmentOwner = :assignmentOwner\n" +
@@ -4120,7 +4120,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 
             String real = getInterpretedQuery2(session, UserType.class, query);
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "where\n" +
@@ -4145,7 +4145,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 
             String real = getInterpretedQuery2(session, UserType.class, query);
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "    left join u.createApproverRef c\n" +
@@ -4177,7 +4177,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  u.datesCount,\n"
                     + "  u.referencesCount,\n"
                     + "  u.polysCount,\n"
-                    + "  u.booleansCount\n"
+                    + "  u.booleansCount, u.splitContainersCount\n"
                     + "from\n"
                     + "  RUser u\n"
                     + "    left join u.textInfoItems t\n"
@@ -4207,7 +4207,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  u.datesCount,\n"
                     + "  u.referencesCount,\n"
                     + "  u.polysCount,\n"
-                    + "  u.booleansCount\n"
+                    + "  u.booleansCount, u.splitContainersCount\n"
                     + "from\n"
                     + "  RUser u\n"
                     + "    left join u.textInfoItems t\n"
@@ -4237,7 +4237,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  u.datesCount,\n"
                     + "  u.referencesCount,\n"
                     + "  u.polysCount,\n"
-                    + "  u.booleansCount\n"
+                    + "  u.booleansCount, u.splitContainersCount\n"
                     + "from\n"
                     + "  RUser u\n"
                     + "    left join u.textInfoItems t\n"
@@ -4273,7 +4273,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  s.datesCount,\n"
                     + "  s.referencesCount,\n"
                     + "  s.polysCount,\n"
-                    + "  s.booleansCount\n"
+                    + "  s.booleansCount, s.splitContainersCount\n"
                     + "from\n"
                     + "  RShadow s\n"
                     + "where\n"
@@ -4309,7 +4309,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  s.datesCount,\n"
                     + "  s.referencesCount,\n"
                     + "  s.polysCount,\n"
-                    + "  s.booleansCount\n"
+                    + "  s.booleansCount, s.splitContainersCount\n"
                     + "from\n"
                     + "  RShadow s\n"
                     + "where\n"
@@ -4345,7 +4345,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  s.datesCount,\n"
                     + "  s.referencesCount,\n"
                     + "  s.polysCount,\n"
-                    + "  s.booleansCount\n"
+                    + "  s.booleansCount, s.splitContainersCount\n"
                     + "from\n"
                     + "  RShadow s\n"
                     + "where\n"
@@ -4380,7 +4380,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  t.datesCount,\n"
 					+ "  t.referencesCount,\n"
 					+ "  t.polysCount,\n"
-					+ "  t.booleansCount\n"
+					+ "  t.booleansCount, t.splitContainersCount\n"
 					+ "from\n"
 					+ "  RTask t\n"
 					+ "where\n"
@@ -4414,7 +4414,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  r.datesCount,\n"
 					+ "  r.referencesCount,\n"
 					+ "  r.polysCount,\n"
-					+ "  r.booleansCount\n"
+					+ "  r.booleansCount, r.splitContainersCount\n"
 					+ "from\n"
 					+ "  RResource r\n"
 					+ "where\n"
@@ -4441,7 +4441,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  r.datesCount,\n"
 					+ "  r.referencesCount,\n"
 					+ "  r.polysCount,\n"
-					+ "  r.booleansCount\n"
+					+ "  r.booleansCount, r.splitContainersCount\n"
 					+ "from\n"
 					+ "  RResource r\n"
 					+ "where\n"
@@ -4468,7 +4468,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  u.datesCount,\n"
                     + "  u.referencesCount,\n"
                     + "  u.polysCount,\n"
-                    + "  u.booleansCount\n"
+                    + "  u.booleansCount, u.splitContainersCount\n"
                     + "from\n"
                     + "  RUser u\n"
                     + "    left join u.linkRef l\n"
@@ -4495,7 +4495,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  u.datesCount,\n"
 					+ "  u.referencesCount,\n"
 					+ "  u.polysCount,\n"
-					+ "  u.booleansCount\n"
+					+ "  u.booleansCount, u.splitContainersCount\n"
 					+ "from\n"
 					+ "  RUser u\n"
 					+ "where\n"
@@ -4522,7 +4522,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  u.datesCount,\n"
                     + "  u.referencesCount,\n"
                     + "  u.polysCount,\n"
-                    + "  u.booleansCount\n"
+                    + "  u.booleansCount, u.splitContainersCount\n"
                     + "from\n"
                     + "  RUser u\n"
                     + "    left join u.employeeType e\n"
@@ -4551,7 +4551,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  r.datesCount,\n"
 					+ "  r.referencesCount,\n"
 					+ "  r.polysCount,\n"
-					+ "  r.booleansCount\n"
+					+ "  r.booleansCount, r.splitContainersCount\n"
 					+ "from\n"
 					+ "  RRole r\n"
 					+ "where\n"
@@ -4582,7 +4582,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  s.datesCount,\n"
                     + "  s.referencesCount,\n"
                     + "  s.polysCount,\n"
-                    + "  s.booleansCount\n"
+                    + "  s.booleansCount, s.splitContainersCount\n"
                     + "from\n"
                     + "  RShadow s\n"
                     + "where\n"
@@ -4610,7 +4610,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  s.datesCount,\n"
 					+ "  s.referencesCount,\n"
 					+ "  s.polysCount,\n"
-					+ "  s.booleansCount\n"
+					+ "  s.booleansCount, s.splitContainersCount\n"
 					+ "from\n"
 					+ "  RShadow s\n"
 					+ "    left join s.operationExecutions o\n"
@@ -4642,7 +4642,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  s.datesCount,\n"
 					+ "  s.referencesCount,\n"
 					+ "  s.polysCount,\n"
-					+ "  s.booleansCount\n"
+					+ "  s.booleansCount, s.splitContainersCount\n"
 					+ "from\n"
 					+ "  RShadow s\n"
 					+ "    left join s.operationExecutions o\n"
@@ -4680,7 +4680,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  s.datesCount,\n"
 					+ "  s.referencesCount,\n"
 					+ "  s.polysCount,\n"
-					+ "  s.booleansCount\n"
+					+ "  s.booleansCount, s.splitContainersCount\n"
 					+ "from\n"
 					+ "  RShadow s\n"
 					+ "    left join s.operationExecutions o\n"
@@ -4711,7 +4711,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
 					+ "  f.datesCount,\n"
 					+ "  f.referencesCount,\n"
 					+ "  f.polysCount,\n"
-					+ "  f.booleansCount\n"
+					+ "  f.booleansCount, f.splitContainersCount\n"
 					+ "from\n"
 					+ "  RFocus f\n"
 					+ "    left join f.personaRef p\n"
@@ -4742,7 +4742,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                         + "  u.datesCount,\n"
                         + "  u.referencesCount,\n"
                         + "  u.polysCount,\n"
-                        + "  u.booleansCount\n"
+                        + "  u.booleansCount, u.splitContainersCount\n"
                         + "from\n"
                         + "  RUser u\n"
                         + "order by u.nameCopy.orig asc\n";
@@ -4773,7 +4773,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                         + "  u.datesCount,\n"
                         + "  u.referencesCount,\n"
                         + "  u.polysCount,\n"
-                        + "  u.booleansCount\n"
+                        + "  u.booleansCount, u.splitContainersCount\n"
                         + "from\n"
                         + "  RUser u\n"
                         + "where\n"
@@ -4793,6 +4793,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                         + "  u.referencesCount,\n"
                         + "  u.polysCount,\n"
                         + "  u.booleansCount,\n"
+                        + "  u.splitContainersCount,\n"
                         + "  u.nameCopy.orig\n"
                         + "from\n"
                         + "  RUser u left join u.employeeType e where e like :e\n"
@@ -4829,7 +4830,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                         + "  u.datesCount,\n"
                         + "  u.referencesCount,\n"
                         + "  u.polysCount,\n"
-                        + "  u.booleansCount\n"
+                        + "  u.booleansCount, u.splitContainersCount\n"
                         + "from\n"
                         + "  RUser u\n"
                         + "where\n"
@@ -4855,6 +4856,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                         + "  u.referencesCount,\n"
                         + "  u.polysCount,\n"
                         + "  u.booleansCount,\n"
+                        + "  u.splitContainersCount,\n"
                         + "  u.nameCopy.orig\n"
                         + "from\n"
                         + "  RUser u\n"
@@ -4892,7 +4894,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  a.datesCount,\n"
                     + "  a.referencesCount,\n"
                     + "  a.polysCount,\n"
-                    + "  a.booleansCount\n"
+                    + "  a.booleansCount, a.splitContainersCount\n"
                     + "from\n"
                     + "  RAccessCertificationCampaign a\n"
                     + "where\n"
@@ -4926,7 +4928,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     + "  a.datesCount,\n"
                     + "  a.referencesCount,\n"
                     + "  a.polysCount,\n"
-                    + "  a.booleansCount\n"
+                    + "  a.booleansCount, a.splitContainersCount\n"
                     + "from\n"
                     + "  RAccessCertificationCampaign a\n"
                     + "where\n"
@@ -4986,7 +4988,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -5035,7 +5037,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
                     "  o.datesCount,\n" +
                     "  o.referencesCount,\n" +
                     "  o.polysCount,\n" +
-                    "  o.booleansCount\n" +
+                    "  o.booleansCount, o.splitContainersCount\n" +
                     "from\n" +
                     "  RObject o\n" +
                     "where\n" +
@@ -5164,7 +5166,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
             ObjectQuery query = QueryBuilder.queryFor(UserType.class, prismContext).asc(UserType.F_NAME).maxSize(20).build();
 
             String expected = "select\n" +
-                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount\n" +
+                    "  u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount\n" +
                     "from\n" +
                     "  RUser u\n" +
                     "order by\n" +
@@ -5185,7 +5187,7 @@ public class QueryInterpreter2Test extends BaseSQLRepoTest {
             ObjectQuery query = QueryBuilder.queryFor(RoleType.class, prismContext).asc(RoleType.F_NAME).maxSize(20).build();
 
             String expected = "select\n" +
-                    "  r.oid, r.fullObject, r.stringsCount, r.longsCount, r.datesCount, r.referencesCount, r.polysCount, r.booleansCount\n" +
+                    "  r.oid, r.fullObject, r.stringsCount, r.longsCount, r.datesCount, r.referencesCount, r.polysCount, r.booleansCount, r.splitContainersCount\n" +
                     "from\n" +
                     "  RRole r\n" +
                     "order by\n" +
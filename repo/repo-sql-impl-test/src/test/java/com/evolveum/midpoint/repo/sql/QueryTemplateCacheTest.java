@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql;
+
+import com.evolveum.midpoint.prism.Containerable;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
+import com.evolveum.midpoint.repo.sql.query2.QueryEngine2;
+import com.evolveum.midpoint.repo.sql.query2.QueryTemplateCache;
+import com.evolveum.midpoint.repo.sql.query2.RQueryImpl;
+import com.evolveum.midpoint.schema.RepositoryQueryDiagRequest;
+import com.evolveum.midpoint.schema.RepositoryQueryDiagResponse;
+import com.evolveum.midpoint.schema.constants.MidPointConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import javax.xml.namespace.QName;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Checks that queries created from cached templates are the same as freshly interpreted ones.
+ *
+ * @author mederly
+ */
+@ContextConfiguration(locations = {"../../../../../ctx-test.xml"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class QueryTemplateCacheTest extends BaseSQLRepoTest {
+
+	private static final QName ACCOUNT_OBJECT_CLASS = new QName(MidPointConstants.NS_RI, "AccountObjectClass");
+
+	@Test
+	public void test100UserByEmployeeNumber() throws Exception {
+		System.out.println("===[ test100UserByEmployeeNumber ]===");
+		checkQueries(UserType.class, 3, i -> QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_EMPLOYEE_NUMBER).eq("E" + i)
+				.build());
+	}
+
+	@Test
+	public void test110UserByCostCenterAndEmailAddress() throws Exception {
+		System.out.println("===[ test110UserByCostCenterAndEmailAddress ]===");
+		checkQueries(UserType.class, 3, i -> QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_COST_CENTER).eq("CC" + i)
+				.and().item(UserType.F_EMAIL_ADDRESS).eq("user" + i + "@example.com")
+				.asc(UserType.F_NAME)
+				.offset(i).maxSize(10 + i)
+				.build());
+	}
+
+	@Test
+	public void test120ShadowByResourceAndKind() throws Exception {
+		System.out.println("===[ test120ShadowByResourceAndKind ]===");
+		checkQueries(ShadowType.class, 3, i -> QueryBuilder.queryFor(ShadowType.class, prismContext)
+				.item(ShadowType.F_RESOURCE_REF).ref("10000000-0000-0000-0000-000000000004")
+				.and().item(ShadowType.F_OBJECT_CLASS).eq(ACCOUNT_OBJECT_CLASS)
+				.and().item(ShadowType.F_KIND).eq(ShadowKindType.ACCOUNT)
+				.and().item(ShadowType.F_INTENT).eq("intent" + i)
+				.build());
+	}
+
+	@Test
+	public void test200Benchmark() throws Exception {
+		System.out.println("===[ test200Benchmark ]===");
+		final int ITERATIONS = 2000;
+		Function<Integer, ObjectQuery> queryProducer = i -> QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_COST_CENTER).eq("CC" + i)
+				.and().item(UserType.F_EMAIL_ADDRESS).eq("user" + i + "@example.com")
+				.and().item(UserType.F_EMPLOYEE_NUMBER).eq("E" + i)
+				.asc(UserType.F_NAME)
+				.maxSize(100)
+				.build();
+
+		QueryTemplateCache cache = new QueryTemplateCache(100);
+		long uncached = interpret(new QueryEngine2(baseHelper.getConfiguration(), extItemDictionary, prismContext),
+				queryProducer, ITERATIONS);
+		long cached = interpret(new QueryEngine2(baseHelper.getConfiguration(), extItemDictionary, prismContext, cache),
+				queryProducer, ITERATIONS);
+		System.out.println(ITERATIONS + " interpretations without cache: " + uncached / 1000000 + " ms, with cache: "
+				+ cached / 1000000 + " ms; " + cache);
+		assertEquals("Wrong # of cache hits", ITERATIONS - 1, cache.getHits());
+	}
+
+	/**
+	 * Query diagnostics must report parameter values of the query being diagnosed, even if its shape is cached.
+	 */
+	@Test
+	public void test300DiagnosticsWithCachedShape() throws Exception {
+		System.out.println("===[ test300DiagnosticsWithCachedShape ]===");
+		OperationResult result = new OperationResult("test300DiagnosticsWithCachedShape");
+		Function<String, ObjectQuery> queryProducer = employeeNumber -> QueryBuilder.queryFor(UserType.class, prismContext)
+				.item(UserType.F_EMPLOYEE_NUMBER).eq(employeeNumber)
+				.build();
+
+		// the shape gets into the template cache by a regular search
+		repositoryService.searchObjects(UserType.class, queryProducer.apply("D1"), null, result);
+
+		for (String employeeNumber : new String[] { "D2", "D3" }) {
+			RepositoryQueryDiagRequest request = new RepositoryQueryDiagRequest();
+			request.setType(UserType.class);
+			request.setQuery(queryProducer.apply(employeeNumber));
+			request.setTranslateOnly(true);
+			RepositoryQueryDiagResponse response = repositoryService.executeQueryDiagnostics(request, result);
+
+			Set<Object> values = new HashSet<>();
+			for (RepositoryQueryDiagResponse.ParameterValue parameterValue : response.getImplementationLevelQueryParameters().values()) {
+				values.add(parameterValue.value);
+			}
+			System.out.println("Query:\n" + response.getImplementationLevelQuery() + "\nparameters: " + values);
+			assertTrue("Parameter value " + employeeNumber + " was not reported: " + values, values.contains(employeeNumber));
+		}
+	}
+
+	private long interpret(QueryEngine2 engine, Function<Integer, ObjectQuery> queryProducer, int iterations) throws Exception {
+		Session session = open();
+		try {
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++) {
+				engine.interpret(queryProducer.apply(i), UserType.class, null, false, session);
+			}
+			return System.nanoTime() - start;
+		} finally {
+			close(session);
+		}
+	}
+
+	private <T extends Containerable> void checkQueries(Class<T> type, int count, Function<Integer, ObjectQuery> queryProducer)
+			throws Exception {
+		QueryTemplateCache cache = new QueryTemplateCache(100);
+		QueryEngine2 plainEngine = new QueryEngine2(baseHelper.getConfiguration(), extItemDictionary, prismContext);
+		QueryEngine2 cachingEngine = new QueryEngine2(baseHelper.getConfiguration(), extItemDictionary, prismContext, cache);
+		Session session = open();
+		try {
+			for (int i = 0; i < count; i++) {
+				ObjectQuery query = queryProducer.apply(i);
+				Query expected = ((RQueryImpl) plainEngine.interpret(query, type, null, false, session)).getQuery();
+				Query real = ((RQueryImpl) cachingEngine.interpret(query, type, null, false, session)).getQuery();
+				System.out.println("Query #" + i + ":\n" + real.getQueryString() + "\nparameters: " + getParameters(real));
+				assertEquals("Wrong HQL text for query #" + i, expected.getQueryString(), real.getQueryString());
+				assertEquals("Wrong parameters for query #" + i, getParameters(expected), getParameters(real));
+				assertEquals("Wrong first result for query #" + i, expected.getFirstResult(), real.getFirstResult());
+				assertEquals("Wrong max results for query #" + i, expected.getMaxResults(), real.getMaxResults());
+				real.list();        // just to check the DB accepts it
+			}
+		} finally {
+			close(session);
+		}
+		System.out.println(cache);
+		assertEquals("Wrong # of cache misses", 1, cache.getMisses());
+		assertEquals("Wrong # of cache hits", count - 1, cache.getHits());
+	}
+
+	private Map<String, Object> getParameters(Query query) {
+		Map<String, Object> rv = new TreeMap<>();
+		for (Object name : query.getParameterMetadata().getNamedParameterNames()) {
+			rv.put((String) name, query.getParameterValue((String) name));
+		}
+		return rv;
+	}
+}
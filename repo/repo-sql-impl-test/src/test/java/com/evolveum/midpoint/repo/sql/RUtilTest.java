@@ -1,5 +1,8 @@
 package com.evolveum.midpoint.repo.sql;
 
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.xnode.RootXNode;
+import com.evolveum.midpoint.repo.sql.util.BinaryXNodeCodec;
 import com.evolveum.midpoint.repo.sql.util.RUtil;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
@@ -23,6 +26,8 @@ public class RUtilTest extends BaseSQLRepoTest {
     private static final Trace LOGGER = TraceManager.getTrace(RUtilTest.class);
 
     private static final String USER_BIG = "user-big.xml";
+    private static final String ACCOUNT_FULL = "account-full.xml";
+    private static final String RESOURCE_OPENDJ = "resource-opendj.xml";
     
     @Test
     public void test100XmlToByteArrayCompressionEnabled() throws Exception {
@@ -64,6 +69,40 @@ public class RUtilTest extends BaseSQLRepoTest {
         AssertJUnit.assertEquals(xml, xmlNew);
     }
 
+    @Test
+    public void test300BinaryFullObjectRoundTrip() throws Exception {
+        for (String fileName : new String[] { USER_BIG, ACCOUNT_FULL, RESOURCE_OPENDJ }) {
+            PrismObject<?> object = prismContext.parseObject(new File(BaseSQLRepoTest.FOLDER_BASIC, fileName));
+            String xml = prismContext.xmlSerializer().serialize(object);
+            RootXNode xnode = prismContext.xnodeSerializer().serialize(object);
+
+            for (boolean compressed : new boolean[] { false, true }) {
+                byte[] array = BinaryXNodeCodec.encode(xnode, compressed);
+                LOGGER.info("{} (compressed: {}): xml {} bytes, binary {} bytes", fileName, compressed,
+                        RUtil.getByteArrayFromXml(xml, compressed).length, array.length);
+                AssertJUnit.assertTrue("Not recognized as binary", BinaryXNodeCodec.isBinary(array));
+
+                PrismObject<?> parsed = RUtil.createFullObjectParser(array, compressed, prismContext).parse();
+                AssertJUnit.assertTrue("Objects differ after binary round trip of " + fileName + ":\n"
+                        + object.diff((PrismObject) parsed), object.equivalent(parsed));
+            }
+        }
+    }
+
+    @Test
+    public void test310LegacyFullObjectStillReadable() throws Exception {
+        PrismObject<?> object = prismContext.parseObject(new File(BaseSQLRepoTest.FOLDER_BASIC, USER_BIG));
+        String xml = prismContext.xmlSerializer().serialize(object);
+
+        for (boolean compressed : new boolean[] { false, true }) {
+            byte[] array = RUtil.getByteArrayFromXml(xml, compressed);
+            AssertJUnit.assertFalse("XML recognized as binary", BinaryXNodeCodec.isBinary(array));
+
+            PrismObject<?> parsed = RUtil.createFullObjectParser(array, compressed, prismContext).parse();
+            AssertJUnit.assertTrue("Objects differ", object.equivalent(parsed));
+        }
+    }
+
     public double getCompressRatio(double xmlSize, double byteSize) {
         return 100 - (byteSize * 100 / xmlSize);
     }
@@ -17,10 +17,20 @@
 package com.evolveum.midpoint.repo.sql;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.builder.DeltaBuilder;
+import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.OrderDirection;
+import com.evolveum.midpoint.prism.query.builder.QueryBuilder;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
 import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
@@ -28,6 +38,7 @@ import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.IterationMethodType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 import org.springframework.test.annotation.DirtiesContext;
@@ -35,8 +46,13 @@ import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import javax.xml.namespace.QName;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
@@ -247,4 +263,141 @@ public class SearchIterativeTest extends BaseSQLRepoTest {
         int count = repositoryService.countObjects(UserType.class, null, null, result);
         assertEquals("Wrong # of objects after operation", COUNT, count);
     }
+
+    @Test
+    public void test140SimplePagingOrderedByName() throws Exception {
+        OperationResult result = new OperationResult("test140SimplePagingOrderedByName");
+
+        ObjectQuery query = QueryBuilder.queryFor(UserType.class, prismContext)
+                .desc(UserType.F_NAME)
+                .build();
+        List<PrismObject<UserType>> objects = searchBySimplePaging(query, result);
+
+        assertEquals("Wrong # of objects", COUNT, objects.size());
+        assertOidsUnique(objects);
+        for (int i = 1; i < objects.size(); i++) {
+            String previous = objects.get(i - 1).asObjectable().getName().getOrig();
+            String current = objects.get(i).asObjectable().getName().getOrig();
+            assertTrue("Wrong order: " + previous + " before " + current, previous.compareTo(current) > 0);
+        }
+    }
+
+    @Test
+    public void test150SimplePagingOrderedByNullableItem() throws Exception {
+        OperationResult result = new OperationResult("test150SimplePagingOrderedByNullableItem");
+
+        // only some users have locality; the rest (null values) must be returned as well, exactly once
+        List<PrismObject<UserType>> all = repositoryService.searchObjects(UserType.class, null, null, result);
+        for (int i = 0; i < all.size(); i += 3) {
+            List<ItemDelta<?, ?>> modifications = DeltaBuilder.deltaFor(UserType.class, prismContext)
+                    .item(UserType.F_LOCALITY).replace(new PolyString("loc-" + (i % 7)))
+                    .asItemDeltas();
+            repositoryService.modifyObject(UserType.class, all.get(i).getOid(), modifications, result);
+        }
+
+        for (OrderDirection direction : OrderDirection.values()) {
+            ObjectQuery query = new ObjectQuery();
+            query.setPaging(ObjectPaging.createPaging(new ItemPath(UserType.F_LOCALITY), direction));
+            List<PrismObject<UserType>> objects = searchBySimplePaging(query, result);
+
+            assertEquals("Wrong # of objects for " + direction, COUNT, objects.size());
+            assertOidsUnique(objects);
+        }
+    }
+
+    @Test
+    public void test160SimplePagingMaxSize() throws Exception {
+        OperationResult result = new OperationResult("test160SimplePagingMaxSize");
+
+        ObjectQuery query = QueryBuilder.queryFor(UserType.class, prismContext)
+                .asc(UserType.F_NAME)
+                .maxSize(7)
+                .build();
+        List<PrismObject<UserType>> objects = searchBySimplePaging(query, result);
+
+        assertEquals("Wrong # of objects", 7, objects.size());
+        assertOidsUnique(objects);
+    }
+
+    @Test
+    public void test165SimplePagingOrderedByUnknownItem() throws Exception {
+        OperationResult result = new OperationResult("test165SimplePagingOrderedByUnknownItem");
+
+        // unknown ordering cannot be used for keyset paging; offset-based paging (ignoring the ordering) is used
+        ObjectQuery query = new ObjectQuery();
+        query.setPaging(ObjectPaging.createPaging(new ItemPath(new QName(SchemaConstants.NS_C, "nonExistingItem")),
+                OrderDirection.ASCENDING));
+        List<PrismObject<UserType>> objects = searchBySimplePaging(query, result);
+
+        assertEquals("Wrong # of objects", repositoryService.countObjects(UserType.class, null, null, result), objects.size());
+        assertOidsUnique(objects);
+    }
+
+    @Test
+    public void test170ParallelPaging() throws Exception {
+        OperationResult result = new OperationResult("test170ParallelPaging");
+
+        // OIDs at and around the range boundaries (existing users all fall into the last range)
+        for (String oid : Arrays.asList("0000", "3fff-ff", "4000", "4000-00", "7fff", "c000-01", "ffff-ff")) {
+            UserType user = new UserType(prismContext);
+            user.setOid(oid);
+            user.setName(new PolyStringType("parallel-" + oid));
+            repositoryService.addObject(user.asPrismObject(), null, result);
+        }
+        int expected = repositoryService.countObjects(UserType.class, null, null, result);
+
+        List<PrismObject<UserType>> objects = Collections.synchronizedList(new ArrayList<>());
+        ResultHandler<UserType> handler = (object, parentResult) -> {
+            objects.add(object);
+            return true;
+        };
+        repositoryService.searchObjectsIterative(UserType.class, null, handler,
+                SelectorOptions.createCollection(GetOperationOptions.createIterationMethod(IterationMethodType.PARALLEL_PAGING)),
+                true, result);
+        result.recomputeStatus();
+        assertTrue(result.isSuccess());
+
+        assertEquals("Wrong # of objects", expected, objects.size());
+        assertOidsUnique(objects);
+    }
+
+    @Test
+    public void test180ParallelPagingStopped() throws Exception {
+        OperationResult result = new OperationResult("test180ParallelPagingStopped");
+
+        List<PrismObject<UserType>> objects = new ArrayList<>();
+        ResultHandler<UserType> handler = (object, parentResult) -> {
+            objects.add(object);
+            return objects.size() < 10;
+        };
+        repositoryService.searchObjectsIterative(UserType.class, null, handler,
+                SelectorOptions.createCollection(GetOperationOptions.createIterationMethod(IterationMethodType.PARALLEL_PAGING)),
+                true, result);
+        result.recomputeStatus();
+        assertTrue(result.isSuccess());
+
+        assertEquals("Wrong # of objects", 10, objects.size());
+        assertOidsUnique(objects);
+    }
+
+    private List<PrismObject<UserType>> searchBySimplePaging(ObjectQuery query, OperationResult result) throws SchemaException {
+        List<PrismObject<UserType>> objects = new ArrayList<>();
+        ResultHandler<UserType> handler = (object, parentResult) -> {
+            objects.add(object);
+            return true;
+        };
+        repositoryService.searchObjectsIterative(UserType.class, query, handler,
+                SelectorOptions.createCollection(GetOperationOptions.createIterationMethod(IterationMethodType.SIMPLE_PAGING)),
+                false, result);
+        result.recomputeStatus();
+        assertTrue(result.isSuccess());
+        return objects;
+    }
+
+    private void assertOidsUnique(List<PrismObject<UserType>> objects) {
+        Set<String> oids = new HashSet<>();
+        for (PrismObject<UserType> object : objects) {
+            assertTrue("Object " + object.getOid() + " was processed more than once", oids.add(object.getOid()));
+        }
+    }
 }
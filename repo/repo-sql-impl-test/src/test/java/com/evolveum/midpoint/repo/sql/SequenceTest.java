@@ -17,6 +17,9 @@
 package com.evolveum.midpoint.repo.sql;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.builder.DeltaBuilder;
+import com.evolveum.midpoint.repo.api.RepoAddOptions;
+import com.evolveum.midpoint.repo.sql.helpers.SequenceHelper;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
@@ -28,6 +31,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.SequenceType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
 import org.hibernate.Session;
 import org.hibernate.jdbc.Work;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.testng.annotations.Test;
@@ -57,6 +61,9 @@ public class SequenceTest extends BaseSQLRepoTest {
 
     private static final int STOP_TIMEOUT = 10000;
 
+    @Autowired
+    private SequenceHelper sequenceHelper;
+
     @Test
     public void test001_OneThread() throws Exception {
 
@@ -198,8 +205,117 @@ public class SequenceTest extends BaseSQLRepoTest {
         concurrencyUniversal("Test033", "sequence-unbound.xml", 10000L, mts, true);
     }
 
+    @Test
+    public void test040_TenThreadsWithLocalPools() throws Exception {
+
+        WorkerThread[] mts = new WorkerThread[10];
+        for (int i = 0; i < mts.length; i++) {
+            mts[i] = new WorkerThread(i + 1);
+        }
+
+        baseHelper.getConfiguration().setSequenceBlockSize(10);
+        try {
+            concurrencyUniversal("Test040", "sequence-unbound.xml", 10000L, mts, true, true);
+        } finally {
+            baseHelper.getConfiguration().setSequenceBlockSize(1);
+        }
+    }
+
+    @Test
+    public void test041_LocalPoolReturnedOnShutdown() throws Exception {
+        OperationResult result = new OperationResult("test041_LocalPoolReturnedOnShutdown");
+        PrismObject<SequenceType> sequence = prismContext.parseObject(new File(TEST_DIR + "sequence-unbound.xml"));
+        sequence.asObjectable().setName(new PolyStringType("Test041"));
+        String oid = repositoryService.addObject(sequence, null, result);
+
+        baseHelper.getConfiguration().setSequenceBlockSize(10);
+        try {
+            assertEquals(0L, repositoryService.advanceSequence(oid, result));
+            assertEquals(1L, repositoryService.advanceSequence(oid, result));
+            assertEquals(2L, repositoryService.advanceSequence(oid, result));
+
+            SequenceType afterFirstBlock = repositoryService.getObject(SequenceType.class, oid, null, result).asObjectable();
+            assertEquals("Wrong counter after first block", (Long) 10L, afterFirstBlock.getCounter());
+            assertEquals("Unexpected unused values", 0, afterFirstBlock.getUnusedValues().size());
+
+            sequenceHelper.returnLocalPoolsToSequences();       // as on shutdown
+
+            SequenceType afterReturn = repositoryService.getObject(SequenceType.class, oid, null, result).asObjectable();
+            assertEquals("Wrong counter after return", (Long) 10L, afterReturn.getCounter());
+            assertEquals("Wrong unused values", Arrays.asList(3L, 4L, 5L, 6L, 7L, 8L, 9L), afterReturn.getUnusedValues());
+
+            assertEquals(3L, repositoryService.advanceSequence(oid, result));
+            assertEquals(4L, repositoryService.advanceSequence(oid, result));
+        } finally {
+            baseHelper.getConfiguration().setSequenceBlockSize(1);
+            sequenceHelper.invalidateLocalPool(oid);
+        }
+    }
+
+    @Test
+    public void test042_LocalPoolDroppedOnModify() throws Exception {
+        OperationResult result = new OperationResult("test042_LocalPoolDroppedOnModify");
+        PrismObject<SequenceType> sequence = prismContext.parseObject(new File(TEST_DIR + "sequence-unbound.xml"));
+        sequence.asObjectable().setName(new PolyStringType("Test042"));
+        String oid = repositoryService.addObject(sequence, null, result);
+
+        baseHelper.getConfiguration().setSequenceBlockSize(10);
+        try {
+            assertEquals(0L, repositoryService.advanceSequence(oid, result));
+
+            repositoryService.modifyObject(SequenceType.class, oid,
+                    DeltaBuilder.deltaFor(SequenceType.class, prismContext)
+                            .item(SequenceType.F_COUNTER).replace(100L)
+                            .asItemDeltas(),
+                    result);
+            assertEquals("Value from the old local pool", 100L, repositoryService.advanceSequence(oid, result));
+
+            PrismObject<SequenceType> overwriting = prismContext.parseObject(new File(TEST_DIR + "sequence-unbound.xml"));
+            overwriting.asObjectable().setName(new PolyStringType("Test042"));
+            overwriting.setOid(oid);
+            overwriting.asObjectable().setCounter(200L);
+            repositoryService.addObject(overwriting, RepoAddOptions.createOverwrite(), result);
+            assertEquals("Value from the old local pool", 200L, repositoryService.advanceSequence(oid, result));
+        } finally {
+            baseHelper.getConfiguration().setSequenceBlockSize(1);
+            sequenceHelper.invalidateLocalPool(oid);
+        }
+    }
+
+    @Test
+    public void test043_RewindingBlockWithoutDuplicates() throws Exception {
+        OperationResult result = new OperationResult("test043_RewindingBlockWithoutDuplicates");
+        PrismObject<SequenceType> sequence = prismContext.parseObject(new File(TEST_DIR + "sequence-bound-returned-wrapped.xml"));
+        sequence.asObjectable().setName(new PolyStringType("Test043"));
+        sequence.asObjectable().setMaxCounter(2L);
+        String oid = repositoryService.addObject(sequence, null, result);
+
+        baseHelper.getConfiguration().setSequenceBlockSize(10);
+        try {
+            List<Long> block = sequenceHelper.advanceSequenceAttempt(oid, 10, result);
+            assertEquals("Wrong block", Arrays.asList(0L, 1L, 2L), block);
+
+            assertEquals(0L, repositoryService.advanceSequence(oid, result));
+            assertEquals(1L, repositoryService.advanceSequence(oid, result));
+            assertEquals(2L, repositoryService.advanceSequence(oid, result));
+            assertEquals(0L, repositoryService.advanceSequence(oid, result));
+        } finally {
+            baseHelper.getConfiguration().setSequenceBlockSize(1);
+            sequenceHelper.invalidateLocalPool(oid);
+        }
+    }
+
 
     private void concurrencyUniversal(String name, String sequenceFileName, long duration, WorkerThread[] workerThreads, boolean alwaysOrder) throws Exception {
+        concurrencyUniversal(name, sequenceFileName, duration, workerThreads, alwaysOrder, false);
+    }
+
+    /**
+     * @param localPools if true, values left in node-local pools are returned to the sequence at the end, and
+     *                   they are counted (along with other unused values) as given out, to check there are no gaps
+     */
+    private void concurrencyUniversal(String name, String sequenceFileName, long duration, WorkerThread[] workerThreads,
+            boolean alwaysOrder, boolean localPools) throws Exception {
 
         Session session = getFactory().openSession();
         session.doWork(new Work() {
@@ -213,6 +329,10 @@ public class SequenceTest extends BaseSQLRepoTest {
         final File file = new File(TEST_DIR + sequenceFileName);
         PrismObject<SequenceType> sequence = prismContext.parseObject(file);
         sequence.asObjectable().setName(new PolyStringType(name));
+        if (localPools) {
+            // each thread can leave up to (block size - 1) values in the pool
+            sequence.asObjectable().setMaxUnusedValues(10000);
+        }
 
         OperationResult result = new OperationResult("Concurrency Test");
         String oid = repositoryService.addObject(sequence, null, result);
@@ -262,6 +382,12 @@ public class SequenceTest extends BaseSQLRepoTest {
         for (WorkerThread t : workerThreads) {
             allValues.addAll(t.values);
         }
+        if (localPools) {
+            sequenceHelper.returnLocalPoolsToSequences();
+            SequenceType sequenceAfter = repositoryService.getObject(SequenceType.class, oid, null, result).asObjectable();
+            LOGGER.info("Values returned from local pools: {}", sequenceAfter.getUnusedValues());
+            allValues.addAll(sequenceAfter.getUnusedValues());
+        }
         if (alwaysOrder || workerThreads.length > 1) {
             Collections.sort(allValues);
         }
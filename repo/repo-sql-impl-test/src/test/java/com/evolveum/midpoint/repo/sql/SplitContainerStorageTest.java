@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql;
+
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.RetrieveOption;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+import org.hibernate.Session;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+
+/**
+ * Tests storing assignments and inducements outside the full object (splitContainerStorage).
+ *
+ * @author mederly
+ */
+@ContextConfiguration(locations = {"../../../../../ctx-test.xml"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class SplitContainerStorageTest extends BaseSQLRepoTest {
+
+    private static final String ROLE_OID = "8a1d5e7c-3b2f-4a65-9c1e-0d7f4b2a6e31";
+
+    private String userOid;
+    private String roleOid;
+    private long newAssignmentId;
+
+    @AfterClass
+    public void switchOff() {
+        baseHelper.getConfiguration().setSplitContainerStorage(false);
+    }
+
+    @Test
+    public void test100AddUser() throws Exception {
+        OperationResult result = createResult("test100AddUser");
+        baseHelper.getConfiguration().setSplitContainerStorage(true);
+
+        UserType user = new UserType(prismContext).name("split-user");
+        for (int i = 1; i <= 3; i++) {
+            user.getAssignment().add(new AssignmentType(prismContext)
+                    .description("assignment " + i)
+                    .targetRef(ROLE_OID, RoleType.COMPLEX_TYPE));
+        }
+        userOid = repositoryService.addObject(user.asPrismObject(), null, result);
+        assertSuccess(result);
+
+        assertSplitContainersCount(userOid, 3);
+        assertAssignments(userOid, "assignment 1", "assignment 2", "assignment 3");
+    }
+
+    @Test
+    public void test110GetWithoutAssignments() throws Exception {
+        OperationResult result = createResult("test110GetWithoutAssignments");
+
+        Collection<SelectorOptions<GetOperationOptions>> options = SelectorOptions.createCollection(
+                new ItemPath(UserType.F_ASSIGNMENT), GetOperationOptions.createRetrieve(RetrieveOption.EXCLUDE));
+        UserType user = repositoryService.getObject(UserType.class, userOid, options, result).asObjectable();
+        assertSuccess(result);
+
+        assertEquals("Wrong # of assignments", 0, user.getAssignment().size());
+        assertEquals("Wrong name", "split-user", user.getName().getOrig());
+    }
+
+    @Test
+    public void test120ModifyOneAssignment() throws Exception {
+        OperationResult result = createResult("test120ModifyOneAssignment");
+
+        List<ItemDelta<?, ?>> deltas = deltaFor(UserType.class)
+                .item(new ItemPath(UserType.F_ASSIGNMENT, 2L, AssignmentType.F_DESCRIPTION)).replace("assignment 2 changed")
+                .asItemDeltas();
+        repositoryService.modifyObject(UserType.class, userOid, deltas, result);
+        assertSuccess(result);
+
+        assertSplitContainersCount(userOid, 3);
+        assertAssignments(userOid, "assignment 1", "assignment 2 changed", "assignment 3");
+    }
+
+    @Test
+    public void test130AddAndDeleteAssignment() throws Exception {
+        OperationResult result = createResult("test130AddAndDeleteAssignment");
+
+        AssignmentType toDelete = new AssignmentType(prismContext);
+        toDelete.setId(1L);
+        List<ItemDelta<?, ?>> deltas = deltaFor(UserType.class)
+                .item(UserType.F_ASSIGNMENT)
+                    .add(new AssignmentType(prismContext).description("assignment 4").asPrismContainerValue())
+                    .delete(toDelete.asPrismContainerValue())
+                .item(UserType.F_FULL_NAME).replace(PolyString.fromOrig("Split User"))
+                .asItemDeltas();
+        repositoryService.modifyObject(UserType.class, userOid, deltas, result);
+        assertSuccess(result);
+
+        assertSplitContainersCount(userOid, 3);
+        UserType user = assertAssignments(userOid, "assignment 2 changed", "assignment 3", "assignment 4");
+        assertEquals("Wrong full name", "Split User", user.getFullName().getOrig());
+        newAssignmentId = user.getAssignment().get(2).getId();
+    }
+
+    @Test
+    public void test200AddRoleAndModifyInducement() throws Exception {
+        OperationResult result = createResult("test200AddRoleAndModifyInducement");
+
+        RoleType role = new RoleType(prismContext).name("split-role");
+        role.getAssignment().add(new AssignmentType(prismContext).description("role assignment"));
+        for (int i = 1; i <= 2; i++) {
+            role.getInducement().add(new AssignmentType(prismContext).description("inducement " + i));
+        }
+        roleOid = repositoryService.addObject(role.asPrismObject(), null, result);
+        assertSuccess(result);
+        assertSplitContainersCount(roleOid, 3);
+
+        long inducementId = getObject(RoleType.class, roleOid).asObjectable().getInducement().get(1).getId();
+        List<ItemDelta<?, ?>> deltas = deltaFor(RoleType.class)
+                .item(new ItemPath(RoleType.F_INDUCEMENT, inducementId, AssignmentType.F_DESCRIPTION)).replace("inducement 2 changed")
+                .asItemDeltas();
+        repositoryService.modifyObject(RoleType.class, roleOid, deltas, result);
+        assertSuccess(result);
+
+        RoleType roleAfter = getObject(RoleType.class, roleOid).asObjectable();
+        assertEquals("Wrong # of assignments", 1, roleAfter.getAssignment().size());
+        assertEquals("Wrong assignment", "role assignment", roleAfter.getAssignment().get(0).getDescription());
+        assertEquals("Wrong # of inducements", 2, roleAfter.getInducement().size());
+        assertEquals("Wrong inducement 1", "inducement 1", roleAfter.getInducement().get(0).getDescription());
+        assertEquals("Wrong inducement 2", "inducement 2 changed", roleAfter.getInducement().get(1).getDescription());
+    }
+
+    @Test
+    public void test300SwitchOff() throws Exception {
+        OperationResult result = createResult("test300SwitchOff");
+        baseHelper.getConfiguration().setSplitContainerStorage(false);
+
+        // still readable
+        assertAssignments(userOid, "assignment 2 changed", "assignment 3", "assignment 4");
+
+        List<ItemDelta<?, ?>> deltas = deltaFor(UserType.class)
+                .item(new ItemPath(UserType.F_ASSIGNMENT, 3L, AssignmentType.F_DESCRIPTION)).replace("assignment 3 changed")
+                .asItemDeltas();
+        repositoryService.modifyObject(UserType.class, userOid, deltas, result);
+        assertSuccess(result);
+
+        // stored in full object again
+        assertSplitContainersCount(userOid, null);
+        assertAssignments(userOid, "assignment 2 changed", "assignment 3 changed", "assignment 4");
+    }
+
+    @Test
+    public void test310SwitchOnAgain() throws Exception {
+        OperationResult result = createResult("test310SwitchOnAgain");
+        baseHelper.getConfiguration().setSplitContainerStorage(true);
+
+        List<ItemDelta<?, ?>> deltas = deltaFor(UserType.class)
+                .item(new ItemPath(UserType.F_ASSIGNMENT, newAssignmentId, AssignmentType.F_DESCRIPTION)).replace("assignment 4 changed")
+                .asItemDeltas();
+        repositoryService.modifyObject(UserType.class, userOid, deltas, result);
+        assertSuccess(result);
+
+        // all the values are written, not only the modified one
+        assertSplitContainersCount(userOid, 3);
+        assertAssignments(userOid, "assignment 2 changed", "assignment 3 changed", "assignment 4 changed");
+    }
+
+    private UserType assertAssignments(String oid, String... descriptions) throws Exception {
+        UserType user = getObject(UserType.class, oid).asObjectable();
+        assertEquals("Wrong # of assignments", descriptions.length, user.getAssignment().size());
+        for (int i = 0; i < descriptions.length; i++) {
+            AssignmentType assignment = user.getAssignment().get(i);
+            assertNotNull("No ID in assignment " + i, assignment.getId());
+            assertEquals("Wrong description in assignment " + i, descriptions[i], assignment.getDescription());
+        }
+        return user;
+    }
+
+    private void assertSplitContainersCount(String oid, Integer expected) {
+        Session session = open();
+        try {
+            Integer count = (Integer) session.createQuery("select o.splitContainersCount from RObject o where o.oid = :oid")
+                    .setParameter("oid", oid)
+                    .uniqueResult();
+            if (expected == null) {
+                assertNull("Unexpected split containers count", count);
+            } else {
+                assertEquals("Wrong split containers count", expected, count);
+            }
+        } finally {
+            close(session);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.LabeledString;
+import com.evolveum.midpoint.schema.RepositoryDiag;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.testng.AssertJUnit.*;
+
+/**
+ * @author mederly
+ */
+@ContextConfiguration(locations = {"../../../../../ctx-test.xml"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class SqlPerformanceMonitorTest extends BaseSQLRepoTest {
+
+    private static final int USERS = 20;
+
+    @Test
+    public void test010Histogram() {
+        SqlPerformanceMonitor.Histogram histogram = new SqlPerformanceMonitor.Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L, i % 10 == 0 ? 2 : 1);        // 1..100 ms
+        }
+        SqlOperationStatistics statistics = histogram.toStatistics("test");
+        System.out.println(statistics);
+
+        assertEquals("Wrong count", 100, statistics.getCount());
+        assertEquals("Wrong attempts", 110, statistics.getAttempts());
+        assertEquals("Wrong retried operations", 10, statistics.getRetriedOperations());
+        assertEquals("Wrong conflict rate", 0.1, statistics.getConflictRate(), 0.0001);
+        assertEquals("Wrong average", 50.5, statistics.getAverageTime(), 0.0001);
+        assertEquals("Wrong max", 100.0, statistics.getMaxTime(), 0.0001);
+        // buckets are powers of 2 (in microseconds), so percentiles are at most 2 times higher than real values
+        assertBetween("p50", statistics.getPercentile50(), 50, 100);
+        assertBetween("p90", statistics.getPercentile90(), 90, 100);
+        assertBetween("p99", statistics.getPercentile99(), 99, 100);
+    }
+
+    @Test
+    public void test020NestedOperations() {
+        SqlPerformanceMonitor pm = new SqlPerformanceMonitor();         // not initialized, i.e. default level
+
+        long outer = pm.registerOperationStart("outerOperation");
+        long inner = pm.registerOperationStart("innerOperation");
+        pm.registerOperationNewAttempt(inner, 2);
+        pm.registerOperationFinish(inner, 2);
+        pm.registerOperationNewAttempt(outer, 2);
+        pm.registerOperationFinish(outer, 2);
+
+        assertEquals("Wrong # of outer operations", 1, findStatistics(pm.getOperationStatistics(), "outerOperation").getCount());
+        assertEquals("Wrong # of outer attempts", 2, findStatistics(pm.getOperationStatistics(), "outerOperation").getAttempts());
+        assertEquals("Wrong # of inner operations", 1, findStatistics(pm.getOperationStatistics(), "innerOperation").getCount());
+        assertEquals("Wrong # of unfinished operations", 0, pm.getUnfinishedOperationsCount());
+
+        // inner operation that was not finished (e.g. because of an exception) does not spoil the outer one
+        outer = pm.registerOperationStart("outerOperation");
+        pm.registerOperationStart("innerOperation");
+        pm.registerOperationFinish(outer, 1);
+
+        assertEquals("Wrong # of outer operations", 2, findStatistics(pm.getOperationStatistics(), "outerOperation").getCount());
+        assertEquals("Wrong # of inner operations", 1, findStatistics(pm.getOperationStatistics(), "innerOperation").getCount());
+        assertEquals("Wrong # of unfinished operations", 1, pm.getUnfinishedOperationsCount());
+    }
+
+    @Test
+    public void test100OperationsRecorded() throws Exception {
+        OperationResult result = new OperationResult("test100OperationsRecorded");
+        SqlPerformanceMonitor pm = ((SqlRepositoryServiceImpl) repositoryService).getPerformanceMonitor();
+        pm.reset();
+
+        for (int i = 0; i < USERS; i++) {
+            PrismObject<UserType> user = new UserType(prismContext).name("pm-user-" + i).asPrismObject();
+            String oid = repositoryService.addObject(user, null, result);
+            repositoryService.getObject(UserType.class, oid, null, result);
+        }
+
+        SqlOperationStatistics getObject = findStatistics(pm.getOperationStatistics(), "getObject");
+        System.out.println(getObject);
+        assertEquals("Wrong # of getObject operations", USERS, getObject.getCount());
+        assertTrue("Attempts < count", getObject.getAttempts() >= getObject.getCount());
+        assertTrue("p50 > p99", getObject.getPercentile50() <= getObject.getPercentile99());
+        assertTrue("p99 > max", getObject.getPercentile99() <= getObject.getMaxTime());
+
+        SqlOperationStatistics recentGetObject = findStatistics(pm.getRecentOperationStatistics(), "getObject");
+        assertEquals("Wrong # of recent getObject operations", USERS, recentGetObject.getCount());
+    }
+
+    @Test
+    public void test110Jmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(SqlPerformanceMonitor.OBJECT_NAME);
+        assertTrue("Performance monitor is not registered in JMX", server.isRegistered(name));
+        assertEquals("Wrong window", 60, server.getAttribute(name, "WindowSeconds"));
+        Object statistics = server.getAttribute(name, "OperationStatistics");
+        assertNotNull("No statistics in JMX", statistics);
+    }
+
+    @Test
+    public void test120RepositoryDiag() {
+        RepositoryDiag diag = repositoryService.getRepositoryDiag();
+        boolean found = false;
+        for (LabeledString detail : diag.getAdditionalDetails()) {
+            System.out.println(detail.getLabel() + ": " + detail.getData());
+            if ("operationStatistics.getObject".equals(detail.getLabel())) {
+                found = true;
+            }
+        }
+        assertTrue("No getObject statistics in repository diag", found);
+    }
+
+    private SqlOperationStatistics findStatistics(List<SqlOperationStatistics> list, String kind) {
+        for (SqlOperationStatistics statistics : list) {
+            if (kind.equals(statistics.getKind())) {
+                return statistics;
+            }
+        }
+        fail("No statistics for " + kind + " in " + list);
+        return null;        // not reached
+    }
+
+    private void assertBetween(String message, double value, double min, double max) {
+        assertTrue(message + " is " + value + ", expected between " + min + " and " + max, value >= min && value <= max);
+    }
+}
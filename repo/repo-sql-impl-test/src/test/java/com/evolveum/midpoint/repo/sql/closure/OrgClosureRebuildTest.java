@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.closure;
+
+import com.evolveum.midpoint.repo.sql.helpers.OrgClosureGraph;
+import com.evolveum.midpoint.repo.sql.helpers.OrgClosureManager;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.fail;
+
+/**
+ * Compares SQL-based and in-memory rebuild of the org closure table.
+ *
+ * Can be used as a benchmark: the shape of the hierarchy can be set by system properties, e.g.
+ * -DorgClosureRebuildTest.orgChildrenInLevel=5,10,10,10 -DorgClosureRebuildTest.parentsInLevel=0,1,2,2
+ *
+ * @author mederly
+ */
+@ContextConfiguration(locations = {"../../../../../../ctx-test.xml"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class OrgClosureRebuildTest extends AbstractOrgClosureTest {
+
+    private static final int[] ORG_CHILDREN_IN_LEVEL  = getLevels("orgChildrenInLevel", "3,4,3,3");
+    private static final int[] PARENTS_IN_LEVEL       = getLevels("parentsInLevel", "0,1,2,2");
+
+    private OrgClosureTestConfiguration configuration;
+
+    @Autowired
+    private OrgClosureManager closureManager;
+
+    public OrgClosureRebuildTest() {
+        configuration = new OrgClosureTestConfiguration();
+        configuration.setCheckChildrenSets(true);
+        configuration.setCheckClosureMatrix(false);
+        configuration.setOrgChildrenInLevel(ORG_CHILDREN_IN_LEVEL);
+        configuration.setUserChildrenInLevel(null);
+        configuration.setParentsInLevel(PARENTS_IN_LEVEL);
+    }
+
+    private static int[] getLevels(String name, String defaultValue) {
+        return Arrays.stream(System.getProperty("orgClosureRebuildTest." + name, defaultValue).split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+    }
+
+    @Override
+    public OrgClosureTestConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    @Test
+    public void test010GraphDiamond() {
+        // D has two parents (B, C), both having A as a parent; E is a child of D
+        OrgClosureGraph graph = new OrgClosureGraph();
+        for (String oid : Arrays.asList("A", "B", "C", "D", "E")) {
+            graph.addVertex(oid);
+        }
+        graph.addEdge("B", "A");
+        graph.addEdge("C", "A");
+        graph.addEdge("D", "B");
+        graph.addEdge("D", "C");
+        graph.addEdge("D", "C");            // duplicate edge
+        graph.addEdge("E", "D");
+        graph.addEdge("E", "unknown");      // ignored
+        graph.computeClosure(2);
+
+        assertEquals("Wrong closure size", 1 + 2 + 2 + 4 + 5, graph.getClosureSize());
+        assertEquals("Wrong D->A paths", 2, graph.getPaths("D", "A"));
+        assertEquals("Wrong E->A paths", 2, graph.getPaths("E", "A"));
+        assertEquals("Wrong E->B paths", 1, graph.getPaths("E", "B"));
+        assertEquals("Wrong E->E paths", 1, graph.getPaths("E", "E"));
+        assertEquals("Wrong A->E paths", 0, graph.getPaths("A", "E"));
+    }
+
+    @Test
+    public void test020GraphCycle() {
+        OrgClosureGraph graph = new OrgClosureGraph();
+        for (String oid : Arrays.asList("A", "B", "C")) {
+            graph.addVertex(oid);
+        }
+        graph.addEdge("B", "A");
+        graph.addEdge("C", "B");
+        graph.addEdge("B", "C");
+        try {
+            graph.computeClosure(1);
+            fail("Unexpected success");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Got expected exception: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void test100LoadOrgStructure() throws Exception {
+        _test100LoadOrgStructure();
+    }
+
+    @Test
+    public void test200RebuildUsingSql() throws Exception {
+        rebuild(false, false, "test200RebuildUsingSql");
+        _test150CheckClosure();
+    }
+
+    @Test
+    public void test210RebuildInMemory() throws Exception {
+        rebuild(true, false, "test210RebuildInMemory");
+        _test150CheckClosure();
+    }
+
+    @Test
+    public void test220CheckInMemory() throws Exception {
+        OperationResult result = rebuild(true, true, "test220CheckInMemory");
+        assertEquals("Wrong check result", OperationResultStatus.SUCCESS, result.getStatus());
+    }
+
+    @Test
+    public void test230FixInMemory() throws Exception {
+        String root = rootOids.get(0);
+        String leaf = orgsByLevels.get(orgsByLevels.size() - 1).get(0);
+        try (Session session = openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("delete from m_org_closure where descendant_oid = :oid and ancestor_oid <> :oid")
+                    .setParameter("oid", leaf)
+                    .executeUpdate();
+            session.createNativeQuery("insert into m_org_closure (descendant_oid, ancestor_oid, val) values (:d, :a, 1)")
+                    .setParameter("d", root)
+                    .setParameter("a", leaf)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+
+        OperationResult result = rebuild(true, true, "test230FixInMemory");
+        assertEquals("Wrong check result", OperationResultStatus.HANDLED_ERROR, result.getStatus());
+        _test150CheckClosure();
+    }
+
+    private OperationResult rebuild(boolean inMemory, boolean check, String testName) {
+        baseHelper.getConfiguration().setOrgClosureRebuildInMemory(inMemory);
+        try {
+            OperationResult result = new OperationResult(testName);
+            long start = System.currentTimeMillis();
+            closureManager.checkAndOrRebuild(check, true, true, false, result);
+            System.out.println((inMemory ? "In-memory" : "SQL-based") + (check ? " check and rebuild" : " rebuild")
+                    + " of org closure for " + allOrgCreated.size() + " orgs took " + (System.currentTimeMillis() - start)
+                    + " ms: " + result.getMessage());
+            return result;
+        } finally {
+            baseHelper.getConfiguration().setOrgClosureRebuildInMemory(false);
+        }
+    }
+}
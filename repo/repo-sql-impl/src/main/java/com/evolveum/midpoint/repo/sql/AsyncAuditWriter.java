@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql;
+
+import com.evolveum.midpoint.repo.sql.SqlRepositoryConfiguration.AuditWriteMode;
+import com.evolveum.midpoint.repo.sql.data.audit.RAuditEventRecord;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes audit records asynchronously. Records are put into a bounded queue (callers block when it is full)
+ * and written by a dedicated thread in batches, one transaction per batch.
+ *
+ * When a batch cannot be written, its records are tried one by one. Records that cannot be written at all
+ * are either logged and dropped (ASYNC mode) or stored into a spill file (ASYNC_SPILL mode). Spill files are
+ * written to the database when the writer is started next time. Records from a spill file that cannot be written
+ * even then are moved to a .failed file, so they do not block the other spill files; such files have to be
+ * resolved manually.
+ *
+ * If the writer thread dies unexpectedly, records are written synchronously by the callers.
+ *
+ * On shutdown the queue is flushed; records that are not written within the shutdown timeout are treated
+ * as unwritable (see above). Records submitted before start or after shutdown are written synchronously.
+ *
+ * @author mederly
+ */
+public class AsyncAuditWriter {
+
+	private static final Trace LOGGER = TraceManager.getTrace(AsyncAuditWriter.class);
+
+	private static final String THREAD_NAME = "midpoint-audit-writer";
+	private static final String SPILL_FILE_PREFIX = "audit-";
+	private static final String SPILL_FILE_SUFFIX = ".spill";
+	private static final String SPILL_FILE_TMP_SUFFIX = ".tmp";
+	private static final String SPILL_FILE_FAILED_SUFFIX = ".failed";
+	private static final long POLL_INTERVAL = 1000L;
+	private static final long INTERRUPTED_THREAD_WAIT = 5000L;
+
+	/**
+	 * Writes given records in a single transaction. Should retry on transient (e.g. serialization-related) problems;
+	 * an exception means that the records could not be written.
+	 */
+	@FunctionalInterface
+	interface BatchWriter {
+		void write(List<RAuditEventRecord> records);
+	}
+
+	private static class QueuedRecord {
+		private final RAuditEventRecord record;
+		private final long enqueued = System.nanoTime();
+
+		private QueuedRecord(RAuditEventRecord record) {
+			this.record = record;
+		}
+	}
+
+	private final BatchWriter batchWriter;
+	private final AuditWriteMode mode;
+	private final int batchSize;
+	private final long shutdownTimeout;
+	private final File spillDir;
+
+	private final BlockingQueue<QueuedRecord> queue;
+	private final ReadWriteLock acceptingLock = new ReentrantReadWriteLock();
+	private volatile boolean accepting;             // changed under the write lock
+	private boolean started;
+	private Thread thread;
+	private volatile boolean writerAlive;
+	private final AtomicInteger spillFileCounter = new AtomicInteger();
+
+	private final LongAdder submitted = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder spilled = new LongAdder();
+	private final LongAccumulator maxQueueDepth = new LongAccumulator(Long::max, 0);
+	private final LongAdder totalLatency = new LongAdder();                              // nanoseconds
+	private final LongAccumulator maxLatency = new LongAccumulator(Long::max, 0);        // nanoseconds
+
+	AsyncAuditWriter(BatchWriter batchWriter, AuditWriteMode mode, int queueSize, int batchSize, long shutdownTimeout,
+			File spillDir) {
+		if (mode == AuditWriteMode.SYNC) {
+			throw new IllegalArgumentException("Asynchronous audit writer cannot run in " + mode + " mode");
+		}
+		this.batchWriter = batchWriter;
+		this.mode = mode;
+		this.batchSize = batchSize;
+		this.shutdownTimeout = shutdownTimeout;
+		this.spillDir = spillDir;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+	}
+
+	AsyncAuditWriter(BatchWriter batchWriter, SqlRepositoryConfiguration configuration) {
+		this(batchWriter, configuration.getAuditWriteMode(), configuration.getAuditQueueSize(),
+				configuration.getAuditBatchSize(), configuration.getAuditShutdownTimeout(),
+				new File(configuration.getAuditSpillDir()));
+	}
+
+	public synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		accepting = true;
+		writerAlive = true;
+		thread = new Thread(this::run, THREAD_NAME);
+		thread.setDaemon(true);
+		thread.start();
+		LOGGER.info("Asynchronous audit writer started (mode: {}, queue size: {}, batch size: {})", mode,
+				queue.remainingCapacity(), batchSize);
+	}
+
+	public void submit(RAuditEventRecord record) {
+		submitted.increment();
+		acceptingLock.readLock().lock();
+		try {
+			if (accepting) {
+				QueuedRecord queuedRecord = new QueuedRecord(record);
+				while (writerAlive) {
+					if (queue.offer(queuedRecord, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+						maxQueueDepth.accumulate(queue.size());
+						return;
+					}
+				}
+				LOGGER.debug("Audit writer thread is not running, writing the record synchronously");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.debug("Interrupted while waiting for free space in the audit queue, writing the record synchronously");
+		} finally {
+			acceptingLock.readLock().unlock();
+		}
+		write(Collections.singletonList(new QueuedRecord(record)));
+	}
+
+	/**
+	 * Stops accepting new records and waits until the queued ones are written (at most shutdownTimeout).
+	 */
+	public void shutdown() {
+		acceptingLock.writeLock().lock();
+		try {
+			if (!accepting) {
+				return;
+			}
+			accepting = false;
+		} finally {
+			acceptingLock.writeLock().unlock();
+		}
+		LOGGER.info("Stopping asynchronous audit writer; {} record(s) waiting in the queue", queue.size());
+		try {
+			thread.join(shutdownTimeout);
+			if (thread.isAlive()) {
+				LOGGER.warn("Audit writer did not finish in {} ms, interrupting it", shutdownTimeout);
+				thread.interrupt();
+				thread.join(INTERRUPTED_THREAD_WAIT);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		List<QueuedRecord> remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			handleUnwritable(remaining);
+		}
+		LOGGER.info("Asynchronous audit writer stopped. {}", getStatistics());
+	}
+
+	private void run() {
+		try {
+			if (mode == AuditWriteMode.ASYNC_SPILL) {
+				writeSpilledRecords();
+			}
+			List<QueuedRecord> batch = new ArrayList<>(batchSize);
+			for (;;) {
+				// must be read before polling: no records can be added after accepting is switched off
+				boolean finishing = !accepting;
+				QueuedRecord first;
+				try {
+					first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					LOGGER.debug("Audit writer was interrupted, exiting");
+					return;
+				}
+				if (first == null) {
+					if (finishing) {
+						return;
+					} else {
+						continue;
+					}
+				}
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				try {
+					write(batch);
+				} catch (Throwable t) {
+					// e.g. an error while handling unwritable records; the writer thread must go on
+					LOGGER.error("Unexpected problem while writing {} audit record(s): {}", batch.size(), t.getMessage(), t);
+					failed.add(batch.size());
+				}
+				batch.clear();
+			}
+		} catch (Throwable t) {
+			LOGGER.error("Audit writer thread failed: {}", t.getMessage(), t);
+		} finally {
+			// callers write synchronously from now on
+			writerAlive = false;
+			if (accepting) {
+				// the thread died unexpectedly: records already queued are written here (on shutdown, the queue is
+				// processed by shutdown() itself)
+				List<QueuedRecord> remaining = new ArrayList<>();
+				queue.drainTo(remaining);
+				for (QueuedRecord queuedRecord : remaining) {
+					write(Collections.singletonList(queuedRecord));
+				}
+			}
+		}
+	}
+
+	private void write(List<QueuedRecord> batch) {
+		try {
+			batchWriter.write(getRecords(batch));
+		} catch (RuntimeException | Error e) {
+			if (batch.size() == 1) {
+				LOGGER.error("Couldn't write audit record: {}", e.getMessage(), e);
+				handleUnwritable(batch);
+			} else {
+				LOGGER.warn("Couldn't write a batch of {} audit records, trying them one by one: {}", batch.size(), e.getMessage(), e);
+				for (QueuedRecord queuedRecord : batch) {
+					write(Collections.singletonList(queuedRecord));
+				}
+			}
+			return;
+		}
+		long now = System.nanoTime();
+		for (QueuedRecord queuedRecord : batch) {
+			long latency = now - queuedRecord.enqueued;
+			totalLatency.add(latency);
+			maxLatency.accumulate(latency);
+		}
+		written.add(batch.size());
+		batches.increment();
+	}
+
+	private List<RAuditEventRecord> getRecords(List<QueuedRecord> queuedRecords) {
+		List<RAuditEventRecord> records = new ArrayList<>(queuedRecords.size());
+		for (QueuedRecord queuedRecord : queuedRecords) {
+			records.add(queuedRecord.record);
+		}
+		return records;
+	}
+
+	private void handleUnwritable(List<QueuedRecord> queuedRecords) {
+		if (mode == AuditWriteMode.ASYNC_SPILL && spill(getRecords(queuedRecords))) {
+			spilled.add(queuedRecords.size());
+		} else {
+			LOGGER.error("{} audit record(s) could not be written and are lost", queuedRecords.size());
+			failed.add(queuedRecords.size());
+		}
+	}
+
+	private boolean spill(List<RAuditEventRecord> records) {
+		String name = SPILL_FILE_PREFIX + System.currentTimeMillis() + "-" + spillFileCounter.incrementAndGet();
+		File tmpFile = new File(spillDir, name + SPILL_FILE_TMP_SUFFIX);
+		File file = new File(spillDir, name + SPILL_FILE_SUFFIX);
+		try {
+			if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+				throw new IOException("Couldn't create directory " + spillDir);
+			}
+			for (RAuditEventRecord record : records) {
+				record.resetIdentifiers();
+			}
+			try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+				out.writeObject(new ArrayList<>(records));
+			}
+			if (!tmpFile.renameTo(file)) {
+				throw new IOException("Couldn't rename " + tmpFile + " to " + file);
+			}
+			LOGGER.warn("{} audit record(s) were stored to {}; they will be written to the database on the next start",
+					records.size(), file);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Couldn't store {} audit record(s) to {}: {}", records.size(), file, e.getMessage(), e);
+			return false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeSpilledRecords() {
+		File[] files = spillDir.listFiles((dir, name) -> name.startsWith(SPILL_FILE_PREFIX) && name.endsWith(SPILL_FILE_SUFFIX));
+		if (files == null || files.length == 0) {
+			return;
+		}
+		Arrays.sort(files);
+		LOGGER.info("Writing audit records from {} spill file(s) in {}", files.length, spillDir);
+		for (File file : files) {
+			List<RAuditEventRecord> records;
+			try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				records = (List<RAuditEventRecord>) in.readObject();
+			} catch (IOException | ClassNotFoundException | RuntimeException e) {
+				LOGGER.error("Couldn't read audit records from spill file {}, skipping it: {}", file, e.getMessage(), e);
+				continue;
+			}
+			List<RAuditEventRecord> unwritten = new ArrayList<>();
+			try {
+				batchWriter.write(records);
+				written.add(records.size());
+				batches.increment();
+			} catch (RuntimeException | Error e) {
+				LOGGER.warn("Couldn't write audit records from spill file {}, trying them one by one: {}", file, e.getMessage(), e);
+				for (RAuditEventRecord record : records) {
+					try {
+						batchWriter.write(Collections.singletonList(record));
+						written.increment();
+						batches.increment();
+					} catch (RuntimeException | Error e1) {
+						LOGGER.error("Couldn't write audit record from spill file {}: {}", file, e1.getMessage(), e1);
+						unwritten.add(record);
+					}
+				}
+			}
+			if (!unwritten.isEmpty()) {
+				quarantine(file, unwritten);
+			} else if (!file.delete()) {
+				LOGGER.warn("Couldn't delete spill file {}; its records might be written again on the next start", file);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the spill file by a .failed file containing only its unwritten records.
+	 */
+	private void quarantine(File file, List<RAuditEventRecord> records) {
+		String name = file.getName().substring(0, file.getName().length() - SPILL_FILE_SUFFIX.length());
+		File failedFile = new File(spillDir, name + SPILL_FILE_FAILED_SUFFIX);
+		try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(failedFile)))) {
+			out.writeObject(new ArrayList<>(records));
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Couldn't store {} unwritten audit record(s) to {}: {}", records.size(), failedFile, e.getMessage(), e);
+			if ((failedFile.exists() && !failedFile.delete()) || !file.renameTo(failedFile)) {
+				LOGGER.error("Couldn't rename spill file {} to {}; it will be tried again on the next start", file, failedFile);
+			}
+			failed.add(records.size());
+			return;
+		}
+		if (!file.delete()) {
+			LOGGER.warn("Couldn't delete spill file {}; its records might be written again on the next start", file);
+		}
+		LOGGER.error("{} audit record(s) from spill file {} could not be written; they were moved to {}",
+				records.size(), file, failedFile);
+		failed.add(records.size());
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	public long getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	public long getSubmitted() {
+		return submitted.sum();
+	}
+
+	public long getWritten() {
+		return written.sum();
+	}
+
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	public long getSpilled() {
+		return spilled.sum();
+	}
+
+	/**
+	 * Average time between submitting a record and committing it (ms).
+	 */
+	public double getAverageLatency() {
+		long count = written.sum();
+		return count > 0 ? totalLatency.sum() / 1000000.0 / count : 0;
+	}
+
+	/**
+	 * Maximal time between submitting a record and committing it (ms).
+	 */
+	public double getMaxLatency() {
+		return maxLatency.get() / 1000000.0;
+	}
+
+	public String getStatistics() {
+		return String.format("Audit records submitted: %d, written: %d (in %d batches), spilled: %d, failed: %d; "
+						+ "queue depth: %d (max %d); latency: avg %.1f ms, max %.1f ms",
+				getSubmitted(), getWritten(), getBatches(), getSpilled(), getFailed(), getQueueDepth(),
+				getMaxQueueDepth(), getAverageLatency(), getMaxLatency());
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncAuditWriter{mode=" + mode + ", " + getStatistics() + "}";
+	}
+}
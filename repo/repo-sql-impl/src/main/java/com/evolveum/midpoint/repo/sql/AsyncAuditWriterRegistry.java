@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shuts down asynchronous audit writers when the application context is closed.
+ *
+ * Audit services are not Spring beans (they are only autowired), so they get no destruction callbacks
+ * themselves. This bean depends on baseHelper, so it is destroyed while the session factory is still
+ * available, i.e. queued records can still be written.
+ *
+ * @author mederly
+ */
+@Component
+@DependsOn("baseHelper")
+public class AsyncAuditWriterRegistry {
+
+	private final List<AsyncAuditWriter> writers = new CopyOnWriteArrayList<>();
+
+	void register(AsyncAuditWriter writer) {
+		writers.add(writer);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		for (AsyncAuditWriter writer : writers) {
+			writer.shutdown();
+		}
+		writers.clear();
+	}
+}
@@ -18,15 +18,27 @@ package com.evolveum.midpoint.repo.sql;
 
 import com.evolveum.midpoint.prism.query.ObjectPaging;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author Pavol
  */ // Temporary hack. Represents special paging object that means
-// "give me objects with OID greater than specified one, sorted by OID ascending".
+// "give me objects after the specified one, sorted by ordering instructions (if any) and then by OID ascending".
+//
+// Without ordering instructions this simply means "OID greater than specified one". With them, orderingValues
+// must contain values of the ordering items of the object with oidGreaterThan OID (one per ordering instruction,
+// null meaning no value); the objects are then compared by the (values..., oid) tuple. Offset is not supported.
+//
+// Independently of that, oidNotGreaterThan (if set) restricts the result to objects with OID less than or equal
+// to the specified one. Together with oidGreaterThan it is used to iterate over a given range of OIDs.
 //
 // TODO: replace by using cookie that is part of the standard ObjectPaging
 // (but think out all consequences, e.g. conflicts with the other use of the cookie)
 public class ObjectPagingAfterOid extends ObjectPaging {
     private String oidGreaterThan;
+    private String oidNotGreaterThan;
+    private List<Object> orderingValues = new ArrayList<>();
 
     public String getOidGreaterThan() {
         return oidGreaterThan;
@@ -36,9 +48,27 @@ public class ObjectPagingAfterOid extends ObjectPaging {
         this.oidGreaterThan = oidGreaterThan;
     }
 
+    public String getOidNotGreaterThan() {
+        return oidNotGreaterThan;
+    }
+
+    public void setOidNotGreaterThan(String oidNotGreaterThan) {
+        this.oidNotGreaterThan = oidNotGreaterThan;
+    }
+
+    public List<Object> getOrderingValues() {
+        return orderingValues;
+    }
+
+    public void setOrderingValues(List<Object> orderingValues) {
+        this.orderingValues = orderingValues != null ? orderingValues : new ArrayList<>();
+    }
+
     @Override
     public String toString() {
-        return super.toString() + ", after OID: " + oidGreaterThan;
+        return super.toString() + ", after OID: " + oidGreaterThan
+                + (oidNotGreaterThan != null ? ", up to OID: " + oidNotGreaterThan : "")
+                + (orderingValues.isEmpty() ? "" : ", after values: " + orderingValues);
     }
 
     @Override
@@ -51,6 +81,8 @@ public class ObjectPagingAfterOid extends ObjectPaging {
     protected void copyTo(ObjectPagingAfterOid clone) {
         super.copyTo(clone);
         clone.oidGreaterThan = this.oidGreaterThan;
+        clone.oidNotGreaterThan = this.oidNotGreaterThan;
+        clone.orderingValues = new ArrayList<>(this.orderingValues);
     }
 
 	public boolean equals(Object o, boolean exact) {
@@ -63,7 +95,11 @@ public class ObjectPagingAfterOid extends ObjectPaging {
 
 		ObjectPagingAfterOid that = (ObjectPagingAfterOid) o;
 
-		return oidGreaterThan != null ? oidGreaterThan.equals(that.oidGreaterThan) : that.oidGreaterThan == null;
+		if (oidGreaterThan != null ? !oidGreaterThan.equals(that.oidGreaterThan) : that.oidGreaterThan != null)
+			return false;
+		if (oidNotGreaterThan != null ? !oidNotGreaterThan.equals(that.oidNotGreaterThan) : that.oidNotGreaterThan != null)
+			return false;
+		return orderingValues.equals(that.orderingValues);
 
 	}
 
@@ -71,6 +107,8 @@ public class ObjectPagingAfterOid extends ObjectPaging {
 	public int hashCode() {
 		int result = super.hashCode();
 		result = 31 * result + (oidGreaterThan != null ? oidGreaterThan.hashCode() : 0);
+		result = 31 * result + (oidNotGreaterThan != null ? oidNotGreaterThan.hashCode() : 0);
+		result = 31 * result + orderingValues.hashCode();
 		return result;
 	}
 }
@@ -21,6 +21,7 @@ import com.evolveum.midpoint.repo.sql.data.audit.*;
 import com.evolveum.midpoint.repo.sql.data.common.enums.ROperationResultStatus;
 import com.evolveum.midpoint.repo.sql.data.common.other.RObjectType;
 import com.evolveum.midpoint.repo.sql.helpers.BaseHelper;
+import com.evolveum.midpoint.repo.sql.helpers.SplitContainerHelper;
 import com.evolveum.midpoint.repo.sql.util.DtoTranslationException;
 import com.evolveum.midpoint.repo.sql.util.GetObjectResult;
 import com.evolveum.midpoint.repo.sql.util.RUtil;
@@ -35,9 +36,11 @@ import com.evolveum.midpoint.util.exception.SystemException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.CleanupPolicyType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OperationResultStatusType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.hibernate.FlushMode;
@@ -69,13 +72,24 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
 
     @Autowired
     private BaseHelper baseHelper;
+    @Autowired
+    private AsyncAuditWriterRegistry asyncAuditWriterRegistry;
+    @Autowired
+    private SplitContainerHelper splitContainerHelper;
 
     private static final Trace LOGGER = TraceManager.getTrace(SqlAuditServiceImpl.class);
     private static final Integer CLEANUP_AUDIT_BATCH_SIZE = 500;
+    private static final int RESOLVE_BATCH_SIZE = 100;          // records whose references are resolved by one query
 
     private static final String QUERY_MAX_RESULT = "setMaxResults";
     private static final String QUERY_FIRST_RESULT = "setFirstResult";
 
+    private static final int AUDIT_PARTITIONS_AHEAD = 3;       // number of future periods to create partitions for
+
+    private volatile AsyncAuditWriter asyncWriter;          // created on first use (if configured)
+    private volatile long auditPartitionsValidUntil;        // no need to check partitions before this time
+    private volatile boolean partitioningUnsupportedLogged;
+
     public SqlAuditServiceImpl(SqlRepositoryFactory repositoryFactory) {
         super(repositoryFactory);
     }
@@ -85,6 +99,15 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
         Validate.notNull(record, "Audit event record must not be null.");
         Validate.notNull(task, "Task must not be null.");
 
+        checkAuditPartitions();
+
+        AsyncAuditWriter writer = getAsyncWriter();
+        if (writer != null) {
+            // conversion is done here, so the caller can freely modify the record after returning
+            writer.submit(toRepoRecord(record));
+            return;
+        }
+
         final String operation = "audit";
         int attempt = 1;
 
@@ -98,6 +121,149 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
         }
     }
 
+    /**
+     * @return asynchronous writer or null if audit records are written synchronously
+     */
+    public AsyncAuditWriter getAsyncWriter() {
+        if (getConfiguration().getAuditWriteMode() == SqlRepositoryConfiguration.AuditWriteMode.SYNC) {
+            return null;
+        }
+        if (asyncWriter == null) {
+            synchronized (this) {
+                if (asyncWriter == null) {
+                    AsyncAuditWriter writer = new AsyncAuditWriter(this::writeBatch, getConfiguration());
+                    asyncAuditWriterRegistry.register(writer);
+                    writer.start();
+                    asyncWriter = writer;
+                }
+            }
+        }
+        return asyncWriter;
+    }
+
+    /**
+     * Partitioning is used only if configured and if the database supports it (i.e. PostgreSQL).
+     * For other databases the audit tables are treated as non-partitioned.
+     */
+    private boolean isAuditPartitioned() {
+        SqlRepositoryConfiguration config = getConfiguration();
+        if (config.getAuditPartitioning() == SqlRepositoryConfiguration.AuditPartitioning.NONE) {
+            return false;
+        }
+        if (config.isUsingPostgreSQL()) {
+            return true;
+        }
+        if (!partitioningUnsupportedLogged) {
+            LOGGER.warn("Audit partitioning ({}) is supported only for PostgreSQL, ignoring it for {}.",
+                    config.getAuditPartitioning(), config.getDatabase());
+            partitioningUnsupportedLogged = true;
+        }
+        return false;
+    }
+
+    /**
+     * Creates partitions for the current and a couple of future periods, unless this was done recently.
+     */
+    private void checkAuditPartitions() {
+        if (System.currentTimeMillis() >= auditPartitionsValidUntil && isAuditPartitioned()) {
+            createAuditPartitions();
+        }
+    }
+
+    private void createAuditPartitions() {
+        SqlRepositoryConfiguration.AuditPartitioning partitioning = getConfiguration().getAuditPartitioning();
+        int periodField = partitioning == SqlRepositoryConfiguration.AuditPartitioning.DAILY
+                ? Calendar.DAY_OF_MONTH : Calendar.MONTH;
+        Calendar from = Calendar.getInstance();
+        Calendar to = (Calendar) from.clone();
+        to.add(periodField, AUDIT_PARTITIONS_AHEAD + 1);
+        Calendar validUntil = (Calendar) from.clone();
+        validUntil.add(periodField, 1);
+
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            Number created = (Number) session.createNativeQuery("select m_audit_create_partitions(:period, :fromTs, :toTs)")
+                    .setParameter("period", partitioning.getPeriod())
+                    .setParameter("fromTs", new Timestamp(from.getTimeInMillis()))
+                    .setParameter("toTs", new Timestamp(to.getTimeInMillis()))
+                    .getSingleResult();
+            session.getTransaction().commit();
+            LOGGER.debug("Audit partitions checked up to {}; created partitions for {} period(s).", to.getTime(), created);
+            auditPartitionsValidUntil = validUntil.getTimeInMillis();
+        } catch (RuntimeException ex) {
+            // auditing itself can go on: records not fitting any partition are stored in default ones
+            LOGGER.warn("Couldn't create audit partitions: {}", ex.getMessage(), ex);
+            auditPartitionsValidUntil = System.currentTimeMillis() + 60000L;       // let's not retry on each record
+            baseHelper.rollbackTransaction(session, ex, null, false);
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, null);
+        }
+    }
+
+    /**
+     * Drops partitions that contain only records older than minValue.
+     * @return number of periods dropped
+     */
+    private int dropAuditPartitions(Date minValue) {
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            Number dropped = (Number) session.createNativeQuery("select m_audit_drop_partitions(:olderThan)")
+                    .setParameter("olderThan", new Timestamp(minValue.getTime()))
+                    .getSingleResult();
+            session.getTransaction().commit();
+            return dropped.intValue();
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralRuntimeException(ex, session, null);
+            throw new IllegalStateException("Shouldn't get here");
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, null);
+        }
+    }
+
+    private RAuditEventRecord toRepoRecord(AuditEventRecord record) {
+        try {
+            return RAuditEventRecord.toRepo(record, getPrismContext(), true);
+        } catch (DtoTranslationException ex) {
+            baseHelper.handleGeneralCheckedException(ex, null, null);
+            throw new IllegalStateException("Shouldn't get here");
+        }
+    }
+
+    /**
+     * Writes records in a single transaction. Used by the asynchronous writer.
+     */
+    void writeBatch(List<RAuditEventRecord> records) {
+        final String operation = "auditBatch";
+        int attempt = 1;
+
+        while (true) {
+            try {
+                writeBatchAttempt(records);
+                return;
+            } catch (RuntimeException ex) {
+                attempt = baseHelper.logOperationAttempt(null, operation, attempt, ex, null);
+            }
+        }
+    }
+
+    private void writeBatchAttempt(List<RAuditEventRecord> records) {
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            for (RAuditEventRecord record : records) {
+                record.resetIdentifiers();      // in case of previous unsuccessful attempt
+                session.save(record);
+            }
+            session.getTransaction().commit();
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralRuntimeException(ex, session, null);
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, null);
+        }
+    }
+
     @Override
     public List<AuditEventRecord> listRecords(String query, Map<String, Object> params) {
         final String operation = "listRecords";
@@ -143,6 +309,105 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
         }
     }
 
+    @Override
+    public void streamRecords(String conditions, Map<String, Object> params, AuditEventRecord after, boolean descending,
+            int pageSize, AuditResultHandler handler) {
+        Validate.isTrue(pageSize > 0, "Page size must be greater than zero.");
+        Validate.notNull(handler, "Result handler must not be null.");
+        Validate.isTrue(after == null || after.getTimestamp() != null && after.getRepoId() != null,
+                "Record to continue after must have timestamp and repository ID.");
+
+        Long lastTimestamp = after != null ? after.getTimestamp() : null;
+        Long lastId = after != null ? after.getRepoId() : null;
+        int count = 0;
+        while (true) {
+            List<AuditEventRecord> page = streamRecordsPage(conditions, params, lastTimestamp, lastId, descending, pageSize);
+            for (AuditEventRecord record : page) {
+                count++;
+                if (!handler.handle(record)) {
+                    LOGGER.trace("Stopping audit records streaming after {} was handled (processed {} records).", record, count);
+                    return;
+                }
+            }
+            if (page.size() < pageSize) {
+                LOGGER.trace("Audit records streaming processed {} records", count);
+                return;
+            }
+            AuditEventRecord last = page.get(page.size() - 1);
+            lastTimestamp = last.getTimestamp();
+            lastId = last.getRepoId();
+        }
+    }
+
+    /**
+     * Each page is fetched in its own transaction; the handler is called outside of it.
+     */
+    private List<AuditEventRecord> streamRecordsPage(String conditions, Map<String, Object> params, Long lastTimestamp,
+            Long lastId, boolean descending, int pageSize) {
+        final String operation = "streamRecords";
+        int attempt = 1;
+
+        while (true) {
+            try {
+                return streamRecordsPageAttempt(conditions, params, lastTimestamp, lastId, descending, pageSize);
+            } catch (RuntimeException ex) {
+                attempt = baseHelper.logOperationAttempt(null, operation, attempt, ex, null);
+            }
+        }
+    }
+
+    private List<AuditEventRecord> streamRecordsPageAttempt(String conditions, Map<String, Object> params,
+            Long lastTimestamp, Long lastId, boolean descending, int pageSize) {
+        String comparison = descending ? "<" : ">";
+        String direction = descending ? "desc" : "asc";
+        StringBuilder query = new StringBuilder("from RAuditEventRecord as aer where aer.timestamp is not null");
+        if (StringUtils.isNotBlank(conditions)) {
+            query.append(" and (").append(conditions).append(")");
+        }
+        if (lastTimestamp != null) {
+            query.append(" and (aer.timestamp ").append(comparison).append(" :keysetTimestamp")
+                    .append(" or (aer.timestamp = :keysetTimestamp and aer.id ").append(comparison).append(" :keysetId))");
+        }
+        query.append(" order by aer.timestamp ").append(direction).append(", aer.id ").append(direction);
+
+        Session session = null;
+        try {
+            session = baseHelper.beginReadOnlyTransaction();
+
+            Query q = session.createQuery(query.toString());
+            Map<String, Object> queryParams = params != null ? new HashMap<>(params) : new HashMap<>();
+            queryParams.remove(QUERY_FIRST_RESULT);         // paging is driven by the keyset
+            queryParams.remove(QUERY_MAX_RESULT);
+            setParametersToQuery(q, queryParams);
+            if (lastTimestamp != null) {
+                q.setParameter("keysetTimestamp", new Timestamp(lastTimestamp));
+                q.setParameter("keysetId", lastId);
+            }
+            q.setMaxResults(pageSize);
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("Stream records page attempt\n  query: {}\n  params:\n{}", query, DebugUtil.debugDump(queryParams, 2));
+            }
+
+            //noinspection unchecked
+            List<RAuditEventRecord> records = q.list();
+            List<AuditEventRecord> rv = new ArrayList<>(records.size());
+            for (int i = 0; i < records.size(); i += RESOLVE_BATCH_SIZE) {
+                rv.addAll(fromRepo(session, records.subList(i, Math.min(i + RESOLVE_BATCH_SIZE, records.size()))));
+            }
+
+            session.getTransaction().commit();
+            return rv;
+        } catch (SchemaException ex) {
+            baseHelper.handleGeneralCheckedException(ex, session, null);
+            throw new IllegalStateException("Shouldn't get here");
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralRuntimeException(ex, session, null);
+            throw new IllegalStateException("Shouldn't get here");
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, null);
+        }
+    }
+
     @Override
     public void reindexEntry(AuditEventRecord record) {
         final String operation = "reindexEntry";
@@ -220,27 +485,35 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
 
             ScrollableResults resultList = q.scroll();
 
-            while (resultList.next()) {
+            // records are converted in batches, so referenced objects can be resolved using a single query
+            List<RAuditEventRecord> batch = new ArrayList<>(RESOLVE_BATCH_SIZE);
+            boolean hasNext = resultList.next();
+            while (hasNext) {
                 Object o = resultList.get(0);
                 if (!(o instanceof RAuditEventRecord)) {
                     throw new DtoTranslationException(
                             "Unexpected object in result set. Expected audit record, but got "
                                     + o.getClass().getSimpleName());
                 }
-                RAuditEventRecord raudit = (RAuditEventRecord) o;
-
-                AuditEventRecord audit = RAuditEventRecord.fromRepo(raudit, getPrismContext(), getConfiguration().isUsingSQLServer());
-
-                // TODO what if original name (in audit log) differs from the current one (in repo) ?
-                audit.setInitiator(resolve(session, raudit.getInitiatorOid(), raudit.getInitiatorName(), defaultIfNull(raudit.getInitiatorType(), RObjectType.USER)));
-                audit.setAttorney(resolve(session, raudit.getAttorneyOid(), raudit.getAttorneyName(), RObjectType.USER));
-                audit.setTarget(resolve(session, raudit.getTargetOid(), raudit.getTargetName(), raudit.getTargetType()));
-                audit.setTargetOwner(resolve(session, raudit.getTargetOwnerOid(), raudit.getTargetOwnerName(), raudit.getTargetOwnerType()));
-                count++;
-                if (!handler.handle(audit)) {
-                    LOGGER.trace("Skipping handling of objects after {} was handled. ", audit);
+                batch.add((RAuditEventRecord) o);
+                hasNext = resultList.next();
+                if (batch.size() < RESOLVE_BATCH_SIZE && hasNext) {
+                    continue;
+                }
+                boolean stop = false;
+                for (AuditEventRecord audit : fromRepo(session, batch)) {
+                    count++;
+                    if (!handler.handle(audit)) {
+                        LOGGER.trace("Skipping handling of objects after {} was handled. ", audit);
+                        stop = true;
+                        break;
+                    }
+                }
+                if (stop) {
                     break;
                 }
+                batch.clear();
+                session.clear();            // processed records are not needed any more
             }
 
             session.getTransaction().commit();
@@ -315,20 +588,65 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
         return value;
     }
 
+    /**
+     * Converts audit records to their API form. Initiators, attorneys, targets and target owners of all the records
+     * are fetched from the repository at once.
+     */
+    private List<AuditEventRecord> fromRepo(Session session, List<RAuditEventRecord> records) throws SchemaException {
+        Set<String> oids = new HashSet<>();
+        for (RAuditEventRecord raudit : records) {
+            CollectionUtils.addIgnoreNull(oids, raudit.getInitiatorOid());
+            CollectionUtils.addIgnoreNull(oids, raudit.getAttorneyOid());
+            CollectionUtils.addIgnoreNull(oids, raudit.getTargetOid());
+            CollectionUtils.addIgnoreNull(oids, raudit.getTargetOwnerOid());
+        }
+        Map<String, PrismObject<?>> objects = resolveObjects(session, oids);
+
+        List<AuditEventRecord> rv = new ArrayList<>(records.size());
+        for (RAuditEventRecord raudit : records) {
+            AuditEventRecord audit = RAuditEventRecord.fromRepo(raudit, getPrismContext(), getConfiguration().isUsingSQLServer());
+
+            // TODO what if original name (in audit log) differs from the current one (in repo) ?
+            audit.setInitiator(resolve(objects, raudit.getInitiatorOid(), raudit.getInitiatorName(), defaultIfNull(raudit.getInitiatorType(), RObjectType.USER)));
+            audit.setAttorney(resolve(objects, raudit.getAttorneyOid(), raudit.getAttorneyName(), RObjectType.USER));
+            audit.setTarget(resolve(objects, raudit.getTargetOid(), raudit.getTargetName(), raudit.getTargetType()));
+            audit.setTargetOwner(resolve(objects, raudit.getTargetOwnerOid(), raudit.getTargetOwnerName(), raudit.getTargetOwnerType()));
+            rv.add(audit);
+        }
+        return rv;
+    }
+
+    // objects are loaded the same way as by ObjectRetriever, including split assignments/inducements
+    private Map<String, PrismObject<?>> resolveObjects(Session session, Set<String> oids) throws SchemaException {
+        Map<String, PrismObject<?>> rv = new HashMap<>();
+        if (oids.isEmpty()) {
+            return rv;
+        }
+        Query query = session.getNamedQuery("get.objects");
+        query.setParameterList("oids", oids);
+        query.setResultTransformer(GetObjectResult.RESULT_STYLE.getResultTransformer());
+        for (Object o : query.list()) {
+            GetObjectResult result = (GetObjectResult) o;
+            PrismObject<ObjectType> object = RUtil.createFullObjectParser(result.getFullObject(), getConfiguration().isUseZip(), getPrismContext())
+                    .compat().parse();
+            if (object.asObjectable() instanceof FocusType) {
+                splitContainerHelper.updateLoadedFocus(object, result.getSplitContainersCount(), null, session);
+            }
+            rv.put(result.getOid(), object);
+        }
+        return rv;
+    }
+
     // using generic parameter to avoid typing warnings
-    private <X extends ObjectType> PrismObject<X> resolve(Session session, String oid, String defaultName, RObjectType defaultType) throws SchemaException {
+    private <X extends ObjectType> PrismObject<X> resolve(Map<String, PrismObject<?>> objects, String oid, String defaultName, RObjectType defaultType) {
         if (oid == null) {
             return null;
         }
-        Query query = session.getNamedQuery("get.object");
-        query.setParameter("oid", oid);
-        query.setResultTransformer(GetObjectResult.RESULT_STYLE.getResultTransformer());
-        GetObjectResult object = (GetObjectResult) query.uniqueResult();
+        PrismObject<?> object = objects.get(oid);
 
         PrismObject result;
         if (object != null) {
-            String xml = RUtil.getXmlFromByteArray(object.getFullObject(), getConfiguration().isUseZip());
-            result = getPrismContext().parserFor(xml).compat().parse();
+            result = object.clone();        // the same object can be referenced by more records
         } else if (defaultType != null) {
             result = getPrismContext().createObject(defaultType.getJaxbClass());
             result.asObjectable().setName(PolyStringType.fromOrig(defaultName != null ? defaultName : oid));
@@ -386,6 +704,14 @@ public class SqlAuditServiceImpl extends SqlBaseService implements AuditService
         Date minValue = new Date();
         duration.addTo(minValue);
 
+        if (isAuditPartitioned()) {
+            createAuditPartitions();
+            // whole partitions are dropped first; remaining records (in partially expired or default partitions)
+            // are deleted row-by-row below
+            int dropped = dropAuditPartitions(minValue);
+            LOGGER.info("Audit cleanup dropped partitions for {} period(s) older than {}.", dropped, minValue);
+        }
+
         // factored out because it produces INFO-level message
         Dialect dialect = Dialect.getDialect(baseHelper.getSessionFactoryBean().getHibernateProperties());
 		checkTemporaryTablesSupport(dialect);
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+
+/**
+ * Snapshot of statistics for one kind of repository operation (e.g. "addObject"), as collected
+ * by {@link SqlPerformanceMonitor}. Latencies are in milliseconds; percentiles are approximate
+ * (upper bounds of histogram buckets, i.e. they can be overestimated by up to a factor of 2).
+ *
+ * @author mederly
+ */
+public class SqlOperationStatistics implements Serializable {
+
+    private final String kind;
+    private final long count;
+    private final long attempts;
+    private final long retriedOperations;
+    private final double averageTime;
+    private final double percentile50;
+    private final double percentile90;
+    private final double percentile99;
+    private final double maxTime;
+
+    @ConstructorProperties({"kind", "count", "attempts", "retriedOperations", "averageTime",
+            "percentile50", "percentile90", "percentile99", "maxTime"})
+    public SqlOperationStatistics(String kind, long count, long attempts, long retriedOperations, double averageTime,
+            double percentile50, double percentile90, double percentile99, double maxTime) {
+        this.kind = kind;
+        this.count = count;
+        this.attempts = attempts;
+        this.retriedOperations = retriedOperations;
+        this.averageTime = averageTime;
+        this.percentile50 = percentile50;
+        this.percentile90 = percentile90;
+        this.percentile99 = percentile99;
+        this.maxTime = maxTime;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Number of attempts (including the first ones); more attempts than operations mean retries
+     * after serialization/locking conflicts.
+     */
+    public long getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Number of operations that needed more than one attempt.
+     */
+    public long getRetriedOperations() {
+        return retriedOperations;
+    }
+
+    public double getConflictRate() {
+        return count > 0 ? (double) retriedOperations / count : 0;
+    }
+
+    public double getAverageTime() {
+        return averageTime;
+    }
+
+    public double getPercentile50() {
+        return percentile50;
+    }
+
+    public double getPercentile90() {
+        return percentile90;
+    }
+
+    public double getPercentile99() {
+        return percentile99;
+    }
+
+    public double getMaxTime() {
+        return maxTime;
+    }
+
+    public String shortDump() {
+        return String.format("count: %d, attempts: %d, conflict rate: %.2f%%, time in ms (avg/p50/p90/p99/max): %.2f/%.2f/%.2f/%.2f/%.2f",
+                count, attempts, getConflictRate() * 100, averageTime, percentile50, percentile90, percentile99, maxTime);
+    }
+
+    @Override
+    public String toString() {
+        return "SqlOperationStatistics{kind='" + kind + "', " + shortDump() + "}";
+    }
+}
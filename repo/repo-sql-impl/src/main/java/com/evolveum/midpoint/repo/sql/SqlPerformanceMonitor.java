@@ -20,52 +20,71 @@ import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Created with IntelliJ IDEA.
- * User: Pavol
- * Date: 31.1.2013
- * Time: 18:43
- * To change this template use File | Settings | File Templates.
+ * Collects statistics of repository operations: for each operation kind (e.g. "addObject") the number of operations
+ * and attempts, and a latency histogram. Statistics are kept since start and for a rolling time window
+ * (performanceStatisticsWindow), so the current DB latency can be seen e.g. during long-running tasks.
+ *
+ * Memory used is bounded (no per-operation records are kept) and recording is lock-free, so the statistics
+ * are collected always, unless the level is set to {@link #LEVEL_OFF}. At {@link #LEVEL_DETAILS} the statistics are
+ * also logged (and written to performanceStatisticsFile, if set) on shutdown.
+ *
+ * Statistics are available via JMX (see {@link SqlPerformanceMonitorMXBean}) and in RepositoryDiag.
+ *
+ * @author Pavol
  */
-public class SqlPerformanceMonitor {
+public class SqlPerformanceMonitor implements SqlPerformanceMonitorMXBean {
 
     private static final Trace LOGGER = TraceManager.getTrace(SqlPerformanceMonitor.class);
 
+    public static final int LEVEL_OFF = -1;
     public static final int LEVEL_NONE = 0;
     public static final int LEVEL_DETAILS = 10;
 
+    public static final String OBJECT_NAME = "com.evolveum.midpoint:type=SqlPerformanceMonitor";
+
+    private static final int WINDOW_SLICES = 6;
+
     private int level = 0;
+    private int windowSeconds = 60;
 
     private AtomicLong currentHandle = new AtomicLong();
 
-    private ConcurrentMap<Long,OperationRecord> outstandingOperations = new ConcurrentHashMap<>();
-    private List<OperationRecord> finishedOperations = Collections.synchronizedList(new ArrayList<OperationRecord>());
+    // operations can be nested (e.g. fetching ext item dictionary within addObject), so we keep a stack for each thread
+    private final ThreadLocal<Deque<OperationRecord>> outstandingOperations = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ConcurrentMap<String, OperationKindStatistics> operationStatistics = new ConcurrentHashMap<>();
+    private final LongAdder unfinishedOperations = new LongAdder();
+    private ConcurrentMap<String,ContentionRecord> contentionRecords = new ConcurrentHashMap<>();
 
     private SqlRepositoryFactory sqlRepositoryFactory;
+    private ObjectName registeredObjectName;
 
     static class OperationRecord {
-        String kind;
-        long handle;
+        final String kind;
+        final long handle;
+        final long startTime;           // nanoseconds
         int attempts;
-        long startTime;
-        long startCpuTime;
-        long totalTime;
-        long totalCpuTime;
-        long wastedTime;
-        long wastedCpuTime;
-
-        public OperationRecord(String kind, long handle) {
+
+        OperationRecord(String kind, long handle) {
             this.kind = kind;
             this.handle = handle;
-            this.startTime = System.currentTimeMillis();
+            this.startTime = System.nanoTime();
         }
 
         @Override
@@ -74,176 +93,364 @@ public class SqlPerformanceMonitor {
                     "kind='" + kind + '\'' +
                     ", handle=" + handle +
                     ", attempts=" + attempts +
-                    ", startTime=" + new Date(startTime) +
-                    ", totalTime=" + totalTime +
-//                    ", totalCpuTime=" + totalCpuTime +
-                    ", wastedTime=" + wastedTime +
-//                    ", wastedCpuTime=" + wastedCpuTime +
+                    ", runningFor=" + (System.nanoTime() - startTime) / 1000000 + " ms" +
                     '}';
         }
     }
 
+    /**
+     * Latency histogram with buckets of exponentially growing size: bucket i holds operations that took
+     * [2^i, 2^(i+1)) microseconds (bucket 0 also holds faster ones; the last one also holds slower ones).
+     */
+    static class Histogram {
+        static final int BUCKETS = 32;
+
+        final LongAdder count = new LongAdder();
+        final LongAdder attempts = new LongAdder();
+        final LongAdder retriedOperations = new LongAdder();
+        final LongAdder totalTime = new LongAdder();                                  // nanoseconds
+        final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);          // nanoseconds
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, int attempt) {
+            count.increment();
+            attempts.add(attempt);
+            if (attempt > 1) {
+                retriedOperations.increment();
+            }
+            totalTime.add(nanos);
+            maxTime.accumulate(nanos);
+            buckets.incrementAndGet(bucket(nanos));
+        }
+
+        static int bucket(long nanos) {
+            long micros = nanos / 1000;
+            return micros <= 0 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        }
+
+        void addTo(Histogram target) {
+            target.count.add(count.sum());
+            target.attempts.add(attempts.sum());
+            target.retriedOperations.add(retriedOperations.sum());
+            target.totalTime.add(totalTime.sum());
+            target.maxTime.accumulate(maxTime.get());
+            for (int i = 0; i < BUCKETS; i++) {
+                target.buckets.addAndGet(i, buckets.get(i));
+            }
+        }
+
+        void reset() {
+            count.reset();
+            attempts.reset();
+            retriedOperations.reset();
+            totalTime.reset();
+            maxTime.reset();
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+        }
+
+        /**
+         * Upper bound of the bucket containing the given percentile, capped by the maximal time; in ms.
+         */
+        double percentile(double p, long total) {
+            long max = maxTime.get();
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(p * total);
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                cumulative += buckets.get(i);
+                if (cumulative >= threshold) {
+                    return Math.min((1L << (i + 1)) * 1000, max) / 1e6;
+                }
+            }
+            return max / 1e6;
+        }
+
+        SqlOperationStatistics toStatistics(String kind) {
+            long total = count.sum();
+            return new SqlOperationStatistics(kind, total, attempts.sum(), retriedOperations.sum(),
+                    total > 0 ? totalTime.sum() / 1e6 / total : 0,
+                    percentile(0.5, total), percentile(0.9, total), percentile(0.99, total), maxTime.get() / 1e6);
+        }
+    }
+
+    /**
+     * Statistics for one operation kind: since start, and for the recent window. The window consists of
+     * WINDOW_SLICES slices used in a round-robin way; a slice is cleared when it's reused for a new time period.
+     * (Operations recorded concurrently with clearing can be lost; the window statistics are approximate anyway.)
+     */
+    static class OperationKindStatistics {
+        final Histogram total = new Histogram();
+        final Histogram[] slices = new Histogram[WINDOW_SLICES];
+        final AtomicLongArray slicePeriods = new AtomicLongArray(WINDOW_SLICES);
+
+        OperationKindStatistics() {
+            for (int i = 0; i < WINDOW_SLICES; i++) {
+                slices[i] = new Histogram();
+                slicePeriods.set(i, -1);
+            }
+        }
+
+        void record(long nanos, int attempt, long period) {
+            total.record(nanos, attempt);
+            int i = (int) (period % WINDOW_SLICES);
+            long slicePeriod = slicePeriods.get(i);
+            if (slicePeriod != period && slicePeriods.compareAndSet(i, slicePeriod, period)) {
+                slices[i].reset();
+            }
+            slices[i].record(nanos, attempt);
+        }
+
+        Histogram getRecent(long currentPeriod) {
+            Histogram recent = new Histogram();
+            for (int i = 0; i < WINDOW_SLICES; i++) {
+                if (slicePeriods.get(i) > currentPeriod - WINDOW_SLICES) {
+                    slices[i].addTo(recent);
+                }
+            }
+            return recent;
+        }
+    }
+
+    /**
+     * Contention statistics for a shared structure that is read without locking in most cases and
+     * locked only when needed (e.g. ext item dictionary).
+     */
+    static class ContentionRecord {
+        final LongAdder lockFreeReads = new LongAdder();
+        final LongAdder lockAcquisitions = new LongAdder();
+        final LongAdder lockWaitTime = new LongAdder();                 // nanoseconds
+        final LongAccumulator maxLockWaitTime = new LongAccumulator(Math::max, 0);      // nanoseconds
+
+        public String dump() {
+            long acquisitions = lockAcquisitions.sum();
+            long waitTime = lockWaitTime.sum();
+            return "Lock-free reads: " + lockFreeReads.sum() + ", " +
+                   "Lock acquisitions: " + acquisitions + ", " +
+                   "Lock wait time in ms (avg/max/sum): " + (acquisitions > 0 ? waitTime / 1e6f / acquisitions : 0) + "/" +
+                   maxLockWaitTime.get() / 1e6f + "/" + waitTime / 1e6f;
+        }
+    }
+
     public void initialize(SqlRepositoryFactory sqlRepositoryFactory) {
-        outstandingOperations.clear();
-        finishedOperations.clear();
+        reset();
+        contentionRecords.clear();
         this.sqlRepositoryFactory = sqlRepositoryFactory;
         this.level = sqlRepositoryFactory.getSqlConfiguration().getPerformanceStatisticsLevel();
+        this.windowSeconds = sqlRepositoryFactory.getSqlConfiguration().getPerformanceStatisticsWindow();
         if (level >= LEVEL_NONE) {
             LOGGER.info("SQL Performance Monitor initialized (level = " + level + ").");
+            registerMBean();
         }
     }
 
     public void shutdown() {
+        unregisterMBean();
         if (level > LEVEL_NONE) {
             LOGGER.info("SQL Performance Monitor shutting down.");
-            LOGGER.info("Statistics:\n" + getFormattedStatistics());
+            String statistics = getFormattedStatistics();
+            LOGGER.info("Statistics:\n" + statistics);
             String file = sqlRepositoryFactory.getSqlConfiguration().getPerformanceStatisticsFile();
             if (file != null) {
-                writeStatisticsToFile(file);
+                writeStatisticsToFile(file, statistics);
             }
         }
     }
 
-    private void writeStatisticsToFile(String file) {
+    private void registerMBean() {
         try {
-            PrintWriter pw = new PrintWriter(new FileWriter(file, true));
-            for (OperationRecord or : finishedOperations) {
-                pw.println(new Date(or.startTime) + "\t" + or.kind + "\t" + or.attempts + "\t" + or.totalTime + "\t" + or.wastedTime);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                // left over by a previous repository instance in the same JVM (e.g. in tests)
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
             }
-            for (OperationRecord or : outstandingOperations.values()) {
-                pw.println(new Date(or.startTime) + "\t" + or.kind + "\t" + "?" + "\t" + "?" + "\t" + or.wastedTime);
+            registeredObjectName = name;
+        } catch (JMException | RuntimeException e) {
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't register SQL performance monitor in JMX", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (registeredObjectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredObjectName);
+            } catch (JMException | RuntimeException e) {
+                LoggingUtils.logUnexpectedException(LOGGER, "Couldn't unregister SQL performance monitor from JMX", e);
             }
-            pw.close();
-            LOGGER.trace("" + (finishedOperations.size() + outstandingOperations.size()) + " record(s) written to file " + file);
+            registeredObjectName = null;
+        }
+    }
+
+    private void writeStatisticsToFile(String file, String statistics) {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(file, true))) {
+            pw.println(new Date() + "\n" + statistics);
+            LOGGER.trace("Statistics written to file {}", file);
         } catch (IOException e) {
             LoggingUtils.logException(LOGGER, "Couldn't write repository performance statistics to file " + file, e);
         }
-
     }
 
-    static class StatEntry {
-        long totalTime, wastedTime;
-        int attempts;
-        int records;
-
-        public void process(OperationRecord operation) {
-            totalTime += operation.totalTime;
-            wastedTime += operation.wastedTime;
-            attempts += operation.attempts;
-            records++;
+    public String getFormattedStatistics() {
+        StringBuilder retval = new StringBuilder();
+        Histogram all = new Histogram();
+        operationStatistics.values().forEach(s -> s.total.addTo(all));
+        retval.append("Overall: ").append(all.toStatistics("all").shortDump()).append("\n");
+        for (SqlOperationStatistics statistics : getOperationStatistics()) {
+            retval.append(statistics.getKind()).append(": ").append(statistics.shortDump()).append("\n");
         }
-
-        public String dump() {
-            if (records == 0) {
-                return "no records";
-            }
-            return "Records: " + records + ", " +
-                   "Total time (avg/sum): " + ((float) totalTime/records) + "/" + totalTime + ", " +
-                   "Wasted time (avg/sum): " + ((float) wastedTime/records) + "/" + wastedTime + " (" + (wastedTime*100.0f/totalTime) + "%), " +
-                   "Attempts (avg): " + ((float) attempts/records);
+        retval.append("Unfinished: ").append(unfinishedOperations.sum()).append("\n");
+        contentionRecords.forEach((lock, record) -> retval.append("Contention on ").append(lock).append(": ")
+                .append(record.dump()).append("\n"));
+        Deque<OperationRecord> outstanding = outstandingOperations.get();
+        if (!outstanding.isEmpty()) {
+            retval.append("Outstanding in current thread: ").append(outstanding);
         }
+        return retval.toString();
     }
 
-    private String getFormattedStatistics() {
-        StatEntry all = new StatEntry();
-        StatEntry unfinished = new StatEntry();
-        final int MAX_ATTEMPTS = SqlBaseService.LOCKING_MAX_RETRIES + 1;
-        StatEntry[] perAttempts = new StatEntry[MAX_ATTEMPTS];
+    //region MXBean
 
-        for (int i = 0; i < MAX_ATTEMPTS; i++) {
-            perAttempts[i] = new StatEntry();
-        }
+    @Override
+    public List<SqlOperationStatistics> getOperationStatistics() {
+        List<SqlOperationStatistics> rv = new ArrayList<>();
+        new TreeMap<>(operationStatistics).forEach((kind, s) -> rv.add(s.total.toStatistics(kind)));
+        return rv;
+    }
 
-        synchronized (finishedOperations) {
-            for (OperationRecord operation : finishedOperations) {
-                all.process(operation);
-                if (operation.attempts >= 1 && operation.attempts <= MAX_ATTEMPTS) {
-                    perAttempts[operation.attempts-1].process(operation);
-                } else if (operation.attempts < 0) {
-                    unfinished.process(operation);
-                }
+    @Override
+    public List<SqlOperationStatistics> getRecentOperationStatistics() {
+        long currentPeriod = getCurrentPeriod();
+        List<SqlOperationStatistics> rv = new ArrayList<>();
+        new TreeMap<>(operationStatistics).forEach((kind, s) -> {
+            SqlOperationStatistics recent = s.getRecent(currentPeriod).toStatistics(kind);
+            if (recent.getCount() > 0) {
+                rv.add(recent);
             }
-        }
+        });
+        return rv;
+    }
 
-        StringBuilder retval = new StringBuilder();
-        retval.append("Overall: ").append(all.dump()).append("\n");
-        for (int i = 0; i < MAX_ATTEMPTS; i++) {
-            retval.append(i + 1).append(" attempt(s): ").append(perAttempts[i].dump()).append("\n");
-        }
-        retval.append("Unfinished: ").append(unfinished.dump()).append("\n");
-        retval.append("Outstanding: ").append(outstandingOperations.toString());
-        return retval.toString();
+    @Override
+    public int getWindowSeconds() {
+        return windowSeconds;
     }
 
-    private String dump() {
-        return "Finished operations: " + finishedOperations + "\nOutstanding operations: " + outstandingOperations;
+    @Override
+    public void reset() {
+        operationStatistics.clear();
+        unfinishedOperations.reset();
     }
 
+    //endregion
+
+    long getUnfinishedOperationsCount() {
+        return unfinishedOperations.sum();
+    }
+
+    private long getCurrentPeriod() {
+        long sliceMillis = Math.max(1L, windowSeconds * 1000L / WINDOW_SLICES);
+        return System.currentTimeMillis() / sliceMillis;
+    }
 
     public long registerOperationStart(String kind) {
 
-        if (level <= LEVEL_NONE) {
+        if (level < LEVEL_NONE) {
             return 0L;
         }
 
         long handle = currentHandle.getAndIncrement();
-        Long threadId = Thread.currentThread().getId();
-        if (outstandingOperations.containsKey(threadId)) {
-            OperationRecord unfinishedOperation = outstandingOperations.get(threadId);
-            LOGGER.warn("Unfinished operation: " + unfinishedOperation);
-            registerOperationFinishRaw(threadId, unfinishedOperation, -1);
-        }
-        outstandingOperations.put(threadId, new OperationRecord(kind, handle));
+        outstandingOperations.get().push(new OperationRecord(kind, handle));
         return handle;
     }
 
+    /**
+     * Finds the operation with given handle among outstanding operations of the current thread.
+     * If remove is true, the operation is removed, along with any operations nested in it
+     * (they were not finished correctly).
+     */
+    private OperationRecord findOutstandingOperation(long opHandle, boolean remove) {
+        Deque<OperationRecord> outstanding = outstandingOperations.get();
+        OperationRecord found = null;
+        for (OperationRecord operation : outstanding) {         // from the innermost one
+            if (operation.handle == opHandle) {
+                found = operation;
+                break;
+            }
+        }
+        if (found != null && remove) {
+            OperationRecord top;
+            while ((top = outstanding.pop()) != found) {
+                LOGGER.warn("Unfinished operation: " + top);
+                unfinishedOperations.increment();
+            }
+        }
+        return found;
+    }
+
     public void registerOperationFinish(long opHandle, int attempt) {
 
-        if (level <= LEVEL_NONE) {
+        if (level < LEVEL_NONE) {
             return;
         }
 
-        Long threadId = Thread.currentThread().getId();
-        OperationRecord operation = outstandingOperations.get(threadId);
-
+        OperationRecord operation = findOutstandingOperation(opHandle, true);
         if (operation == null) {
-            LOGGER.warn("Attempted to record finish event for unregistered operation: handle = " + opHandle + ", attempt = " + attempt + ", ignoring the request.");
+            LOGGER.warn("Attempted to record finish event for unregistered operation: handle = " + opHandle + ", attempt = " + attempt
+                    + ", outstanding operations for this thread = " + outstandingOperations.get() + "; ignoring the request.");
             return;
         }
-        if (operation.handle != opHandle) {
-            LOGGER.error("Attempted to record finish event with unexpected operation handle: handle = " + opHandle + ", stored outstanding operation for this thread = " + operation);
-            outstandingOperations.remove(threadId);
-            return;
+        operationStatistics.computeIfAbsent(operation.kind, k -> new OperationKindStatistics())
+                .record(System.nanoTime() - operation.startTime, attempt, getCurrentPeriod());
+    }
+
+    public void registerLockFreeRead(String lockName) {
+        if (level > LEVEL_NONE) {
+            getContentionRecord(lockName).lockFreeReads.increment();
         }
-        registerOperationFinishRaw(threadId, operation, attempt);
     }
 
-    private void registerOperationFinishRaw(Long threadId, OperationRecord operation, int attempt) {
-        operation.totalTime = System.currentTimeMillis() - operation.startTime;
-        operation.attempts = attempt;
-        finishedOperations.add(operation);
-        outstandingOperations.remove(threadId);
+    public void registerLockAcquired(String lockName, long waitTimeNanos) {
+        if (level > LEVEL_NONE) {
+            ContentionRecord record = getContentionRecord(lockName);
+            record.lockAcquisitions.increment();
+            record.lockWaitTime.add(waitTimeNanos);
+            record.maxLockWaitTime.accumulate(waitTimeNanos);
+        }
+    }
+
+    private ContentionRecord getContentionRecord(String lockName) {
+        return contentionRecords.computeIfAbsent(lockName, k -> new ContentionRecord());
+    }
+
+    public long getLockAcquisitions(String lockName) {
+        ContentionRecord record = contentionRecords.get(lockName);
+        return record != null ? record.lockAcquisitions.sum() : 0;
+    }
+
+    public long getLockFreeReads(String lockName) {
+        ContentionRecord record = contentionRecords.get(lockName);
+        return record != null ? record.lockFreeReads.sum() : 0;
     }
 
     public void registerOperationNewAttempt(long opHandle, int attempt) {
 
-        if (level <= LEVEL_NONE) {
+        if (level < LEVEL_NONE) {
             return;
         }
 
-        Long threadId = Thread.currentThread().getId();
-        OperationRecord operation = outstandingOperations.get(threadId);
-
+        OperationRecord operation = findOutstandingOperation(opHandle, false);
         if (operation == null) {
-            LOGGER.warn("Attempted to record new attempt event for unregistered operation: handle = " + opHandle + ", attempt = " + attempt + ", ignoring the request.");
-            return;
-        }
-        if (operation.handle != opHandle) {
-            LOGGER.error("Attempted to record new attempt event with unexpected operation handle: handle = " + opHandle + ", stored outstanding operation for this thread = " + operation);
-            outstandingOperations.remove(threadId);
+            LOGGER.warn("Attempted to record new attempt event for unregistered operation: handle = " + opHandle + ", attempt = " + attempt
+                    + ", outstanding operations for this thread = " + outstandingOperations.get() + "; ignoring the request.");
             return;
         }
-        operation.wastedTime = System.currentTimeMillis() - operation.startTime;
         operation.attempts = attempt;
     }
 
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link SqlPerformanceMonitor}, registered as {@link SqlPerformanceMonitor#OBJECT_NAME}.
+ *
+ * @author mederly
+ */
+public interface SqlPerformanceMonitorMXBean {
+
+    /**
+     * Statistics since start (or the last reset), one item per operation kind.
+     */
+    List<SqlOperationStatistics> getOperationStatistics();
+
+    /**
+     * Statistics for the recent time window (see {@link #getWindowSeconds()}), one item per operation kind.
+     */
+    List<SqlOperationStatistics> getRecentOperationStatistics();
+
+    int getWindowSeconds();
+
+    void reset();
+}
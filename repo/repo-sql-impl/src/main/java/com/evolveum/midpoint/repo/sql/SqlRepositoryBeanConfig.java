@@ -19,6 +19,7 @@ package com.evolveum.midpoint.repo.sql;
 import java.util.Properties;
 
 import com.evolveum.midpoint.repo.sql.data.common.dictionary.ExtItemDictionary;
+import com.evolveum.midpoint.repo.sql.query2.QueryTemplateCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -44,6 +45,11 @@ public class SqlRepositoryBeanConfig {
         return new ExtItemDictionary();
     }
 
+    @Bean
+    public QueryTemplateCache queryTemplateCache() {
+        return new QueryTemplateCache(sqlRepositoryFactory.getSqlConfiguration().getQueryTemplateCacheSize());
+    }
+
     @Bean
     public DataSourceFactory dataSourceFactory() {
         DataSourceFactory df = new DataSourceFactory();
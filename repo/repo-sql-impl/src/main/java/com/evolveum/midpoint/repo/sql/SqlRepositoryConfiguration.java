@@ -116,6 +116,101 @@ public class SqlRepositoryConfiguration {
 	    }
     }
 
+	/**
+	 * Format of m_object.fullObject column. Objects are always readable in both formats, so the format
+	 * can be switched at any time; existing rows are converted when they are written next time
+	 * (e.g. using ninja reindex).
+	 */
+	public enum FullObjectFormat {
+
+		XML("xml"), BINARY("binary");
+
+		private final String value;
+
+		FullObjectFormat(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return value;
+		}
+
+		public static FullObjectFormat fromValue(String v) {
+			for (FullObjectFormat f : FullObjectFormat.values()) {
+				if (f.value.equalsIgnoreCase(v)) {
+					return f;
+				}
+			}
+			throw new IllegalArgumentException(v);
+		}
+	}
+
+	/**
+	 * How audit records are written. In asynchronous modes the records are queued and written by a separate thread
+	 * in batches; the queue is flushed on shutdown. With ASYNC_SPILL, records that cannot be written (or that remain
+	 * in the queue when the shutdown timeout expires) are stored in a local file and written on the next start.
+	 */
+	public enum AuditWriteMode {
+
+		SYNC("sync"), ASYNC("async"), ASYNC_SPILL("asyncSpill");
+
+		private final String value;
+
+		AuditWriteMode(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return value;
+		}
+
+		public static AuditWriteMode fromValue(String v) {
+			for (AuditWriteMode m : AuditWriteMode.values()) {
+				if (m.value.equalsIgnoreCase(v)) {
+					return m;
+				}
+			}
+			throw new IllegalArgumentException(v);
+		}
+	}
+
+	/**
+	 * Time partitioning of audit tables. Requires audit tables created by postgresql-3.8-audit-partitioned.sql;
+	 * ignored (with a warning) for other databases.
+	 */
+	public enum AuditPartitioning {
+
+		NONE("none", null), MONTHLY("monthly", "month"), DAILY("daily", "day");
+
+		private final String value;
+		private final String period;            // period name as understood by m_audit_create_partitions function
+
+		AuditPartitioning(String value, String period) {
+			this.value = value;
+			this.period = period;
+		}
+
+		public String getPeriod() {
+			return period;
+		}
+
+		@Override
+		public String toString() {
+			return value;
+		}
+
+		public static AuditPartitioning fromValue(String v) {
+			for (AuditPartitioning p : AuditPartitioning.values()) {
+				if (p.value.equalsIgnoreCase(v)) {
+					return p;
+				}
+			}
+			throw new IllegalArgumentException(v);
+		}
+	}
+
 	private static final String DEFAULT_FILE_NAME = "midpoint";
 	private static final String DEFAULT_EMBEDDED_H2_JDBC_USERNAME = "sa";
 	private static final String DEFAULT_EMBEDDED_H2_JDBC_PASSWORD = "";
@@ -142,6 +237,7 @@ public class SqlRepositoryConfiguration {
     public static final String PROPERTY_JDBC_URL = "jdbcUrl";
     public static final String PROPERTY_DATASOURCE = "dataSource";
     public static final String PROPERTY_USE_ZIP = "useZip";
+    public static final String PROPERTY_FULL_OBJECT_FORMAT = "fullObjectFormat";
     public static final String PROPERTY_MIN_POOL_SIZE = "minPoolSize";
     public static final String PROPERTY_MAX_POOL_SIZE = "maxPoolSize";
 
@@ -152,16 +248,31 @@ public class SqlRepositoryConfiguration {
     public static final String PROPERTY_USE_READ_ONLY_TRANSACTIONS = "useReadOnlyTransactions";
     public static final String PROPERTY_PERFORMANCE_STATISTICS_FILE = "performanceStatisticsFile";
     public static final String PROPERTY_PERFORMANCE_STATISTICS_LEVEL = "performanceStatisticsLevel";
+    public static final String PROPERTY_PERFORMANCE_STATISTICS_WINDOW = "performanceStatisticsWindow";
 
     //other
     public static final String PROPERTY_ITERATIVE_SEARCH_BY_PAGING = "iterativeSearchByPaging";
     public static final String PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE = "iterativeSearchByPagingBatchSize";
+    public static final String PROPERTY_ITERATIVE_SEARCH_PARALLELISM = "iterativeSearchParallelism";
+
+    public static final String PROPERTY_QUERY_TEMPLATE_CACHE_SIZE = "queryTemplateCacheSize";
+    public static final String PROPERTY_SEQUENCE_BLOCK_SIZE = "sequenceBlockSize";
+    public static final String PROPERTY_SPLIT_CONTAINER_STORAGE = "splitContainerStorage";
+
+    // audit
+    public static final String PROPERTY_AUDIT_WRITE_MODE = "auditWriteMode";
+    public static final String PROPERTY_AUDIT_QUEUE_SIZE = "auditQueueSize";
+    public static final String PROPERTY_AUDIT_BATCH_SIZE = "auditBatchSize";
+    public static final String PROPERTY_AUDIT_SHUTDOWN_TIMEOUT = "auditShutdownTimeout";
+    public static final String PROPERTY_AUDIT_SPILL_DIR = "auditSpillDir";
+    public static final String PROPERTY_AUDIT_PARTITIONING = "auditPartitioning";
 
     //closure
     public static final String PROPERTY_IGNORE_ORG_CLOSURE = "ignoreOrgClosure";
     public static final String PROPERTY_ORG_CLOSURE_STARTUP_ACTION = "orgClosureStartupAction";
     public static final String PROPERTY_SKIP_ORG_CLOSURE_STRUCTURE_CHECK = "skipOrgClosureStructureCheck";
     public static final String PROPERTY_STOP_ON_ORG_CLOSURE_STARTUP_FAILURE = "stopOnOrgClosureStartupFailure";
+    public static final String PROPERTY_ORG_CLOSURE_REBUILD_IN_MEMORY = "orgClosureRebuildInMemory";
 
     private static final String DRIVER_H2 = Driver.class.getName();
     private static final String DRIVER_MYSQL = "com.mysql.cj.jdbc.Driver";
@@ -200,6 +311,7 @@ public class SqlRepositoryConfiguration {
     private final int minPoolSize;
     private final int maxPoolSize;
     private final boolean useZip;
+    private final FullObjectFormat fullObjectFormat;
 
     private TransactionIsolation defaultTransactionIsolation;
     private boolean defaultLockForUpdateViaHibernate;
@@ -213,17 +325,31 @@ public class SqlRepositoryConfiguration {
 
     private final String performanceStatisticsFile;
     private final int performanceStatisticsLevel;
+    private final int performanceStatisticsWindow;          // in seconds
 
     private boolean defaultIterativeSearchByPaging;
     private int defaultIterativeSearchByPagingBatchSize;
 
     private final boolean iterativeSearchByPaging;
     private int iterativeSearchByPagingBatchSize;               // not final only because of testing
+    private final int iterativeSearchParallelism;               // number of OID ranges fetched concurrently in parallel paging
+
+    private final int queryTemplateCacheSize;                   // max number of cached query templates; 0 = caching disabled
+    private int sequenceBlockSize;                              // values reserved from a sequence at once; 1 = no local pools (not final only because of testing)
+    private boolean splitContainerStorage;                      // assignments/inducements stored in their own rows (not final only because of testing)
+
+    private AuditWriteMode auditWriteMode;                      // not final only because of testing
+    private int auditQueueSize;                                 // not final only because of testing
+    private int auditBatchSize;                                 // not final only because of testing
+    private final long auditShutdownTimeout;                    // how long to wait for the audit queue to be flushed (ms)
+    private String auditSpillDir;                               // not final only because of testing
+    private AuditPartitioning auditPartitioning;                // not final only because of testing
 
     private final boolean ignoreOrgClosure;
     private final OrgClosureManager.StartupAction orgClosureStartupAction;
     private final boolean skipOrgClosureStructureCheck;
     private final boolean stopOnOrgClosureStartupFailure;
+    private boolean orgClosureRebuildInMemory;                  // not final only because of testing
 
 	/*
 	 * Notes:
@@ -285,6 +411,8 @@ public class SqlRepositoryConfiguration {
         minPoolSize = configuration.getInt(PROPERTY_MIN_POOL_SIZE, DEFAULT_MIN_POOL_SIZE);
         maxPoolSize = configuration.getInt(PROPERTY_MAX_POOL_SIZE, DEFAULT_MAX_POOL_SIZE);
         useZip = configuration.getBoolean(PROPERTY_USE_ZIP, false);
+        fullObjectFormat = FullObjectFormat.fromValue(
+                configuration.getString(PROPERTY_FULL_OBJECT_FORMAT, FullObjectFormat.XML.toString()));
 
         // requires asServer, baseDir, fileName, port
 	    jdbcUrl = configuration.getString(PROPERTY_JDBC_URL, embedded ? getDefaultEmbeddedJdbcUrl() : null);
@@ -300,10 +428,24 @@ public class SqlRepositoryConfiguration {
 
         performanceStatisticsFile = configuration.getString(PROPERTY_PERFORMANCE_STATISTICS_FILE);
         performanceStatisticsLevel = configuration.getInt(PROPERTY_PERFORMANCE_STATISTICS_LEVEL, 0);
+        performanceStatisticsWindow = configuration.getInt(PROPERTY_PERFORMANCE_STATISTICS_WINDOW, 60);
 
         computeDefaultIterativeSearchParameters();
         iterativeSearchByPaging = configuration.getBoolean(PROPERTY_ITERATIVE_SEARCH_BY_PAGING, defaultIterativeSearchByPaging);
         iterativeSearchByPagingBatchSize = configuration.getInt(PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE, defaultIterativeSearchByPagingBatchSize);
+        // each range holds a connection while fetching a page, so let's not take too much of the pool by default
+        iterativeSearchParallelism = configuration.getInt(PROPERTY_ITERATIVE_SEARCH_PARALLELISM, Math.max(1, Math.min(4, maxPoolSize / 4)));
+
+        queryTemplateCacheSize = configuration.getInt(PROPERTY_QUERY_TEMPLATE_CACHE_SIZE, 1000);
+        sequenceBlockSize = configuration.getInt(PROPERTY_SEQUENCE_BLOCK_SIZE, 1);
+        splitContainerStorage = configuration.getBoolean(PROPERTY_SPLIT_CONTAINER_STORAGE, false);
+
+        auditWriteMode = AuditWriteMode.fromValue(configuration.getString(PROPERTY_AUDIT_WRITE_MODE, AuditWriteMode.SYNC.toString()));
+        auditQueueSize = configuration.getInt(PROPERTY_AUDIT_QUEUE_SIZE, 10000);
+        auditBatchSize = configuration.getInt(PROPERTY_AUDIT_BATCH_SIZE, 100);
+        auditShutdownTimeout = configuration.getLong(PROPERTY_AUDIT_SHUTDOWN_TIMEOUT, 30000L);
+        auditSpillDir = configuration.getString(PROPERTY_AUDIT_SPILL_DIR, new File(baseDir, "audit-spill").getPath());
+        auditPartitioning = AuditPartitioning.fromValue(configuration.getString(PROPERTY_AUDIT_PARTITIONING, AuditPartitioning.NONE.toString()));
 
         ignoreOrgClosure = configuration.getBoolean(PROPERTY_IGNORE_ORG_CLOSURE, false);
         orgClosureStartupAction = OrgClosureManager.StartupAction.fromValue(
@@ -311,6 +453,7 @@ public class SqlRepositoryConfiguration {
 				        OrgClosureManager.StartupAction.REBUILD_IF_NEEDED.toString()));
         skipOrgClosureStructureCheck = configuration.getBoolean(PROPERTY_SKIP_ORG_CLOSURE_STRUCTURE_CHECK, false);
         stopOnOrgClosureStartupFailure = configuration.getBoolean(PROPERTY_STOP_ON_ORG_CLOSURE_STARTUP_FAILURE, true);
+        orgClosureRebuildInMemory = configuration.getBoolean(PROPERTY_ORG_CLOSURE_REBUILD_IN_MEMORY, false);
     }
 
 	private String getDefaultEmbeddedJdbcUrl() {
@@ -502,6 +645,18 @@ public class SqlRepositoryConfiguration {
         if (minPoolSize > maxPoolSize) {
             throw new RepositoryServiceFactoryException("Max. pool size must be greater than min. pool size.");
         }
+
+        if (performanceStatisticsWindow <= 0) {
+            throw new RepositoryServiceFactoryException("Performance statistics window must be greater than zero.");
+        }
+
+        if (sequenceBlockSize <= 0) {
+            throw new RepositoryServiceFactoryException("Sequence block size must be greater than zero.");
+        }
+
+        if (auditWriteMode != AuditWriteMode.SYNC && (auditQueueSize <= 0 || auditBatchSize <= 0)) {
+            throw new RepositoryServiceFactoryException("Audit queue size and batch size must be greater than zero.");
+        }
     }
 
     @SuppressWarnings("SameParameterValue")
@@ -636,6 +791,10 @@ public class SqlRepositoryConfiguration {
         return performanceStatisticsLevel;
     }
 
+    public int getPerformanceStatisticsWindow() {
+        return performanceStatisticsWindow;
+    }
+
     public boolean isIterativeSearchByPaging() {
         return iterativeSearchByPaging;
     }
@@ -649,6 +808,81 @@ public class SqlRepositoryConfiguration {
         this.iterativeSearchByPagingBatchSize = iterativeSearchByPagingBatchSize;
     }
 
+    public int getIterativeSearchParallelism() {
+        return iterativeSearchParallelism;
+    }
+
+    public int getQueryTemplateCacheSize() {
+        return queryTemplateCacheSize;
+    }
+
+    public int getSequenceBlockSize() {
+        return sequenceBlockSize;
+    }
+
+    // exists because of testing
+    public void setSequenceBlockSize(int sequenceBlockSize) {
+        this.sequenceBlockSize = sequenceBlockSize;
+    }
+
+    public boolean isSplitContainerStorage() {
+        return splitContainerStorage;
+    }
+
+    // exists because of testing
+    public void setSplitContainerStorage(boolean splitContainerStorage) {
+        this.splitContainerStorage = splitContainerStorage;
+    }
+
+    public AuditWriteMode getAuditWriteMode() {
+        return auditWriteMode;
+    }
+
+    // exists because of testing
+    public void setAuditWriteMode(AuditWriteMode auditWriteMode) {
+        this.auditWriteMode = auditWriteMode;
+    }
+
+    public int getAuditQueueSize() {
+        return auditQueueSize;
+    }
+
+    // exists because of testing
+    public void setAuditQueueSize(int auditQueueSize) {
+        this.auditQueueSize = auditQueueSize;
+    }
+
+    public int getAuditBatchSize() {
+        return auditBatchSize;
+    }
+
+    // exists because of testing
+    public void setAuditBatchSize(int auditBatchSize) {
+        this.auditBatchSize = auditBatchSize;
+    }
+
+    public long getAuditShutdownTimeout() {
+        return auditShutdownTimeout;
+    }
+
+    public String getAuditSpillDir() {
+        return auditSpillDir;
+    }
+
+    // exists because of testing
+    public void setAuditSpillDir(String auditSpillDir) {
+        this.auditSpillDir = auditSpillDir;
+    }
+
+    public AuditPartitioning getAuditPartitioning() {
+        return auditPartitioning;
+    }
+
+    // exists because of testing
+    public void setAuditPartitioning(AuditPartitioning auditPartitioning) {
+        this.auditPartitioning = auditPartitioning;
+    }
+
     public String getDataSource() {
         return dataSource;
     }
@@ -665,6 +899,10 @@ public class SqlRepositoryConfiguration {
         return useZip;
     }
 
+    public FullObjectFormat getFullObjectFormat() {
+        return fullObjectFormat;
+    }
+
     public boolean isIgnoreOrgClosure() {
         return ignoreOrgClosure;
     }
@@ -717,6 +955,15 @@ public class SqlRepositoryConfiguration {
         return skipOrgClosureStructureCheck;
     }
 
+    public boolean isOrgClosureRebuildInMemory() {
+        return orgClosureRebuildInMemory;
+    }
+
+    // exists because of testing
+    public void setOrgClosureRebuildInMemory(boolean orgClosureRebuildInMemory) {
+        this.orgClosureRebuildInMemory = orgClosureRebuildInMemory;
+    }
+
     public Database getDatabase() {
         return database;
     }
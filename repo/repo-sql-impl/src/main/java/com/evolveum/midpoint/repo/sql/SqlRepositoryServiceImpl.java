@@ -119,8 +119,11 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
     private static final String DETAILS_DATA_SOURCE = "dataSource";
     private static final String DETAILS_HIBERNATE_DIALECT = "hibernateDialect";
     private static final String DETAILS_HIBERNATE_HBM_2_DDL = "hibernateHbm2ddl";
+    private static final String DETAILS_OPERATION_STATISTICS = "operationStatistics.";
+    private static final String DETAILS_RECENT_OPERATION_STATISTICS = "recentOperationStatistics.";
 
     @Autowired private SequenceHelper sequenceHelper;
+    @Autowired private WorkBucketHelper workBucketHelper;
     @Autowired private ObjectRetriever objectRetriever;
     @Autowired private ObjectUpdater objectUpdater;
     @Autowired private OrgClosureManager closureManager;
@@ -183,6 +186,41 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
 	    return object;
     }
 
+    @NotNull
+    @Override
+    public <T extends ObjectType> SearchResultList<PrismObject<T>> getObjects(Class<T> type, Collection<String> oids,
+            Collection<SelectorOptions<GetOperationOptions>> options, OperationResult result) throws SchemaException {
+        Validate.notNull(type, "Object type must not be null.");
+        Validate.notNull(oids, "Oids must not be null.");
+        Validate.notNull(result, "Operation result must not be null.");
+
+        List<String> distinctOids = new ArrayList<>(new LinkedHashSet<>(oids));
+        LOGGER.debug("Getting {} objects of type '{}'.", distinctOids.size(), type.getSimpleName());
+        if (distinctOids.isEmpty()) {
+            return new SearchResultList<>(new ArrayList<>());
+        }
+        for (String oid : distinctOids) {
+            Validate.notEmpty(oid, "Oid must not be null or empty.");
+            InternalMonitor.recordRepositoryRead(type, oid);
+        }
+
+        OperationResult subResult = result.createMinorSubresult(GET_OBJECTS);
+        subResult.addParam("type", type.getName());
+        subResult.addParam("count", distinctOids.size());
+
+        try {
+            SearchResultList<PrismObject<T>> objects = executeAttempts(null, "getObjects", "getting",
+                    subResult, () -> objectRetriever.getObjectsAttempt(type, distinctOids, options, subResult)
+            );
+            for (PrismObject<T> object : objects) {
+                invokeConflictWatchers((w) -> w.afterGetObject(object));
+            }
+            return objects;
+        } catch (ObjectNotFoundException e) {
+            throw new AssertionError("Should not occur; missing objects are skipped in getObjectsAttempt.", e);
+        }
+    }
+
     private <RV> RV executeAttempts(String oid, String operationName, String operationVerb, OperationResult subResult,
             ResultSupplier<RV> supplier) throws ObjectNotFoundException, SchemaException {
         SqlPerformanceMonitor pm = getPerformanceMonitor();
@@ -429,6 +467,9 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
 	        while (true) {
 	            try {
 	                String createdOid = objectUpdater.addObjectAttempt(object, options, subResult);
+		            if (options.isOverwrite() && SequenceType.class.equals(object.getCompileTimeClass())) {
+			            sequenceHelper.invalidateLocalPool(createdOid);
+		            }
 		            invokeConflictWatchers((w) -> w.afterAddObject(createdOid, object));
 		            return createdOid;
 	            } catch (RuntimeException ex) {
@@ -469,6 +510,9 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         	executeAttemptsNoSchemaException(oid, "deleteObject", "deleting",
 	                subResult, () -> objectUpdater.deleteObjectAttempt(type, oid, subResult)
 	        );
+	        if (SequenceType.class.equals(type)) {
+		        sequenceHelper.invalidateLocalPool(oid);
+	        }
 		    invokeConflictWatchers((w) -> w.afterDeleteObject(oid));
 		    
         } finally {
@@ -576,6 +620,9 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
             while (true) {
                 try {
                     objectUpdater.modifyObjectAttempt(type, oid, modifications, precondition, options, subResult, this);
+                    if (SequenceType.class.equals(type)) {
+                        sequenceHelper.invalidateLocalPool(oid);
+                    }
 	                invokeConflictWatchers((w) -> w.afterModifyObject(oid));
                     return;
                 } catch (RuntimeException ex) {
@@ -658,6 +705,7 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         details.add(new LabeledString(DETAILS_HIBERNATE_HBM_2_DDL, config.getHibernateHbm2ddl()));
 
         readDetailsFromConnection(diag, config);
+        addOperationStatistics(details);
 
         Collections.sort(details, new Comparator<LabeledString>() {
 
@@ -670,6 +718,20 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         return diag;
     }
 
+    private void addOperationStatistics(List<LabeledString> details) {
+        SqlPerformanceMonitor pm = getPerformanceMonitor();
+        if (pm == null) {
+            return;
+        }
+        for (SqlOperationStatistics statistics : pm.getOperationStatistics()) {
+            details.add(new LabeledString(DETAILS_OPERATION_STATISTICS + statistics.getKind(), statistics.shortDump()));
+        }
+        for (SqlOperationStatistics statistics : pm.getRecentOperationStatistics()) {
+            details.add(new LabeledString(DETAILS_RECENT_OPERATION_STATISTICS + statistics.getKind(),
+                    "last " + pm.getWindowSeconds() + " s: " + statistics.shortDump()));
+        }
+    }
+
     private void readDetailsFromConnection(RepositoryDiag diag, final SqlRepositoryConfiguration config) {
         final List<LabeledString> details = diag.getAdditionalDetails();
 
@@ -847,6 +909,7 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         	case SINGLE_TRANSACTION: searchObjectsIterativeBySingleTransaction(type, query, handler, options, subResult); break;
         	case SIMPLE_PAGING: objectRetriever.searchObjectsIterativeByPaging(type, query, handler, options, subResult); break;
 	        case STRICTLY_SEQUENTIAL_PAGING: objectRetriever.searchObjectsIterativeByPagingStrictlySequential(type, query, handler, options, subResult); break;
+	        case PARALLEL_PAGING: objectRetriever.searchObjectsIterativeByParallelPaging(type, query, handler, options, subResult); break;
 	        default: throw new AssertionError("iterationMethod: " + iterationMethod);
         }
 	    return null;
@@ -929,6 +992,15 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         if (LOGGER.isTraceEnabled())
             LOGGER.trace("Advancing sequence {}", oid);
 
+        int blockSize = getConfiguration().getSequenceBlockSize();
+        if (blockSize > 1) {
+            Long value = sequenceHelper.takeFromLocalPool(oid);
+            if (value != null) {
+                result.recordSuccess();
+                return value;
+            }
+        }
+
         // TODO executeAttempts
         int attempt = 1;
 
@@ -937,7 +1009,14 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         try {
             while (true) {
                 try {
-                    return sequenceHelper.advanceSequenceAttempt(oid, result);
+                    if (blockSize > 1) {
+                        // concurrent refills of the same pool are harmless: each thread gets its own block
+                        List<Long> block = sequenceHelper.advanceSequenceAttempt(oid, blockSize, result);
+                        sequenceHelper.addToLocalPool(oid, block.subList(1, block.size()));
+                        return block.get(0);
+                    } else {
+                        return sequenceHelper.advanceSequenceAttempt(oid, result);
+                    }
                 } catch (RuntimeException ex) {
                     attempt = baseHelper.logOperationAttempt(oid, "advanceSequence", attempt, ex, null);
                     pm.registerOperationNewAttempt(opHandle, attempt);
@@ -986,6 +1065,145 @@ public class SqlRepositoryServiceImpl extends SqlBaseService implements Reposito
         }
 	}
 
+    //region Work buckets
+
+    @Override
+    public WorkBucketType claimWorkBucket(String coordinatorOid, String workerOid, OperationResult parentResult)
+            throws SchemaException {
+        Validate.notEmpty(coordinatorOid, "Coordinator oid must not be null or empty.");
+        Validate.notEmpty(workerOid, "Worker oid must not be null or empty.");
+        Validate.notNull(parentResult, "Operation result must not be null.");
+
+        OperationResult result = parentResult.createMinorSubresult(CLAIM_WORK_BUCKET);
+        result.addParam("coordinatorOid", coordinatorOid);
+        result.addParam("workerOid", workerOid);
+        return executeWorkBucketAttempts(coordinatorOid, "claimWorkBucket", "claiming work bucket", result,
+                () -> workBucketHelper.claimWorkBucketAttempt(coordinatorOid, workerOid, result));
+    }
+
+    @Override
+    public void addWorkBuckets(String coordinatorOid, List<WorkBucketType> buckets, String workerOid,
+            OperationResult parentResult) throws ObjectAlreadyExistsException, SchemaException {
+        Validate.notEmpty(coordinatorOid, "Coordinator oid must not be null or empty.");
+        Validate.notNull(buckets, "Buckets must not be null.");
+        Validate.notNull(parentResult, "Operation result must not be null.");
+
+        OperationResult result = parentResult.createMinorSubresult(ADD_WORK_BUCKETS);
+        result.addParam("coordinatorOid", coordinatorOid);
+        result.addParam("workerOid", workerOid);
+        result.addParam("buckets", buckets.size());
+        if (buckets.isEmpty()) {
+            result.recordSuccess();
+            return;
+        }
+
+        int attempt = 1;
+        SqlPerformanceMonitor pm = getPerformanceMonitor();
+        long opHandle = pm.registerOperationStart("addWorkBuckets");
+        try {
+            while (true) {
+                try {
+                    workBucketHelper.addWorkBucketsAttempt(coordinatorOid, buckets, workerOid, result);
+                    return;
+                } catch (RuntimeException ex) {
+                    attempt = baseHelper.logOperationAttempt(coordinatorOid, "adding work buckets", attempt, ex, result);
+                    pm.registerOperationNewAttempt(opHandle, attempt);
+                }
+            }
+        } finally {
+            pm.registerOperationFinish(opHandle, attempt);
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<WorkBucketType> getWorkBuckets(String coordinatorOid, WorkBucketStateType state, OperationResult parentResult)
+            throws SchemaException {
+        Validate.notEmpty(coordinatorOid, "Coordinator oid must not be null or empty.");
+        Validate.notNull(parentResult, "Operation result must not be null.");
+
+        OperationResult result = parentResult.createMinorSubresult(GET_WORK_BUCKETS);
+        result.addParam("coordinatorOid", coordinatorOid);
+        result.addParam("state", state);
+        return executeWorkBucketAttempts(coordinatorOid, "getWorkBuckets", "getting work buckets", result,
+                () -> workBucketHelper.getWorkBucketsAttempt(coordinatorOid, state, result));
+    }
+
+    @Override
+    public WorkBucketType getLastWorkBucket(String coordinatorOid, OperationResult parentResult) throws SchemaException {
+        Validate.notEmpty(coordinatorOid, "Coordinator oid must not be null or empty.");
+        Validate.notNull(parentResult, "Operation result must not be null.");
+
+        OperationResult result = parentResult.createMinorSubresult(GET_LAST_WORK_BUCKET);
+        result.addParam("coordinatorOid", coordinatorOid);
+        return executeWorkBucketAttempts(coordinatorOid, "getLastWorkBucket", "getting last work bucket", result,
+                () -> workBucketHelper.getLastWorkBucketAttempt(coordinatorOid, result));
+    }
+
+    @Override
+    public boolean changeDelegatedWorkBucketState(String coordinatorOid, int sequentialNumber, String workerOid,
+            WorkBucketStateType newState, OperationResult parentResult) {
+        Validate.notEmpty(coordinatorOid, "Coordinator oid must not be null or empty.");
+        Validate.notEmpty(workerOid, "Worker oid must not be null or empty.");
+        Validate.notNull(newState, "New state must not be null.");
+        Validate.notNull(parentResult, "Operation result must not be null.");
+
+        OperationResult result = parentResult.createMinorSubresult(CHANGE_DELEGATED_WORK_BUCKET_STATE);
+        result.addParam("coordinatorOid", coordinatorOid);
+        result.addParam("sequentialNumber", sequentialNumber);
+        result.addParam("workerOid", workerOid);
+        result.addParam("newState", newState);
+        return executeWorkBucketAttemptsNoSchemaException(coordinatorOid, "changeDelegatedWorkBucketState",
+                "changing work bucket state", result,
+                () -> workBucketHelper.changeDelegatedWorkBucketStateAttempt(coordinatorOid, sequentialNumber, workerOid, newState, result));
+    }
+
+    @Override
+    public int reclaimWorkBuckets(String coordinatorOid, Collection<String> liveWorkerOids, OperationResult parentResult) {
+        Validate.notEmpty(coordinatorOid, "Coordinator oid must not be null or empty.");
+        Validate.notNull(parentResult, "Operation result must not be null.");
+
+        OperationResult result = parentResult.createMinorSubresult(RECLAIM_WORK_BUCKETS);
+        result.addParam("coordinatorOid", coordinatorOid);
+        return executeWorkBucketAttemptsNoSchemaException(coordinatorOid, "reclaimWorkBuckets", "reclaiming work buckets",
+                result, () -> workBucketHelper.reclaimWorkBucketsAttempt(coordinatorOid, liveWorkerOids, result));
+    }
+
+    @Override
+    public void deleteWorkBuckets(String coordinatorOid, OperationResult parentResult) {
+        Validate.notEmpty(coordinatorOid, "Coordinator oid must not be null or empty.");
+        Validate.notNull(parentResult, "Operation result must not be null.");
+
+        OperationResult result = parentResult.createMinorSubresult(DELETE_WORK_BUCKETS);
+        result.addParam("coordinatorOid", coordinatorOid);
+        executeWorkBucketAttemptsNoSchemaException(coordinatorOid, "deleteWorkBuckets", "deleting work buckets", result,
+                () -> {
+                    workBucketHelper.deleteWorkBucketsAttempt(coordinatorOid, result);
+                    return null;
+                });
+    }
+
+    // buckets are not objects, so ObjectNotFoundException is never thrown
+    private <RV> RV executeWorkBucketAttempts(String coordinatorOid, String operationName, String operationVerb,
+            OperationResult subResult, ResultSupplier<RV> supplier) throws SchemaException {
+        try {
+            return executeAttempts(coordinatorOid, operationName, operationVerb, subResult, supplier);
+        } catch (ObjectNotFoundException e) {
+            throw new AssertionError("Should not occur", e);
+        }
+    }
+
+    private <RV> RV executeWorkBucketAttemptsNoSchemaException(String coordinatorOid, String operationName,
+            String operationVerb, OperationResult subResult, ResultSupplier<RV> supplier) {
+        try {
+            return executeWorkBucketAttempts(coordinatorOid, operationName, operationVerb, subResult, supplier);
+        } catch (SchemaException e) {
+            throw new AssertionError("Should not occur", e);
+        }
+    }
+
+    //endregion
+
     @Override
     public RepositoryQueryDiagResponse executeQueryDiagnostics(RepositoryQueryDiagRequest request, OperationResult result) {
         Validate.notNull(request, "Request must not be null.");
@@ -37,6 +37,7 @@ import com.evolveum.midpoint.schema.ObjectDeltaOperation;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import org.apache.commons.lang.Validate;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cascade;
 import org.hibernate.annotations.ForeignKey;
 
@@ -72,6 +73,9 @@ public class RAuditEventRecord implements Serializable {
     public static final String TABLE_NAME = "m_audit_event";
     public static final String COLUMN_TIMESTAMP = "timestampValue";
 
+    // collections of this many records are loaded at once when reading audit records
+    static final int COLLECTION_BATCH_SIZE = 100;
+
     private static final long serialVersionUID = 621116861556252436L;
 
     private long id;
@@ -135,6 +139,7 @@ public class RAuditEventRecord implements Serializable {
     @ForeignKey(name = "fk_audit_delta")
     @OneToMany(mappedBy = "record", orphanRemoval = true)
     @Cascade({org.hibernate.annotations.CascadeType.ALL})
+    @BatchSize(size = RAuditEventRecord.COLLECTION_BATCH_SIZE)
     public Set<RObjectDeltaOperation> getDeltas() {
         if (deltas == null) {
             deltas = new HashSet<>();
@@ -155,6 +160,7 @@ public class RAuditEventRecord implements Serializable {
     @ForeignKey(name = "fk_audit_prop_value")
     @OneToMany(mappedBy = "record", orphanRemoval = true)
     @Cascade({org.hibernate.annotations.CascadeType.ALL})
+    @BatchSize(size = RAuditEventRecord.COLLECTION_BATCH_SIZE)
     public Set<RAuditPropertyValue> getPropertyValues() {
         if (propertyValues == null) {
             propertyValues = new HashSet<>();
@@ -165,6 +171,7 @@ public class RAuditEventRecord implements Serializable {
     @ForeignKey(name = "fk_audit_ref_value")
     @OneToMany(mappedBy = "record", orphanRemoval = true)
     @Cascade({org.hibernate.annotations.CascadeType.ALL})
+    @BatchSize(size = RAuditEventRecord.COLLECTION_BATCH_SIZE)
     public Set<RAuditReferenceValue> getReferenceValues() {
         if (referenceValues == null) {
             referenceValues = new HashSet<>();
@@ -451,6 +458,24 @@ public class RAuditEventRecord implements Serializable {
                 changedItems, propertyValues, referenceValues, result);
     }
 
+    /**
+     * Clears identifiers generated by an unsuccessful (rolled back) attempt to save the record,
+     * so the record can be saved again.
+     */
+    public void resetIdentifiers() {
+        id = 0;
+        getDeltas().forEach(delta -> delta.setRecordId(null));
+        getChangedItems().forEach(item -> item.setRecordId(null));
+        for (RAuditPropertyValue value : getPropertyValues()) {
+            value.setId(0);
+            value.setRecordId(null);
+        }
+        for (RAuditReferenceValue value : getReferenceValues()) {
+            value.setId(0);
+            value.setRecordId(null);
+        }
+    }
+
     public static RAuditEventRecord toRepo(AuditEventRecord record, PrismContext prismContext, Boolean isTransient)
         throws DtoTranslationException {
 
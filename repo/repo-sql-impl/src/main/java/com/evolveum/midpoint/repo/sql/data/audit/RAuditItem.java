@@ -17,6 +17,7 @@
 package com.evolveum.midpoint.repo.sql.data.audit;
 
 import javax.persistence.*;
+import java.io.Serializable;
 
 import com.evolveum.midpoint.repo.sql.helpers.modify.Ignore;
 import com.evolveum.midpoint.repo.sql.util.EntityState;
@@ -30,7 +31,7 @@ import static com.evolveum.midpoint.repo.sql.data.audit.RAuditItem.COLUMN_RECORD
 @Table(name = RAuditItem.TABLE_NAME, indexes = {
 		@Index(name = "iChangedItemPath", columnList = "changedItemPath"),
 		@Index(name = "iAuditItemRecordId", columnList = COLUMN_RECORD_ID)})
-public class RAuditItem implements EntityState {
+public class RAuditItem implements EntityState, Serializable {
 
 	public static final String TABLE_NAME = "m_audit_item";
 	public static final String COLUMN_RECORD_ID = "record_id";
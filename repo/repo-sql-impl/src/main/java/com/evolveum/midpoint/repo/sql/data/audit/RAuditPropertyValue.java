@@ -22,6 +22,7 @@ import com.evolveum.midpoint.repo.sql.util.EntityState;
 
 import javax.persistence.*;
 
+import java.io.Serializable;
 import java.util.Objects;
 
 import static com.evolveum.midpoint.repo.sql.data.audit.RAuditPropertyValue.COLUMN_RECORD_ID;
@@ -31,7 +32,7 @@ import static com.evolveum.midpoint.repo.sql.data.audit.RAuditPropertyValue.TABL
 @Entity
 @Table(name = TABLE_NAME, indexes = {
 		@Index(name = "iAuditPropValRecordId", columnList = COLUMN_RECORD_ID)})
-public class RAuditPropertyValue implements EntityState {
+public class RAuditPropertyValue implements EntityState, Serializable {
 
 	public static final String TABLE_NAME = "m_audit_prop_value";
 	public static final String COLUMN_RECORD_ID = "record_id";
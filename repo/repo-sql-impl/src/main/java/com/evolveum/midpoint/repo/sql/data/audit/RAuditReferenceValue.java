@@ -23,6 +23,7 @@ import com.evolveum.midpoint.repo.sql.util.EntityState;
 import com.evolveum.midpoint.repo.sql.util.RUtil;
 
 import javax.persistence.*;
+import java.io.Serializable;
 import java.util.Objects;
 
 import static com.evolveum.midpoint.repo.sql.data.audit.RAuditReferenceValue.COLUMN_RECORD_ID;
@@ -32,7 +33,7 @@ import static com.evolveum.midpoint.repo.sql.data.audit.RAuditReferenceValue.TAB
 @Entity
 @Table(name = TABLE_NAME, indexes = {
 		@Index(name = "iAuditRefValRecordId", columnList = COLUMN_RECORD_ID)})
-public class RAuditReferenceValue implements EntityState {
+public class RAuditReferenceValue implements EntityState, Serializable {
 
 	public static final String TABLE_NAME = "m_audit_ref_value";
 	public static final String COLUMN_RECORD_ID = "record_id";
@@ -81,15 +81,16 @@ import java.util.Set;
         @NamedQuery(name = "get.focusPhoto", query = "select p.photo from RFocusPhoto p where p.ownerOid = :oid"),
         @NamedQuery(name = "get.taskResult", query = "select t.fullResult from RTask t where t.oid = :oid"),
         @NamedQuery(name = "get.taskStatus", query = "select t.status from RTask t where t.oid = :oid"),
-        @NamedQuery(name = "get.object", query = "select o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount from RObject as o where o.oid=:oid"),
+        @NamedQuery(name = "get.object", query = "select o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount from RObject as o where o.oid=:oid"),
+        @NamedQuery(name = "get.objects", query = "select o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount from RObject as o where o.oid in (:oids)"),
         @NamedQuery(name = "searchShadowOwner.getShadow", query = "select s.oid from RShadow as s where s.oid = :oid"),
-        @NamedQuery(name = "searchShadowOwner.getOwner", query = "select o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount from RFocus as o left join o.linkRef as ref where ref.targetOid = :oid"),
-        @NamedQuery(name = "listAccountShadowOwner.getUser", query = "select u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount from RUser as u left join u.linkRef as ref where ref.targetOid = :oid"),
+        @NamedQuery(name = "searchShadowOwner.getOwner", query = "select o.oid, o.fullObject, o.stringsCount, o.longsCount, o.datesCount, o.referencesCount, o.polysCount, o.booleansCount, o.splitContainersCount from RFocus as o left join o.linkRef as ref where ref.targetOid = :oid"),
+        @NamedQuery(name = "listAccountShadowOwner.getUser", query = "select u.oid, u.fullObject, u.stringsCount, u.longsCount, u.datesCount, u.referencesCount, u.polysCount, u.booleansCount, u.splitContainersCount from RUser as u left join u.linkRef as ref where ref.targetOid = :oid"),
         @NamedQuery(name = "getExtCount", query = "select stringsCount, longsCount, datesCount, referencesCount, polysCount, booleansCount from RObject where oid = :oid"),
         @NamedQuery(name = "getVersion", query = "select o.version from RObject as o where o.oid = :oid"),
         @NamedQuery(name = "existOrgClosure", query = "select count(*) from ROrgClosure as o where o.ancestorOid = :ancestorOid and o.descendantOid = :descendantOid"),
         @NamedQuery(name = "sqlDeleteOrgClosure", query = "delete from ROrgClosure as o where o.descendantOid = :oid or o.ancestorOid = :oid"),
-        @NamedQuery(name = "listResourceObjectShadows", query = "select s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount from RShadow as s left join s.resourceRef as ref where ref.targetOid = :oid"),
+        @NamedQuery(name = "listResourceObjectShadows", query = "select s.oid, s.fullObject, s.stringsCount, s.longsCount, s.datesCount, s.referencesCount, s.polysCount, s.booleansCount, s.splitContainersCount from RShadow as s left join s.resourceRef as ref where ref.targetOid = :oid"),
         @NamedQuery(name = "getDefinition.ROExtDate", query = "select c.itemId from ROExtDate as c where c.owner.oid = :oid and c.ownerType = :ownerType"),
         @NamedQuery(name = "getDefinition.ROExtString", query = "select c.itemId from ROExtString as c where c.owner.oid = :oid and c.ownerType = :ownerType"),
         @NamedQuery(name = "getDefinition.ROExtPolyString", query = "select c.itemId from ROExtPolyString as c where c.owner.oid = :oid and c.ownerType = :ownerType"),
@@ -176,6 +177,8 @@ public abstract class RObject<T extends ObjectType> implements Metadata<RObjectR
     private Short datesCount;
     private Short referencesCount;
     private Short polysCount;
+    //number of container values stored outside fullObject (see SplitContainerHelper)
+    private Integer splitContainersCount;
     private Set<ROExtString> strings;
     private Set<ROExtLong> longs;
     private Set<ROExtDate> dates;
@@ -415,6 +418,11 @@ public abstract class RObject<T extends ObjectType> implements Metadata<RObjectR
         return polysCount;
     }
 
+    @NotQueryable
+    public Integer getSplitContainersCount() {
+        return splitContainersCount;
+    }
+
     @Enumerated
     @NotQueryable
     public RObjectType getObjectTypeClass() {
@@ -540,6 +548,10 @@ public abstract class RObject<T extends ObjectType> implements Metadata<RObjectR
         this.referencesCount = referencesCount;
     }
 
+    public void setSplitContainersCount(Integer splitContainersCount) {
+        this.splitContainersCount = splitContainersCount;
+    }
+
     public void setPolysCount(Short polysCount) {
         this.polysCount = polysCount;
     }
@@ -644,6 +656,8 @@ public abstract class RObject<T extends ObjectType> implements Metadata<RObjectR
         if (booleans != null ? !booleans.equals(rObject.booleans) : rObject.booleans != null) return false;
         if (booleansCount != null ? !booleansCount.equals(rObject.booleansCount) : rObject.booleansCount != null)
             return false;
+        if (splitContainersCount != null ? !splitContainersCount.equals(rObject.splitContainersCount) : rObject.splitContainersCount != null)
+            return false;
         if (textInfoItems != null ? !textInfoItems.equals(rObject.textInfoItems) : rObject.textInfoItems != null) return false;
         if (operationExecutions != null ? !operationExecutions.equals(rObject.operationExecutions) : rObject.operationExecutions != null) return false;
         if (subtype != null ? !subtype.equals(rObject.subtype) : rObject.subtype != null) return false;
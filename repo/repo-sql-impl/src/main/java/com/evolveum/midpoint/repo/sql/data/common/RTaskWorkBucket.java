@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.data.common;
+
+import com.evolveum.midpoint.repo.sql.data.common.enums.RWorkBucketState;
+import com.evolveum.midpoint.repo.sql.data.common.id.RTaskWorkBucketId;
+import com.evolveum.midpoint.repo.sql.helpers.modify.Ignore;
+import com.evolveum.midpoint.repo.sql.query2.definition.NotQueryable;
+import com.evolveum.midpoint.repo.sql.util.RUtil;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Work bucket of a coordinator task, used when buckets are stored in a table (see WorkBucketStorageType.TABLE)
+ * instead of the task work state. There is no foreign key to the task: buckets are deleted explicitly.
+ *
+ * The state is kept in a separate column (and not in the serialized bucket) so it can be changed without
+ * touching the full object.
+ *
+ * @author mederly
+ */
+@Ignore
+@IdClass(RTaskWorkBucketId.class)
+@Entity
+@Table(name = RTaskWorkBucket.TABLE_NAME,
+        indexes = {
+                @javax.persistence.Index(name = "iTaskWorkBucketState", columnList = "owner_oid, state")
+        })
+@NotQueryable
+public class RTaskWorkBucket implements Serializable {
+
+    public static final String TABLE_NAME = "m_task_work_bucket";
+
+    private String ownerOid;
+    private Integer sequentialNumber;
+    private RWorkBucketState state;
+    private String workerOid;
+    private byte[] fullObject;
+
+    @Id
+    @Column(name = "owner_oid", length = RUtil.COLUMN_LENGTH_OID, nullable = false)
+    public String getOwnerOid() {
+        return ownerOid;
+    }
+
+    public void setOwnerOid(String ownerOid) {
+        this.ownerOid = ownerOid;
+    }
+
+    @Id
+    @Column(name = "sequentialNumber", nullable = false)
+    public Integer getSequentialNumber() {
+        return sequentialNumber;
+    }
+
+    public void setSequentialNumber(Integer sequentialNumber) {
+        this.sequentialNumber = sequentialNumber;
+    }
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "state", nullable = false)
+    public RWorkBucketState getState() {
+        return state;
+    }
+
+    public void setState(RWorkBucketState state) {
+        this.state = state;
+    }
+
+    /**
+     * Worker task the bucket is delegated to. Null if the bucket is not delegated.
+     */
+    @Column(name = "worker_oid", length = RUtil.COLUMN_LENGTH_OID)
+    public String getWorkerOid() {
+        return workerOid;
+    }
+
+    public void setWorkerOid(String workerOid) {
+        this.workerOid = workerOid;
+    }
+
+    @Lob
+    @Column(name = "fullObject")
+    public byte[] getFullObject() {
+        return fullObject;
+    }
+
+    public void setFullObject(byte[] fullObject) {
+        this.fullObject = fullObject;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RTaskWorkBucket that = (RTaskWorkBucket) o;
+        return Objects.equals(ownerOid, that.ownerOid) &&
+                Objects.equals(sequentialNumber, that.sequentialNumber) &&
+                state == that.state &&
+                Objects.equals(workerOid, that.workerOid) &&
+                Arrays.equals(fullObject, that.fullObject);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ownerOid, sequentialNumber);
+    }
+
+    @Override
+    public String toString() {
+        return "RTaskWorkBucket{" +
+                "ownerOid='" + ownerOid + '\'' +
+                ", sequentialNumber=" + sequentialNumber +
+                ", state=" + state +
+                ", workerOid='" + workerOid + '\'' +
+                '}';
+    }
+}
@@ -125,6 +125,8 @@ public class RAssignment implements Container, Metadata<RAssignmentReference> {
     private REmbeddedReference modifierRef;
     private Set<RAssignmentReference> modifyApproverRef;
     private String modifyChannel;
+    //content of the assignment, used only if it's not stored in the owner's full object
+    private byte[] fullObject;
 
     public RAssignment() {
         this(null, null);
@@ -289,6 +291,16 @@ public class RAssignment implements Container, Metadata<RAssignmentReference> {
         this.policySituation = policySituation;
     }
 
+    @Lob
+    @NotQueryable
+    public byte[] getFullObject() {
+        return fullObject;
+    }
+
+    public void setFullObject(byte[] fullObject) {
+        this.fullObject = fullObject;
+    }
+
 
     public void setLifecycleState(String lifecycleState) {
         this.lifecycleState = lifecycleState;
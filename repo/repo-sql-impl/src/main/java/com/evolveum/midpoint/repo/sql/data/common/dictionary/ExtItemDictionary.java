@@ -37,6 +37,9 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Lookups are served from an immutable snapshot of all items, without any locking. Only when an item is not
+ * found there (i.e. the snapshot has to be re-fetched or a new item has to be created) the dictionary is locked.
+ *
  * TODO clean this up!
  *
  * @author mederly
@@ -45,16 +48,32 @@ public class ExtItemDictionary {
 
     private static final Trace LOGGER = TraceManager.getTrace(ExtItemDictionary.class);
 
+    public static final String LOCK_NAME = "extItemDictionary";
+
     @Autowired
     private SqlRepositoryServiceImpl repositoryService;
     @Autowired
     private BaseHelper baseHelper;
 
-    private Map<Integer, RExtItem> itemsById;
-    private Map<RExtItem.Key, RExtItem> itemsByKey;
+    private volatile Snapshot snapshot;
+
+    private static class Snapshot {
+        private final Map<Integer, RExtItem> itemsById;
+        private final Map<RExtItem.Key, RExtItem> itemsByKey;
 
+        private Snapshot(List<RExtItem> items) {
+            itemsById = new HashMap<>(items.size());
+            itemsByKey = new HashMap<>(items.size());
+            for (RExtItem item : items) {
+                itemsById.put(item.getId(), item);
+                itemsByKey.put(item.toKey(), item);
+            }
+        }
+    }
+
+    // must be called under lock
     private boolean fetchItemsIfNeeded() {
-        if (itemsByKey != null) {
+        if (snapshot != null) {
             return false;
         } else {
             fetchItems();
@@ -62,6 +81,7 @@ public class ExtItemDictionary {
         }
     }
 
+    // must be called under lock
     private void fetchItems() {
         executeAttempts("fetchExtItems", "fetch ext items", () -> fetchItemsAttempt());
     }
@@ -76,13 +96,7 @@ public class ExtItemDictionary {
             List<RExtItem> items = session.createQuery(query).getResultList();
             LOGGER.debug("Fetched {} item definitions", items.size());
 
-            itemsById = new HashMap<>(items.size());
-            itemsByKey = new HashMap<>(items.size());
-
-            for (RExtItem item : items) {
-                itemsById.put(item.getId(), item);
-                itemsByKey.put(item.toKey(), item);
-            }
+            snapshot = new Snapshot(items);
 
             session.getTransaction().commit();
         } catch (RuntimeException ex) {
@@ -94,33 +108,57 @@ public class ExtItemDictionary {
     }
 
     @NotNull
-    public synchronized RExtItem createOrFindItemDefinition(@NotNull ItemDefinition<?> definition, boolean throwExceptionAfterCreate) {
+    public RExtItem createOrFindItemDefinition(@NotNull ItemDefinition<?> definition, boolean throwExceptionAfterCreate) {
         return createOrFindItemByDefinitionInternal(definition, true, throwExceptionAfterCreate);
     }
 
     @NotNull
-    public synchronized RExtItem createOrFindItemDefinition(@NotNull ItemDefinition<?> definition) {
+    public RExtItem createOrFindItemDefinition(@NotNull ItemDefinition<?> definition) {
         return createOrFindItemByDefinitionInternal(definition, true, true);
     }
 
     @Nullable
-    public synchronized RExtItem findItemByDefinition(@NotNull ItemDefinition<?> definition) {
+    public RExtItem findItemByDefinition(@NotNull ItemDefinition<?> definition) {
         return createOrFindItemByDefinitionInternal(definition, false, true);
     }
 
     @Contract("_, _, true -> !null")
-    private synchronized RExtItem createOrFindItemByDefinitionInternal(
+    private RExtItem createOrFindItemByDefinitionInternal(
             @NotNull ItemDefinition<?> definition, boolean create, boolean throwExceptionAfterCreate) {
 
-        boolean fetchedNow = fetchItemsIfNeeded();
         RExtItem.Key key = RExtItem.createKeyFromDefinition(definition);
+        Snapshot current = snapshot;
+        if (current != null) {
+            RExtItem item = current.itemsByKey.get(key);
+            if (item != null) {
+                getPerformanceMonitor().registerLockFreeRead(LOCK_NAME);
+                return item;
+            }
+        }
+
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            getPerformanceMonitor().registerLockAcquired(LOCK_NAME, System.nanoTime() - waitStart);
+            return createOrFindItemByDefinitionLocked(definition, key, current, create, throwExceptionAfterCreate);
+        }
+    }
+
+    /**
+     * @param seen Snapshot that was seen (and didn't contain the item) before acquiring the lock. If another
+     *             thread re-fetched the items in the meanwhile, we need not do that again.
+     */
+    @Contract("_, _, _, true, _ -> !null")
+    private RExtItem createOrFindItemByDefinitionLocked(@NotNull ItemDefinition<?> definition, RExtItem.Key key,
+            Snapshot seen, boolean create, boolean throwExceptionAfterCreate) {
 
-        RExtItem item = itemsByKey.get(key);
+        boolean fetchedNow = fetchItemsIfNeeded() || snapshot != seen;
+
+        RExtItem item = snapshot.itemsByKey.get(key);
 
         if (item == null && !fetchedNow) {
             LOGGER.debug("Ext item for {} not found, fetching all items.", key);
             fetchItems();
-            item = itemsByKey.get(key);
+            item = snapshot.itemsByKey.get(key);
         }
         if (item == null && create) {
             LOGGER.debug("Ext item for {} not found even in current items; creating it.", key);
@@ -140,8 +178,7 @@ public class ExtItemDictionary {
 
     @PostConstruct
     public synchronized void initialize() {
-        itemsByKey = null;
-        itemsById = null;
+        snapshot = null;
     }
 
     private void addExtItemAttempt(RExtItem item) {
@@ -158,8 +195,12 @@ public class ExtItemDictionary {
         }
     }
 
+    private SqlPerformanceMonitor getPerformanceMonitor() {
+        return repositoryService.getPerformanceMonitor();
+    }
+
     private void executeAttempts(String operationName, String operationVerb, Runnable runnable) {
-        SqlPerformanceMonitor pm = repositoryService.getPerformanceMonitor();
+        SqlPerformanceMonitor pm = getPerformanceMonitor();
         long opHandle = pm.registerOperationStart(operationName);
         int attempt = 1;
         try {
@@ -178,12 +219,25 @@ public class ExtItemDictionary {
     }
 
     public RExtItem getItemById(Integer extItemId) {
-        boolean fresh = fetchItemsIfNeeded();
-        RExtItem extItem = itemsById.get(extItemId);
-        if (extItem != null || fresh) {
-            return extItem;
+        Snapshot current = snapshot;
+        if (current != null) {
+            RExtItem extItem = current.itemsById.get(extItemId);
+            if (extItem != null) {
+                getPerformanceMonitor().registerLockFreeRead(LOCK_NAME);
+                return extItem;
+            }
+        }
+
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            getPerformanceMonitor().registerLockAcquired(LOCK_NAME, System.nanoTime() - waitStart);
+            boolean fresh = fetchItemsIfNeeded() || snapshot != current;
+            RExtItem extItem = snapshot.itemsById.get(extItemId);
+            if (extItem != null || fresh) {
+                return extItem;
+            }
+            fetchItems();
+            return snapshot.itemsById.get(extItemId);
         }
-        fetchItems();
-        return itemsById.get(extItemId);
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.data.common.id;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * @author mederly
+ */
+public class RTaskWorkBucketId implements Serializable {
+
+    private String ownerOid;
+    private Integer sequentialNumber;
+
+    public RTaskWorkBucketId() {
+    }
+
+    public RTaskWorkBucketId(String ownerOid, Integer sequentialNumber) {
+        this.ownerOid = ownerOid;
+        this.sequentialNumber = sequentialNumber;
+    }
+
+    public String getOwnerOid() {
+        return ownerOid;
+    }
+
+    public void setOwnerOid(String ownerOid) {
+        this.ownerOid = ownerOid;
+    }
+
+    public Integer getSequentialNumber() {
+        return sequentialNumber;
+    }
+
+    public void setSequentialNumber(Integer sequentialNumber) {
+        this.sequentialNumber = sequentialNumber;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RTaskWorkBucketId that = (RTaskWorkBucketId) o;
+        return Objects.equals(ownerOid, that.ownerOid) &&
+                Objects.equals(sequentialNumber, that.sequentialNumber);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ownerOid, sequentialNumber);
+    }
+
+    @Override
+    public String toString() {
+        return "RTaskWorkBucketId{" +
+                "ownerOid='" + ownerOid + '\'' +
+                ", sequentialNumber=" + sequentialNumber +
+                '}';
+    }
+}
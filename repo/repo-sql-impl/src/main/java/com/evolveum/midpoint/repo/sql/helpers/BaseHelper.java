@@ -261,6 +261,7 @@ public class BaseHelper {
 		// these error codes / SQL states we consider related to locking:
 		//  code 50200 [table timeout lock in H2, 50200 is LOCK_TIMEOUT_1 error code]
 		//  code 40001 [DEADLOCK_1 in H2]
+		//  code 90131 [CONCURRENT_UPDATE_1 in H2, e.g. when two workers claim the same work bucket]
 		//  state 40001 [serialization failure in PostgreSQL - http://www.postgresql.org/docs/9.1/static/transaction-iso.html - and probably also in other systems]
 		//  state 40P01 [deadlock in PostgreSQL]
 		//  code ORA-08177: can't serialize access for this transaction in Oracle
@@ -289,6 +290,7 @@ public class BaseHelper {
 
 		return sqlException.getErrorCode() == 50200
 				|| sqlException.getErrorCode() == 40001
+				|| getConfiguration().isUsingH2() && sqlException.getErrorCode() == 90131
 				|| "40001".equals(sqlException.getSQLState())
 				|| "40P01".equals(sqlException.getSQLState())
 				|| sqlException.getErrorCode() == 8177
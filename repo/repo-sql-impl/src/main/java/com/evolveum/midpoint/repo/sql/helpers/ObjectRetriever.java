@@ -19,6 +19,7 @@ package com.evolveum.midpoint.repo.sql.helpers;
 import com.evolveum.midpoint.common.crypto.CryptoUtil;
 import com.evolveum.midpoint.prism.*;
 import com.evolveum.midpoint.prism.marshaller.XNodeProcessorEvaluationMode;
+import com.evolveum.midpoint.prism.query.ObjectOrdering;
 import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.RepositoryObjectDiagnosticData;
@@ -36,6 +37,8 @@ import com.evolveum.midpoint.repo.sql.data.common.type.RObjectExtensionType;
 import com.evolveum.midpoint.repo.sql.query.QueryException;
 import com.evolveum.midpoint.repo.sql.query.RQuery;
 import com.evolveum.midpoint.repo.sql.query2.QueryEngine2;
+import com.evolveum.midpoint.repo.sql.query2.QueryInterpreter2;
+import com.evolveum.midpoint.repo.sql.query2.QueryTemplateCache;
 import com.evolveum.midpoint.repo.sql.query2.RQueryImpl;
 import com.evolveum.midpoint.repo.sql.query2.hqm.QueryParameterValue;
 import com.evolveum.midpoint.repo.sql.util.*;
@@ -64,6 +67,9 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.xml.namespace.QName;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.commons.lang3.ArrayUtils.getLength;
 
@@ -75,6 +81,11 @@ public class ObjectRetriever {
 
 	public static final String CLASS_DOT = ObjectRetriever.class.getName() + ".";
 	public static final String OPERATION_GET_OBJECT_INTERNAL = CLASS_DOT + "getObjectInternal";
+	public static final String OPERATION_SEARCH_OID_RANGE = CLASS_DOT + "searchOidRange";
+
+	private static final int MAX_OIDS_TO_GET_AT_ONCE = 500;
+	private static final long PARALLEL_SEARCH_POLL_INTERVAL = 1000L;                 // milliseconds
+	private static final long PARALLEL_SEARCH_SHUTDOWN_TIMEOUT = 60000L;             // milliseconds
 
     private static final Trace LOGGER = TraceManager.getTrace(ObjectRetriever.class);
     private static final Trace LOGGER_PERFORMANCE = TraceManager.getTrace(SqlRepositoryServiceImpl.PERFORMANCE_LOG_NAME);
@@ -82,10 +93,12 @@ public class ObjectRetriever {
     @Autowired private LookupTableHelper lookupTableHelper;
 	@Autowired private CertificationCaseHelper caseHelper;
 	@Autowired private CaseManagementHelper caseManagementHelper;
+	@Autowired private SplitContainerHelper splitContainerHelper;
 	@Autowired private BaseHelper baseHelper;
 	@Autowired private NameResolutionHelper nameResolutionHelper;
 	@Autowired private PrismContext prismContext;
 	@Autowired private ExtItemDictionary extItemDictionary;
+	@Autowired private QueryTemplateCache queryTemplateCache;
 	@Autowired
 	@Qualifier("repositoryService")
 	private RepositoryService repositoryService;
@@ -124,6 +137,60 @@ public class ObjectRetriever {
         return objectType;
     }
 
+    public <T extends ObjectType> SearchResultList<PrismObject<T>> getObjectsAttempt(Class<T> type, List<String> oids,
+			Collection<SelectorOptions<GetOperationOptions>> options, OperationResult result)
+            throws SchemaException {
+        LOGGER_PERFORMANCE.debug("> get objects {}, oids={}", type.getSimpleName(), oids.size());
+        SearchResultList<PrismObject<T>> objects = new SearchResultList<>(new ArrayList<>(oids.size()));
+
+        Session session = null;
+        try {
+            session = baseHelper.beginReadOnlyTransaction();
+
+            Map<String, PrismObject<T>> loaded = new HashMap<>();
+            for (int from = 0; from < oids.size(); from += MAX_OIDS_TO_GET_AT_ONCE) {
+                List<String> batch = oids.subList(from, Math.min(from + MAX_OIDS_TO_GET_AT_ONCE, oids.size()));
+                Query query = session.getNamedQuery("get.objects");
+                query.setParameterList("oids", batch);
+                query.setResultTransformer(GetObjectResult.RESULT_STYLE.getResultTransformer());
+
+                @SuppressWarnings("unchecked")
+                List<GetObjectResult> fullObjects = query.list();
+                for (GetObjectResult fullObject : fullObjects) {
+                    PrismObject<T> prismObject = updateLoadedObject(fullObject, type, fullObject.getOid(), options,
+                            null, session, result);
+                    if (prismObject != null && !type.isAssignableFrom(prismObject.getCompileTimeClass())) {
+                        // e.g. a reference with wrong type; treated like a non-existing object
+                        LOGGER.debug("Skipping {} as it is not of requested type {}", prismObject, type.getSimpleName());
+                        continue;
+                    }
+                    validateObjectType(prismObject, type);
+                    loaded.put(fullObject.getOid(), prismObject);
+                }
+            }
+            // keeping the order of requested OIDs
+            for (String oid : oids) {
+                PrismObject<T> object = loaded.get(oid);
+                if (object != null) {
+                    objects.add(object);
+                }
+            }
+
+            session.getTransaction().commit();
+        } catch (SchemaException ex) {
+            baseHelper.rollbackTransaction(session, ex, "Schema error while getting objects. Reason: "
+                    + ex.getMessage(), result, true);
+            throw ex;
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralException(ex, session, result);
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, result);
+        }
+
+        LOGGER.trace("Got {} of {} requested objects", objects.size(), oids.size());
+        return objects;
+    }
+
     public <T extends ObjectType> PrismObject<T> getObjectInternal(Session session, Class<T> type, String oid,
 			Collection<SelectorOptions<GetOperationOptions>> options,
 			boolean lockForUpdate, OperationResult operationResult)
@@ -191,7 +258,8 @@ public class ObjectRetriever {
 
 			if (obj != null) {
 				fullObject = new GetObjectResult(obj.getOid(), obj.getFullObject(), obj.getStringsCount(), obj.getLongsCount(),
-						obj.getDatesCount(), obj.getReferencesCount(), obj.getPolysCount(), obj.getBooleansCount());
+						obj.getDatesCount(), obj.getReferencesCount(), obj.getPolysCount(), obj.getBooleansCount(),
+						obj.getSplitContainersCount());
 			}
 		}
 
@@ -221,6 +289,10 @@ public class ObjectRetriever {
         return baseHelper.getConfiguration();
     }
 
+    private QueryEngine2 createQueryEngine() {
+        return new QueryEngine2(getConfiguration(), extItemDictionary, prismContext, queryTemplateCache);
+    }
+
     private <T extends ObjectType> PrismObject<T> throwObjectNotFoundException(Class<T> type, String oid)
             throws ObjectNotFoundException {
         throw new ObjectNotFoundException("Object of type '" + type.getSimpleName() + "' with oid '" + oid
@@ -320,7 +392,7 @@ public class ObjectRetriever {
                 longCount = (Number) sqlQuery.uniqueResult();
             } else {
                 RQuery rQuery;
-				QueryEngine2 engine = new QueryEngine2(getConfiguration(), extItemDictionary, prismContext);
+				QueryEngine2 engine = createQueryEngine();
 				rQuery = engine.interpret(query, type, options, true, session);
 
                 longCount = (Number) rQuery.uniqueResult();
@@ -352,7 +424,7 @@ public class ObjectRetriever {
 		try {
 			session = baseHelper.beginReadOnlyTransaction();
 
-			QueryEngine2 engine = new QueryEngine2(getConfiguration(), extItemDictionary, prismContext);
+			QueryEngine2 engine = createQueryEngine();
 			RQuery rQuery = engine.interpret(query, type, options, true, session);
 			Number longCount = (Number) rQuery.uniqueResult();
 			LOGGER.trace("Found {} objects.", longCount);
@@ -376,7 +448,7 @@ public class ObjectRetriever {
             session = baseHelper.beginReadOnlyTransaction();
             RQuery rQuery;
 
-			QueryEngine2 engine = new QueryEngine2(getConfiguration(), extItemDictionary, prismContext);
+			QueryEngine2 engine = createQueryEngine();
 			rQuery = engine.interpret(query, type, options, false, session);
 
 			@SuppressWarnings({"unchecked", "raw"})
@@ -440,7 +512,7 @@ public class ObjectRetriever {
         try {
             session = baseHelper.beginReadOnlyTransaction();
 
-            QueryEngine2 engine = new QueryEngine2(getConfiguration(), extItemDictionary, prismContext);
+            QueryEngine2 engine = createQueryEngine();
             RQuery rQuery = engine.interpret(query, type, options, false, session);
 
             if (cases) {
@@ -505,12 +577,12 @@ public class ObjectRetriever {
 			Session session, OperationResult operationResult) throws SchemaException {
 
 		byte[] fullObject = result.getFullObject();
-		String xml = RUtil.getXmlFromByteArray(fullObject, getConfiguration().isUseZip());
         PrismObject<T> prismObject;
         try {
             // "Postel mode": be tolerant what you read. We need this to tolerate (custom) schema changes
 			ParsingContext parsingContext = ParsingContext.forMode(XNodeProcessorEvaluationMode.COMPAT);
-            prismObject = prismContext.parserFor(xml).context(parsingContext).parse();
+            prismObject = RUtil.createFullObjectParser(fullObject, getConfiguration().isUseZip(), prismContext)
+                    .context(parsingContext).parse();
 			if (parsingContext.hasWarnings()) {
 				LOGGER.warn("Object {} parsed with {} warnings", ObjectTypeUtil.toShortString(prismObject), parsingContext.getWarnings().size());
 				// TODO enable if needed
@@ -522,7 +594,8 @@ public class ObjectRetriever {
         	// This is a serious thing. We have corrupted XML in the repo. This may happen even
         	// during system init. We want really loud and detailed error here.
             LOGGER.error("Couldn't parse object {} {}: {}: {}\n{}",
-            		type.getSimpleName(), oid, e.getClass().getName(), e.getMessage(), xml, e);
+            		type.getSimpleName(), oid, e.getClass().getName(), e.getMessage(),
+                    RUtil.getFullObjectForLogging(fullObject, getConfiguration().isUseZip()), e);
             throw e;
         }
         attachDiagDataIfRequested(prismObject, fullObject, options);
@@ -538,6 +611,7 @@ public class ObjectRetriever {
                     property.setRealValue(photo);
                 }
             }
+            splitContainerHelper.updateLoadedFocus(prismObject, result.getSplitContainersCount(), options, session);
         } else if (ShadowType.class.equals(prismObject.getCompileTimeClass())) {
             //we store it because provisioning now sends it to repo, but it should be transient
             prismObject.removeContainer(ShadowType.F_ASSOCIATION);
@@ -739,7 +813,7 @@ public class ObjectRetriever {
         try {
             session = baseHelper.beginReadOnlyTransaction();
             RQuery rQuery;
-			QueryEngine2 engine = new QueryEngine2(getConfiguration(), extItemDictionary, prismContext);
+			QueryEngine2 engine = createQueryEngine();
 			rQuery = engine.interpret(query, type, options, false, session);
 
             ScrollableResults results = rQuery.scroll(ScrollMode.FORWARD_ONLY);
@@ -785,12 +859,52 @@ public class ObjectRetriever {
         }
     }
 
+    /**
+     * Paged search. Unless the client specifies an offset, it is done by seeking after the last object returned
+     * (see searchObjectsIterativeByKeyset), so there is no need to count the objects beforehand and no objects
+     * are skipped or duplicated when the data change. Explicit offset, grouping, or ordering that cannot be used
+     * for seeking (anything else than single-valued properties) lead to the traditional offset-based paging.
+     */
     public <T extends ObjectType> void searchObjectsIterativeByPaging(Class<T> type, ObjectQuery query,
                                                                       ResultHandler<T> handler,
                                                                       Collection<SelectorOptions<GetOperationOptions>> options,
                                                                       OperationResult result)
             throws SchemaException {
 
+        ObjectPaging paging = query != null ? query.getPaging() : null;
+        if (isKeysetPagingApplicable(type, paging)) {
+            try {
+                searchObjectsIterativeByKeyset(type, query, handler, options, result);
+            } finally {
+                result.setSummarizeSuccesses(true);
+                result.summarize();
+            }
+        } else {
+            searchObjectsIterativeByOffset(type, query, handler, options, result);
+        }
+    }
+
+    private boolean isKeysetPagingApplicable(Class<? extends ObjectType> type, ObjectPaging paging) {
+        if (paging == null) {
+            return true;
+        }
+        if (paging.getOffset() != null || paging.hasGrouping()) {
+            return false;
+        }
+        for (ObjectOrdering ordering : paging.getOrderingInstructions()) {
+            if (!QueryInterpreter2.isKeysetOrderingSupported(type, ordering.getOrderBy(), prismContext)) {
+                LOGGER.debug("Ordering by {} cannot be used for keyset paging of {}, using offset-based paging instead",
+                        ordering.getOrderBy(), type.getSimpleName());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private <T extends ObjectType> void searchObjectsIterativeByOffset(Class<T> type, ObjectQuery query,
+            ResultHandler<T> handler, Collection<SelectorOptions<GetOperationOptions>> options, OperationResult result)
+            throws SchemaException {
+
         try {
             ObjectQuery pagedQuery = query != null ? query.clone() : new ObjectQuery();
 
@@ -862,40 +976,240 @@ main:       while (remaining > 0) {
             Collection<SelectorOptions<GetOperationOptions>> options, OperationResult result)
             throws SchemaException {
 
+        if (query != null && query.getPaging() != null) {
+            throw new IllegalArgumentException("Externally specified paging is not supported on strictly sequential iterative search.");
+        }
+        searchObjectsIterativeByKeyset(type, query, handler, options, result);
+    }
+
+    /**
+     * Keyset ("seek") version of paged search: objects are ordered by client-specified ordering (if any)
+     * and then by OID. Each page starts right after the last object returned, using values of its ordering
+     * items and its OID. Client's maxSize (if present) limits the total number of objects returned.
+     *
+     * Ordering items must be single-valued properties. As for guarantees, the same as for strictly sequential
+     * search apply, provided that the values of ordering items are not changed during the processing.
+     */
+    private <T extends ObjectType> void searchObjectsIterativeByKeyset(
+            Class<T> type, ObjectQuery query, ResultHandler<T> handler,
+            Collection<SelectorOptions<GetOperationOptions>> options, OperationResult result)
+            throws SchemaException {
+        searchObjectsIterativeByKeyset(type, query, null, null, handler, options, result);
+    }
+
+    /**
+     * Keyset search restricted to OIDs in (oidGreaterThan, oidNotGreaterThan] range; null means unbounded.
+     * Range restriction is supported only if there's no ordering.
+     */
+    private <T extends ObjectType> void searchObjectsIterativeByKeyset(
+            Class<T> type, ObjectQuery query, String oidGreaterThan, String oidNotGreaterThan, ResultHandler<T> handler,
+            Collection<SelectorOptions<GetOperationOptions>> options, OperationResult result)
+            throws SchemaException {
+
         try {
             ObjectQuery pagedQuery = query != null ? query.clone() : new ObjectQuery();
+            ObjectPaging originalPaging = pagedQuery.getPaging();
+            if (originalPaging != null && originalPaging.hasGrouping()) {
+                throw new IllegalArgumentException("Grouping is not supported on paged iterative search.");
+            }
+            List<ObjectOrdering> orderings = originalPaging != null ? originalPaging.getOrderingInstructions() : Collections.emptyList();
+            Integer maxSize = originalPaging != null ? originalPaging.getMaxSize() : null;
 
-            String lastOid = "";
             final int batchSize = getConfiguration().getIterativeSearchByPagingBatchSize();
-
-            if (pagedQuery.getPaging() != null) {
-                throw new IllegalArgumentException("Externally specified paging is not supported on strictly sequential iterative search.");
-            }
+            int remaining = maxSize != null ? maxSize : Integer.MAX_VALUE;
 
             ObjectPagingAfterOid paging = new ObjectPagingAfterOid();
+            paging.setOrdering(orderings);
+            paging.setOidGreaterThan(oidGreaterThan);
+            paging.setOidNotGreaterThan(oidNotGreaterThan);
             pagedQuery.setPaging(paging);
-main:       for (;;) {
-                paging.setOidGreaterThan(lastOid);
-                paging.setMaxSize(batchSize);
+main:       while (remaining > 0) {
+                paging.setMaxSize(Math.min(remaining, batchSize));
 
                 List<PrismObject<T>> objects = repositoryService.searchObjects(type, pagedQuery, options, result);
 
                 for (PrismObject<T> object : objects) {
-                    lastOid = object.getOid();
+                    paging.setOidGreaterThan(object.getOid());
+                    paging.setOrderingValues(getOrderingValues(object, orderings));
                     if (!handler.handle(object, result)) {
                         break main;
                     }
                 }
 
-                if (objects.size() == 0) {
-                    break;
+                if (objects.size() < paging.getMaxSize()) {
+                    break;          // this was the last page
+                }
+                remaining -= objects.size();
+            }
+        } finally {
+            if (result.isUnknown()) {
+                result.computeStatus();
+            }
+        }
+    }
+
+    /**
+     * Parallel version of strictly sequential paging. The OID space is divided into a configured number
+     * of ranges that are searched concurrently, each by keyset paging in its own thread (and so in its own
+     * sessions). Objects fetched are passed to the handler in the calling thread via a bounded queue, so that
+     * the fetching threads cannot get too far ahead of the handler. There is no guarantee about the order
+     * in which the objects are passed to the handler.
+     *
+     * Ranges are delimited by prefixes dividing the hexadecimal space evenly. This works for any OIDs
+     * (they are simply compared as strings), although the ranges are balanced only for random UUID-like OIDs.
+     *
+     * The same constraints and guarantees as for strictly sequential search apply.
+     */
+    public <T extends ObjectType> void searchObjectsIterativeByParallelPaging(
+            Class<T> type, ObjectQuery query, ResultHandler<T> handler,
+            Collection<SelectorOptions<GetOperationOptions>> options, OperationResult result)
+            throws SchemaException {
+
+        if (query != null && query.getPaging() != null) {
+            throw new IllegalArgumentException("Externally specified paging is not supported on parallel iterative search.");
+        }
+        int parallelism = getConfiguration().getIterativeSearchParallelism();
+        if (parallelism <= 1) {
+            searchObjectsIterativeByKeyset(type, query, handler, options, result);
+            return;
+        }
+
+        List<String> boundaries = getOidRangeBoundaries(parallelism);
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(2 * getConfiguration().getIterativeSearchByPagingBatchSize());
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<OperationResult> rangeResults = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread thread = new Thread(r, "Parallel repository search " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (int i = 0; i <= boundaries.size(); i++) {
+                String oidGreaterThan = i > 0 ? boundaries.get(i - 1) : null;
+                String oidNotGreaterThan = i < boundaries.size() ? boundaries.get(i) : null;
+                OperationResult rangeResult = new OperationResult(OPERATION_SEARCH_OID_RANGE);
+                rangeResult.addParam("oidGreaterThan", oidGreaterThan);
+                rangeResult.addParam("oidNotGreaterThan", oidNotGreaterThan);
+                rangeResults.add(rangeResult);
+                executor.execute(() -> searchOidRange(type, query, oidGreaterThan, oidNotGreaterThan, options,
+                        queue, stopped, rangeResult));
+            }
+
+            int running = rangeResults.size();
+            while (running > 0) {
+                Object item = queue.take();
+                if (item instanceof OidRangeEnd) {
+                    running--;
+                    Throwable failure = ((OidRangeEnd) item).failure;
+                    if (failure instanceof SchemaException) {
+                        throw (SchemaException) failure;
+                    } else if (failure instanceof RuntimeException) {
+                        throw (RuntimeException) failure;
+                    } else if (failure != null) {
+                        throw new SystemException("Couldn't search OID range: " + failure.getMessage(), failure);
+                    }
+                } else {
+                    //noinspection unchecked
+                    if (!handler.handle((PrismObject<T>) item, result)) {
+                        break;
+                    }
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for objects being searched", e);
         } finally {
+            // we don't interrupt the threads, as JDBC drivers do not handle it well; they will stop after current page
+            stopped.set(true);
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(PARALLEL_SEARCH_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    LOGGER.warn("Parallel iterative search threads did not finish in {} ms", PARALLEL_SEARCH_SHUTDOWN_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rangeResults.forEach(result::addSubresult);
             if (result.isUnknown()) {
                 result.computeStatus();
             }
+            result.setSummarizeSuccesses(true);
+            result.summarize();
+        }
+    }
+
+    private <T extends ObjectType> void searchOidRange(Class<T> type, ObjectQuery query, String oidGreaterThan,
+            String oidNotGreaterThan, Collection<SelectorOptions<GetOperationOptions>> options, BlockingQueue<Object> queue,
+            AtomicBoolean stopped, OperationResult result) {
+        Throwable failure = null;
+        try {
+            searchObjectsIterativeByKeyset(type, query, oidGreaterThan, oidNotGreaterThan,
+                    (object, parentResult) -> offer(queue, object, stopped), options, result);
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            failure = t;
+        } finally {
+            offer(queue, new OidRangeEnd(failure), stopped);
+        }
+    }
+
+    /**
+     * Puts the item into the queue, waiting for free space as long as the search is not stopped.
+     * Returns false if the search was stopped.
+     */
+    private boolean offer(BlockingQueue<Object> queue, Object item, AtomicBoolean stopped) {
+        try {
+            while (!stopped.get()) {
+                if (queue.offer(item, PARALLEL_SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns (parallelism - 1) increasing boundaries dividing the space of hexadecimal OIDs into ranges
+     * of (roughly) equal size. A boundary is the inclusive upper limit of one range and the exclusive lower
+     * limit of the next one, so the ranges cover all possible OIDs, whatever collation the database uses.
+     */
+    static List<String> getOidRangeBoundaries(int parallelism) {
+        List<String> boundaries = new ArrayList<>();
+        for (int i = 1; i < parallelism; i++) {
+            boundaries.add(String.format("%04x", i * 0x10000 / parallelism));
+        }
+        return boundaries;
+    }
+
+    private static class OidRangeEnd {
+        private final Throwable failure;
+
+        private OidRangeEnd(Throwable failure) {
+            this.failure = failure;
+        }
+    }
+
+    private List<Object> getOrderingValues(PrismObject<?> object, List<ObjectOrdering> orderings) {
+        List<Object> values = new ArrayList<>(orderings.size());
+        for (ObjectOrdering ordering : orderings) {
+            PrismProperty<?> property = object.findProperty(ordering.getOrderBy());
+            if (property == null || property.isEmpty()) {
+                values.add(null);
+            } else if (property.size() == 1) {
+                values.add(property.getRealValue());
+            } else {
+                throw new IllegalArgumentException("Ordering by multi-valued item is not supported on paged iterative search: "
+                        + ordering.getOrderBy() + " in " + object);
+            }
         }
+        return values;
     }
 
     public boolean isAnySubordinateAttempt(String upperOrgOid, Collection<String> lowerObjectOids) {
@@ -938,6 +1252,7 @@ main:       for (;;) {
 			final org.hibernate.Query query;
 			final boolean isMidpointQuery = request.getImplementationLevelQuery() == null;
 			if (isMidpointQuery) {
+				// not using the template cache: parameters are reported from the query source, which only a fresh interpretation has
 				QueryEngine2 engine = new QueryEngine2(getConfiguration(), extItemDictionary, prismContext);
 				RQueryImpl rQuery = (RQueryImpl) engine.interpret(request.getQuery(), request.getType(), null, false, session);
 				query = rQuery.getQuery();
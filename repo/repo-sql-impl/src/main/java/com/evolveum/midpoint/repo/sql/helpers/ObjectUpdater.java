@@ -22,13 +22,16 @@ import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.delta.ReferenceDelta;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.util.CloneUtil;
+import com.evolveum.midpoint.prism.xnode.RootXNode;
 import com.evolveum.midpoint.repo.api.*;
 import com.evolveum.midpoint.repo.sql.SerializationRelatedException;
 import com.evolveum.midpoint.repo.sql.SqlRepositoryConfiguration;
+import com.evolveum.midpoint.repo.sql.SqlRepositoryConfiguration.FullObjectFormat;
 import com.evolveum.midpoint.repo.sql.SqlRepositoryServiceImpl;
 import com.evolveum.midpoint.repo.sql.data.RepositoryContext;
 import com.evolveum.midpoint.repo.sql.data.common.RObject;
 import com.evolveum.midpoint.repo.sql.data.common.dictionary.ExtItemDictionary;
+import com.evolveum.midpoint.repo.sql.util.BinaryXNodeCodec;
 import com.evolveum.midpoint.repo.sql.util.ClassMapper;
 import com.evolveum.midpoint.repo.sql.util.DtoTranslationException;
 import com.evolveum.midpoint.repo.sql.util.IdGeneratorResult;
@@ -73,6 +76,15 @@ public class ObjectUpdater {
     private static final Trace LOGGER = TraceManager.getTrace(ObjectUpdater.class);
     private static final Trace LOGGER_PERFORMANCE = TraceManager.getTrace(SqlRepositoryServiceImpl.PERFORMANCE_LOG_NAME);
 
+    private static final Collection<ItemPath> ITEMS_NOT_STORED_FOCUS =
+            Collections.singletonList(new ItemPath(FocusType.F_JPEG_PHOTO));
+    private static final Collection<ItemPath> ITEMS_NOT_STORED_LOOKUP_TABLE =
+            Collections.singletonList(new ItemPath(LookupTableType.F_ROW));
+    private static final Collection<ItemPath> ITEMS_NOT_STORED_CAMPAIGN =
+            Collections.singletonList(new ItemPath(AccessCertificationCampaignType.F_CASE));
+    private static final Collection<ItemPath> ITEMS_NOT_STORED_TASK =
+            Collections.singletonList(new ItemPath(TaskType.F_RESULT));
+
 	@Autowired
 	@Qualifier("repositoryService")
 	private RepositoryService repositoryService;
@@ -89,6 +101,12 @@ public class ObjectUpdater {
     @Autowired
     private CertificationCaseHelper caseHelper;
 
+    @Autowired
+    private WorkBucketHelper workBucketHelper;
+
+    @Autowired
+    private SplitContainerHelper splitContainerHelper;
+
     @Autowired
     private OrgClosureManager closureManager;
 
@@ -253,33 +271,58 @@ public class ObjectUpdater {
 
     public <T extends ObjectType> void updateFullObject(RObject object, PrismObject<T> savedObject)
             throws DtoTranslationException, SchemaException {
+        updateFullObject(object, savedObject, Collections.emptySet());
+    }
+
+    /**
+     * @param splitContainerPlaceholderIds IDs of assignments/inducements that are only placeholders (see {@link SplitContainerHelper})
+     */
+    public <T extends ObjectType> void updateFullObject(RObject object, PrismObject<T> savedObject,
+            Set<Integer> splitContainerPlaceholderIds) throws DtoTranslationException, SchemaException {
         LOGGER.trace("Updating full object xml column start.");
         savedObject.setVersion(Integer.toString(object.getVersion()));
 
-        // Deep cloning for object transformation - we don't want to return object "changed" by save.
-        // Its' because we're removing some properties during save operation and if save fails,
-        // overwrite attempt (for example using object importer) might try to delete existing object
-        // and then try to save this object one more time.
-        String xml = prismContext.xmlSerializer().serialize(savedObject);
-        savedObject = prismContext.parseObject(xml);
-
-        if (FocusType.class.isAssignableFrom(savedObject.getCompileTimeClass())) {
-            savedObject.removeProperty(FocusType.F_JPEG_PHOTO);
-        } else if (LookupTableType.class.equals(savedObject.getCompileTimeClass())) {
-            savedObject.removeContainer(LookupTableType.F_ROW);
-        } else if (AccessCertificationCampaignType.class.equals(savedObject.getCompileTimeClass())) {
-            savedObject.removeContainer(AccessCertificationCampaignType.F_CASE);
-        } else if (TaskType.class.isAssignableFrom(savedObject.getCompileTimeClass())) {
-            savedObject.removeProperty(TaskType.F_RESULT);
+        // Items that are stored separately (or not at all) are skipped during serialization. We must not remove
+        // them from the object itself: if save fails, overwrite attempt (for example using object importer)
+        // might try to delete existing object and then try to save this object one more time.
+        Collection<ItemPath> itemsToSkip = getItemsNotStoredInFullObject(savedObject.getCompileTimeClass());
+        Collection<ItemPath> splitItems = splitContainerHelper.getSplitItems(savedObject.getCompileTimeClass());
+        if (!splitItems.isEmpty()) {
+            itemsToSkip = new ArrayList<>(itemsToSkip);
+            itemsToSkip.addAll(splitItems);
+        }
+        SerializationOptions options = SerializationOptions.createItemsToSkip(itemsToSkip);
+        byte[] fullObject;
+        if (getConfiguration().getFullObjectFormat() == FullObjectFormat.BINARY) {
+            RootXNode xnode = prismContext.xnodeSerializer().options(options).serialize(savedObject);
+            fullObject = BinaryXNodeCodec.encode(xnode, getConfiguration().isUseZip());
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("Updating full object column finished ({} bytes). XNode:\n{}", fullObject.length,
+                        xnode.debugDump());
+            }
+        } else {
+            String xml = prismContext.xmlSerializer().options(options).serialize(savedObject);
+            fullObject = RUtil.getByteArrayFromXml(xml, getConfiguration().isUseZip());
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("Updating full object xml column finished. Xml:\n{}", xml);
+            }
         }
-
-        xml = prismContext.xmlSerializer().serialize(savedObject);
-        byte[] fullObject = RUtil.getByteArrayFromXml(xml, getConfiguration().isUseZip());
 
         object.setFullObject(fullObject);
+        splitContainerHelper.updateContainerRows(object, savedObject, splitContainerPlaceholderIds);
+    }
 
-        if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace("Updating full object xml column finished. Xml:\n{}", xml);
+    public static Collection<ItemPath> getItemsNotStoredInFullObject(Class<? extends ObjectType> type) {
+        if (FocusType.class.isAssignableFrom(type)) {
+            return ITEMS_NOT_STORED_FOCUS;
+        } else if (LookupTableType.class.equals(type)) {
+            return ITEMS_NOT_STORED_LOOKUP_TABLE;
+        } else if (AccessCertificationCampaignType.class.equals(type)) {
+            return ITEMS_NOT_STORED_CAMPAIGN;
+        } else if (TaskType.class.isAssignableFrom(type)) {
+            return ITEMS_NOT_STORED_TASK;
+        } else {
+            return Collections.emptyList();
         }
     }
 
@@ -355,6 +398,9 @@ public class ObjectUpdater {
             if (AccessCertificationCampaignType.class.equals(type)) {
                 caseHelper.deleteCertificationCampaignCases(session, oid);
             }
+            if (TaskType.class.equals(type)) {
+                workBucketHelper.deleteWorkBuckets(session, oid);
+            }
 
             session.getTransaction().commit();
         } catch (ObjectNotFoundException ex) {
@@ -416,11 +462,22 @@ public class ObjectUpdater {
                     options = null;
                 }
 
+                // Assignments/inducements stored in their own rows are loaded only if the modifications touch them;
+                // precondition and reindex (execute if no changes) need the whole object.
+                Set<Long> modifiedSplitContainerIds = precondition == null && !RepoModifyOptions.isExecuteIfNoChanges(modifyOptions)
+                        ? splitContainerHelper.getModifiedIds(type, modifications) : null;
+                if (modifiedSplitContainerIds != null) {
+                    options = splitContainerHelper.addExcludeOptions(type, options);
+                }
+
                 // get object
                 PrismObject<T> prismObject = objectRetriever.getObjectInternal(session, type, oid, options, true, result);
                 if (precondition != null && !precondition.holds(prismObject)) {
                 	throw new PreconditionViolationException("Modification precondition does not hold for " + prismObject);
                 }
+                Set<Integer> splitContainerPlaceholderIds = modifiedSplitContainerIds != null
+                        ? splitContainerHelper.prepareForModification(prismObject, modifiedSplitContainerIds, session)
+                        : Collections.emptySet();
 	            sqlRepositoryService.invokeConflictWatchers(w -> w.beforeModifyObject(prismObject));
                 // apply diff
 				LOGGER.trace("OBJECT before:\n{}", prismObject.debugDumpLazily());
@@ -455,7 +512,7 @@ public class ObjectUpdater {
                 // We have to test prismObject at this place, because updateFullObject (below) removes photo property from the prismObject.
                 boolean shouldPhotoBeRemoved = containsFocusPhotoModification && ((FocusType) prismObject.asObjectable()).getJpegPhoto() == null;
 
-                updateFullObject(rObject, prismObject);
+                updateFullObject(rObject, prismObject, splitContainerPlaceholderIds);
 
                 LOGGER.trace("Starting save.");
                 session.save(rObject);
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.helpers;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory representation of the org graph, used to compute the org closure table from scratch.
+ *
+ * Vertices are identified by int indexes; for each vertex the set of its parents is kept as an int array.
+ * The closure is computed level by level (a vertex is processed after all its parents): closure entries
+ * of a vertex are the vertex itself (with 1 path) plus entries of all its parents, with the numbers of paths
+ * added together. Vertices at the same level do not depend on each other, so they are processed in parallel.
+ *
+ * The meaning of the closure is the same as in {@link OrgClosureManager}: there are N paths from D to A
+ * if and only if (D, A, N) is in the closure (including (V, V, 1) for each vertex).
+ *
+ * @author mederly
+ */
+public class OrgClosureGraph {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> oids = new ArrayList<>();
+    private final List<Set<Integer>> parents = new ArrayList<>();
+
+    // computed closure: for each vertex, sorted ancestor indexes and corresponding numbers of paths
+    private int[][] ancestors;
+    private int[][] pathCounts;
+
+    @FunctionalInterface
+    public interface EntryConsumer<E extends Exception> {
+        void accept(String descendantOid, String ancestorOid, int paths) throws E;
+    }
+
+    public void addVertex(String oid) {
+        if (!indexes.containsKey(oid)) {
+            indexes.put(oid, oids.size());
+            oids.add(oid);
+            parents.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Edges to or from unknown vertices are ignored, just like parentOrgRefs pointing to non-existing orgs.
+     * Duplicate edges (e.g. the same parent with different relations) are counted only once.
+     */
+    public void addEdge(String descendantOid, String ancestorOid) {
+        Integer descendant = indexes.get(descendantOid);
+        Integer ancestor = indexes.get(ancestorOid);
+        if (descendant != null && ancestor != null) {
+            parents.get(descendant).add(ancestor);
+        }
+    }
+
+    public int getVertexCount() {
+        return oids.size();
+    }
+
+    /**
+     * @param parallelism number of threads to use; 1 means computing in the current thread
+     * @throws IllegalArgumentException if the graph contains a cycle
+     */
+    public void computeClosure(int parallelism) {
+        int n = oids.size();
+        int[][] parentArrays = new int[n][];
+        int[] pendingParents = new int[n];
+        List<List<Integer>> children = new ArrayList<>(n);
+        for (int v = 0; v < n; v++) {
+            children.add(new ArrayList<>());
+        }
+        for (int v = 0; v < n; v++) {
+            parentArrays[v] = parents.get(v).stream().mapToInt(Integer::intValue).toArray();
+            pendingParents[v] = parentArrays[v].length;
+            for (int p : parentArrays[v]) {
+                children.get(p).add(v);
+            }
+        }
+
+        ancestors = new int[n][];
+        pathCounts = new int[n][];
+        int[] level = IntStream.range(0, n).filter(v -> pendingParents[v] == 0).toArray();
+        int processed = 0;
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            while (level.length > 0) {
+                computeLevel(level, parentArrays, pool);
+                processed += level.length;
+                List<Integer> next = new ArrayList<>();
+                for (int v : level) {
+                    for (int child : children.get(v)) {
+                        if (--pendingParents[child] == 0) {
+                            next.add(child);
+                        }
+                    }
+                }
+                level = next.stream().mapToInt(Integer::intValue).toArray();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        if (processed < n) {
+            List<String> inCycle = new ArrayList<>();
+            for (int v = 0; v < n && inCycle.size() < 10; v++) {
+                if (pendingParents[v] > 0) {
+                    inCycle.add(oids.get(v));
+                }
+            }
+            throw new IllegalArgumentException("Org structure graph contains a cycle; " + (n - processed)
+                    + " org(s) are on or below it, e.g. " + inCycle);
+        }
+    }
+
+    private void computeLevel(int[] level, int[][] parentArrays, ForkJoinPool pool) {
+        if (pool == null || level.length < 2) {
+            for (int v : level) {
+                computeVertex(v, parentArrays[v]);
+            }
+        } else {
+            try {
+                pool.submit(() -> Arrays.stream(level).parallel().forEach(v -> computeVertex(v, parentArrays[v]))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while computing org closure", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Couldn't compute org closure: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private void computeVertex(int v, int[] vertexParents) {
+        // accumulating into a sorted map is simple and fast enough, as the number of ancestors is usually small
+        TreeMap<Integer, Integer> entries = new TreeMap<>();
+        entries.put(v, 1);
+        for (int p : vertexParents) {
+            int[] parentAncestors = ancestors[p];
+            int[] parentCounts = pathCounts[p];
+            for (int i = 0; i < parentAncestors.length; i++) {
+                entries.merge(parentAncestors[i], parentCounts[i], Integer::sum);
+            }
+        }
+        int[] vertexAncestors = new int[entries.size()];
+        int[] vertexCounts = new int[entries.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : entries.entrySet()) {
+            vertexAncestors[i] = entry.getKey();
+            vertexCounts[i] = entry.getValue();
+            i++;
+        }
+        ancestors[v] = vertexAncestors;
+        pathCounts[v] = vertexCounts;
+    }
+
+    public long getClosureSize() {
+        checkComputed();
+        long size = 0;
+        for (int[] vertexAncestors : ancestors) {
+            size += vertexAncestors.length;
+        }
+        return size;
+    }
+
+    public <E extends Exception> void forEachEntry(EntryConsumer<E> consumer) throws E {
+        checkComputed();
+        for (int v = 0; v < ancestors.length; v++) {
+            String descendantOid = oids.get(v);
+            for (int i = 0; i < ancestors[v].length; i++) {
+                consumer.accept(descendantOid, oids.get(ancestors[v][i]), pathCounts[v][i]);
+            }
+        }
+    }
+
+    /**
+     * @return number of paths from descendant to ancestor (0 if there are none or a vertex is unknown)
+     */
+    public int getPaths(String descendantOid, String ancestorOid) {
+        checkComputed();
+        Integer descendant = indexes.get(descendantOid);
+        Integer ancestor = indexes.get(ancestorOid);
+        if (descendant == null || ancestor == null) {
+            return 0;
+        }
+        int i = Arrays.binarySearch(ancestors[descendant], ancestor);
+        return i >= 0 ? pathCounts[descendant][i] : 0;
+    }
+
+    private void checkComputed() {
+        if (ancestors == null) {
+            throw new IllegalStateException("Closure has not been computed yet");
+        }
+    }
+}
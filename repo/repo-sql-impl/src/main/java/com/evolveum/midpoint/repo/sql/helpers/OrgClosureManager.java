@@ -49,6 +49,8 @@ import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
 
 import static java.util.Collections.singletonList;
@@ -89,6 +91,12 @@ public class OrgClosureManager {
     static final String CLOSURE_TABLE_NAME = "m_org_closure";
     public static final String TEMP_DELTA_TABLE_NAME_FOR_ORACLE = "m_org_closure_temp_delta";
 
+    // used for in-memory rebuild
+    private static final int BULK_BATCH_SIZE = 1000;
+    private static final String INSERT_CLOSURE_ENTRY = "insert into " + CLOSURE_TABLE_NAME + " (descendant_oid, ancestor_oid, val) values (?, ?, ?)";
+    private static final String UPDATE_CLOSURE_ENTRY = "update " + CLOSURE_TABLE_NAME + " set val = ? where descendant_oid = ? and ancestor_oid = ?";
+    private static final String DELETE_CLOSURE_ENTRY = "delete from " + CLOSURE_TABLE_NAME + " where descendant_oid = ? and ancestor_oid = ?";
+
     // only for single-thread performance testing
     long lastOperationDuration;
 
@@ -343,6 +351,11 @@ public class OrgClosureManager {
     // "check" here means "thorough check" (i.e. comparing with recomputed closure)
     private void rebuild(boolean check, boolean rebuild, boolean stopOnFailure, final Context context, final Session session, OperationResult result) throws SchemaException {
 
+        if (baseHelper.getConfiguration().isOrgClosureRebuildInMemory()) {
+            rebuildInMemory(check, rebuild, session, result);
+            return;
+        }
+
         List existingEntries = null;
         if (check) {
             LOGGER.info("Reading from existing org closure table");
@@ -394,6 +407,137 @@ public class OrgClosureManager {
         }
     }
 
+    /**
+     * Computes the closure in memory from all org-org parent links. When checking, the closure is compared with
+     * the table content and (if rebuilding) only the differences are written. Otherwise the table is filled from scratch.
+     * All modifications are done using JDBC batches.
+     */
+    private void rebuildInMemory(boolean check, boolean rebuild, Session session, OperationResult result) {
+        long start = System.currentTimeMillis();
+        OrgClosureGraph graph = loadOrgGraph(session);
+        LOGGER.info("Org graph with {} organizations loaded in {} ms", graph.getVertexCount(), System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        graph.computeClosure(Runtime.getRuntime().availableProcessors());
+        long closureSize = graph.getClosureSize();
+        LOGGER.info("Org closure with {} entries computed in memory in {} ms", closureSize, System.currentTimeMillis() - start);
+
+        if (!check) {
+            start = System.currentTimeMillis();
+            session.createNativeQuery("delete from " + CLOSURE_TABLE_NAME).executeUpdate();
+            session.doWork(connection -> {
+                try (PreparedStatement stmt = connection.prepareStatement(INSERT_CLOSURE_ENTRY)) {
+                    MutableInt pending = new MutableInt(0);
+                    graph.forEachEntry((descendant, ancestor, paths) -> addToBatch(stmt, pending, descendant, ancestor, paths));
+                    if (pending.intValue() > 0) {
+                        stmt.executeBatch();
+                    }
+                }
+            });
+            LOGGER.info("Org closure table was successfully recomputed (not committed yet); {} entries written in {} ms",
+                    closureSize, System.currentTimeMillis() - start);
+            result.recordSuccess();
+            return;
+        }
+
+        LOGGER.info("Reading from existing org closure table");
+        Map<List<String>, Integer> existing = new HashMap<>();
+        List<Object[]> existingEntries = session.createNativeQuery("SELECT descendant_oid, ancestor_oid, val from " + CLOSURE_TABLE_NAME)
+                .addScalar("descendant_oid", StringType.INSTANCE)
+                .addScalar("ancestor_oid", StringType.INSTANCE)
+                .addScalar("val", IntegerType.INSTANCE)
+                .list();
+        for (Object[] entry : existingEntries) {
+            existing.put(Arrays.asList((String) entry[0], (String) entry[1]), (Integer) entry[2]);
+        }
+        int existingSize = existing.size();
+        LOGGER.info("{} entries read", existingSize);
+
+        List<Object[]> toInsert = new ArrayList<>();
+        List<Object[]> toUpdate = new ArrayList<>();
+        graph.forEachEntry((descendant, ancestor, paths) -> {
+            Integer current = existing.remove(Arrays.asList(descendant, ancestor));
+            if (current == null) {
+                toInsert.add(new Object[] { descendant, ancestor, paths });
+            } else if (current != paths) {
+                toUpdate.add(new Object[] { paths, descendant, ancestor });
+            }
+        });
+        List<Object[]> toDelete = new ArrayList<>();
+        for (List<String> key : existing.keySet()) {
+            toDelete.add(key.toArray());
+        }
+
+        if (toInsert.isEmpty() && toUpdate.isEmpty() && toDelete.isEmpty()) {
+            String m = "Closure table is OK (" + existingSize + " entries)";
+            result.recordStatus(OperationResultStatus.SUCCESS, m);
+            LOGGER.info(m);
+            return;
+        }
+        String addendum;
+        OperationResultStatus status;
+        if (rebuild) {
+            start = System.currentTimeMillis();
+            executeBatch(session, DELETE_CLOSURE_ENTRY, toDelete);
+            executeBatch(session, UPDATE_CLOSURE_ENTRY, toUpdate);
+            executeBatch(session, INSERT_CLOSURE_ENTRY, toInsert);
+            LOGGER.info("Org closure table was successfully fixed (not committed yet) in {} ms", System.currentTimeMillis() - start);
+            status = OperationResultStatus.HANDLED_ERROR;
+            addendum = " The table has been recomputed and now it is OK.";
+        } else {
+            status = OperationResultStatus.FATAL_ERROR;
+            addendum = " Please recompute the table as soon as possible.";
+        }
+        String m = "Closure table is not consistent with the repository. Expected size: " + closureSize + " actual size: "
+                + existingSize + " (missing: " + toInsert.size() + ", wrong: " + toUpdate.size() + ", superfluous: "
+                + toDelete.size() + ")." + addendum;
+        result.recordStatus(status, m);
+        LOGGER.info(m);
+    }
+
+    private OrgClosureGraph loadOrgGraph(Session session) {
+        OrgClosureGraph graph = new OrgClosureGraph();
+        List<String> orgOids = session.createQuery("select o.oid from ROrg o").list();
+        orgOids.forEach(graph::addVertex);
+        Query edgesQuery = session.createQuery("select parentRef.ownerOid, parentRef.targetOid from RObjectReference as parentRef" +
+                " join parentRef.owner as owner where parentRef.referenceType=0 and owner.objectTypeClass = :orgType");
+        edgesQuery.setParameter("orgType", RObjectType.ORG);
+        List<Object[]> edges = edgesQuery.list();
+        for (Object[] edge : edges) {
+            graph.addEdge((String) edge[0], (String) edge[1]);      // links to non-org (or non-existing) parents are ignored
+        }
+        return graph;
+    }
+
+    private void executeBatch(Session session, String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        session.doWork(connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                MutableInt pending = new MutableInt(0);
+                for (Object[] row : rows) {
+                    addToBatch(stmt, pending, row);
+                }
+                if (pending.intValue() > 0) {
+                    stmt.executeBatch();
+                }
+            }
+        });
+    }
+
+    private void addToBatch(PreparedStatement stmt, MutableInt pending, Object... values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            stmt.setObject(i + 1, values[i]);
+        }
+        stmt.addBatch();
+        pending.increment();
+        if (pending.intValue() >= BULK_BATCH_SIZE) {
+            stmt.executeBatch();
+            pending.setValue(0);
+        }
+    }
+
     private void compareOrgClosureTables(List existingEntries, List recomputedEntries, boolean rebuild, OperationResult result) {
         Set<List> existing = convertEntries(existingEntries);
         Set<List> recomputed = convertEntries(recomputedEntries);
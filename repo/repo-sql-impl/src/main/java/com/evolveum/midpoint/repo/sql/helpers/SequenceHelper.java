@@ -26,6 +26,7 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.SequenceType;
@@ -33,8 +34,11 @@ import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
-import java.util.Iterator;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author mederly
@@ -54,13 +58,27 @@ public class SequenceHelper {
     private static final Trace LOGGER = TraceManager.getTrace(SqlRepositoryServiceImpl.class);
     private static final Trace LOGGER_PERFORMANCE = TraceManager.getTrace(SqlRepositoryServiceImpl.PERFORMANCE_LOG_NAME);
 
+    // values reserved from sequences by this node, not yet given out (used if sequenceBlockSize > 1)
+    private final ConcurrentMap<String, Queue<Long>> localPools = new ConcurrentHashMap<>();
+
     public long advanceSequenceAttempt(String oid, OperationResult result) throws ObjectNotFoundException,
             SchemaException, SerializationRelatedException {
+        return advanceSequenceAttempt(oid, 1, result).get(0);
+    }
 
-        long returnValue;
+    /**
+     * Takes up to blockSize values from the sequence (at least one) in a single transaction.
+     * Unused values are taken first, then the counter is advanced. Fewer values are returned if the
+     * sequence is exhausted in the meanwhile. For rewinding sequences the block never exceeds the cycle
+     * length, so it cannot contain the same value twice.
+     */
+    public List<Long> advanceSequenceAttempt(String oid, int blockSize, OperationResult result) throws ObjectNotFoundException,
+            SchemaException, SerializationRelatedException {
+
+        List<Long> returnValues = new ArrayList<>(blockSize);
 
-        LOGGER.debug("Advancing sequence with oid '{}'.", oid);
-        LOGGER_PERFORMANCE.debug("> advance sequence, oid={}", oid);
+        LOGGER.debug("Advancing sequence with oid '{}' (block size {}).", oid, blockSize);
+        LOGGER_PERFORMANCE.debug("> advance sequence, oid={}, block size={}", oid, blockSize);
 
         Session session = null;
         try {
@@ -72,37 +90,23 @@ public class SequenceHelper {
             }
             SequenceType sequence = prismObject.asObjectable();
 
-            if (!sequence.getUnusedValues().isEmpty()) {
-                returnValue = sequence.getUnusedValues().remove(0);
-            } else {
-                long counter = sequence.getCounter() != null ? sequence.getCounter() : 0L;
-                long maxCounter = sequence.getMaxCounter() != null ? sequence.getMaxCounter() : Long.MAX_VALUE;
-                boolean allowRewind = Boolean.TRUE.equals(sequence.isAllowRewind());
-
-                if (counter < maxCounter) {
-                    returnValue = counter;
-                    sequence.setCounter(counter + 1);
-                } else if (counter == maxCounter) {
-                    returnValue = counter;
-                    if (allowRewind) {
-                        sequence.setCounter(0L);
-                    } else {
-                        sequence.setCounter(counter + 1);       // will produce exception during next run
-                    }
-                } else {        // i.e. counter > maxCounter
-                    if (allowRewind) {          // shouldn't occur but...
-                        LOGGER.warn("Sequence {} overflown with allowRewind set to true. Rewinding.", oid);
-                        returnValue = 0;
-                        sequence.setCounter(1L);
-                    } else {
-                        // TODO some better exception...
-                        throw new SystemException("No (next) value available from sequence " + oid + ". Current counter = " + sequence.getCounter() + ", max value = " + sequence.getMaxCounter());
-                    }
+            boolean allowRewind = Boolean.TRUE.equals(sequence.isAllowRewind());
+            int maxValues = getMaxBlockSize(sequence, blockSize);
+            while (returnValues.size() < maxValues) {
+                Long value = nextValue(sequence, oid, returnValues.isEmpty());
+                if (value == null) {
+                    break;
+                }
+                if (allowRewind && returnValues.contains(value)) {
+                    // an unused value that the counter has reached again after rewinding; keep it for later
+                    sequence.getUnusedValues().add(0, value);
+                    break;
                 }
+                returnValues.add(value);
             }
 
             if (LOGGER.isTraceEnabled()) {
-                LOGGER.trace("Return value = {}, OBJECT after:\n{}", returnValue, prismObject.debugDump());
+                LOGGER.trace("Return values = {}, OBJECT after:\n{}", returnValues, prismObject.debugDump());
             }
 
             // merge and update object
@@ -118,7 +122,7 @@ public class SequenceHelper {
             session.getTransaction().commit();
             LOGGER.trace("Committed!");
 
-            return returnValue;
+            return returnValues;
         } catch (ObjectNotFoundException ex) {
             baseHelper.rollbackTransaction(session, ex, result, true);
             throw ex;
@@ -134,6 +138,111 @@ public class SequenceHelper {
         }
     }
 
+    private int getMaxBlockSize(SequenceType sequence, int blockSize) {
+        if (Boolean.TRUE.equals(sequence.isAllowRewind()) && sequence.getMaxCounter() != null
+                && sequence.getMaxCounter() >= 0 && sequence.getMaxCounter() < blockSize - 1) {
+            return (int) (sequence.getMaxCounter() + 1);        // values 0..maxCounter
+        }
+        return blockSize;
+    }
+
+    /**
+     * @param mustSucceed whether to throw an exception if no value is available; if false, null is returned in such case
+     */
+    private Long nextValue(SequenceType sequence, String oid, boolean mustSucceed) {
+        long returnValue;
+        if (!sequence.getUnusedValues().isEmpty()) {
+            returnValue = sequence.getUnusedValues().remove(0);
+        } else {
+            long counter = sequence.getCounter() != null ? sequence.getCounter() : 0L;
+            long maxCounter = sequence.getMaxCounter() != null ? sequence.getMaxCounter() : Long.MAX_VALUE;
+            boolean allowRewind = Boolean.TRUE.equals(sequence.isAllowRewind());
+
+            if (counter < maxCounter) {
+                returnValue = counter;
+                sequence.setCounter(counter + 1);
+            } else if (counter == maxCounter) {
+                returnValue = counter;
+                if (allowRewind) {
+                    sequence.setCounter(0L);
+                } else {
+                    sequence.setCounter(counter + 1);       // will produce exception during next run
+                }
+            } else {        // i.e. counter > maxCounter
+                if (allowRewind) {          // shouldn't occur but...
+                    LOGGER.warn("Sequence {} overflown with allowRewind set to true. Rewinding.", oid);
+                    returnValue = 0;
+                    sequence.setCounter(1L);
+                } else if (mustSucceed) {
+                    // TODO some better exception...
+                    throw new SystemException("No (next) value available from sequence " + oid + ". Current counter = " + sequence.getCounter() + ", max value = " + sequence.getMaxCounter());
+                } else {
+                    return null;
+                }
+            }
+        }
+        return returnValue;
+    }
+
+    //region Node-local pools
+
+    /**
+     * Takes a value from the node-local pool, without touching the repository. Lock-free.
+     * @return null if there is no value available locally
+     */
+    public Long takeFromLocalPool(String oid) {
+        Queue<Long> pool = localPools.get(oid);
+        return pool != null ? pool.poll() : null;
+    }
+
+    public void addToLocalPool(String oid, Collection<Long> values) {
+        localPools.computeIfAbsent(oid, k -> new ConcurrentLinkedQueue<>()).addAll(values);
+    }
+
+    /**
+     * Values in the pool are discarded (e.g. because the sequence was deleted).
+     */
+    public void invalidateLocalPool(String oid) {
+        localPools.remove(oid);
+    }
+
+    /**
+     * Returns values reserved by this node but not used to their sequences. Note that the sequence keeps at most
+     * maxUnusedValues of them; the others are lost (i.e. there will be gaps in the values).
+     */
+    @PreDestroy
+    public void returnLocalPoolsToSequences() {
+        for (Map.Entry<String, Queue<Long>> entry : localPools.entrySet()) {
+            String oid = entry.getKey();
+            List<Long> values = new ArrayList<>();
+            Long value;
+            while ((value = entry.getValue().poll()) != null) {
+                values.add(value);
+            }
+            if (values.isEmpty()) {
+                continue;
+            }
+            OperationResult result = new OperationResult(SequenceHelper.class.getName() + ".returnLocalPoolsToSequences");
+            int attempt = 1;
+            try {
+                while (true) {
+                    try {
+                        returnUnusedValuesToSequenceAttempt(oid, values, result);
+                        LOGGER.debug("Returned {} unused value(s) to sequence {}", values.size(), oid);
+                        break;
+                    } catch (RuntimeException ex) {
+                        attempt = baseHelper.logOperationAttempt(oid, "returnUnusedValuesToSequence", attempt, ex, result);
+                    }
+                }
+            } catch (ObjectNotFoundException | SchemaException | RuntimeException e) {
+                LoggingUtils.logUnexpectedException(LOGGER, "Couldn't return unused values {} to sequence {}", e, values, oid);
+            }
+        }
+        localPools.clear();
+    }
+
+    //endregion
+
     public void returnUnusedValuesToSequenceAttempt(String oid, Collection<Long> unusedValues, OperationResult result) throws ObjectNotFoundException,
             SchemaException, SerializationRelatedException {
 
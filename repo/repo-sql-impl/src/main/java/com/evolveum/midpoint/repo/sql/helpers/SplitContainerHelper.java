@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.helpers;
+
+import com.evolveum.midpoint.prism.PrismContainerValue;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.path.IdItemPathSegment;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.path.ItemPathSegment;
+import com.evolveum.midpoint.repo.sql.data.common.RFocus;
+import com.evolveum.midpoint.repo.sql.data.common.RObject;
+import com.evolveum.midpoint.repo.sql.data.common.container.RAssignment;
+import com.evolveum.midpoint.repo.sql.data.common.other.RAssignmentOwner;
+import com.evolveum.midpoint.repo.sql.util.RUtil;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ObjectSelector;
+import com.evolveum.midpoint.schema.RetrieveOption;
+import com.evolveum.midpoint.schema.SchemaConstantsGenerated;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AbstractRoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.FocusType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Contains methods specific to handle assignments and inducements stored outside the full object
+ * of their owner, i.e. in m_assignment.fullObject column (if splitContainerStorage is switched on).
+ *
+ * Number of values stored this way is kept in m_object.splitContainersCount. Zero (or null) means that
+ * the values are stored in the full object, as usual. So objects stored in either way can be read regardless
+ * of the current setting; they are converted on their next modification.
+ *
+ * When modifying, only the values touched by the modifications are loaded. Other values are represented
+ * by id-only placeholders (to keep container IDs unique) that are neither parsed nor written back.
+ *
+ * Adding a value equal to an existing one is not detected when that value is not loaded; it is up to
+ * the caller to avoid such modifications. (Model does that anyway.)
+ *
+ * @author mederly
+ */
+@Component
+public class SplitContainerHelper {
+
+    private static final Trace LOGGER = TraceManager.getTrace(SplitContainerHelper.class);
+
+    private static final ItemPath ASSIGNMENT_PATH = new ItemPath(FocusType.F_ASSIGNMENT);
+    private static final ItemPath INDUCEMENT_PATH = new ItemPath(AbstractRoleType.F_INDUCEMENT);
+
+    private static final Collection<ItemPath> SPLIT_ITEMS_FOCUS = Collections.singletonList(ASSIGNMENT_PATH);
+    private static final Collection<ItemPath> SPLIT_ITEMS_ABSTRACT_ROLE = Arrays.asList(ASSIGNMENT_PATH, INDUCEMENT_PATH);
+
+    @Autowired private BaseHelper baseHelper;
+    @Autowired private PrismContext prismContext;
+
+    /**
+     * Items that are (to be) stored outside the full object of given type, according to the current configuration.
+     */
+    public Collection<ItemPath> getSplitItems(Class<? extends ObjectType> type) {
+        if (!baseHelper.getConfiguration().isSplitContainerStorage() || !FocusType.class.isAssignableFrom(type)) {
+            return Collections.emptyList();
+        } else if (AbstractRoleType.class.isAssignableFrom(type)) {
+            return SPLIT_ITEMS_ABSTRACT_ROLE;
+        } else {
+            return SPLIT_ITEMS_FOCUS;
+        }
+    }
+
+    /**
+     * Returns IDs of split container values touched by the modifications, or null if all of them
+     * have to be loaded (e.g. when whole container is replaced or a value without ID is deleted).
+     */
+    public Set<Long> getModifiedIds(Class<? extends ObjectType> type, Collection<? extends ItemDelta> modifications) {
+        Collection<ItemPath> splitItems = getSplitItems(type);
+        if (splitItems.isEmpty()) {
+            return null;
+        }
+        Set<Long> ids = new HashSet<>();
+        for (ItemDelta<?, ?> delta : modifications) {
+            ItemPath path = delta.getPath();
+            if (path.isEmpty()) {
+                return null;
+            }
+            for (ItemPath splitItem : splitItems) {
+                if (path.equivalent(splitItem)) {
+                    if (delta.isReplace()) {
+                        return null;
+                    }
+                    if (delta.getValuesToAdd() != null) {
+                        for (Object value : delta.getValuesToAdd()) {
+                            Long id = ((PrismContainerValue) value).getId();
+                            if (id != null) {
+                                ids.add(id);
+                            }
+                        }
+                    }
+                    if (delta.getValuesToDelete() != null) {
+                        for (Object value : delta.getValuesToDelete()) {
+                            Long id = ((PrismContainerValue) value).getId();
+                            if (id == null) {
+                                return null;
+                            }
+                            ids.add(id);
+                        }
+                    }
+                } else if (path.isSuperPath(splitItem)) {
+                    ItemPathSegment secondSegment = path.getSegments().get(1);
+                    if (!(secondSegment instanceof IdItemPathSegment) || ((IdItemPathSegment) secondSegment).getId() == null) {
+                        return null;
+                    }
+                    ids.add(((IdItemPathSegment) secondSegment).getId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Options that prevent split containers from being loaded when the object is being retrieved.
+     */
+    public Collection<SelectorOptions<GetOperationOptions>> addExcludeOptions(Class<? extends ObjectType> type,
+            Collection<SelectorOptions<GetOperationOptions>> options) {
+        List<SelectorOptions<GetOperationOptions>> rv = new ArrayList<>();
+        if (options != null) {
+            rv.addAll(options);
+        }
+        for (ItemPath splitItem : getSplitItems(type)) {
+            rv.add(SelectorOptions.create(splitItem, GetOperationOptions.createRetrieve(RetrieveOption.EXCLUDE)));
+        }
+        return rv;
+    }
+
+    // adds split assignments/inducements to the focus unless excluded by options
+    public <T extends ObjectType> void updateLoadedFocus(PrismObject<T> object, int splitContainersCount,
+            Collection<SelectorOptions<GetOperationOptions>> options, Session session) throws SchemaException {
+        if (splitContainersCount == 0) {
+            return;
+        }
+        boolean assignments = !isExcluded(ASSIGNMENT_PATH, options);
+        boolean inducements = object.asObjectable() instanceof AbstractRoleType && !isExcluded(INDUCEMENT_PATH, options);
+        if (!assignments && !inducements) {
+            return;
+        }
+
+        LOGGER.debug("Loading {} split container values of {}.", splitContainersCount, object);
+
+        Query query = session.createQuery("select a.id, a.assignmentOwner, a.fullObject from RAssignment a "
+                + "where a.ownerOid = :oid order by a.id");
+        query.setParameter("oid", object.getOid());
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.list();
+        for (Object[] row : rows) {
+            RAssignmentOwner owner = (RAssignmentOwner) row[1];
+            if (owner == RAssignmentOwner.FOCUS && assignments || owner == RAssignmentOwner.ABSTRACT_ROLE && inducements) {
+                getContainer(object, owner).add(parse((Integer) row[0], (byte[]) row[2]));
+            }
+        }
+    }
+
+    /**
+     * Adds split container values to an object that was loaded without them (see {@link #addExcludeOptions}),
+     * so that modifications can be applied. Values with given IDs are loaded, the others are represented
+     * by placeholders. Values already present (i.e. the object was not stored split) are left untouched.
+     *
+     * @return IDs of the placeholders; these must not be written back
+     */
+    public <T extends ObjectType> Set<Integer> prepareForModification(PrismObject<T> object, Set<Long> modifiedIds,
+            Session session) throws SchemaException {
+        Set<Long> presentIds = new HashSet<>();
+        for (RAssignmentOwner owner : RAssignmentOwner.values()) {
+            if (owner == RAssignmentOwner.FOCUS || object.asObjectable() instanceof AbstractRoleType) {
+                for (AssignmentType value : getContainer(object, owner)) {
+                    presentIds.add(value.getId());
+                }
+            }
+        }
+
+        Query query = session.createQuery("select a.id, a.assignmentOwner from RAssignment a where a.ownerOid = :oid order by a.id");
+        query.setParameter("oid", object.getOid());
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.list();
+
+        List<Integer> idsToLoad = new ArrayList<>();
+        for (Object[] row : rows) {
+            Integer id = (Integer) row[0];
+            if (!presentIds.contains(id.longValue()) && modifiedIds.contains(id.longValue())) {
+                idsToLoad.add(id);
+            }
+        }
+        Map<Integer, byte[]> loaded = new HashMap<>();
+        if (!idsToLoad.isEmpty()) {
+            Query contentQuery = session.createQuery("select a.id, a.fullObject from RAssignment a "
+                    + "where a.ownerOid = :oid and a.id in (:ids)");
+            contentQuery.setParameter("oid", object.getOid());
+            contentQuery.setParameterList("ids", idsToLoad);
+            @SuppressWarnings("unchecked")
+            List<Object[]> contentRows = contentQuery.list();
+            for (Object[] row : contentRows) {
+                loaded.put((Integer) row[0], (byte[]) row[1]);
+            }
+        }
+
+        Set<Integer> placeholderIds = new HashSet<>();
+        for (Object[] row : rows) {
+            Integer id = (Integer) row[0];
+            if (presentIds.contains(id.longValue())) {
+                continue;
+            }
+            AssignmentType value;
+            if (loaded.containsKey(id)) {
+                value = parse(id, loaded.get(id));
+            } else {
+                value = new AssignmentType();
+                value.setId(id.longValue());
+                placeholderIds.add(id);
+            }
+            getContainer(object, (RAssignmentOwner) row[1]).add(value);
+        }
+        LOGGER.trace("Prepared {} for modification: {} split container values loaded, {} placeholders", object,
+                loaded.size(), placeholderIds.size());
+        return placeholderIds;
+    }
+
+    /**
+     * Writes split container values (except for the placeholders) into their rows and sets the count
+     * on the owner. If split storage is not used for the object, the count is cleared.
+     */
+    public <T extends ObjectType> void updateContainerRows(RObject<?> object, PrismObject<T> savedObject,
+            Set<Integer> placeholderIds) throws SchemaException {
+        if (!(object instanceof RFocus)) {
+            return;
+        }
+        if (getSplitItems(savedObject.getCompileTimeClass()).isEmpty()) {
+            object.setSplitContainersCount(null);
+            return;
+        }
+
+        Map<Long, AssignmentType> values = new HashMap<>();
+        for (RAssignmentOwner owner : RAssignmentOwner.values()) {
+            if (owner == RAssignmentOwner.FOCUS || savedObject.asObjectable() instanceof AbstractRoleType) {
+                for (AssignmentType value : getContainer(savedObject, owner)) {
+                    values.put(value.getId(), value);
+                }
+            }
+        }
+        for (RAssignment rAssignment : ((RFocus<?>) object).getAssignments()) {
+            Integer id = rAssignment.getId();
+            if (id == null || placeholderIds.contains(id)) {
+                continue;
+            }
+            AssignmentType value = values.get(id.longValue());
+            if (value == null) {
+                LOGGER.warn("No value with ID {} for assignment row in {}, its content will not be stored", id, savedObject);
+                continue;
+            }
+            rAssignment.setFullObject(serialize(value.asPrismContainerValue()));
+        }
+        object.setSplitContainersCount(values.size());
+    }
+
+    private boolean isExcluded(ItemPath path, Collection<SelectorOptions<GetOperationOptions>> options) {
+        for (SelectorOptions<GetOperationOptions> option : SelectorOptions.filterRetrieveOptions(options)) {
+            ObjectSelector selector = option.getSelector();
+            ItemPath selected = selector != null ? selector.getPath() : null;
+            if (option.getOptions().getRetrieve() == RetrieveOption.EXCLUDE
+                    && selected != null && selected.isSubPathOrEquivalent(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<AssignmentType> getContainer(PrismObject<? extends ObjectType> object, RAssignmentOwner owner) {
+        if (owner == RAssignmentOwner.ABSTRACT_ROLE) {
+            return ((AbstractRoleType) object.asObjectable()).getInducement();
+        } else {
+            return ((FocusType) object.asObjectable()).getAssignment();
+        }
+    }
+
+    private byte[] serialize(PrismContainerValue<?> value) throws SchemaException {
+        String xml = prismContext.xmlSerializer().serialize(value, SchemaConstantsGenerated.C_VALUE);
+        return RUtil.getByteArrayFromXml(xml, baseHelper.getConfiguration().isUseZip());
+    }
+
+    private AssignmentType parse(Integer id, byte[] fullObject) throws SchemaException {
+        if (fullObject == null) {
+            throw new SchemaException("No content stored for split container value with ID " + id);
+        }
+        String xml = RUtil.getXmlFromByteArray(fullObject, baseHelper.getConfiguration().isUseZip());
+        LOGGER.trace("Split container value to be parsed\n{}", xml);
+        return prismContext.parserFor(xml).xml().compat().parseRealValue(AssignmentType.class);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.helpers;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.repo.sql.SqlRepositoryConfiguration;
+import com.evolveum.midpoint.repo.sql.data.common.RTaskWorkBucket;
+import com.evolveum.midpoint.repo.sql.data.common.enums.RWorkBucketState;
+import com.evolveum.midpoint.repo.sql.data.common.id.RTaskWorkBucketId;
+import com.evolveum.midpoint.repo.sql.util.RUtil;
+import com.evolveum.midpoint.schema.SchemaConstantsGenerated;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ExceptionUtil;
+import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketStateType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maintains work buckets stored in m_task_work_bucket table (WorkBucketStorageType.TABLE).
+ *
+ * A bucket is claimed by locking its row only. On PostgreSQL, Oracle and SQL Server rows locked by other workers
+ * are skipped (FOR UPDATE SKIP LOCKED, READPAST), so concurrent workers neither wait for nor conflict with each other.
+ * Elsewhere (H2, MySQL/MariaDB whose support depends on the server version) a few READY candidates are read and
+ * the first one is taken by a conditional update; losing the race for a candidate simply means trying the next one.
+ *
+ * @author mederly
+ */
+@Component
+public class WorkBucketHelper {
+
+    private static final Trace LOGGER = TraceManager.getTrace(WorkBucketHelper.class);
+
+    // how many READY buckets are tried by a single claim attempt when skipping locked rows is not available
+    private static final int CLAIM_CANDIDATES = 10;
+
+    private static final String TABLE = RTaskWorkBucket.TABLE_NAME;
+
+    @Autowired private BaseHelper baseHelper;
+    @Autowired private PrismContext prismContext;
+
+    public WorkBucketType claimWorkBucketAttempt(String coordinatorOid, String workerOid, OperationResult result)
+            throws SchemaException {
+        LOGGER.debug("Claiming work bucket of {} for {}", coordinatorOid, workerOid);
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            Integer sequentialNumber = isSkipLockedSupported() ?
+                    lockFirstReady(session, coordinatorOid) : updateFirstReady(session, coordinatorOid, workerOid);
+            if (sequentialNumber == null) {
+                session.getTransaction().commit();
+                LOGGER.trace("No ready work bucket of {}", coordinatorOid);
+                return null;
+            }
+            RTaskWorkBucket row = session.get(RTaskWorkBucket.class, new RTaskWorkBucketId(coordinatorOid, sequentialNumber));
+            row.setState(RWorkBucketState.DELEGATED);       // no-ops for rows claimed by updateFirstReady
+            row.setWorkerOid(workerOid);
+            WorkBucketType bucket = fromRepo(row);
+            session.getTransaction().commit();
+            LOGGER.trace("Claimed work bucket {} of {} for {}", sequentialNumber, coordinatorOid, workerOid);
+            return bucket;
+        } catch (SchemaException ex) {
+            baseHelper.rollbackTransaction(session, ex, result, true);
+            throw ex;
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralException(ex, session, result);
+            throw new SystemException("Exception " + ex + " was not handled correctly", ex);        // shouldn't occur
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, result);
+        }
+    }
+
+    private boolean isSkipLockedSupported() {
+        SqlRepositoryConfiguration configuration = baseHelper.getConfiguration();
+        return configuration.isUsingPostgreSQL() || configuration.isUsingOracle() || configuration.isUsingSQLServer();
+    }
+
+    /**
+     * Locks the first READY row not locked by anyone else. The lock is held until the end of the transaction.
+     */
+    private Integer lockFirstReady(Session session, String coordinatorOid) {
+        SqlRepositoryConfiguration configuration = baseHelper.getConfiguration();
+        String sql;
+        if (configuration.isUsingSQLServer()) {
+            sql = "select top 1 sequentialNumber from " + TABLE + " with (updlock, readpast, rowlock) " +
+                    "where owner_oid = :oid and state = :state order by sequentialNumber";
+        } else if (configuration.isUsingOracle()) {
+            // rownum would be applied before skipping the locked rows; so we fetch the rows one by one instead
+            sql = "select sequentialNumber from " + TABLE + " where owner_oid = :oid and state = :state " +
+                    "order by sequentialNumber for update skip locked";
+        } else {
+            sql = "select sequentialNumber from " + TABLE + " where owner_oid = :oid and state = :state " +
+                    "order by sequentialNumber limit 1 for update skip locked";
+        }
+        NativeQuery query = session.createNativeQuery(sql)
+                .setParameter("oid", coordinatorOid)
+                .setParameter("state", RWorkBucketState.READY.ordinal());
+        query.setFetchSize(1);
+        ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            return results.next() ? ((Number) results.get(0)).intValue() : null;
+        } finally {
+            results.close();
+        }
+    }
+
+    /**
+     * Marks the first READY bucket (from a couple of candidates) as DELEGATED by a conditional update.
+     */
+    private Integer updateFirstReady(Session session, String coordinatorOid, String workerOid) {
+        List<Integer> candidates = session
+                .createQuery("select b.sequentialNumber from RTaskWorkBucket b where b.ownerOid = :oid and b.state = :state "
+                        + "order by b.sequentialNumber", Integer.class)
+                .setParameter("oid", coordinatorOid)
+                .setParameter("state", RWorkBucketState.READY)
+                .setMaxResults(CLAIM_CANDIDATES)
+                .getResultList();
+        for (Integer candidate : candidates) {
+            int updated = session
+                    .createQuery("update RTaskWorkBucket b set b.state = :delegated, b.workerOid = :worker "
+                            + "where b.ownerOid = :oid and b.sequentialNumber = :number and b.state = :ready")
+                    .setParameter("delegated", RWorkBucketState.DELEGATED)
+                    .setParameter("worker", workerOid)
+                    .setParameter("oid", coordinatorOid)
+                    .setParameter("number", candidate)
+                    .setParameter("ready", RWorkBucketState.READY)
+                    .executeUpdate();
+            if (updated > 0) {
+                return candidate;
+            }
+            LOGGER.trace("Work bucket {} of {} was claimed by someone else, trying the next one", candidate, coordinatorOid);
+        }
+        if (candidates.size() == CLAIM_CANDIDATES) {
+            // all of them were taken in the meanwhile but there may be more; let's not report "nothing ready" too early
+            return updateFirstReady(session, coordinatorOid, workerOid);
+        }
+        return null;
+    }
+
+    public void addWorkBucketsAttempt(String coordinatorOid, List<WorkBucketType> buckets, String workerOid,
+            OperationResult result) throws ObjectAlreadyExistsException, SchemaException {
+        LOGGER.debug("Adding {} work bucket(s) to {}", buckets.size(), coordinatorOid);
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            for (WorkBucketType bucket : buckets) {
+                session.save(toRepo(coordinatorOid, bucket, workerOid));
+            }
+            session.getTransaction().commit();
+        } catch (SchemaException ex) {
+            baseHelper.rollbackTransaction(session, ex, result, true);
+            throw ex;
+        } catch (RuntimeException ex) {
+            ConstraintViolationException constEx = ExceptionUtil.findCause(ex, ConstraintViolationException.class);
+            if (constEx == null) {
+                baseHelper.handleGeneralException(ex, session, result);
+                throw new SystemException("Exception " + ex + " was not handled correctly", ex);        // shouldn't occur
+            }
+            // not fatal: this is a regular outcome when another worker creates the same buckets at the same time
+            baseHelper.rollbackTransaction(session, constEx, result, false);
+            LOGGER.debug("Work bucket(s) for {} already exist: {}", coordinatorOid, constEx.getMessage());
+            throw new ObjectAlreadyExistsException("Work bucket(s) for " + coordinatorOid + " already exist", constEx);
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, result);
+        }
+    }
+
+    @NotNull
+    public List<WorkBucketType> getWorkBucketsAttempt(String coordinatorOid, WorkBucketStateType state, OperationResult result)
+            throws SchemaException {
+        return getRows(coordinatorOid, state, false, result);
+    }
+
+    public WorkBucketType getLastWorkBucketAttempt(String coordinatorOid, OperationResult result) throws SchemaException {
+        List<WorkBucketType> buckets = getRows(coordinatorOid, null, true, result);
+        return buckets.isEmpty() ? null : buckets.get(0);
+    }
+
+    @NotNull
+    private List<WorkBucketType> getRows(String coordinatorOid, WorkBucketStateType state, boolean lastOnly,
+            OperationResult result) throws SchemaException {
+        Session session = null;
+        try {
+            session = baseHelper.beginReadOnlyTransaction();
+            Query<RTaskWorkBucket> query = session.createQuery("from RTaskWorkBucket b where b.ownerOid = :oid"
+                    + (state != null ? " and b.state = :state" : "")
+                    + " order by b.sequentialNumber" + (lastOnly ? " desc" : ""), RTaskWorkBucket.class)
+                    .setParameter("oid", coordinatorOid);
+            if (state != null) {
+                query.setParameter("state", RUtil.getRepoEnumValue(state, RWorkBucketState.class));
+            }
+            if (lastOnly) {
+                query.setMaxResults(1);
+            }
+            List<WorkBucketType> rv = new ArrayList<>();
+            for (RTaskWorkBucket row : query.getResultList()) {
+                rv.add(fromRepo(row));
+            }
+            session.getTransaction().commit();
+            return rv;
+        } catch (SchemaException ex) {
+            baseHelper.rollbackTransaction(session, ex, result, true);
+            throw ex;
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralException(ex, session, result);
+            throw new SystemException("Exception " + ex + " was not handled correctly", ex);        // shouldn't occur
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, result);
+        }
+    }
+
+    public boolean changeDelegatedWorkBucketStateAttempt(String coordinatorOid, int sequentialNumber, String workerOid,
+            WorkBucketStateType newState, OperationResult result) {
+        LOGGER.debug("Changing state of work bucket {} of {} delegated to {} to {}", sequentialNumber, coordinatorOid,
+                workerOid, newState);
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            RWorkBucketState newRepoState = RUtil.getRepoEnumValue(newState, RWorkBucketState.class);
+            int updated = session
+                    .createQuery("update RTaskWorkBucket b set b.state = :newState, b.workerOid = :newWorker "
+                            + "where b.ownerOid = :oid and b.sequentialNumber = :number and b.state = :delegated "
+                            + "and b.workerOid = :worker")
+                    .setParameter("newState", newRepoState)
+                    .setParameter("newWorker", newRepoState == RWorkBucketState.DELEGATED ? workerOid : null)
+                    .setParameter("oid", coordinatorOid)
+                    .setParameter("number", sequentialNumber)
+                    .setParameter("delegated", RWorkBucketState.DELEGATED)
+                    .setParameter("worker", workerOid)
+                    .executeUpdate();
+            session.getTransaction().commit();
+            return updated > 0;
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralException(ex, session, result);
+            throw new SystemException("Exception " + ex + " was not handled correctly", ex);        // shouldn't occur
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, result);
+        }
+    }
+
+    public int reclaimWorkBucketsAttempt(String coordinatorOid, Collection<String> liveWorkerOids, OperationResult result) {
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            boolean anyLive = liveWorkerOids != null && !liveWorkerOids.isEmpty();
+            Query query = session
+                    .createQuery("update RTaskWorkBucket b set b.state = :ready, b.workerOid = null "
+                            + "where b.ownerOid = :oid and b.state = :delegated"
+                            + (anyLive ? " and (b.workerOid is null or b.workerOid not in (:live))" : ""))
+                    .setParameter("ready", RWorkBucketState.READY)
+                    .setParameter("oid", coordinatorOid)
+                    .setParameter("delegated", RWorkBucketState.DELEGATED);
+            if (anyLive) {
+                query.setParameterList("live", liveWorkerOids);
+            }
+            int reclaimed = query.executeUpdate();
+            session.getTransaction().commit();
+            LOGGER.debug("Reclaimed {} work bucket(s) of {}", reclaimed, coordinatorOid);
+            return reclaimed;
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralException(ex, session, result);
+            throw new SystemException("Exception " + ex + " was not handled correctly", ex);        // shouldn't occur
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, result);
+        }
+    }
+
+    public void deleteWorkBucketsAttempt(String coordinatorOid, OperationResult result) {
+        Session session = null;
+        try {
+            session = baseHelper.beginTransaction();
+            deleteWorkBuckets(session, coordinatorOid);
+            session.getTransaction().commit();
+        } catch (RuntimeException ex) {
+            baseHelper.handleGeneralException(ex, session, result);
+        } finally {
+            baseHelper.cleanupSessionAndResult(session, result);
+        }
+    }
+
+    public void deleteWorkBuckets(Session session, String coordinatorOid) {
+        int deleted = session.createQuery("delete from RTaskWorkBucket b where b.ownerOid = :oid")
+                .setParameter("oid", coordinatorOid)
+                .executeUpdate();
+        LOGGER.trace("Deleted {} work bucket(s) of {}", deleted, coordinatorOid);
+    }
+
+    private RTaskWorkBucket toRepo(String coordinatorOid, WorkBucketType bucket, String workerOid) throws SchemaException {
+        RTaskWorkBucket row = new RTaskWorkBucket();
+        row.setOwnerOid(coordinatorOid);
+        row.setSequentialNumber(bucket.getSequentialNumber());
+        WorkBucketStateType state = bucket.getState() != null ? bucket.getState() : WorkBucketStateType.READY;
+        row.setState(RUtil.getRepoEnumValue(state, RWorkBucketState.class));
+        row.setWorkerOid(state == WorkBucketStateType.DELEGATED ? workerOid : null);
+        // the state and container id live outside of the serialized form
+        WorkBucketType content = bucket.clone().id(null).state(null);
+        String xml = prismContext.xmlSerializer().serialize(content.asPrismContainerValue(), SchemaConstantsGenerated.C_VALUE);
+        row.setFullObject(RUtil.getByteArrayFromXml(xml, baseHelper.getConfiguration().isUseZip()));
+        return row;
+    }
+
+    private WorkBucketType fromRepo(RTaskWorkBucket row) throws SchemaException {
+        String xml = RUtil.getXmlFromByteArray(row.getFullObject(), baseHelper.getConfiguration().isUseZip());
+        WorkBucketType bucket = prismContext.parserFor(xml).xml().compat().parseRealValue(WorkBucketType.class);
+        return bucket
+                .sequentialNumber(row.getSequentialNumber())
+                .state(row.getState().getSchemaValue());
+    }
+}
@@ -33,6 +33,7 @@ import org.hibernate.query.Query;
 import org.hibernate.Session;
 
 import java.util.Collection;
+import java.util.Collections;
 
 /**
  * @author lazyman
@@ -44,26 +45,66 @@ public class QueryEngine2 {
     private SqlRepositoryConfiguration repoConfiguration;
     private ExtItemDictionary extItemDictionary;
     private PrismContext prismContext;
+    private QueryTemplateCache templateCache;
 
     public QueryEngine2(SqlRepositoryConfiguration config, ExtItemDictionary extItemDictionary, PrismContext prismContext) {
+        this(config, extItemDictionary, prismContext, null);
+    }
+
+    public QueryEngine2(SqlRepositoryConfiguration config, ExtItemDictionary extItemDictionary, PrismContext prismContext,
+            QueryTemplateCache templateCache) {
         this.repoConfiguration = config;
         this.extItemDictionary = extItemDictionary;
         this.prismContext = prismContext;
+        this.templateCache = templateCache != null && templateCache.isEnabled() ? templateCache : null;
     }
 
     public RQuery interpret(ObjectQuery query, Class<? extends Containerable> type,
             Collection<SelectorOptions<GetOperationOptions>> options,
             boolean countingObjects, Session session) throws QueryException {
 
+        QueryShape shape = null;
+        if (templateCache != null) {
+            shape = QueryShape.create(type, query, options, countingObjects);
+            if (shape == null) {
+                templateCache.registerNotCacheable();
+            } else {
+                QueryTemplate template = templateCache.get(shape);
+                Query hqlQuery = template != null ? template.instantiate(shape, query, session) : null;
+                if (hqlQuery != null) {
+                    templateCache.registerHit();
+                    logResult(query, options, hqlQuery, true);
+                    // the template's query source holds parameter values of the query it was recorded from
+                    return new RQueryImpl(hqlQuery, null);
+                }
+                templateCache.registerMiss();
+            }
+        }
+
         QueryInterpreter2 interpreter = new QueryInterpreter2(repoConfiguration, extItemDictionary);
+        QueryTemplateRecorder recorder = shape != null ? new QueryTemplateRecorder(shape) : null;
+        interpreter.setTemplateRecorder(recorder);
         RootHibernateQuery hibernateQuery = interpreter.interpret(query, type, options, prismContext, countingObjects, session);
-        Query hqlQuery = hibernateQuery.getAsHqlQuery(session);
-
-        if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace("Query interpretation result:\n--- Query:\n{}\n--- with options: {}\n--- resulted in HQL:\n{}",
-                    DebugUtil.debugDump(query), options, hqlQuery.getQueryString());
+        String hqlText = hibernateQuery.getAsHqlText(0, hibernateQuery.isDistinct());
+        Query hqlQuery = hibernateQuery.getAsHqlQuery(session, hqlText, Collections.emptyMap());
 
+        if (recorder != null) {
+            QueryTemplate template = recorder.createTemplate(hqlText, hibernateQuery, countingObjects);
+            if (template != null) {
+                templateCache.put(shape, template);
+            } else {
+                templateCache.registerNotCacheable();
+            }
         }
+        logResult(query, options, hqlQuery, false);
         return new RQueryImpl(hqlQuery, hibernateQuery);
     }
+
+    private void logResult(ObjectQuery query, Collection<SelectorOptions<GetOperationOptions>> options, Query hqlQuery,
+            boolean fromTemplate) {
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Query interpretation result{}:\n--- Query:\n{}\n--- with options: {}\n--- resulted in HQL:\n{}",
+                    fromTemplate ? " (from cached template)" : "", DebugUtil.debugDump(query), options, hqlQuery.getQueryString());
+        }
+    }
 }
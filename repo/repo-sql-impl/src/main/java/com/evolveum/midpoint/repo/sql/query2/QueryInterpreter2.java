@@ -18,7 +18,10 @@ package com.evolveum.midpoint.repo.sql.query2;
 
 import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.ItemDefinition;
+import com.evolveum.midpoint.prism.PrismContainerDefinition;
 import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismPropertyDefinition;
+import com.evolveum.midpoint.prism.match.PolyStringOrigMatchingRule;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.*;
@@ -31,6 +34,7 @@ import com.evolveum.midpoint.repo.sql.query2.definition.*;
 import com.evolveum.midpoint.repo.sql.query2.hqm.CountProjectionElement;
 import com.evolveum.midpoint.repo.sql.query2.hqm.RootHibernateQuery;
 import com.evolveum.midpoint.repo.sql.query2.hqm.condition.Condition;
+import com.evolveum.midpoint.repo.sql.query2.hqm.condition.OrCondition;
 import com.evolveum.midpoint.repo.sql.query2.matcher.DefaultMatcher;
 import com.evolveum.midpoint.repo.sql.query2.matcher.Matcher;
 import com.evolveum.midpoint.repo.sql.query2.matcher.PolyStringMatcher;
@@ -51,6 +55,7 @@ import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
 import org.jetbrains.annotations.NotNull;
 
+import javax.xml.namespace.QName;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -99,12 +104,21 @@ public class QueryInterpreter2 {
 
     private SqlRepositoryConfiguration repoConfiguration;
     private ExtItemDictionary extItemDictionary;
+    private QueryTemplateRecorder templateRecorder;         // present if the interpretation result is to be cached
 
     public QueryInterpreter2(SqlRepositoryConfiguration repoConfiguration, ExtItemDictionary extItemDictionary) {
         this.repoConfiguration = repoConfiguration;
         this.extItemDictionary = extItemDictionary;
     }
 
+    public QueryTemplateRecorder getTemplateRecorder() {
+        return templateRecorder;
+    }
+
+    public void setTemplateRecorder(QueryTemplateRecorder templateRecorder) {
+        this.templateRecorder = templateRecorder;
+    }
+
     public SqlRepositoryConfiguration getRepoConfiguration() {
         return repoConfiguration;
     }
@@ -307,24 +321,31 @@ public class QueryInterpreter2 {
         if (query != null && query.getPaging() instanceof ObjectPagingAfterOid) {
             ObjectPagingAfterOid paging = (ObjectPagingAfterOid) query.getPaging();
             if (paging.getOidGreaterThan() != null) {
-                Condition c = hibernateQuery.createSimpleComparisonCondition(rootAlias + ".oid", paging.getOidGreaterThan(), ">");
-                hibernateQuery.addCondition(c);
+                hibernateQuery.addCondition(createAfterCondition(context, paging));
+            }
+            if (paging.getOidNotGreaterThan() != null) {
+                hibernateQuery.addCondition(hibernateQuery.createSimpleComparisonCondition(rootAlias + ".oid",
+                        paging.getOidNotGreaterThan(), "<="));
             }
         }
 
         if (!countingObjects && query != null && query.getPaging() != null) {
             if (query.getPaging() instanceof ObjectPagingAfterOid) {
-                updatePagingAndSortingByOid(hibernateQuery, (ObjectPagingAfterOid) query.getPaging());                // very special case - ascending ordering by OID (nothing more)
+                updatePagingAndSortingByOid(context, (ObjectPagingAfterOid) query.getPaging());                // very special case - ordering with OID as the last key
             } else {
                 updatePagingAndSorting(context, query.getPaging());
             }
         }
     }
 
-    private void updatePagingAndSortingByOid(RootHibernateQuery hibernateQuery, ObjectPagingAfterOid paging) {
+    private void updatePagingAndSortingByOid(InterpretationContext context, ObjectPagingAfterOid paging) throws QueryException {
+        RootHibernateQuery hibernateQuery = context.getHibernateQuery();
         String rootAlias = hibernateQuery.getPrimaryEntityAlias();
-        if (paging.getOrderBy() != null || paging.getDirection() != null || paging.getOffset() != null) {
-            throw new IllegalArgumentException("orderBy, direction nor offset is allowed on ObjectPagingAfterOid");
+        if (paging.getOffset() != null) {
+            throw new IllegalArgumentException("offset is not allowed on ObjectPagingAfterOid");
+        }
+        for (ObjectOrdering ordering : paging.getOrderingInstructions()) {
+            hibernateQuery.addOrdering(resolveOrderingPath(context, ordering.getOrderBy(), true), getDirection(ordering));
         }
         hibernateQuery.addOrdering(rootAlias + ".oid", OrderDirection.ASCENDING);
         if (paging.getMaxSize() != null) {
@@ -332,6 +353,85 @@ public class QueryInterpreter2 {
         }
     }
 
+    /**
+     * Creates condition selecting objects that follow the (values..., oid) tuple in the ordering, i.e.
+     *
+     *   (k1 after v1) or (k1 = v1 and k2 after v2) or ... or (k1 = v1 and ... and kn = vn and oid > lastOid)
+     *
+     * The "after" part has to take into account where the database puts null values, because we keep the
+     * native ordering (so it can be supported by indices).
+     */
+    private Condition createAfterCondition(InterpretationContext context, ObjectPagingAfterOid paging) throws QueryException {
+        RootHibernateQuery hibernateQuery = context.getHibernateQuery();
+        String rootAlias = hibernateQuery.getPrimaryEntityAlias();
+        Condition oidCondition = hibernateQuery.createSimpleComparisonCondition(rootAlias + ".oid", paging.getOidGreaterThan(), ">");
+        List<ObjectOrdering> orderings = paging.getOrderingInstructions();
+        if (orderings.isEmpty()) {
+            return oidCondition;
+        }
+        if (paging.getOrderingValues().size() != orderings.size()) {
+            throw new IllegalArgumentException("Expected " + orderings.size() + " ordering values on ObjectPagingAfterOid, got "
+                    + paging.getOrderingValues().size());
+        }
+
+        OrCondition disjunction = hibernateQuery.createOr();
+        List<Condition> equalities = new ArrayList<>();
+        for (int i = 0; i < orderings.size(); i++) {
+            ObjectOrdering ordering = orderings.get(i);
+            Object value = paging.getOrderingValues().get(i);
+            String hqlPropertyPath = resolveOrderingPath(context, ordering.getOrderBy(), true);
+            boolean ascending = getDirection(ordering) == OrderDirection.ASCENDING;
+            boolean nullsAtEnd = ascending == areNullsSortedHigh();
+
+            Condition after;
+            Condition equal;
+            if (value != null) {
+                Condition comparison = interpretFilter(context,
+                        createComparisonFilter(context, ordering.getOrderBy(), value, ascending ? ">" : "<"), null);
+                after = nullsAtEnd ? hibernateQuery.createOr(comparison, hibernateQuery.createIsNull(hqlPropertyPath)) : comparison;
+                equal = interpretFilter(context, createComparisonFilter(context, ordering.getOrderBy(), value, "="), null);
+            } else {
+                after = nullsAtEnd ? null : hibernateQuery.createIsNotNull(hqlPropertyPath);
+                equal = hibernateQuery.createIsNull(hqlPropertyPath);
+            }
+            if (after != null) {
+                List<Condition> conjunction = new ArrayList<>(equalities);
+                conjunction.add(after);
+                disjunction.add(hibernateQuery.createAnd(conjunction));
+            }
+            equalities.add(equal);
+        }
+        equalities.add(oidCondition);
+        disjunction.add(hibernateQuery.createAnd(equalities));
+        return disjunction;
+    }
+
+    private ObjectFilter createComparisonFilter(InterpretationContext context, ItemPath path, Object value, String operator) {
+        PrismContainerDefinition<?> containerDefinition = context.getPrismContext().getSchemaRegistry()
+                .findContainerDefinitionByCompileTimeClass(context.getType());
+        PrismPropertyDefinition<Object> definition = containerDefinition != null
+                ? containerDefinition.findPropertyDefinition(path) : null;
+        // ordering by polystring is done by its 'orig' part
+        QName matchingRule = value instanceof PolyString ? PolyStringOrigMatchingRule.NAME : null;
+        PrismContext prismContext = context.getPrismContext();
+        switch (operator) {
+            case ">": return GreaterFilter.createGreater(path, definition, matchingRule, value, false, prismContext);
+            case "<": return LessFilter.createLess(path, definition, matchingRule, value, false, prismContext);
+            default: return EqualFilter.createEqual(path, definition, matchingRule, prismContext, value);
+        }
+    }
+
+    /**
+     * Whether the database puts null values after non-null ones when sorting in ascending order.
+     */
+    private boolean areNullsSortedHigh() {
+        return repoConfiguration.isUsingPostgreSQL() || repoConfiguration.isUsingOracle();
+    }
+
+    private OrderDirection getDirection(ObjectOrdering ordering) {
+        return ordering.getDirection() == OrderDirection.DESCENDING ? OrderDirection.DESCENDING : OrderDirection.ASCENDING;
+    }
+
     private void updatePagingAndSorting(InterpretationContext context, ObjectPaging paging) throws QueryException {
 		if (paging == null) {
             return;
@@ -360,15 +460,76 @@ public class QueryInterpreter2 {
 
     private void addOrdering(InterpretationContext context, ObjectOrdering ordering) throws QueryException {
 
-        ItemPath orderByPath = ordering.getOrderBy();
+        String hqlPropertyPath = resolveOrderingPath(context, ordering.getOrderBy(), false);
+        if (hqlPropertyPath == null) {
+            return;
+        }
+
+        RootHibernateQuery hibernateQuery = context.getHibernateQuery();
+        if (ordering.getDirection() != null) {
+            switch (ordering.getDirection()) {
+                case ASCENDING:
+                    hibernateQuery.addOrdering(hqlPropertyPath, OrderDirection.ASCENDING);
+                    break;
+                case DESCENDING:
+                    hibernateQuery.addOrdering(hqlPropertyPath, OrderDirection.DESCENDING);
+                    break;
+            }
+        } else {
+            hibernateQuery.addOrdering(hqlPropertyPath, OrderDirection.ASCENDING);
+        }
+
+    }
+
+    /**
+     * Whether objects of given type can be ordered by given item when using keyset paging (ObjectPagingAfterOid).
+     * This is the case only for known single-valued properties, because values of ordering items of the last
+     * object returned are used to find the next page.
+     */
+    public static boolean isKeysetOrderingSupported(Class<? extends Containerable> type, ItemPath orderByPath,
+            PrismContext prismContext) {
+        ProperDataSearchResult<JpaDataNodeDefinition> result;
+        try {
+            result = ItemPathResolver.findProperDataDefinition(QueryDefinitionRegistry2.getInstance().findEntityDefinition(type),
+                    orderByPath, null, JpaDataNodeDefinition.class, prismContext);
+        } catch (QueryException | RuntimeException e) {
+            LOGGER.trace("Couldn't resolve ordering path '{}' for {}", orderByPath, type, e);
+            return false;
+        }
+        if (result == null || !(result.getLinkDefinition().getTargetDefinition() instanceof JpaPropertyDefinition)
+                || result.getLinkDefinition().isMultivalued()) {
+            return false;
+        }
+        // the item itself and all containers on the way to it have to be single-valued
+        PrismContainerDefinition<?> containerDefinition = prismContext.getSchemaRegistry()
+                .findContainerDefinitionByCompileTimeClass(type);
+        if (containerDefinition == null) {
+            return false;
+        }
+        for (int i = 0; i < orderByPath.size(); i++) {
+            ItemDefinition<?> itemDefinition = containerDefinition.findItemDefinition(orderByPath.allUpToIncluding(i));
+            if (itemDefinition == null || !itemDefinition.isSingleValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns HQL path to be used for ordering by given item, or null if the path is unknown (and not required).
+     */
+    private String resolveOrderingPath(InterpretationContext context, ItemPath orderByPath, boolean required) throws QueryException {
 
         // TODO if we'd like to have order-by extension properties, we'd need to provide itemDefinition for them
         ProperDataSearchResult<JpaDataNodeDefinition> result = context.getItemPathResolver().findProperDataDefinition(
                 context.getRootEntityDefinition(), orderByPath, null, JpaDataNodeDefinition.class, context.getPrismContext());
         if (result == null) {
+            if (required) {
+                throw new QueryException("Unknown path '" + orderByPath + "', couldn't find definition for it");
+            }
             LOGGER.error("Unknown path '" + orderByPath + "', couldn't find definition for it, "
                     + "list will not be ordered by it.");
-            return;
+            return null;
         }
         JpaDataNodeDefinition targetDefinition = result.getLinkDefinition().getTargetDefinition();
         if (targetDefinition instanceof JpaAnyContainerDefinition) {
@@ -391,21 +552,7 @@ public class QueryInterpreter2 {
         if (RPolyString.class.equals(orderByDefinition.getJpaClass())) {
             hqlPropertyPath += ".orig";
         }
-
-        RootHibernateQuery hibernateQuery = context.getHibernateQuery();
-        if (ordering.getDirection() != null) {
-            switch (ordering.getDirection()) {
-                case ASCENDING:
-                    hibernateQuery.addOrdering(hqlPropertyPath, OrderDirection.ASCENDING);
-                    break;
-                case DESCENDING:
-                    hibernateQuery.addOrdering(hqlPropertyPath, OrderDirection.DESCENDING);
-                    break;
-            }
-        } else {
-            hibernateQuery.addOrdering(hqlPropertyPath, OrderDirection.ASCENDING);
-        }
-
+        return hqlPropertyPath;
     }
 
     private void addGrouping(InterpretationContext context, ObjectGrouping grouping) throws QueryException {
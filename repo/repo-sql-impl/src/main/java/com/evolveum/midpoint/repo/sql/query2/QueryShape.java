@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.query2;
+
+import com.evolveum.midpoint.prism.ItemDefinition;
+import com.evolveum.midpoint.prism.PrismPropertyDefinition;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.PrismReferenceValue;
+import com.evolveum.midpoint.prism.PrismValue;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.prism.query.*;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.prism.xml.ns._public.types_3.RawType;
+
+import java.util.*;
+
+/**
+ * Shape of a query, i.e. everything that influences its interpretation except for values of simple
+ * (string, integer, boolean) property value filters. Such values are replaced by placeholders in the key;
+ * the respective filters ("leaves") are kept in the order of their occurrence, so that their values can be
+ * bound to a query template created for the same shape.
+ *
+ * Only commonly used filters are supported. For others the shape is not created at all, and the query
+ * is always interpreted from scratch.
+ *
+ * @author mederly
+ */
+class QueryShape {
+
+	private static final Set<Class<?>> PLACEHOLDER_CLASSES = new HashSet<>(
+			Arrays.asList(String.class, Long.class, Integer.class, Short.class, Boolean.class));
+
+	private static final String PLACEHOLDER = "?";
+
+	private final List<Object> key = new ArrayList<>();
+	private final List<PropertyValueFilter<?>> leaves = new ArrayList<>();
+
+	private QueryShape() {
+	}
+
+	/**
+	 * @return null if the query cannot be described by a shape (i.e. cannot be cached)
+	 */
+	static QueryShape create(Class<?> type, ObjectQuery query, Collection<SelectorOptions<GetOperationOptions>> options,
+			boolean countingObjects) {
+		QueryShape shape = new QueryShape();
+		shape.key.add(type);
+		shape.key.add(countingObjects);
+		shape.key.add(GetOperationOptions.isDistinct(SelectorOptions.findRootOptions(options)));
+		if (query == null) {
+			return shape;
+		}
+		if (query.getFilter() != null && !shape.addFilter(query.getFilter())) {
+			return null;
+		}
+		if (query.getPaging() != null && !shape.addPaging(query.getPaging())) {
+			return null;
+		}
+		Set<PropertyValueFilter<?>> distinctLeaves = Collections.newSetFromMap(new IdentityHashMap<>());
+		distinctLeaves.addAll(shape.leaves);
+		if (distinctLeaves.size() != shape.leaves.size()) {
+			return null;        // the same filter instance used twice; too exotic to be dealt with
+		}
+		return shape;
+	}
+
+	List<Object> getKey() {
+		return key;
+	}
+
+	List<PropertyValueFilter<?>> getLeaves() {
+		return leaves;
+	}
+
+	static Object getLeafValue(PropertyValueFilter<?> leaf) {
+		return ((PrismPropertyValue<?>) leaf.getSingleValue()).getValue();
+	}
+
+	private boolean addFilter(ObjectFilter filter) {
+		if (filter instanceof NaryLogicalFilter) {
+			List<ObjectFilter> conditions = ((NaryLogicalFilter) filter).getConditions();
+			key.add(filter.getClass());
+			key.add(conditions.size());
+			for (ObjectFilter condition : conditions) {
+				if (!addFilter(condition)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (filter instanceof NotFilter) {
+			key.add(NotFilter.class);
+			return addFilter(((NotFilter) filter).getFilter());
+		} else if (filter instanceof TypeFilter) {
+			TypeFilter typeFilter = (TypeFilter) filter;
+			key.add(TypeFilter.class);
+			key.add(typeFilter.getType());
+			key.add(typeFilter.getFilter() != null);
+			return typeFilter.getFilter() == null || addFilter(typeFilter.getFilter());
+		} else if (filter instanceof PropertyValueFilter) {
+			return addPropertyValueFilter((PropertyValueFilter<?>) filter);
+		} else if (filter instanceof RefFilter) {
+			return addRefFilter((RefFilter) filter);
+		} else if (filter instanceof InOidFilter) {
+			InOidFilter inOidFilter = (InOidFilter) filter;
+			if (inOidFilter.getExpression() != null || inOidFilter.getOids() == null) {
+				return false;
+			}
+			key.add(InOidFilter.class);
+			key.add(inOidFilter.isConsiderOwner());
+			key.add(new ArrayList<>(inOidFilter.getOids()));
+			return true;
+		} else if (filter instanceof OrgFilter) {
+			OrgFilter orgFilter = (OrgFilter) filter;
+			key.add(OrgFilter.class);
+			key.add(orgFilter.isRoot());
+			key.add(orgFilter.getScope());
+			key.add(orgFilter.getOrgRef() != null ? orgFilter.getOrgRef().getOid() : null);
+			key.add(orgFilter.getOrgRef() != null ? orgFilter.getOrgRef().getRelation() : null);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	private boolean addPropertyValueFilter(PropertyValueFilter<?> filter) {
+		if (filter.getExpression() != null) {
+			return false;
+		}
+		key.add(filter.getClass());
+		if (filter instanceof ComparativeFilter) {
+			key.add(((ComparativeFilter) filter).isEquals());
+		} else if (filter instanceof SubstringFilter) {
+			key.add(((SubstringFilter) filter).isAnchorStart());
+			key.add(((SubstringFilter) filter).isAnchorEnd());
+		}
+		key.add(filter.getFullPath());
+		addDefinition(filter.getDefinition());
+		key.add(filter.getMatchingRule());
+		if (filter.getRightHandSidePath() != null) {
+			key.add(filter.getRightHandSidePath());
+			addDefinition(filter.getRightHandSideDefinition());
+			return true;
+		}
+		List<? extends PrismValue> values = filter.getValues() != null ? filter.getValues() : Collections.emptyList();
+		key.add(values.size());
+		if (values.size() == 1 && values.get(0) instanceof PrismPropertyValue
+				&& getLeafValue(filter) != null && PLACEHOLDER_CLASSES.contains(getLeafValue(filter).getClass())) {
+			key.add(PLACEHOLDER);
+			key.add(getLeafValue(filter).getClass());
+			leaves.add(filter);
+			return true;
+		}
+		for (PrismValue value : values) {
+			if (!(value instanceof PrismPropertyValue)) {
+				return false;
+			}
+			Object realValue = ((PrismPropertyValue<?>) value).getValue();
+			if (realValue instanceof RawType || realValue instanceof PolyString) {
+				return false;       // poly strings are mostly unique (e.g. names), so there is no point in caching them
+			}
+			key.add(realValue);
+		}
+		return true;
+	}
+
+	private void addDefinition(ItemDefinition<?> definition) {
+		if (definition == null) {
+			key.add(null);
+		} else {
+			key.add(definition.getClass());
+			key.add(definition.getName());
+			key.add(definition.getTypeName());
+			key.add(definition instanceof PrismPropertyDefinition ? ((PrismPropertyDefinition<?>) definition).isIndexed() : null);
+		}
+	}
+
+	private boolean addRefFilter(RefFilter filter) {
+		if (filter.getExpression() != null) {
+			return false;
+		}
+		key.add(RefFilter.class);
+		key.add(filter.getFullPath());
+		addDefinition(filter.getDefinition());
+		List<PrismReferenceValue> values = filter.getValues() != null ? filter.getValues() : Collections.emptyList();
+		key.add(values.size());
+		for (PrismReferenceValue value : values) {
+			if (value.getFilter() != null) {
+				return false;
+			}
+			key.add(value.getOid());
+			key.add(value.getRelation());
+			key.add(value.getTargetType());
+		}
+		return true;
+	}
+
+	private boolean addPaging(ObjectPaging paging) {
+		if (paging.getClass() != ObjectPaging.class || paging.hasGrouping()) {
+			return false;       // e.g. ObjectPagingAfterOid carries values of the last object
+		}
+		key.add(ObjectPaging.class);
+		key.add(new ArrayList<>(paging.getOrderingInstructions()));
+		key.add(paging.getCookie());
+		// offset and max size values are applied to the query when instantiating the template
+		key.add(paging.getOffset() != null);
+		key.add(paging.getMaxSize() != null);
+		return true;
+	}
+}
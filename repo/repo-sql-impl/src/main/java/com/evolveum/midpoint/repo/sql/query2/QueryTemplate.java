@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.query2;
+
+import com.evolveum.midpoint.prism.query.ObjectPaging;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.sql.query2.hqm.QueryParameterValue;
+import com.evolveum.midpoint.repo.sql.query2.hqm.RootHibernateQuery;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Interpreted query (HQL text with parameters) that can be re-used for queries of the same shape.
+ * Values of leaves that are parameter slots are bound to respective parameters; values of other leaves
+ * must be the same as in the query the template was created from.
+ *
+ * Immutable; shared among threads.
+ *
+ * @author mederly
+ */
+class QueryTemplate {
+
+	private final String hqlText;
+	private final RootHibernateQuery hibernateQuery;        // not modified after template creation
+	private final boolean countingObjects;
+	private final Map<Integer, String> slots;               // leaf index -> parameter name
+	private final List<Object> fixedValues;                 // indexed by leaf index (nulls for slots)
+
+	QueryTemplate(String hqlText, RootHibernateQuery hibernateQuery, boolean countingObjects,
+			Map<Integer, String> slots, List<Object> fixedValues) {
+		this.hqlText = hqlText;
+		this.hibernateQuery = hibernateQuery;
+		this.countingObjects = countingObjects;
+		this.slots = slots;
+		this.fixedValues = fixedValues;
+	}
+
+	/**
+	 * @return null if the query cannot be created from this template (because of fixed values mismatch)
+	 */
+	Query instantiate(QueryShape shape, ObjectQuery query, Session session) {
+		Map<String, QueryParameterValue> boundParameters = new HashMap<>();
+		for (int i = 0; i < shape.getLeaves().size(); i++) {
+			Object value = QueryShape.getLeafValue(shape.getLeaves().get(i));
+			String parameterName = slots.get(i);
+			if (parameterName != null) {
+				boundParameters.put(parameterName, new QueryParameterValue(value));
+			} else if (!Objects.equals(value, fixedValues.get(i))) {
+				return null;
+			}
+		}
+		Query hqlQuery = hibernateQuery.getAsHqlQuery(session, hqlText, boundParameters);
+		ObjectPaging paging = query != null ? query.getPaging() : null;
+		if (!countingObjects && paging != null) {
+			if (paging.getOffset() != null) {
+				hqlQuery.setFirstResult(paging.getOffset());
+			}
+			if (paging.getMaxSize() != null) {
+				hqlQuery.setMaxResults(paging.getMaxSize());
+			}
+		}
+		return hqlQuery;
+	}
+}
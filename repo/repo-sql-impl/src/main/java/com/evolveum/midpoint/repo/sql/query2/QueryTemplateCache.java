@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.query2;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of interpreted queries (templates), keyed by query shape. Used by QueryEngine2 to avoid repeated
+ * interpretation of queries that differ only in values, e.g. shadow lookups by primary identifier.
+ *
+ * The number of templates is limited; when the limit is reached, new templates are simply not stored.
+ * (Query shapes are mostly given by the code and configuration, so there should not be too many of them.)
+ *
+ * @author mederly
+ */
+public class QueryTemplateCache {
+
+	private final int maxSize;
+	private final ConcurrentMap<List<Object>, QueryTemplate> templates = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder notCacheable = new LongAdder();
+
+	public QueryTemplateCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	QueryTemplate get(QueryShape shape) {
+		return templates.get(shape.getKey());
+	}
+
+	void put(QueryShape shape, QueryTemplate template) {
+		if (templates.size() < maxSize) {
+			templates.putIfAbsent(shape.getKey(), template);
+		}
+	}
+
+	void registerHit() {
+		hits.increment();
+	}
+
+	void registerMiss() {
+		misses.increment();
+	}
+
+	void registerNotCacheable() {
+		notCacheable.increment();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getNotCacheable() {
+		return notCacheable.sum();
+	}
+
+	public int size() {
+		return templates.size();
+	}
+
+	public void clear() {
+		templates.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "QueryTemplateCache{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+				+ ", notCacheable=" + getNotCacheable() + "}";
+	}
+}
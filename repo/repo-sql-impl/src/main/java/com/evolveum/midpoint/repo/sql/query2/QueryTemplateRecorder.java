@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.query2;
+
+import com.evolveum.midpoint.prism.query.ValueFilter;
+import com.evolveum.midpoint.repo.sql.query2.hqm.RootHibernateQuery;
+import com.evolveum.midpoint.repo.sql.query2.hqm.condition.Condition;
+import com.evolveum.midpoint.repo.sql.query2.hqm.condition.SimpleComparisonCondition;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+import java.util.*;
+
+/**
+ * Watches interpretation of a query in order to create a template from it. For each leaf of the query shape
+ * it finds out whether the leaf value got into the HQL query unchanged as a value of a single parameter.
+ * Such leaves become parameter slots of the template. Values of other leaves are fixed in the template.
+ *
+ * @author mederly
+ */
+public class QueryTemplateRecorder {
+
+	private static final Trace LOGGER = TraceManager.getTrace(QueryTemplateRecorder.class);
+
+	private static final Set<String> SLOT_OPERATORS = new HashSet<>(Arrays.asList("=", "<", "<=", ">", ">="));
+
+	private final QueryShape shape;
+	private final Map<ValueFilter, Integer> leafIndices = new IdentityHashMap<>();
+	private final Map<Integer, SimpleComparisonCondition> slotConditions = new HashMap<>();
+	private final Set<Integer> fixedLeaves = new HashSet<>();
+	private String notCacheableReason;
+
+	QueryTemplateRecorder(QueryShape shape) {
+		this.shape = shape;
+		for (int i = 0; i < shape.getLeaves().size(); i++) {
+			leafIndices.put(shape.getLeaves().get(i), i);
+		}
+	}
+
+	/**
+	 * Called when a condition comparing an item with a value (taken from the filter) is created.
+	 */
+	public void recordValueCondition(ValueFilter<?, ?> filter, Object value, Condition condition) {
+		Integer index = leafIndices.get(filter);
+		if (index == null || fixedLeaves.contains(index)) {
+			return;
+		}
+		if (slotConditions.containsKey(index)) {
+			slotConditions.remove(index);       // the value is used more than once; let's keep it simple
+			fixedLeaves.add(index);
+		} else if (condition instanceof SimpleComparisonCondition && isUnchanged(filter, value, (SimpleComparisonCondition) condition)) {
+			slotConditions.put(index, (SimpleComparisonCondition) condition);
+		} else {
+			fixedLeaves.add(index);
+		}
+	}
+
+	private boolean isUnchanged(ValueFilter<?, ?> filter, Object value, SimpleComparisonCondition condition) {
+		// identity checks are intentional: any conversion of the value would be applied also to other values
+		return value == QueryShape.getLeafValue(shape.getLeaves().get(leafIndices.get(filter)))
+				&& condition.getValue() == value
+				&& !condition.isIgnoreCase()
+				&& SLOT_OPERATORS.contains(condition.getOperator());
+	}
+
+	/**
+	 * Called when the interpretation depends on something other than the query, e.g. on the state of the database.
+	 */
+	public void setNotCacheable(String reason) {
+		if (notCacheableReason == null) {
+			notCacheableReason = reason;
+		}
+	}
+
+	/**
+	 * Creates the template. Must be called after the HQL text was generated, as the parameter names are known only then.
+	 *
+	 * @return null if the query cannot be cached
+	 */
+	QueryTemplate createTemplate(String hqlText, RootHibernateQuery hibernateQuery, boolean countingObjects) {
+		if (notCacheableReason != null) {
+			LOGGER.trace("Query is not cacheable: {}", notCacheableReason);
+			return null;
+		}
+		Map<Integer, String> slots = new HashMap<>();
+		List<Object> fixedValues = new ArrayList<>();
+		for (int i = 0; i < shape.getLeaves().size(); i++) {
+			SimpleComparisonCondition condition = slotConditions.get(i);
+			if (condition != null && condition.getParameterName() != null
+					&& hibernateQuery.getParameters().containsKey(condition.getParameterName())) {
+				slots.put(i, condition.getParameterName());
+				fixedValues.add(null);
+			} else {
+				fixedValues.add(QueryShape.getLeafValue(shape.getLeaves().get(i)));
+			}
+		}
+		return new QueryTemplate(hqlText, hibernateQuery, countingObjects, slots, fixedValues);
+	}
+}
@@ -27,6 +27,7 @@ import org.hibernate.transform.ResultTransformer;
 import org.hibernate.type.Type;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -91,12 +92,19 @@ public class RootHibernateQuery extends HibernateQuery {
     }
 
     public Query getAsHqlQuery(Session session) {
-        String text = getAsHqlText(0, distinct);
+        return getAsHqlQuery(session, getAsHqlText(0, distinct), Collections.emptyMap());
+    }
+
+    /**
+     * Creates the query from already generated HQL text. Values of selected parameters can be replaced
+     * (used when instantiating query templates). Does not modify this object.
+     */
+    public Query getAsHqlQuery(Session session, String text, Map<String, QueryParameterValue> parameterOverrides) {
         LOGGER.trace("HQL text generated:\n{}", text);
         Query query = session.createQuery(text);
         for (Map.Entry<String,QueryParameterValue> parameter : parameters.entrySet()) {
             String name = parameter.getKey();
-            QueryParameterValue parameterValue = parameter.getValue();
+            QueryParameterValue parameterValue = parameterOverrides.getOrDefault(name, parameter.getValue());
             LOGGER.trace("Parameter {} = {}", name, parameterValue.debugDump());
 
             if (parameterValue.getValue() instanceof Collection) {
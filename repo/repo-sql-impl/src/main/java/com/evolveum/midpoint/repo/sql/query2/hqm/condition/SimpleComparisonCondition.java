@@ -28,6 +28,8 @@ public class SimpleComparisonCondition extends PropertyCondition {
     private Object value;
     private String operator;
     private boolean ignoreCase;
+    private String parameterName;           // known after dumping to HQL (null if dumped more than once)
+    private boolean dumped;
 
     public SimpleComparisonCondition(RootHibernateQuery rootHibernateQuery, String propertyPath, Object value, String operator, boolean ignoreCase) {
         super(rootHibernateQuery, propertyPath);
@@ -58,9 +60,27 @@ public class SimpleComparisonCondition extends PropertyCondition {
 
         String parameterNamePrefix = createParameterName(propertyPath);
         String parameterName = rootHibernateQuery.addParameter(parameterNamePrefix, finalPropertyValue);
+        this.parameterName = dumped ? null : parameterName;
+        dumped = true;
         sb.append(finalPropertyPath).append(" ").append(operator).append(" :").append(parameterName);
     }
 
+    public Object getValue() {
+        return value;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    public String getParameterName() {
+        return parameterName;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
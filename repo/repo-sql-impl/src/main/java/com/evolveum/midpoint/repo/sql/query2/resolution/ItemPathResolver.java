@@ -156,6 +156,9 @@ public class ItemPathResolver {
             } else {
                 // there are no rows referencing this item, because it does not exist in RExtItem (yet)
                 conjunction.add(hibernateQuery.createFalse());
+                if (context.getInterpreter().getTemplateRecorder() != null) {
+                    context.getInterpreter().getTemplateRecorder().setNotCacheable("ext item " + anyLinkDef.getItemDefinition().getName() + " does not exist yet");
+                }
             }
             condition = conjunction;
         }
@@ -214,7 +217,7 @@ public class ItemPathResolver {
      * @param prismContext
      * @return Entity type definition + item definition, or null if nothing was found
      */
-    public <T extends JpaDataNodeDefinition>
+    public static <T extends JpaDataNodeDefinition>
     ProperDataSearchResult<T> findProperDataDefinition(JpaEntityDefinition baseEntityDefinition,
             ItemPath path, ItemDefinition itemDefinition,
             Class<T> clazz, PrismContext prismContext) throws QueryException {
@@ -242,7 +245,7 @@ public class ItemPathResolver {
         return candidateResult;
     }
 
-    private List<JpaEntityDefinition> findPossibleBaseEntities(JpaEntityDefinition entityDefinition, QueryDefinitionRegistry2 registry) {
+    private static List<JpaEntityDefinition> findPossibleBaseEntities(JpaEntityDefinition entityDefinition, QueryDefinitionRegistry2 registry) {
         List<JpaEntityDefinition> retval = new ArrayList<>();
         retval.add(entityDefinition);               // (possibly) abstract one has to go first
         if (entityDefinition.isAbstract()) {        // just for efficiency
@@ -83,7 +83,11 @@ public abstract class ItemValueRestriction<T extends ValueFilter> extends ItemRe
         String matchingRule = filter.getMatchingRule() != null ? filter.getMatchingRule().getLocalPart() : null;
 
         // TODO treat null for multivalued properties (at least throw an exception!)
-        return matcher.match(context.getHibernateQuery(), operation, hqlPropertyPath, value, matchingRule);
+        Condition condition = matcher.match(context.getHibernateQuery(), operation, hqlPropertyPath, value, matchingRule);
+        if (interpreter.getTemplateRecorder() != null) {
+            interpreter.getTemplateRecorder().recordValueCondition(filter, value, condition);
+        }
+        return condition;
     }
 
     protected ItemRestrictionOperation findOperationForFilter(ValueFilter filter) throws QueryException {
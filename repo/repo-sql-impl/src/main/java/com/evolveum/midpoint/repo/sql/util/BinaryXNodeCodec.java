@@ -0,0 +1,595 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.repo.sql.util;
+
+import com.evolveum.midpoint.prism.marshaller.ItemPathHolder;
+import com.evolveum.midpoint.prism.marshaller.XNodeProcessorEvaluationMode;
+import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
+import com.evolveum.midpoint.prism.xml.XsdTypeMapper;
+import com.evolveum.midpoint.prism.xnode.*;
+import com.evolveum.midpoint.util.DOMUtil;
+import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.prism.xml.ns._public.types_3.ItemPathType;
+import org.apache.commons.lang.StringUtils;
+import org.w3c.dom.Element;
+
+import javax.xml.namespace.QName;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary representation of XNode tree, used as an alternative to XML in m_object.fullObject column.
+ *
+ * Layout: magic bytes "MPX", format version, flags (bit 0 = deflated body) followed by the root node.
+ * Namespaces and QNames are written once; subsequent occurrences are replaced by their index.
+ *
+ * Primitive values are stored in the same textual form as in XML (except for QNames), and they are parsed
+ * lazily in the same way as DOM parser does it. So the XNode tree obtained from this format is interpreted
+ * by prism exactly like the one obtained from XML.
+ */
+public final class BinaryXNodeCodec {
+
+    private static final Trace LOGGER = TraceManager.getTrace(BinaryXNodeCodec.class);
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = { 'M', 'P', 'X' };
+    private static final int HEADER_LENGTH = MAGIC.length + 2;
+    private static final int FLAG_DEFLATED = 0x01;
+
+    private static final int NODE_NULL = 0;
+    private static final int NODE_ROOT = 1;
+    private static final int NODE_MAP = 2;
+    private static final int NODE_LIST = 3;
+    private static final int NODE_PRIMITIVE = 4;
+    private static final int NODE_SCHEMA = 5;
+
+    private static final int F_EXPLICIT_TYPE = 0x01;
+    private static final int F_ELEMENT_NAME = 0x02;
+    private static final int F_COMMENT = 0x04;
+    private static final int F_ATTRIBUTE = 0x08;
+
+    private static final int VALUE_EMPTY = 0;
+    private static final int VALUE_TEXT = 1;
+    private static final int VALUE_QNAME = 2;
+    private static final int VALUE_PATH = 3;
+    private static final int VALUE_UNTYPED = 4;
+
+    private BinaryXNodeCodec() {
+    }
+
+    /**
+     * Returns true if the data are in this format. Legacy data (plain or gzipped XML) never start with the magic bytes.
+     */
+    public static boolean isBinary(byte[] data) {
+        if (data == null || data.length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static byte[] encode(RootXNode root, boolean compress) throws SchemaException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(MAGIC, 0, MAGIC.length);
+        bytes.write(FORMAT_VERSION);
+        bytes.write(compress ? FLAG_DEFLATED : 0);
+        try {
+            OutputStream body = compress ? new DeflaterOutputStream(bytes) : bytes;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(body))) {
+                new XNodeWriter(out).writeNode(root);
+            }
+        } catch (IOException ex) {
+            throw new SystemException("Couldn't encode full object, reason: " + ex.getMessage(), ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static RootXNode decode(byte[] data) throws SchemaException {
+        if (!isBinary(data)) {
+            throw new IllegalArgumentException("Data are not in binary full object format");
+        }
+        int version = data[MAGIC.length];
+        if (version != FORMAT_VERSION) {
+            throw new SchemaException("Unsupported version of binary full object format: " + version);
+        }
+        int flags = data[MAGIC.length + 1];
+        InputStream body = new ByteArrayInputStream(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            body = new InflaterInputStream(body);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(body))) {
+            XNode node = new XNodeReader(in).readNode();
+            if (!(node instanceof RootXNode)) {
+                throw new SchemaException("Expected root node in binary full object, got " + node);
+            }
+            return (RootXNode) node;
+        } catch (IOException ex) {
+            throw new SchemaException("Couldn't decode full object, reason: " + ex.getMessage(), ex);
+        }
+    }
+
+    private static class XNodeWriter {
+
+        private final DataOutputStream out;
+        private final Map<String, Integer> namespaces = new HashMap<>();
+        private final Map<QName, Integer> qnames = new HashMap<>();
+
+        private XNodeWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void writeNode(XNode node) throws IOException, SchemaException {
+            if (node == null) {
+                out.writeByte(NODE_NULL);
+            } else if (node instanceof RootXNode) {
+                writeHeader(NODE_ROOT, node, false);
+                writeQName(((RootXNode) node).getRootElementName());
+                writeNode(((RootXNode) node).getSubnode());
+            } else if (node instanceof MapXNode) {
+                writeHeader(NODE_MAP, node, false);
+                List<Map.Entry<QName, XNode>> entries = new ArrayList<>(((MapXNode) node).size());
+                for (Map.Entry<QName, XNode> entry : ((MapXNode) node).entrySet()) {
+                    if (entry.getValue() != null) {
+                        entries.add(entry);
+                    }
+                }
+                writeVarInt(entries.size());
+                for (Map.Entry<QName, XNode> entry : entries) {
+                    writeQName(entry.getKey());
+                    writeNode(entry.getValue());
+                }
+            } else if (node instanceof ListXNode) {
+                writeHeader(NODE_LIST, node, false);
+                List<XNode> items = new ArrayList<>((ListXNode) node);
+                items.removeIf(Objects::isNull);
+                writeVarInt(items.size());
+                for (XNode item : items) {
+                    writeNode(item);
+                }
+            } else if (node instanceof PrimitiveXNode) {
+                writeHeader(NODE_PRIMITIVE, node, ((PrimitiveXNode) node).isAttribute());
+                writePrimitiveValue((PrimitiveXNode<?>) node);
+            } else if (node instanceof SchemaXNode) {
+                writeHeader(NODE_SCHEMA, node, false);
+                Element schemaElement = ((SchemaXNode) node).getSchemaElement();
+                out.writeBoolean(schemaElement != null);
+                if (schemaElement != null) {
+                    writeString(DOMUtil.serializeDOMToString(schemaElement));
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown xnode " + node);
+            }
+        }
+
+        // type is stored only if it is explicit, as it is in XML (xsi:type)
+        private void writeHeader(int tag, XNode node, boolean attribute) throws IOException {
+            QName typeQName = node.isExplicitTypeDeclaration() ? node.getTypeQName() : null;
+            int flags = 0;
+            if (typeQName != null) {
+                flags |= F_EXPLICIT_TYPE;
+            }
+            if (node.getElementName() != null) {
+                flags |= F_ELEMENT_NAME;
+            }
+            if (StringUtils.isNotEmpty(node.getComment())) {
+                flags |= F_COMMENT;
+            }
+            if (attribute) {
+                flags |= F_ATTRIBUTE;
+            }
+            out.writeByte(tag);
+            out.writeByte(flags);
+            if (typeQName != null) {
+                writeQName(typeQName);
+            }
+            if (node.getElementName() != null) {
+                writeQName(node.getElementName());
+            }
+            if (StringUtils.isNotEmpty(node.getComment())) {
+                writeString(node.getComment());
+            }
+        }
+
+        // mirrors DomLexicalWriter.serializePrimitiveElementOrAttribute
+        private void writePrimitiveValue(PrimitiveXNode<?> xprim) throws IOException, SchemaException {
+            QName typeQName = xprim.getTypeQName();
+            if (typeQName == null && xprim.isParsed() && xprim.getValue() != null) {
+                typeQName = XsdTypeMapper.toXsdType(xprim.getValue().getClass());
+            }
+
+            if (typeQName == null) {
+                // either unparsed or empty
+                String stringValue = xprim.getStringValue();
+                if (stringValue == null) {
+                    out.writeByte(VALUE_EMPTY);
+                } else {
+                    out.writeByte(VALUE_UNTYPED);
+                    writeString(stringValue);
+                    writeNamespaces(xprim.getRelevantNamespaceDeclarations());
+                }
+                return;
+            }
+
+            if (StringUtils.isBlank(typeQName.getNamespaceURI())) {
+                typeQName = XsdTypeMapper.determineQNameWithNs(typeQName);
+            }
+
+            if (ItemPathType.COMPLEX_TYPE.equals(typeQName)) {
+                ItemPathType itemPathType = (ItemPathType) xprim.getParsedValueWithoutRecording(typeQName);
+                if (itemPathType == null) {
+                    out.writeByte(VALUE_EMPTY);
+                } else {
+                    ItemPathHolder holder = new ItemPathHolder(itemPathType.getItemPath());
+                    out.writeByte(VALUE_PATH);
+                    writeString(holder.getXPathWithDeclarations());
+                    writeNamespaces(holder.getNamespaceMap());
+                }
+            } else if (DOMUtil.XSD_QNAME.equals(typeQName)) {
+                QName value = (QName) xprim.getParsedValueWithoutRecording(DOMUtil.XSD_QNAME);
+                if (value == null) {
+                    out.writeByte(VALUE_EMPTY);
+                } else {
+                    out.writeByte(VALUE_QNAME);
+                    writeQName(value);
+                }
+            } else {
+                String value = xprim.getGuessedFormattedValue();
+                if (value == null) {
+                    out.writeByte(VALUE_EMPTY);
+                } else {
+                    out.writeByte(VALUE_TEXT);
+                    writeString(value);
+                }
+            }
+        }
+
+        private void writeQName(QName name) throws IOException {
+            Integer index = qnames.get(name);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            writeVarInt(0);
+            writeNamespace(name.getNamespaceURI());
+            writeString(name.getLocalPart());
+            writeString(name.getPrefix());
+            qnames.put(name, qnames.size());
+        }
+
+        private void writeNamespace(String namespace) throws IOException {
+            Integer index = namespaces.get(namespace);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            writeVarInt(0);
+            writeString(namespace);
+            namespaces.put(namespace, namespaces.size());
+        }
+
+        private void writeNamespaces(Map<String, String> declarations) throws IOException {
+            writeVarInt(declarations.size());
+            for (Map.Entry<String, String> declaration : declarations.entrySet()) {
+                writeString(declaration.getKey());
+                writeNamespace(declaration.getValue());
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+
+    private static class XNodeReader {
+
+        private final DataInputStream in;
+        private final List<String> namespaces = new ArrayList<>();
+        private final List<QName> qnames = new ArrayList<>();
+
+        private XNodeReader(DataInputStream in) {
+            this.in = in;
+        }
+
+        private XNode readNode() throws IOException, SchemaException {
+            int tag = in.readUnsignedByte();
+            if (tag == NODE_NULL) {
+                return null;
+            }
+            int flags = in.readUnsignedByte();
+            QName typeQName = (flags & F_EXPLICIT_TYPE) != 0 ? readQName() : null;
+            QName elementName = (flags & F_ELEMENT_NAME) != 0 ? readQName() : null;
+            String comment = (flags & F_COMMENT) != 0 ? readString() : null;
+
+            XNode node;
+            switch (tag) {
+                case NODE_ROOT:
+                    QName rootElementName = readQName();
+                    node = new RootXNode(rootElementName, readNode());
+                    break;
+                case NODE_MAP:
+                    MapXNode map = new MapXNode();
+                    for (int size = readVarInt(); size > 0; size--) {
+                        QName key = readQName();
+                        map.put(key, readNode());
+                    }
+                    node = map;
+                    break;
+                case NODE_LIST:
+                    ListXNode list = new ListXNode();
+                    for (int size = readVarInt(); size > 0; size--) {
+                        list.add(readNode());
+                    }
+                    node = list;
+                    break;
+                case NODE_PRIMITIVE:
+                    PrimitiveXNode<?> primitive = readPrimitive();
+                    primitive.setAttribute((flags & F_ATTRIBUTE) != 0);
+                    node = primitive;
+                    break;
+                case NODE_SCHEMA:
+                    SchemaXNode schema = new SchemaXNode();
+                    if (in.readBoolean()) {
+                        schema.setSchemaElement(DOMUtil.parseDocument(readString()).getDocumentElement());
+                    }
+                    node = schema;
+                    break;
+                default:
+                    throw new SchemaException("Unknown node type in binary full object: " + tag);
+            }
+            if (typeQName != null) {
+                node.setTypeQName(typeQName);
+                node.setExplicitTypeDeclaration(true);
+            }
+            node.setElementName(elementName);
+            node.setComment(comment);
+            return node;
+        }
+
+        private PrimitiveXNode<?> readPrimitive() throws IOException, SchemaException {
+            PrimitiveXNode<Object> primitive = new PrimitiveXNode<>();
+            int kind = in.readUnsignedByte();
+            switch (kind) {
+                case VALUE_EMPTY:
+                    primitive.setValueParser(new TextValueParser<>("", Collections.emptyMap()));
+                    break;
+                case VALUE_TEXT:
+                    primitive.setValueParser(new TextValueParser<>(readString(), Collections.emptyMap()));
+                    break;
+                case VALUE_QNAME:
+                    primitive.setValueParser(new QNameValueParser<>(readQName()));
+                    break;
+                case VALUE_PATH:
+                case VALUE_UNTYPED:
+                    String text = readString();
+                    primitive.setValueParser(new TextValueParser<>(text, readNamespaces()));
+                    break;
+                default:
+                    throw new SchemaException("Unknown primitive value kind in binary full object: " + kind);
+            }
+            return primitive;
+        }
+
+        private QName readQName() throws IOException {
+            int index = readVarInt();
+            if (index > 0) {
+                return qnames.get(index - 1);
+            }
+            String namespace = readNamespace();
+            String localPart = readString();
+            String prefix = readString();
+            QName name = new QName(namespace, localPart, prefix);
+            qnames.add(name);
+            return name;
+        }
+
+        private String readNamespace() throws IOException {
+            int index = readVarInt();
+            if (index > 0) {
+                return namespaces.get(index - 1);
+            }
+            String namespace = readString();
+            namespaces.add(namespace);
+            return namespace;
+        }
+
+        private Map<String, String> readNamespaces() throws IOException {
+            int size = readVarInt();
+            if (size == 0) {
+                return Collections.emptyMap();
+            }
+            Map<String, String> declarations = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String prefix = readString();
+                declarations.put(prefix, readNamespace());
+            }
+            return declarations;
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[readVarInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+    }
+
+    /**
+     * Parses textual value in the same way as DomLexicalProcessor parses element content.
+     */
+    private static class TextValueParser<T> implements ValueParser<T>, Serializable {
+
+        private final String text;
+        private final Map<String, String> namespaces;
+
+        private TextValueParser(String text, Map<String, String> namespaces) {
+            this.text = text;
+            this.namespaces = namespaces;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T parse(QName typeName, XNodeProcessorEvaluationMode mode) throws SchemaException {
+            try {
+                if (ItemPathType.COMPLEX_TYPE.equals(typeName)) {
+                    return (T) new ItemPathType(new ItemPathHolder(text, namespaces).toItemPath());
+                } else if (DOMUtil.XSD_QNAME.equals(typeName)) {
+                    return (T) resolveQName();
+                } else if (XmlTypeConverter.canConvert(typeName)) {
+                    T value = XmlTypeConverter.toJavaValue(text, typeName);
+                    if (value == null) {
+                        throw new IllegalArgumentException("Unknown type for conversion: " + typeName);
+                    }
+                    return value;
+                } else if (DOMUtil.XSD_ANYTYPE.equals(typeName)) {
+                    return (T) text;
+                } else {
+                    throw new SchemaException("Cannot convert value '" + text + "' to " + typeName);
+                }
+            } catch (IllegalArgumentException e) {
+                if (mode != XNodeProcessorEvaluationMode.COMPAT) {
+                    throw e;
+                }
+                LOGGER.warn("Value of '{}' couldn't be parsed as '{}' -- interpreting as null because of COMPAT mode set",
+                        text, typeName, e);
+                return null;
+            }
+        }
+
+        // see DOMUtil.resolveQName
+        private QName resolveQName() {
+            if (StringUtils.isBlank(text)) {
+                return null;
+            }
+            String[] parts = text.split(":");
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("Unsupported format: more than one colon in Qname: " + text);
+            }
+            if (parts.length == 1 || parts[1].isEmpty()) {
+                return new QName(null, parts[0]);
+            }
+            String prefix = parts[0];
+            String namespace = namespaces.get(prefix);
+            if (namespace == null) {
+                QNameUtil.reportUndeclaredNamespacePrefix(prefix, text);
+                prefix = QNameUtil.markPrefixAsUndeclared(prefix);
+            }
+            return new QName(namespace, parts[1], prefix);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return StringUtils.isBlank(text);
+        }
+
+        @Override
+        public String getStringValue() {
+            return text;
+        }
+
+        @Override
+        public Map<String, String> getPotentiallyRelevantNamespaces() {
+            return namespaces;
+        }
+
+        @Override
+        public String toString() {
+            return "ValueParser(binary, " + text + ")";
+        }
+    }
+
+    private static class QNameValueParser<T> implements ValueParser<T>, Serializable {
+
+        private final QName value;
+
+        private QNameValueParser(QName value) {
+            this.value = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T parse(QName typeName, XNodeProcessorEvaluationMode mode) throws SchemaException {
+            if (DOMUtil.XSD_QNAME.equals(typeName)) {
+                return (T) value;
+            } else {
+                return new TextValueParser<T>(getStringValue(), getPotentiallyRelevantNamespaces()).parse(typeName, mode);
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public String getStringValue() {
+            if (StringUtils.isNotEmpty(value.getPrefix())) {
+                return value.getPrefix() + ":" + value.getLocalPart();
+            } else if (StringUtils.isNotEmpty(value.getNamespaceURI())) {
+                return QNameUtil.qNameToUri(value);
+            } else {
+                return value.getLocalPart();
+            }
+        }
+
+        @Override
+        public Map<String, String> getPotentiallyRelevantNamespaces() {
+            if (StringUtils.isNotEmpty(value.getPrefix())) {
+                return Collections.singletonMap(value.getPrefix(), value.getNamespaceURI());
+            } else {
+                return Collections.emptyMap();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ValueParser(binary, " + value + ")";
+        }
+    }
+}
@@ -30,7 +30,8 @@ public class GetObjectResult implements Serializable {
                             tuple.length > 4 ? (Short) tuple[4] : null,
                             tuple.length > 5 ? (Short) tuple[5] : null,
                             tuple.length > 6 ? (Short) tuple[6] : null,
-                            tuple.length > 7 ? (Short) tuple[7] : null);
+                            tuple.length > 7 ? (Short) tuple[7] : null,
+                            tuple.length > 8 ? (Integer) tuple[8] : null);
                 }
             };
         }
@@ -54,7 +55,8 @@ public class GetObjectResult implements Serializable {
                     rootAlias + ".datesCount",
                     rootAlias + ".referencesCount",
                     rootAlias + ".polysCount",
-                    rootAlias + ".booleansCount");
+                    rootAlias + ".booleansCount",
+                    rootAlias + ".splitContainersCount");
         }
     };
 
@@ -67,9 +69,15 @@ public class GetObjectResult implements Serializable {
     private Short referencesCount;
     private Short polysCount;
     private Short booleansCount;
+    private Integer splitContainersCount;
 
     public GetObjectResult(@NotNull String oid, @NotNull byte[] fullObject, Short stringsCount, Short longsCount, Short datesCount,
                            Short referencesCount, Short polysCount, Short booleansCount) {
+        this(oid, fullObject, stringsCount, longsCount, datesCount, referencesCount, polysCount, booleansCount, null);
+    }
+
+    public GetObjectResult(@NotNull String oid, @NotNull byte[] fullObject, Short stringsCount, Short longsCount, Short datesCount,
+                           Short referencesCount, Short polysCount, Short booleansCount, Integer splitContainersCount) {
 
 
         this.oid = oid;
@@ -81,6 +89,7 @@ public class GetObjectResult implements Serializable {
         this.referencesCount = referencesCount;
         this.polysCount = polysCount;
         this.booleansCount = booleansCount;
+        this.splitContainersCount = splitContainersCount;
     }
 
     public Short[] getCountProjection() {
@@ -139,4 +148,8 @@ public class GetObjectResult implements Serializable {
         }
         return booleansCount;
     }
+
+    public int getSplitContainersCount() {
+        return splitContainersCount != null ? splitContainersCount : 0;
+    }
 }
@@ -18,6 +18,7 @@ package com.evolveum.midpoint.repo.sql.util;
 
 import com.evolveum.midpoint.prism.Objectable;
 import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismParserNoIO;
 import com.evolveum.midpoint.prism.query.LogicalFilter;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
@@ -505,6 +506,33 @@ public final class RUtil {
         return xml;
     }
 
+    /**
+     * Creates a parser for full object column content. The content can be in any of supported formats,
+     * i.e. binary XNode (see {@link BinaryXNodeCodec}) or XML (compressed or not).
+     */
+    public static PrismParserNoIO createFullObjectParser(byte[] fullObject, boolean compressed, PrismContext prismContext)
+            throws SchemaException {
+        if (BinaryXNodeCodec.isBinary(fullObject)) {
+            return prismContext.parserFor(BinaryXNodeCodec.decode(fullObject));
+        } else {
+            return prismContext.parserFor(getXmlFromByteArray(fullObject, compressed));
+        }
+    }
+
+    /**
+     * Returns human-readable form of full object column content, to be used in log messages.
+     */
+    public static String getFullObjectForLogging(byte[] fullObject, boolean compressed) {
+        if (!BinaryXNodeCodec.isBinary(fullObject)) {
+            return getXmlFromByteArray(fullObject, compressed);
+        }
+        try {
+            return BinaryXNodeCodec.decode(fullObject).debugDump();
+        } catch (SchemaException | RuntimeException ex) {
+            return "(binary data, " + fullObject.length + " bytes, couldn't be decoded: " + ex.getMessage() + ")";
+        }
+    }
+
     public static OrgFilter findOrgFilter(ObjectQuery query) {
         return query != null ? findOrgFilter(query.getFilter()) : null;
     }
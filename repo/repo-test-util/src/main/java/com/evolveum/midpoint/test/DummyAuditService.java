@@ -493,6 +493,13 @@ public class DummyAuditService implements AuditService, DebugDumpable {
 
 	}
 
+	@Override
+	public void streamRecords(String conditions, Map<String, Object> params, AuditEventRecord after, boolean descending,
+			int pageSize, AuditResultHandler auditResultHandler) {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void reindexEntry(AuditEventRecord record) {
 		// TODO Auto-generated method stub
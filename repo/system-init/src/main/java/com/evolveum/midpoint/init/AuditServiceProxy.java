@@ -292,6 +292,16 @@ public class AuditServiceProxy implements AuditService, AuditServiceRegistry {
 		}
 	}
 
+	@Override
+	public void streamRecords(String conditions, Map<String, Object> params, AuditEventRecord after, boolean descending,
+			int pageSize, AuditResultHandler handler) {
+		for (AuditService service : services) {
+			if (service.supportsRetrieval()) {
+				service.streamRecords(conditions, params, after, descending, pageSize, handler);
+			}
+		}
+	}
+
 	@Override
 	public void reindexEntry(AuditEventRecord record) {
 		for (AuditService service : services) {
@@ -1025,7 +1025,7 @@ public interface Task extends DebugDumpable, StatisticsCollector {
 
 	void storeOperationStats();
 
-    // stores operation statistics if the time has come
+    // stores operation statistics if the time has come (for persistent tasks asynchronously)
     void storeOperationStatsIfNeeded();
 
     Long getLastOperationStatsUpdateTimestamp();
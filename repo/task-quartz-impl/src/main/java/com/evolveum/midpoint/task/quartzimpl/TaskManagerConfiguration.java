@@ -84,6 +84,9 @@ public class TaskManagerConfiguration {
     private static final String WORK_ALLOCATION_INITIAL_DELAY_ENTRY = "workAllocationInitialDelay";
     private static final String WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_ENTRY = "workAllocationDefaultFreeBucketWaitInterval";
 
+    private static final String LIGHTWEIGHT_THREADS_ENTRY = "lightweightThreads";
+    private static final String LIGHTWEIGHT_VIRTUAL_THREADS_ENTRY = "lightweightVirtualThreads";
+
     private static final String MIDPOINT_NODE_ID_PROPERTY = "midpoint.nodeId";
     private static final String MIDPOINT_JMX_HOST_NAME_PROPERTY = "midpoint.jmxHostName";
     private static final String JMX_PORT_PROPERTY = "com.sun.management.jmxremote.port";
@@ -114,6 +117,9 @@ public class TaskManagerConfiguration {
     private static final long WORK_ALLOCATION_INITIAL_DELAY_DEFAULT = 5000L;
     private static final long WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_DEFAULT = 20000L;
 
+    private static final int LIGHTWEIGHT_THREADS_DEFAULT = 100;
+    private static final boolean LIGHTWEIGHT_VIRTUAL_THREADS_DEFAULT = false;
+
     private boolean stopOnInitializationFailure;
     private int threads;
     private boolean jdbcJobStore;
@@ -139,6 +145,9 @@ public class TaskManagerConfiguration {
     private long workAllocationInitialDelay;
     private long workAllocationDefaultFreeBucketWaitInterval;
 
+    private int lightweightThreads;
+    private boolean lightweightVirtualThreads;
+
     // JMX credentials for connecting to remote nodes
     private String jmxUsername;
     private String jmxPassword;
@@ -206,7 +215,9 @@ public class TaskManagerConfiguration {
             WORK_ALLOCATION_RETRY_INTERVAL_LIMIT_ENTRY,
             WORK_ALLOCATION_INITIAL_DELAY_ENTRY,
             WORK_ALLOCATION_RETRY_EXPONENTIAL_THRESHOLD_ENTRY,
-            WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_ENTRY
+            WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_ENTRY,
+            LIGHTWEIGHT_THREADS_ENTRY,
+            LIGHTWEIGHT_VIRTUAL_THREADS_ENTRY
     );
 
     void checkAllowedKeys(MidpointConfiguration masterConfig) throws TaskManagerConfigurationException {
@@ -305,6 +316,9 @@ public class TaskManagerConfiguration {
         workAllocationInitialDelay = c.getLong(WORK_ALLOCATION_INITIAL_DELAY_ENTRY, WORK_ALLOCATION_INITIAL_DELAY_DEFAULT);
         workAllocationDefaultFreeBucketWaitInterval = c.getLong(WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_ENTRY,
                 WORK_ALLOCATION_DEFAULT_FREE_BUCKET_WAIT_INTERVAL_DEFAULT);
+
+        lightweightThreads = c.getInt(LIGHTWEIGHT_THREADS_ENTRY, LIGHTWEIGHT_THREADS_DEFAULT);
+        lightweightVirtualThreads = c.getBoolean(LIGHTWEIGHT_VIRTUAL_THREADS_ENTRY, LIGHTWEIGHT_VIRTUAL_THREADS_DEFAULT);
     }
 
     private static final Map<String,String> schemas = new HashMap<>();
@@ -583,4 +597,15 @@ public class TaskManagerConfiguration {
     public long getWorkAllocationDefaultFreeBucketWaitInterval() {
         return workAllocationDefaultFreeBucketWaitInterval;
     }
+
+    /**
+     * Maximum number of lightweight task handlers executing at once on this node. Zero or negative means no limit.
+     */
+    public int getLightweightThreads() {
+        return lightweightThreads;
+    }
+
+    public boolean isLightweightVirtualThreads() {
+        return lightweightVirtualThreads;
+    }
 }
@@ -23,8 +23,6 @@ import static java.util.Collections.singleton;
 import java.text.ParseException;
 import java.util.*;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.function.Function;
 
@@ -81,6 +79,8 @@ import com.evolveum.midpoint.security.api.SecurityContextManager;
 import com.evolveum.midpoint.task.quartzimpl.cluster.ClusterManager;
 import com.evolveum.midpoint.task.quartzimpl.cluster.ClusterStatusInformation;
 import com.evolveum.midpoint.task.quartzimpl.execution.ExecutionManager;
+import com.evolveum.midpoint.task.quartzimpl.execution.LightweightTaskExecutor;
+import com.evolveum.midpoint.task.quartzimpl.execution.OperationStatsFlusher;
 import com.evolveum.midpoint.task.quartzimpl.execution.StalledTasksWatcher;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
@@ -128,6 +128,7 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
     private ExecutionManager executionManager = new ExecutionManager(this);
     private ClusterManager clusterManager = new ClusterManager(this);
     private StalledTasksWatcher stalledTasksWatcher = new StalledTasksWatcher(this);
+    private OperationStatsFlusher operationStatsFlusher = new OperationStatsFlusher();
 
     // task handlers (mapped from their URIs)
     private Map<String,TaskHandler> handlers = new HashMap<>();
@@ -161,7 +162,8 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
     // Maps task id -> task
     private final HashMap<String,TaskQuartzImpl> locallyRunningTaskInstancesMap = new HashMap<>();
 
-    private ExecutorService lightweightHandlersExecutor = Executors.newCachedThreadPool();
+    // created when the configuration is known
+    private LightweightTaskExecutor lightweightTaskExecutor;
 
 	private BeanFactory beanFactory;
 
@@ -226,6 +228,10 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
             throw new SystemException("Cannot initialize TaskManager", e);
         }
 
+        lightweightTaskExecutor = new LightweightTaskExecutor(configuration.getLightweightThreads(),
+                configuration.isLightweightVirtualThreads());
+        operationStatsFlusher.start();
+
         // if running in test mode, the postInit will not be executed... so we have to start scheduler here
         if (configuration.isTestMode()) {
             postInit(result);
@@ -281,6 +287,11 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
         clusterManager.stopClusterManagerThread(0L, result);
         clusterManager.recordNodeShutdown(result);
 
+        if (lightweightTaskExecutor != null) {
+            lightweightTaskExecutor.shutdown();
+        }
+        operationStatsFlusher.shutdown();
+
         if (configuration.isJdbcJobStore() && configuration.isDatabaseIsEmbedded()) {
             LOGGER.trace("Waiting {} msecs to give Quartz thread pool a chance to shutdown.", WAIT_ON_SHUTDOWN);
             try {
@@ -1093,12 +1104,28 @@ public class TaskManagerQuartzImpl implements TaskManager, BeanFactoryAware {
                 }
             };
 
-            Future future = lightweightHandlersExecutor.submit(r);
+            Future future = lightweightTaskExecutor.submit(getLightweightHandlersOwnerKey(task), r);
             task.setLightweightHandlerFuture(future);
             LOGGER.debug("Lightweight task handler submitted to start; task = {}", task);
         }
     }
 
+    /**
+     * Lightweight handlers are scheduled fairly among their parent tasks.
+     */
+    static String getLightweightHandlersOwnerKey(TaskQuartzImpl task) {
+        Task parent = task.getParentForLightweightAsynchronousTask();
+        return parent != null ? parent.getTaskIdentifier() : task.getTaskIdentifier();
+    }
+
+    public LightweightTaskExecutor getLightweightTaskExecutor() {
+        return lightweightTaskExecutor;
+    }
+
+    public OperationStatsFlusher getOperationStatsFlusher() {
+        return operationStatsFlusher;
+    }
+
     @Override
     public void waitForTransientChildren(Task task, OperationResult result) {
         for (Task subtask : task.getRunningLightweightAsynchronousSubtasks()) {
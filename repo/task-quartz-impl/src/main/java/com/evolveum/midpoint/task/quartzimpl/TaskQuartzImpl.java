@@ -55,6 +55,7 @@ import com.evolveum.midpoint.schema.statistics.ActionsExecutedInformation;
 import com.evolveum.midpoint.schema.statistics.StatisticsUtil;
 import com.evolveum.midpoint.schema.statistics.SynchronizationInformation;
 import com.evolveum.midpoint.task.api.*;
+import com.evolveum.midpoint.task.quartzimpl.execution.LightweightTaskExecutor;
 import com.evolveum.midpoint.task.quartzimpl.handlers.WaitForSubtasksByPollingTaskHandler;
 import com.evolveum.midpoint.task.quartzimpl.handlers.WaitForTasksTaskHandler;
 import com.evolveum.midpoint.util.DebugUtil;
@@ -113,6 +114,13 @@ public class TaskQuartzImpl implements Task {
 
 	private long operationStatsUpdateInterval = DEFAULT_OPERATION_STATS_UPDATE_INTERVAL;
 
+	// values written by the last flushOperationStats call (timestamp of operation stats is ignored)
+	private final Object operationStatsFlushLock = new Object();
+	private boolean operationStatsFlushed;
+	private OperationStatsType lastFlushedOperationStats;
+	private long lastFlushedProgress;
+	private Long lastFlushedExpectedTotal;
+
 	private PrismObject<TaskType> taskPrism;
 
 	private PrismObject<UserType> requestee;                                  // temporary information
@@ -179,6 +187,12 @@ public class TaskQuartzImpl implements Task {
 	 */
 	private volatile boolean lightweightHandlerExecuting;
 
+	/**
+	 * Whether lightweight handler has ever started. Handlers can wait in the queue of the lightweight task executor;
+	 * if they are cancelled there, they never run, and the task has to be closed by its parent.
+	 */
+	private volatile boolean lightweightHandlerStarted;
+
 	private static final Trace LOGGER = TraceManager.getTrace(TaskQuartzImpl.class);
 	private static final Trace PERFORMANCE_ADVISOR = TraceManager.getPerformanceAdvisorTrace();
 
@@ -2803,12 +2817,19 @@ public class TaskQuartzImpl implements Task {
 
 	public void setLightweightHandlerExecuting(boolean lightweightHandlerExecuting) {
 		this.lightweightHandlerExecuting = lightweightHandlerExecuting;
+		if (lightweightHandlerExecuting) {
+			lightweightHandlerStarted = true;
+		}
 	}
 
 	public boolean isLightweightHandlerExecuting() {
 		return lightweightHandlerExecuting;
 	}
 
+	public boolean hasLightweightHandlerStarted() {
+		return lightweightHandlerStarted;
+	}
+
 	// Operational data
 
 	private EnvironmentalPerformanceInformation getEnvironmentalPerformanceInformation() {
@@ -2833,7 +2854,8 @@ public class TaskQuartzImpl implements Task {
 		IterativeTaskInformationType itit = getAggregateIterativeTaskInformation();
 		SynchronizationInformationType sit = getAggregateSynchronizationInformation();
 		ActionsExecutedInformationType aeit = getAggregateActionsExecutedInformation();
-		if (env == null && itit == null && sit == null && aeit == null) {
+		LightweightHandlersInformationType lhit = getLightweightHandlersInformation();
+		if (env == null && itit == null && sit == null && aeit == null && lhit == null) {
 			return null;
 		}
 		OperationStatsType rv = new OperationStatsType();
@@ -2841,6 +2863,7 @@ public class TaskQuartzImpl implements Task {
 		rv.setIterativeTaskInformation(itit);
 		rv.setSynchronizationInformation(sit);
 		rv.setActionsExecutedInformation(aeit);
+		rv.setLightweightHandlersInformation(lhit);
 		rv.setTimestamp(createXMLGregorianCalendar(new Date()));
 		return rv;
 	}
@@ -2851,6 +2874,20 @@ public class TaskQuartzImpl implements Task {
 		return iterativeTaskInformation != null ? iterativeTaskInformation.getLastFailures() : Collections.emptyList();
 	}
 
+	private LightweightHandlersInformationType getLightweightHandlersInformation() {
+		if (taskManager == null || taskManager.getLightweightTaskExecutor() == null || lightweightAsynchronousSubtasks.isEmpty()) {
+			return null;
+		}
+		LightweightTaskExecutor executor = taskManager.getLightweightTaskExecutor();
+		LightweightHandlersInformationType rv = new LightweightHandlersInformationType();
+		rv.setExecuting(executor.getExecuting(getTaskIdentifier()));
+		rv.setQueued(executor.getQueued(getTaskIdentifier()));
+		if (executor.getLimit() > 0) {
+			rv.setLimit(executor.getLimit());
+		}
+		return rv;
+	}
+
 	private EnvironmentalPerformanceInformationType getAggregateEnvironmentalPerformanceInformation() {
 		if (environmentalPerformanceInformation == null) {
 			return null;
@@ -3134,12 +3171,73 @@ public class TaskQuartzImpl implements Task {
 		}
 	}
 
+	/**
+	 * For persistent tasks only requests the statistics to be written by the operation stats flusher,
+	 * so the (potentially large) repository update is not done in the processing thread.
+	 */
 	@Override
 	public void storeOperationStatsIfNeeded() {
 		if (lastOperationStatsUpdateTimestamp == null ||
 				System.currentTimeMillis() - lastOperationStatsUpdateTimestamp > operationStatsUpdateInterval) {
-			storeOperationStats();
+			if (isPersistent()) {
+				lastOperationStatsUpdateTimestamp = System.currentTimeMillis();
+				taskManager.getOperationStatsFlusher().requestFlush(this);
+			} else {
+				storeOperationStats();
+			}
+		}
+	}
+
+	/**
+	 * Writes current operation statistics, progress and expected total into the repository. Only the items
+	 * that changed since the last flush are written; other pending modifications are not touched.
+	 * Called by the operation stats flusher thread.
+	 */
+	public void flushOperationStats(OperationResult result)
+			throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+		OperationStatsType operationStats = getAggregatedLiveOperationStats();
+		long progress;
+		Long expectedTotal;
+		synchronized (this) {		// processing threads update the coordinator task while holding this lock
+			setOperationStatsTransient(operationStats);
+			progress = getProgress();
+			expectedTotal = getExpectedTotal();
+		}
+		if (!isPersistent()) {
+			return;
+		}
+		synchronized (operationStatsFlushLock) {
+			OperationStatsType operationStatsToCompare = withoutTimestamp(operationStats);
+			List<ItemDelta<?, ?>> deltas = new ArrayList<>();
+			if (!operationStatsFlushed || !Objects.equals(operationStatsToCompare, lastFlushedOperationStats)) {
+				deltas.add(PropertyDelta.createReplaceDeltaOrEmptyDelta(
+						taskManager.getTaskObjectDefinition(), TaskType.F_OPERATION_STATS, operationStats));
+			}
+			if (!operationStatsFlushed || progress != lastFlushedProgress) {
+				deltas.add(createProgressDelta(progress));
+			}
+			if (!operationStatsFlushed || !Objects.equals(expectedTotal, lastFlushedExpectedTotal)) {
+				deltas.add(createExpectedTotalDelta(expectedTotal));
+			}
+			if (!deltas.isEmpty()) {
+				repositoryService.modifyObject(TaskType.class, getOid(), deltas, result);
+			} else {
+				LOGGER.trace("No changes in operation statistics of {}, nothing to write", this);
+			}
+			operationStatsFlushed = true;
+			lastFlushedOperationStats = operationStatsToCompare;
+			lastFlushedProgress = progress;
+			lastFlushedExpectedTotal = expectedTotal;
+		}
+	}
+
+	private static OperationStatsType withoutTimestamp(OperationStatsType operationStats) {
+		if (operationStats == null) {
+			return null;
 		}
+		OperationStatsType clone = operationStats.clone();
+		clone.setTimestamp(null);
+		return clone;
 	}
 
 	@Override
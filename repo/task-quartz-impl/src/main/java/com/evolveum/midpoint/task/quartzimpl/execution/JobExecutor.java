@@ -28,6 +28,7 @@ import com.evolveum.midpoint.task.quartzimpl.TaskManagerQuartzImpl;
 import com.evolveum.midpoint.task.quartzimpl.TaskQuartzImpl;
 import com.evolveum.midpoint.task.quartzimpl.TaskQuartzImplUtil;
 import com.evolveum.midpoint.task.quartzimpl.cluster.ClusterStatusInformation;
+import com.evolveum.midpoint.task.quartzimpl.work.BucketProcessingMeasurement;
 import com.evolveum.midpoint.task.quartzimpl.work.WorkStateManager;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
@@ -49,6 +50,7 @@ import org.springframework.security.core.Authentication;
 
 import javax.xml.datatype.Duration;
 import java.util.*;
+import java.util.concurrent.Future;
 
 import static com.evolveum.midpoint.schema.GetOperationOptions.retrieveItemsNamed;
 
@@ -363,7 +365,8 @@ public class JobExecutor implements InterruptableJob {
         // at this moment, there should be no executing child tasks... we just clean-up all runnables that had not started
         for (Task subtask : task.getLightweightAsynchronousSubtasks()) {
             if (subtask.getExecutionStatus() == TaskExecutionStatus.RUNNABLE) {
-                if (((TaskQuartzImpl) subtask).getLightweightHandlerFuture() == null) {
+                Future future = ((TaskQuartzImpl) subtask).getLightweightHandlerFuture();
+                if (future == null || future.isCancelled() && !((TaskQuartzImpl) subtask).hasLightweightHandlerStarted()) {
                     LOGGER.trace("Lightweight task handler for subtask {} has not started yet; closing the task.", subtask);
                     closeTask((TaskQuartzImpl) subtask, result);
                 }
@@ -720,6 +723,8 @@ mainCycle:
 				runResult = handler.onNoMoreBuckets(task, runResult);
 				return runResult != null ? runResult : createSuccessTaskRunResult();
 			}
+			long bucketStart = System.currentTimeMillis();
+			long progressAtBucketStart = task.getProgress();
 			try {
 				LOGGER.trace("Executing handler {} with work bucket of {} for {}", handler.getClass().getName(), bucket, task);
 				runResult = handler.run(task, bucket, runResult);
@@ -737,8 +742,10 @@ mainCycle:
 			if (!runResult.isBucketComplete()) {
 				return runResult;
 			}
+			BucketProcessingMeasurement measurement = new BucketProcessingMeasurement(System.currentTimeMillis() - bucketStart,
+					Math.max(task.getProgress() - progressAtBucketStart, 0L));
 			try {
-				taskManagerImpl.getWorkStateManager().completeWorkBucket(task.getOid(), bucket.getSequentialNumber(), executionResult);
+				taskManagerImpl.getWorkStateManager().completeWorkBucket(task.getOid(), bucket.getSequentialNumber(), measurement, executionResult);
 			} catch (ObjectAlreadyExistsException | ObjectNotFoundException | SchemaException | RuntimeException e) {
 				LoggingUtils.logUnexpectedException(LOGGER, "Couldn't complete work bucket for task {}", e, task);
 				return createFailureTaskRunResult("Couldn't complete work bucket: " + e.getMessage(), e);
@@ -858,6 +865,7 @@ mainCycle:
                 }
             }
             task.setNode(null);
+            taskManagerImpl.getOperationStatsFlusher().cancelFlush(task);       // final values are stored right now
             task.storeOperationStatsDeferred();
             task.savePendingModifications(result);
 
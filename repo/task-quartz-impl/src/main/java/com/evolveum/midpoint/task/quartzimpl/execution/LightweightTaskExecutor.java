@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2010-2013 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.task.quartzimpl.execution;
+
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Node-wide executor for lightweight task handlers (e.g. worker threads of multithreaded search-iterative tasks).
+ *
+ * At most 'limit' handlers execute at once; the others are queued. When a slot becomes free, it is given to the task
+ * (i.e. the parent of lightweight subtasks) that has the fewest handlers executing; ties are resolved in round-robin
+ * fashion. Handlers are not preempted, so the fair share is reached only as the running handlers finish.
+ *
+ * Handlers can be executed on virtual threads, if the JVM supports them. Otherwise a pool of platform threads
+ * is used; its size is limited by the number of handlers admitted to execution.
+ *
+ * @author Pavol Mederly
+ */
+public class LightweightTaskExecutor {
+
+    private static final transient Trace LOGGER = TraceManager.getTrace(LightweightTaskExecutor.class);
+
+    private final int limit;                // zero or negative means "no limit"
+    private final ExecutorService executorService;
+
+    // guarded by this
+    private final Map<String, Owner> owners = new LinkedHashMap<>();
+    private int executing;
+
+    private static class Owner {
+        private final Deque<Handler> queued = new ArrayDeque<>();
+        private int executing;
+    }
+
+    private class Handler extends FutureTask<Void> {
+
+        private final String ownerKey;
+
+        private Handler(String ownerKey, Runnable runnable) {
+            super(runnable, null);
+            this.ownerKey = ownerKey;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                handlerFinished(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                removeIfQueued(this);
+            }
+            return cancelled;
+        }
+
+        private void rejected(Throwable t) {
+            setException(t);
+        }
+    }
+
+    public LightweightTaskExecutor(int limit, boolean virtualThreads) {
+        this.limit = limit;
+        this.executorService = createExecutorService(virtualThreads);
+    }
+
+    private static ExecutorService createExecutorService(boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                LOGGER.info("Lightweight task handlers will be executed on virtual threads");
+                return (ExecutorService) method.invoke(null);
+            } catch (NoSuchMethodException e) {
+                LOGGER.warn("Virtual threads are not supported by this JVM ({}); lightweight task handlers will be executed on platform threads",
+                        System.getProperty("java.version"));
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                LOGGER.warn("Couldn't create virtual thread executor; lightweight task handlers will be executed on platform threads", e);
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Submits a handler for execution. It is started immediately if there is a free slot; otherwise it is queued.
+     * Cancelling the returned future removes the handler from the queue.
+     *
+     * @param ownerKey Identifier of the task that is the parent of the lightweight subtask. Fair share is computed per owner.
+     */
+    public Future<?> submit(String ownerKey, Runnable runnable) {
+        Handler handler = new Handler(ownerKey, runnable);
+        synchronized (this) {
+            owners.computeIfAbsent(ownerKey, k -> new Owner()).queued.add(handler);
+            dispatch();
+        }
+        return handler;
+    }
+
+    // must be called under this
+    private void dispatch() {
+        while (limit <= 0 || executing < limit) {
+            String ownerKey = selectOwner();
+            if (ownerKey == null) {
+                return;
+            }
+            Owner owner = owners.remove(ownerKey);
+            owners.put(ownerKey, owner);            // moving to the end, to be the last one among equals next time
+            Handler handler = owner.queued.poll();
+            owner.executing++;
+            executing++;
+            try {
+                executorService.execute(handler);
+            } catch (RejectedExecutionException e) {
+                LOGGER.error("Lightweight task handler couldn't be started for {}: {}", ownerKey, e.getMessage(), e);
+                handler.rejected(e);
+                owner.executing--;
+                executing--;
+                removeOwnerIfIdle(ownerKey, owner);
+                return;
+            }
+        }
+    }
+
+    // must be called under this
+    private String selectOwner() {
+        String selected = null;
+        int selectedExecuting = Integer.MAX_VALUE;
+        for (Map.Entry<String, Owner> entry : owners.entrySet()) {
+            Owner owner = entry.getValue();
+            if (!owner.queued.isEmpty() && owner.executing < selectedExecuting) {
+                selected = entry.getKey();
+                selectedExecuting = owner.executing;
+            }
+        }
+        return selected;
+    }
+
+    private synchronized void handlerFinished(Handler handler) {
+        Owner owner = owners.get(handler.ownerKey);
+        if (owner != null) {
+            owner.executing--;
+            removeOwnerIfIdle(handler.ownerKey, owner);
+        }
+        executing--;
+        dispatch();
+    }
+
+    private synchronized void removeIfQueued(Handler handler) {
+        Owner owner = owners.get(handler.ownerKey);
+        if (owner != null && owner.queued.remove(handler)) {
+            LOGGER.trace("Cancelled lightweight task handler removed from the queue for {}", handler.ownerKey);
+            removeOwnerIfIdle(handler.ownerKey, owner);
+        }
+    }
+
+    private void removeOwnerIfIdle(String ownerKey, Owner owner) {
+        if (owner.executing <= 0 && owner.queued.isEmpty()) {
+            owners.remove(ownerKey);
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getExecuting() {
+        return executing;
+    }
+
+    public synchronized int getQueued() {
+        int queued = 0;
+        for (Owner owner : owners.values()) {
+            queued += owner.queued.size();
+        }
+        return queued;
+    }
+
+    public synchronized int getExecuting(String ownerKey) {
+        Owner owner = owners.get(ownerKey);
+        return owner != null ? owner.executing : 0;
+    }
+
+    public synchronized int getQueued(String ownerKey) {
+        Owner owner = owners.get(ownerKey);
+        return owner != null ? owner.queued.size() : 0;
+    }
+
+    public void shutdown() {
+        executorService.shutdown();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.task.quartzimpl.execution;
+
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.quartzimpl.TaskQuartzImpl;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes operation statistics (plus progress and expected total) of running tasks into repository
+ * in a background thread. Processing threads only request the write; requests for the same task
+ * are coalesced until the flusher gets to them.
+ *
+ * @author Pavol Mederly
+ */
+public class OperationStatsFlusher {
+
+    private static final transient Trace LOGGER = TraceManager.getTrace(OperationStatsFlusher.class);
+
+    private static final String DOT_CLASS = OperationStatsFlusher.class.getName() + ".";
+
+    private final Deque<TaskQuartzImpl> requests = new ArrayDeque<>();      // task instances, compared by identity
+    private TaskQuartzImpl taskBeingFlushed;
+    private FlusherThread thread;
+
+    /**
+     * Requests the statistics of the task to be written. Never blocks.
+     */
+    public synchronized void requestFlush(TaskQuartzImpl task) {
+        if (!isRequested(task)) {
+            requests.addLast(task);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Cancels pending request for the task and waits until the statistics of the task are not being written.
+     * Called before the final statistics of the task run are stored, so they are not overwritten by older values.
+     */
+    public synchronized void cancelFlush(TaskQuartzImpl task) {
+        requests.removeIf(t -> t == task);
+        while (taskBeingFlushed == task) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                LOGGER.trace("Interrupted while waiting for operation statistics of {} to be written", task);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private boolean isRequested(TaskQuartzImpl task) {
+        for (TaskQuartzImpl requested : requests) {
+            if (requested == task) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized TaskQuartzImpl takeNextRequest() throws InterruptedException {
+        while (requests.isEmpty()) {
+            wait();
+        }
+        taskBeingFlushed = requests.removeFirst();
+        return taskBeingFlushed;
+    }
+
+    private synchronized void flushDone() {
+        taskBeingFlushed = null;
+        notifyAll();
+    }
+
+    class FlusherThread extends Thread {
+
+        private volatile boolean canRun = true;
+
+        @Override
+        public void run() {
+            LOGGER.info("OperationStatsFlusher thread starting.");
+            while (canRun) {
+                TaskQuartzImpl task;
+                try {
+                    task = takeNextRequest();
+                } catch (InterruptedException e) {
+                    LOGGER.trace("OperationStatsFlusher thread interrupted.");
+                    continue;
+                }
+                try {
+                    task.flushOperationStats(new OperationResult(DOT_CLASS + "flush"));
+                } catch (Throwable t) {
+                    LoggingUtils.logUnexpectedException(LOGGER, "Couldn't store statistical information into task {}", t, task);
+                } finally {
+                    flushDone();
+                }
+            }
+            LOGGER.info("OperationStatsFlusher thread stopping.");
+        }
+
+        public void signalShutdown() {
+            canRun = false;
+            this.interrupt();
+        }
+    }
+
+    public void start() {
+        thread = new FlusherThread();
+        thread.setName("OperationStatsFlusher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void shutdown() {
+        if (thread != null) {
+            thread.signalShutdown();
+            thread = null;
+        }
+    }
+}
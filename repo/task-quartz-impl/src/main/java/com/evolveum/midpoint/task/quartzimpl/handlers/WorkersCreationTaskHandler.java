@@ -153,6 +153,7 @@ public class WorkersCreationTaskHandler implements TaskHandler {
 				.item(TaskType.F_WORK_STATE).replace()
 				.asItemDeltas();
 		repositoryService.modifyObject(TaskType.class, task.getOid(), itemDeltas, opResult);
+		repositoryService.deleteWorkBuckets(task.getOid(), opResult);       // in case they are stored in the table
 	}
 
     @Override
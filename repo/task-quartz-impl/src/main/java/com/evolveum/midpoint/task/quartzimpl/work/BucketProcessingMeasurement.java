@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.task.quartzimpl.work;
+
+/**
+ * How long did the processing of a work bucket take and how many objects it contained.
+ * Used by adaptive segmentation strategies to determine the size of next buckets.
+ *
+ * @author mederly
+ */
+public class BucketProcessingMeasurement {
+
+	private final long duration;
+	private final long objects;
+
+	public BucketProcessingMeasurement(long duration, long objects) {
+		this.duration = duration;
+		this.objects = objects;
+	}
+
+	/**
+	 * Processing time in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public long getObjects() {
+		return objects;
+	}
+
+	@Override
+	public String toString() {
+		return "BucketProcessingMeasurement{duration=" + duration + ", objects=" + objects + '}';
+	}
+}
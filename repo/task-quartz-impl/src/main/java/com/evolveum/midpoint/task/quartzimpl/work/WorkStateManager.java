@@ -61,6 +61,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -120,6 +121,10 @@ public class WorkStateManager {
 		public TaskWorkManagementType getWorkStateConfiguration() {
 			return isStandalone() ? workerTask.getWorkManagement() : coordinatorTask.getWorkManagement();
 		}
+
+		public boolean isBucketTable() {
+			return !isStandalone() && WorkStateManager.isBucketTable(coordinatorTask.getWorkManagement());
+		}
 	}
 
 	public boolean canRun(Supplier<Boolean> canRunSupplier) {
@@ -158,7 +163,11 @@ public class WorkStateManager {
 			if (executeInitialWait) {
 				executeInitialDelayForMultiNode(ctx);
 			}
-			return getWorkBucketMultiNode(ctx, freeBucketWaitTime, result);
+			if (ctx.isBucketTable()) {
+				return getWorkBucketMultiNodeFromTable(ctx, freeBucketWaitTime, result);
+			} else {
+				return getWorkBucketMultiNode(ctx, freeBucketWaitTime, result);
+			}
 		}
 	}
 
@@ -280,6 +289,91 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 		}
 	}
 
+	/**
+	 * Allocation of buckets stored in a repository table. Ready buckets are claimed atomically by the repository,
+	 * without touching the coordinator task; so workers do not conflict with each other here. The only clash
+	 * can occur when two workers create the same new buckets at once: the one that loses simply starts again.
+	 *
+	 * The strategy gets a work state consisting of the delegated buckets and the last one, as that is all
+	 * it needs to decide whether to create new buckets (and what they should be).
+	 */
+	private WorkBucketType getWorkBucketMultiNodeFromTable(Context ctx, long freeBucketWaitTime, OperationResult result)
+			throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException, InterruptedException {
+		long start = System.currentTimeMillis();
+		int globalAttempt = 0;      // just for statistics
+		String coordinatorOid = ctx.coordinatorTask.getOid();
+		String workerOid = ctx.workerTask.getOid();
+		TaskWorkManagementType workManagement = ctx.coordinatorTask.getWorkManagement();
+		WorkSegmentationStrategy workStateStrategy = strategyFactory.createStrategy(workManagement);
+		setOrUpdateEstimatedNumberOfBuckets(ctx.coordinatorTask, workStateStrategy, result);
+
+		for (;;) {
+			globalAttempt++;
+			WorkBucketType claimed = repositoryService.claimWorkBucket(coordinatorOid, workerOid, result);
+			if (claimed != null) {
+				WorkBucketType bucket = claimed.clone().state(WorkBucketStateType.READY);
+				repositoryService.modifyObject(TaskType.class, workerOid, bucketsAddDeltas(singletonList(bucket)), null, result);
+				CONTENTION_LOGGER.trace("Existing bucket claimed after {} ms (attempt #{}) in {}", System.currentTimeMillis() - start, globalAttempt, ctx.workerTask);
+				return bucket;
+			}
+
+			TaskWorkStateType tableWorkState = new TaskWorkStateType(prismContext);
+			if (ctx.coordinatorTask.getWorkState() != null && ctx.coordinatorTask.getWorkState().getBucketSizing() != null) {
+				tableWorkState.setBucketSizing(ctx.coordinatorTask.getWorkState().getBucketSizing().clone());
+			}
+			tableWorkState.getBucket().addAll(repositoryService.getWorkBuckets(coordinatorOid, WorkBucketStateType.DELEGATED, result));
+			WorkBucketType lastBucket = repositoryService.getLastWorkBucket(coordinatorOid, result);
+			if (lastBucket != null && lastBucket.getState() != WorkBucketStateType.DELEGATED) {
+				tableWorkState.getBucket().add(lastBucket);
+			}
+			GetBucketResult response = workStateStrategy.getBucket(tableWorkState);
+			LOGGER.trace("getWorkBucketMultiNodeFromTable: workStateStrategy returned {} for worker task {}, coordinator {}", response, ctx.workerTask, ctx.coordinatorTask);
+			if (response instanceof NewBuckets) {
+				NewBuckets newBucketsResponse = (NewBuckets) response;
+				int selected = newBucketsResponse.selected;
+				List<WorkBucketType> bucketsToStore = new ArrayList<>();
+				for (int i = 0; i < newBucketsResponse.newBuckets.size(); i++) {
+					WorkBucketType newBucket = newBucketsResponse.newBuckets.get(i).clone();
+					bucketsToStore.add(i == selected ? newBucket.state(WorkBucketStateType.DELEGATED) : newBucket);
+				}
+				try {
+					repositoryService.addWorkBuckets(coordinatorOid, bucketsToStore, workerOid, result);
+				} catch (ObjectAlreadyExistsException e) {
+					CONTENTION_LOGGER.debug("getWorkBucketMultiNodeFromTable: new buckets were created by someone else; continuing (attempt #{}) in {}",
+							globalAttempt, ctx.workerTask);
+					continue;
+				}
+				WorkBucketType bucket = newBucketsResponse.newBuckets.get(selected);
+				repositoryService.modifyObject(TaskType.class, workerOid, bucketsAddDeltas(singletonList(bucket)), null, result);
+				CONTENTION_LOGGER.trace("New bucket(s) created after {} ms (attempt #{}) in {}", System.currentTimeMillis() - start, globalAttempt, ctx.workerTask);
+				return bucket;
+			} else if (response instanceof FoundExisting) {
+				// the last bucket was released in the meanwhile; let's claim it (or any other) regularly
+				continue;
+			} else if (response instanceof NothingFound) {
+				if (((NothingFound) response).definite || freeBucketWaitTime == 0L) {
+					markWorkComplete(ctx.coordinatorTask, result);
+					CONTENTION_LOGGER.trace("'No bucket' found after {} ms (attempt #{}) in {}", System.currentTimeMillis() - start, globalAttempt, ctx.workerTask);
+					return null;
+				}
+				long waitDeadline = freeBucketWaitTime >= 0 ? start + freeBucketWaitTime : Long.MAX_VALUE;
+				long toWait = waitDeadline - System.currentTimeMillis();
+				if (toWait <= 0) {
+					markWorkComplete(ctx.coordinatorTask, result);
+					CONTENTION_LOGGER.trace("'No bucket' found (wait time elapsed) after {} ms (attempt #{}) in {}", System.currentTimeMillis() - start, globalAttempt, ctx.workerTask);
+					return null;
+				}
+				long sleepFor = Math.min(toWait, getFreeBucketWaitInterval(workManagement));
+				CONTENTION_LOGGER.trace("Entering waiting for free bucket (waiting for {}) - after {} ms (attempt #{}) in {}",
+						sleepFor, System.currentTimeMillis() - start, globalAttempt, ctx.workerTask);
+				dynamicSleep(sleepFor, ctx);
+				reclaimWronglyAllocatedBucketsInTable(ctx.coordinatorTask, result);
+			} else {
+				throw new AssertionError(response);
+			}
+		}
+	}
+
 	private BackoffComputer createBackoffComputer(TaskWorkManagementType workManagement) {
 		WorkAllocationConfigurationType ac = workManagement != null && workManagement.getBuckets() != null ?
 				workManagement.getBuckets().getAllocation() : null;
@@ -377,6 +471,22 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 		return reclaiming > 0;
 	}
 
+	/**
+	 * Table variant of reclaimWronglyAllocatedBuckets. Buckets know their workers here, so the reclamation is a single
+	 * conditional update, safe to be executed by more workers at once.
+	 */
+	private void reclaimWronglyAllocatedBucketsInTable(Task coordinatorTask, OperationResult result) throws SchemaException {
+		List<String> liveWorkers = coordinatorTask.listSubtasks(true, result).stream()
+				.filter(worker -> worker.getExecutionStatus() != TaskExecutionStatus.CLOSED)
+				.map(Task::getOid)
+				.collect(Collectors.toList());
+		int reclaimed = repositoryService.reclaimWorkBuckets(coordinatorTask.getOid(), liveWorkers, result);
+		LOGGER.trace("Reclaiming wrongly allocated buckets reclaimed {} buckets in {}", reclaimed, coordinatorTask);
+		if (reclaimed > 0) {
+			LOGGER.info("Reclaimed {} wrongly allocated work bucket(s) in {}", reclaimed, coordinatorTask);
+		}
+	}
+
 	private WorkBucketType getWorkBucketStandalone(Context ctx, OperationResult result)
 			throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
 		WorkSegmentationStrategy workStateStrategy = strategyFactory.createStrategy(ctx.workerTask.getWorkManagement());
@@ -439,35 +549,61 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 
 	public void completeWorkBucket(String workerTaskOid, int sequentialNumber, OperationResult result)
 			throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
+		completeWorkBucket(workerTaskOid, sequentialNumber, null, result);
+	}
+
+	/**
+	 * Completes work bucket. The measurement (if present) is passed to the segmentation strategy that can
+	 * use it to adapt the size of buckets created later.
+	 */
+	public void completeWorkBucket(String workerTaskOid, int sequentialNumber, BucketProcessingMeasurement measurement,
+			OperationResult result) throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
 		Context ctx = createContext(workerTaskOid, null, result);
-		LOGGER.trace("Completing work bucket {} in {} (coordinator {})", workerTaskOid, ctx.workerTask, ctx.coordinatorTask);
+		LOGGER.trace("Completing work bucket {} in {} (coordinator {}); measurement = {}", workerTaskOid, ctx.workerTask,
+				ctx.coordinatorTask, measurement);
 		if (ctx.isStandalone()) {
-			completeWorkBucketStandalone(ctx, sequentialNumber, result);
+			completeWorkBucketStandalone(ctx, sequentialNumber, measurement, result);
 		} else {
-			completeWorkBucketMultiNode(ctx, sequentialNumber, result);
+			completeWorkBucketMultiNode(ctx, sequentialNumber, measurement, result);
 		}
 	}
 
-	private void completeWorkBucketMultiNode(Context ctx, int sequentialNumber, OperationResult result)
-			throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
-		TaskWorkStateType workState = getWorkState(ctx.coordinatorTask);
-		WorkBucketType bucket = TaskWorkStateTypeUtil.findBucketByNumber(workState.getBucket(), sequentialNumber);
-		if (bucket == null) {
-			throw new IllegalStateException("No work bucket with sequential number of " + sequentialNumber + " in " + ctx.coordinatorTask);
-		}
-		if (bucket.getState() != WorkBucketStateType.DELEGATED) {
-			throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
-					+ " cannot be marked as complete, as it is not delegated; its state = " + bucket.getState());
-		}
-		Collection<ItemDelta<?, ?>> modifications = bucketStateChangeDeltas(bucket, WorkBucketStateType.COMPLETE);
-		try {
-			repositoryService.modifyObject(TaskType.class, ctx.coordinatorTask.getOid(),
-					modifications, bucketUnchangedPrecondition(bucket), null, result);
-		} catch (PreconditionViolationException e) {
-			throw new IllegalStateException("Unexpected concurrent modification of work bucket " + bucket + " in " + ctx.coordinatorTask, e);
+	private void completeWorkBucketMultiNode(Context ctx, int sequentialNumber, BucketProcessingMeasurement measurement,
+			OperationResult result) throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
+		if (ctx.isBucketTable()) {
+			if (!repositoryService.changeDelegatedWorkBucketState(ctx.coordinatorTask.getOid(), sequentialNumber,
+					ctx.workerTask.getOid(), WorkBucketStateType.COMPLETE, result)) {
+				throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
+						+ " cannot be marked as complete, as it is not delegated to " + ctx.workerTask);
+			}
+			WorkBucketType workerBucket = TaskWorkStateTypeUtil.findBucketByNumber(getWorkState(ctx.workerTask).getBucket(), sequentialNumber);
+			if (workerBucket != null) {
+				Collection<ItemDelta<?, ?>> sizingModifications = bucketSizingDeltas(ctx.coordinatorTask, workerBucket, measurement);
+				if (!sizingModifications.isEmpty()) {
+					repositoryService.modifyObject(TaskType.class, ctx.coordinatorTask.getOid(), sizingModifications, result);
+				}
+			}
+		} else {
+			TaskWorkStateType workState = getWorkState(ctx.coordinatorTask);
+			WorkBucketType bucket = TaskWorkStateTypeUtil.findBucketByNumber(workState.getBucket(), sequentialNumber);
+			if (bucket == null) {
+				throw new IllegalStateException("No work bucket with sequential number of " + sequentialNumber + " in " + ctx.coordinatorTask);
+			}
+			if (bucket.getState() != WorkBucketStateType.DELEGATED) {
+				throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
+						+ " cannot be marked as complete, as it is not delegated; its state = " + bucket.getState());
+			}
+			Collection<ItemDelta<?, ?>> modifications = new ArrayList<>(bucketStateChangeDeltas(bucket, WorkBucketStateType.COMPLETE));
+			modifications.addAll(bucketSizingDeltas(ctx.coordinatorTask, bucket, measurement));
+			try {
+				repositoryService.modifyObject(TaskType.class, ctx.coordinatorTask.getOid(),
+						modifications, bucketUnchangedPrecondition(bucket), null, result);
+			} catch (PreconditionViolationException e) {
+				throw new IllegalStateException("Unexpected concurrent modification of work bucket " + bucket + " in " + ctx.coordinatorTask, e);
+			}
+			ItemDelta.applyTo(modifications, ctx.coordinatorTask.getTaskPrismObject());
+			compressCompletedBuckets(ctx.coordinatorTask, result);
 		}
-		ItemDelta.applyTo(modifications, ctx.coordinatorTask.getTaskPrismObject());
-		compressCompletedBuckets(ctx.coordinatorTask, result);
 
 		TaskWorkStateType workerWorkState = getWorkState(ctx.workerTask);
 		WorkBucketType workerBucket = TaskWorkStateTypeUtil.findBucketByNumber(workerWorkState.getBucket(), sequentialNumber);
@@ -480,8 +616,8 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 		repositoryService.modifyObject(TaskType.class, ctx.workerTask.getOid(), bucketDeleteDeltas(workerBucket), result);
 	}
 
-	private void completeWorkBucketStandalone(Context ctx, int sequentialNumber, OperationResult result)
-			throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
+	private void completeWorkBucketStandalone(Context ctx, int sequentialNumber, BucketProcessingMeasurement measurement,
+			OperationResult result) throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
 		TaskWorkStateType workState = getWorkState(ctx.workerTask);
 		WorkBucketType bucket = TaskWorkStateTypeUtil.findBucketByNumber(workState.getBucket(), sequentialNumber);
 		if (bucket == null) {
@@ -491,7 +627,8 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 			throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
 					+ " cannot be marked as complete, as it is not ready; its state = " + bucket.getState());
 		}
-		Collection<ItemDelta<?, ?>> modifications = bucketStateChangeDeltas(bucket, WorkBucketStateType.COMPLETE);
+		Collection<ItemDelta<?, ?>> modifications = new ArrayList<>(bucketStateChangeDeltas(bucket, WorkBucketStateType.COMPLETE));
+		modifications.addAll(bucketSizingDeltas(ctx.workerTask, bucket, measurement));
 		repositoryService.modifyObject(TaskType.class, ctx.workerTask.getOid(), modifications, null, result);
 		ItemDelta.applyTo(modifications, ctx.workerTask.getTaskPrismObject());
 		compressCompletedBuckets(ctx.workerTask, result);
@@ -514,22 +651,30 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 
 	private void releaseWorkBucketMultiNode(Context ctx, int sequentialNumber, OperationResult result)
 			throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
-		TaskWorkStateType workState = getWorkState(ctx.coordinatorTask);
-		WorkBucketType bucket = TaskWorkStateTypeUtil.findBucketByNumber(workState.getBucket(), sequentialNumber);
-		if (bucket == null) {
-			throw new IllegalStateException("No work bucket with sequential number of " + sequentialNumber + " in " + ctx.coordinatorTask);
-		}
-		if (bucket.getState() != WorkBucketStateType.DELEGATED) {
-			throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
-					+ " cannot be released, as it is not delegated; its state = " + bucket.getState());
-		}
-		try {
-			repositoryService.modifyObject(TaskType.class, ctx.coordinatorTask.getOid(),
-					bucketStateChangeDeltas(bucket, WorkBucketStateType.READY),
-					bucketUnchangedPrecondition(bucket), null, result);
-		} catch (PreconditionViolationException e) {
-			// just for sure
-			throw new IllegalStateException("Unexpected concurrent modification of work bucket " + bucket + " in " + ctx.coordinatorTask, e);
+		if (ctx.isBucketTable()) {
+			if (!repositoryService.changeDelegatedWorkBucketState(ctx.coordinatorTask.getOid(), sequentialNumber,
+					ctx.workerTask.getOid(), WorkBucketStateType.READY, result)) {
+				throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
+						+ " cannot be released, as it is not delegated to " + ctx.workerTask);
+			}
+		} else {
+			TaskWorkStateType workState = getWorkState(ctx.coordinatorTask);
+			WorkBucketType bucket = TaskWorkStateTypeUtil.findBucketByNumber(workState.getBucket(), sequentialNumber);
+			if (bucket == null) {
+				throw new IllegalStateException("No work bucket with sequential number of " + sequentialNumber + " in " + ctx.coordinatorTask);
+			}
+			if (bucket.getState() != WorkBucketStateType.DELEGATED) {
+				throw new IllegalStateException("Work bucket " + sequentialNumber + " in " + ctx.coordinatorTask
+						+ " cannot be released, as it is not delegated; its state = " + bucket.getState());
+			}
+			try {
+				repositoryService.modifyObject(TaskType.class, ctx.coordinatorTask.getOid(),
+						bucketStateChangeDeltas(bucket, WorkBucketStateType.READY),
+						bucketUnchangedPrecondition(bucket), null, result);
+			} catch (PreconditionViolationException e) {
+				// just for sure
+				throw new IllegalStateException("Unexpected concurrent modification of work bucket " + bucket + " in " + ctx.coordinatorTask, e);
+			}
 		}
 
 		TaskWorkStateType workerWorkState = getWorkState(ctx.workerTask);
@@ -584,6 +729,25 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 		return taskObject -> cloneNoId(originalBuckets).equals(cloneNoId(getWorkStateOrNew(taskObject).getBucket()));
 	}
 
+	/**
+	 * Sizing statistics are not guarded by any precondition: they are only indicative, so if two workers update them
+	 * at once, one of the measurements is simply lost.
+	 */
+	private Collection<ItemDelta<?, ?>> bucketSizingDeltas(Task task, WorkBucketType bucket, BucketProcessingMeasurement measurement)
+			throws SchemaException {
+		if (measurement == null) {
+			return Collections.emptyList();
+		}
+		WorkSegmentationStrategy strategy = strategyFactory.createStrategy(task.getWorkManagement());
+		WorkBucketSizingStateType sizing = strategy.updateBucketSizing(getWorkStateOrNew(task.getTaskPrismObject()), bucket, measurement);
+		if (sizing == null) {
+			return Collections.emptyList();
+		}
+		return DeltaBuilder.deltaFor(TaskType.class, prismContext)
+				.item(TaskType.F_WORK_STATE, TaskWorkStateType.F_BUCKET_SIZING).replace(sizing.asPrismContainerValue().clone())
+				.asItemDeltas();
+	}
+
 	private Collection<ItemDelta<?, ?>> bucketStateChangeDeltas(WorkBucketType bucket, WorkBucketStateType newState) throws SchemaException {
 		return DeltaBuilder.deltaFor(TaskType.class, prismContext)
 				.item(TaskType.F_WORK_STATE, TaskWorkStateType.F_BUCKET, bucket.getId(), WorkBucketType.F_STATE)
@@ -632,6 +796,12 @@ waitForConflictLessUpdate: // this cycle exits when coordinator task update succ
 		}
 	}
 
+	public static boolean isBucketTable(TaskWorkManagementType workManagement) {
+		WorkAllocationConfigurationType ac = workManagement != null && workManagement.getBuckets() != null ?
+				workManagement.getBuckets().getAllocation() : null;
+		return ac != null && ac.getBucketStorage() == WorkBucketStorageType.TABLE;
+	}
+
 	public void setFreeBucketWaitIntervalOverride(Long value) {
 		this.freeBucketWaitIntervalOverride = value;
 	}
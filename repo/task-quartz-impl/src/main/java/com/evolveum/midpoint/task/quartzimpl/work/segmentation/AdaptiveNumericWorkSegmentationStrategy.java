@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.task.quartzimpl.work.segmentation;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.schema.util.TaskWorkStateTypeUtil;
+import com.evolveum.midpoint.task.quartzimpl.work.BucketProcessingMeasurement;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
+
+/**
+ * Numeric interval strategy that sizes new buckets according to measured processing speed.
+ *
+ * After each completed bucket the throughput (objects per second) and density (objects per discriminator unit)
+ * are updated; the next bucket then covers as many discriminator units as should be processed within
+ * the target bucket duration. The change between consecutive sizes is limited by maxResizeFactor.
+ *
+ * @author mederly
+ */
+public class AdaptiveNumericWorkSegmentationStrategy extends NumericWorkSegmentationStrategy {
+
+	private static final Trace LOGGER = TraceManager.getTrace(AdaptiveNumericWorkSegmentationStrategy.class);
+
+	private static final long DEFAULT_TARGET_BUCKET_DURATION = 60000L;
+	private static final int DEFAULT_MAX_RESIZE_FACTOR = 2;
+
+	/**
+	 * Weight of the latest measurement when smoothing the rates.
+	 */
+	private static final double SMOOTHING = 0.3;
+
+	@NotNull private final AdaptiveNumericWorkSegmentationType bucketsConfiguration;
+
+	// bucket size for buckets being created by current getBucket() call (strategy instances are not shared)
+	private BigInteger currentBucketSize;
+
+	public AdaptiveNumericWorkSegmentationStrategy(@NotNull TaskWorkManagementType configuration,
+			PrismContext prismContext) {
+		super(configuration, prismContext);
+		this.bucketsConfiguration = (AdaptiveNumericWorkSegmentationType)
+				TaskWorkStateTypeUtil.getWorkSegmentationConfiguration(configuration);
+	}
+
+	@NotNull
+	@Override
+	protected List<? extends AbstractWorkBucketContentType> createAdditionalBuckets(TaskWorkStateType workState)
+			throws SchemaException {
+		WorkBucketSizingStateType sizing = workState.getBucketSizing();
+		currentBucketSize = sizing != null ? sizing.getCurrentBucketSize() : null;
+		return super.createAdditionalBuckets(workState);
+	}
+
+	@NotNull
+	@Override
+	protected BigInteger getOrComputeBucketSize() {
+		return currentBucketSize != null ? currentBucketSize : super.getOrComputeBucketSize();
+	}
+
+	@Override
+	public WorkBucketSizingStateType updateBucketSizing(@NotNull TaskWorkStateType workState, @NotNull WorkBucketType bucket,
+			@NotNull BucketProcessingMeasurement measurement) {
+		BigInteger span = getSpan(bucket);
+		if (span == null || span.signum() <= 0) {
+			LOGGER.debug("Bucket {} has no usable numeric interval, not updating bucket sizing", bucket);
+			return null;
+		}
+		double seconds = Math.max(measurement.getDuration(), 1L) / 1000.0;
+		double throughput = measurement.getObjects() / seconds;
+		double density = measurement.getObjects() / span.doubleValue();
+
+		WorkBucketSizingStateType oldSizing = workState.getBucketSizing();
+		WorkBucketSizingStateType newSizing = oldSizing != null ? oldSizing.clone() : new WorkBucketSizingStateType(prismContext);
+		int measured = defaultIfNull(newSizing.getMeasuredBuckets(), 0);
+		if (measured > 0 && newSizing.getThroughput() != null && newSizing.getDensity() != null) {
+			throughput = smooth(newSizing.getThroughput(), throughput);
+			density = smooth(newSizing.getDensity(), density);
+		}
+		BigInteger previousSize = newSizing.getCurrentBucketSize() != null ? newSizing.getCurrentBucketSize() : span;
+		newSizing.setMeasuredBuckets(measured + 1);
+		newSizing.setThroughput(throughput);
+		newSizing.setDensity(density);
+		newSizing.setLastBucketDuration(measurement.getDuration());
+		newSizing.setLastBucketObjects(measurement.getObjects());
+		newSizing.setCurrentBucketSize(computeBucketSize(previousSize, throughput, density));
+		LOGGER.trace("Bucket sizing updated after bucket #{} ({}): {}", bucket.getSequentialNumber(), measurement, newSizing);
+		return newSizing;
+	}
+
+	private double smooth(double old, double measured) {
+		return SMOOTHING * measured + (1 - SMOOTHING) * old;
+	}
+
+	@NotNull
+	private BigInteger computeBucketSize(@NotNull BigInteger previousSize, double throughput, double density) {
+		int maxResizeFactor = Math.max(getMaxResizeFactor(), 1);
+		BigInteger upper = previousSize.multiply(BigInteger.valueOf(maxResizeFactor));
+		BigInteger size;
+		if (throughput <= 0 || density <= 0) {
+			size = upper;           // empty buckets or no measurable time: let's go for larger ones
+		} else {
+			double ideal = getTargetBucketDuration() / 1000.0 * throughput / density;
+			size = BigDecimal.valueOf(ideal).toBigInteger();
+			BigInteger lower = previousSize.divide(BigInteger.valueOf(maxResizeFactor));
+			size = size.max(lower).min(upper);
+		}
+		if (bucketsConfiguration.getMaxBucketSize() != null) {
+			size = size.min(bucketsConfiguration.getMaxBucketSize());
+		}
+		BigInteger min = bucketsConfiguration.getMinBucketSize() != null ? bucketsConfiguration.getMinBucketSize() : BigInteger.ONE;
+		return size.max(min).max(BigInteger.ONE);
+	}
+
+	@Nullable
+	private BigInteger getSpan(WorkBucketType bucket) {
+		if (!(bucket.getContent() instanceof NumericIntervalWorkBucketContentType)) {
+			return null;
+		}
+		NumericIntervalWorkBucketContentType content = (NumericIntervalWorkBucketContentType) bucket.getContent();
+		if (content.getFrom() == null || content.getTo() == null) {
+			return null;
+		}
+		return content.getTo().subtract(content.getFrom());
+	}
+
+	private long getTargetBucketDuration() {
+		return defaultIfNull(bucketsConfiguration.getTargetBucketDuration(), DEFAULT_TARGET_BUCKET_DURATION);
+	}
+
+	private int getMaxResizeFactor() {
+		return defaultIfNull(bucketsConfiguration.getMaxResizeFactor(), DEFAULT_MAX_RESIZE_FACTOR);
+	}
+
+	/**
+	 * Buckets created so far plus the rest of the interval divided by the current bucket size.
+	 */
+	@Override
+	public Integer estimateNumberOfBuckets(@Nullable TaskWorkStateType workState) {
+		WorkBucketSizingStateType sizing = workState != null ? workState.getBucketSizing() : null;
+		WorkBucketType lastBucket = workState != null ? TaskWorkStateTypeUtil.getLastBucket(workState.getBucket()) : null;
+		if (sizing == null || sizing.getCurrentBucketSize() == null || sizing.getCurrentBucketSize().signum() <= 0
+				|| lastBucket == null || !(lastBucket.getContent() instanceof NumericIntervalWorkBucketContentType)
+				|| ((NumericIntervalWorkBucketContentType) lastBucket.getContent()).getTo() == null) {
+			return super.estimateNumberOfBuckets(workState);
+		}
+		BigInteger rest = getOrComputeTo().subtract(((NumericIntervalWorkBucketContentType) lastBucket.getContent()).getTo());
+		if (rest.signum() <= 0) {
+			return lastBucket.getSequentialNumber();
+		}
+		BigInteger[] divideAndRemainder = rest.divideAndRemainder(sizing.getCurrentBucketSize());
+		int remaining = divideAndRemainder[0].intValue() + (BigInteger.ZERO.equals(divideAndRemainder[1]) ? 0 : 1);
+		return lastBucket.getSequentialNumber() + remaining;
+	}
+}
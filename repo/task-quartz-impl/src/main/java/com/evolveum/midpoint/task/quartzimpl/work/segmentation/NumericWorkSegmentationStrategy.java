@@ -74,7 +74,7 @@ public class NumericWorkSegmentationStrategy extends BaseWorkSegmentationStrateg
 	}
 
 	@NotNull
-	private BigInteger getOrComputeBucketSize() {
+	protected BigInteger getOrComputeBucketSize() {
 		if (bucketsConfiguration.getBucketSize() != null) {
 			return bucketsConfiguration.getBucketSize();
 		} else if (bucketsConfiguration.getTo() != null && bucketsConfiguration.getNumberOfBuckets() != null) {
@@ -85,12 +85,12 @@ public class NumericWorkSegmentationStrategy extends BaseWorkSegmentationStrateg
 	}
 
 	@NotNull
-	private BigInteger getFrom() {
+	protected BigInteger getFrom() {
 		return bucketsConfiguration.getFrom() != null ? bucketsConfiguration.getFrom() : BigInteger.ZERO;
 	}
 
 	@NotNull
-	private BigInteger getOrComputeTo() {
+	protected BigInteger getOrComputeTo() {
 		if (bucketsConfiguration.getTo() != null) {
 			return bucketsConfiguration.getTo();
 		} else if (bucketsConfiguration.getBucketSize() != null && bucketsConfiguration.getNumberOfBuckets() != null) {
@@ -16,7 +16,9 @@
 
 package com.evolveum.midpoint.task.quartzimpl.work.segmentation;
 
+import com.evolveum.midpoint.task.quartzimpl.work.BucketProcessingMeasurement;
 import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketSizingStateType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskWorkStateType;
 import org.jetbrains.annotations.NotNull;
@@ -45,6 +47,15 @@ public interface WorkSegmentationStrategy {
 		return null;
 	}
 
+	/**
+	 * Takes into account that a bucket was processed. Strategies that adapt buckets to the processing speed
+	 * return updated sizing state to be stored in the work state; others return null.
+	 */
+	default WorkBucketSizingStateType updateBucketSizing(@NotNull TaskWorkStateType workState, @NotNull WorkBucketType bucket,
+			@NotNull BucketProcessingMeasurement measurement) {
+		return null;
+	}
+
 	class GetBucketResult {
 		public static class NothingFound extends GetBucketResult {
 			public final boolean definite;
@@ -43,6 +43,7 @@ public class WorkSegmentationStrategyFactory {
 
 	{
 		registerStrategyClass(NumericWorkSegmentationType.class, NumericWorkSegmentationStrategy.class);
+		registerStrategyClass(AdaptiveNumericWorkSegmentationType.class, AdaptiveNumericWorkSegmentationStrategy.class);
 		registerStrategyClass(StringWorkSegmentationType.class, StringWorkSegmentationStrategy.class);
 		registerStrategyClass(OidWorkSegmentationType.class, StringWorkSegmentationStrategy.class);
 		registerStrategyClass(ExplicitWorkSegmentationType.class, ExplicitWorkSegmentationStrategy.class);
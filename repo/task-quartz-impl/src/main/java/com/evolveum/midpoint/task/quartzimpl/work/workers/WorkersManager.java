@@ -431,5 +431,6 @@ public class WorkersManager {
 		} catch (ObjectAlreadyExistsException e) {
 			throw new IllegalStateException("Unexpected exception: " + e.getMessage(), e);
 		}
+		repositoryService.deleteWorkBuckets(coordinatorTaskOid, result);        // in case they are stored in the table
 	}
 }
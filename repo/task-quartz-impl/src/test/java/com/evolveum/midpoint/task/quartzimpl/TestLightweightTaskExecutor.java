@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.evolveum.midpoint.task.quartzimpl;
+
+import com.evolveum.midpoint.task.quartzimpl.execution.LightweightTaskExecutor;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Low level tests of the node-wide lightweight task executor (limits and fair share).
+ *
+ * @author mederly
+ */
+public class TestLightweightTaskExecutor {
+
+	private static final long TIMEOUT = 10000L;
+
+	@Test
+	public void test100LimitAndFairShare() throws Exception {
+		LightweightTaskExecutor executor = new LightweightTaskExecutor(4, false);
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			List<Future<?>> futuresA = submit(executor, "A", 6, release);
+			waitFor(() -> executor.getExecuting() == 4);
+			assertEquals("Wrong # of executing A handlers", 4, executor.getExecuting("A"));
+			assertEquals("Wrong # of queued A handlers", 2, executor.getQueued("A"));
+
+			// B gets its share as soon as A's handlers finish
+			List<Future<?>> futuresB = submit(executor, "B", 2, release);
+			assertEquals("Wrong # of queued B handlers", 2, executor.getQueued("B"));
+			assertEquals("Wrong total # of queued handlers", 4, executor.getQueued());
+
+			futuresA.get(0).cancel(true);
+			futuresA.get(1).cancel(true);
+			waitFor(() -> executor.getExecuting("B") == 2);
+			assertEquals("Wrong # of executing A handlers", 2, executor.getExecuting("A"));
+			assertEquals("Wrong # of queued A handlers", 2, executor.getQueued("A"));
+
+			// cancelled queued handler is never started
+			Future<?> queuedA = futuresA.get(5);
+			queuedA.cancel(false);
+			assertEquals("Wrong # of queued A handlers", 1, executor.getQueued("A"));
+
+			release.countDown();
+			for (Future<?> future : futuresB) {
+				future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+			waitFor(() -> executor.getExecuting() == 0 && executor.getQueued() == 0);
+			assertTrue("Cancelled handler is not cancelled", queuedA.isCancelled());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void test200NoLimit() throws Exception {
+		LightweightTaskExecutor executor = new LightweightTaskExecutor(0, true);     // falls back to platform threads on older JVMs
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			List<Future<?>> futures = submit(executor, "A", 20, release);
+			waitFor(() -> executor.getExecuting() == 20);
+			assertEquals("Wrong # of queued handlers", 0, executor.getQueued());
+			release.countDown();
+			for (Future<?> future : futures) {
+				future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private List<Future<?>> submit(LightweightTaskExecutor executor, String owner, int count, CountDownLatch release) {
+		List<Future<?>> rv = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			rv.add(executor.submit(owner, () -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					// cancelled
+				}
+			}));
+		}
+		return rv;
+	}
+
+	private void waitFor(Condition condition) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		while (!condition.isTrue()) {
+			if (System.currentTimeMillis() - start > TIMEOUT) {
+				throw new AssertionError("Condition was not met in " + TIMEOUT + " ms");
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Condition {
+		boolean isTrue();
+	}
+}
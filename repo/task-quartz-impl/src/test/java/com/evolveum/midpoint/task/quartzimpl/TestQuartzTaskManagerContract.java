@@ -40,6 +40,7 @@ import com.evolveum.midpoint.test.Checker;
 import com.evolveum.midpoint.test.IntegrationTestTools;
 import com.evolveum.midpoint.test.util.TestUtil;
 import com.evolveum.midpoint.util.DOMUtil;
+import com.evolveum.midpoint.util.exception.CommonException;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.exception.SystemException;
@@ -1499,6 +1500,52 @@ public class TestQuartzTaskManagerContract extends AbstractTaskManagerTest {
 		taskManager.suspendTasks(Collections.singleton(task.getOid()), 1000L, result);
 	}
 
+    @Test
+    public void test140OperationStatsFlushing() throws Exception {
+        final String TEST_NAME = "test140OperationStatsFlushing";
+        final OperationResult result = createResult(TEST_NAME, LOGGER);
+
+        TaskQuartzImpl task = (TaskQuartzImpl) taskManager.createTaskInstance();
+        task.setInitialExecutionStatus(TaskExecutionStatus.SUSPENDED);
+        task.setOwner(repositoryService.getObject(UserType.class, TASK_OWNER2_OID, null, result));
+        taskManager.switchToBackground(task, result);
+        final String oid = task.getOid();
+
+        task.resetIterativeTaskInformation(null);
+        task.recordIterativeOperationStart("object-1", null, null, "oid-1");
+        task.recordIterativeOperationEnd("object-1", null, null, "oid-1", System.currentTimeMillis(), null);
+        task.setProgressTransient(1);
+
+        // the statistics are written asynchronously
+        task.storeOperationStatsIfNeeded();
+        waitFor("Waiting for operation statistics to be written", new Checker() {
+            public boolean check() throws CommonException {
+                TaskType taskType = repositoryService.getObject(TaskType.class, oid, null, result).asObjectable();
+                return taskType.getProgress() != null && taskType.getProgress() == 1L;
+            }
+
+            @Override
+            public void timeout() {
+            }
+        }, 10000, 200);
+        TaskType taskAfter = repositoryService.getObject(TaskType.class, oid, null, result).asObjectable();
+        assertNotNull("No operation stats in repo", taskAfter.getOperationStats());
+        assertEquals("Wrong success count in repo", 1,
+                taskAfter.getOperationStats().getIterativeTaskInformation().getTotalSuccessCount());
+
+        // nothing has changed, so nothing is written
+        String version = repositoryService.getVersion(TaskType.class, oid, result);
+        task.flushOperationStats(result);
+        assertEquals("Task was written even if nothing changed", version, repositoryService.getVersion(TaskType.class, oid, result));
+
+        task.setProgressTransient(2);
+        task.flushOperationStats(result);
+        assertEquals("Wrong progress in repo", (Long) 2L,
+                repositoryService.getObject(TaskType.class, oid, null, result).asObjectable().getProgress());
+
+        repositoryService.deleteObject(TaskType.class, oid, result);
+    }
+
 	@Test
     public void test999CheckingLeftovers() throws Exception {
         String TEST_NAME = "test999CheckingLeftovers";
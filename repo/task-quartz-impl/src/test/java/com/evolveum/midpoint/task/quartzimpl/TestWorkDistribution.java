@@ -23,6 +23,7 @@ import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.task.api.TaskManager;
+import com.evolveum.midpoint.task.quartzimpl.work.BucketProcessingMeasurement;
 import com.evolveum.midpoint.task.quartzimpl.work.WorkStateManager;
 import com.evolveum.midpoint.test.util.TestUtil;
 import com.evolveum.midpoint.util.DebugUtil;
@@ -835,4 +836,102 @@ public class TestWorkDistribution extends AbstractTaskManagerTest {
 			suspendAndDeleteTasks(coordinatorTaskOid(TEST_NAME));
 		}
 	}
+
+	@Test
+	public void test400ThreeWorkersTaskTable() throws Exception {
+		final String TEST_NAME = "test400ThreeWorkersTaskTable";
+		OperationResult result = createResult(TEST_NAME, LOGGER);
+		addObjectFromFile(coordinatorTaskFilename(TEST_NAME));
+		addObjectFromFile(taskFilename(TEST_NAME, "1"));
+		addObjectFromFile(taskFilename(TEST_NAME, "2"));
+		addObjectFromFile(taskFilename(TEST_NAME, "3"));
+
+		try {
+			TaskQuartzImpl worker1 = taskManager.getTask(taskOid(TEST_NAME, "1"), result);
+			TaskQuartzImpl worker2 = taskManager.getTask(taskOid(TEST_NAME, "2"), result);
+			TaskQuartzImpl worker3 = taskManager.getTask(taskOid(TEST_NAME, "3"), result);
+
+			workBucketsTaskHandler.resetBeforeTest();
+			workBucketsTaskHandler.setDelayProcessor(50);
+
+			// WHEN
+			taskManager.resumeTask(worker1, result);
+			taskManager.resumeTask(worker2, result);
+			taskManager.resumeTask(worker3, result);
+
+			// THEN
+			String coordinatorTaskOid = coordinatorTaskOid(TEST_NAME);
+			waitForTaskClose(coordinatorTaskOid, result, DEFAULT_TIMEOUT, 200);
+
+			TaskQuartzImpl coordinatorAfter = taskManager.getTask(coordinatorTaskOid, result);
+			worker1 = taskManager.getTask(worker1.getOid(), result);
+			worker2 = taskManager.getTask(worker2.getOid(), result);
+			worker3 = taskManager.getTask(worker3.getOid(), result);
+			display("coordinator task after", coordinatorAfter);
+			display("worker1 task after", worker1);
+			display("worker2 task after", worker2);
+			display("worker3 task after", worker3);
+
+			assertNumberOfBuckets(coordinatorAfter, 11);
+			assertNoWorkBuckets(coordinatorAfter.getWorkState());        // they are in the table
+
+			List<WorkBucketType> complete = repositoryService
+					.getWorkBuckets(coordinatorTaskOid, WorkBucketStateType.COMPLETE, result);
+			display("complete buckets in the table", complete);
+			assertEquals("Wrong # of complete buckets", 11, complete.size());
+			assertEquals("Some buckets are not complete", complete.size(),
+					repositoryService.getWorkBuckets(coordinatorTaskOid, null, result).size());
+
+			assertTotalSuccessCount(107, Arrays.asList(worker1, worker2, worker3));
+		} finally {
+			suspendAndDeleteTasks(coordinatorTaskOid(TEST_NAME));
+		}
+	}
+
+	@Test
+	public void test500AdaptiveBucketSizingStandalone() throws Exception {
+		final String TEST_NAME = "test500AdaptiveBucketSizingStandalone";
+		OperationResult result = createResult(TEST_NAME, LOGGER);
+		addObjectFromFile(taskFilename(TEST_NAME));
+
+		TaskQuartzImpl standalone = taskManager.getTask(taskOid(TEST_NAME), result);
+		try {
+			WorkBucketType bucket1 = workStateManager.getWorkBucket(standalone.getOid(), 0, null, result);
+			assertNumericBucket(bucket1, null, 1, 0, 10);
+
+			// WHEN
+			// 10 objects in 100 ms = 100 objects per second, 1 object per unit; so the ideal size is 100 units for 1 second
+			workStateManager.completeWorkBucket(standalone.getOid(), 1, new BucketProcessingMeasurement(100L, 10L), result);
+			WorkBucketType bucket2 = workStateManager.getWorkBucket(standalone.getOid(), 0, null, result);
+
+			// THEN
+			display("2nd allocated bucket", bucket2);
+			TaskQuartzImpl standaloneAfter = taskManager.getTask(standalone.getOid(), result);
+			display("task after 2nd allocation", standaloneAfter);
+			assertNumericBucket(bucket2, null, 2, 10, 50);          // limited by maxResizeFactor of 4
+			WorkBucketSizingStateType sizing = standaloneAfter.getWorkState().getBucketSizing();
+			assertNotNull("No bucket sizing", sizing);
+			assertEquals("Wrong current bucket size", BigInteger.valueOf(40), sizing.getCurrentBucketSize());
+			assertEquals("Wrong # of measured buckets", (Integer) 1, sizing.getMeasuredBuckets());
+			assertEquals("Wrong last bucket objects", (Long) 10L, sizing.getLastBucketObjects());
+			assertNumberOfBuckets(standaloneAfter, 2501);           // 1 + (100000 - 10) / 40 rounded up
+
+			// WHEN
+			// 40 objects in 4 seconds = 10 objects per second; smoothed throughput is 73 objects per second
+			workStateManager.completeWorkBucket(standalone.getOid(), 2, new BucketProcessingMeasurement(4000L, 40L), result);
+			WorkBucketType bucket3 = workStateManager.getWorkBucket(standalone.getOid(), 0, null, result);
+
+			// THEN
+			display("3rd allocated bucket", bucket3);
+			standaloneAfter = taskManager.getTask(standalone.getOid(), result);
+			display("task after 3rd allocation", standaloneAfter);
+			sizing = standaloneAfter.getWorkState().getBucketSizing();
+			assertEquals("Wrong # of measured buckets", (Integer) 2, sizing.getMeasuredBuckets());
+			int size3 = sizing.getCurrentBucketSize().intValue();
+			assertTrue("Bucket size did not shrink as expected: " + size3, size3 >= 70 && size3 <= 75);
+			assertNumericBucket(bucket3, null, 3, 50, 50 + size3);
+		} finally {
+			suspendAndDeleteTasks(standalone.getOid());
+		}
+	}
 }
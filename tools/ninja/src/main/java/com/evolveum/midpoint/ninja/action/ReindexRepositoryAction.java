@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.ninja.action;
+
+import com.evolveum.midpoint.ninja.opts.ReindexOptions;
+import com.evolveum.midpoint.ninja.util.NinjaUtils;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.prism.query.InOidFilter;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.api.RepoModifyOptions;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.ResultHandler;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Rewrites objects in the repository without changing them. Objects are stored using current repository
+ * configuration, so this can be used e.g. to migrate full objects to another format (fullObjectFormat).
+ */
+public class ReindexRepositoryAction extends RepositoryAction<ReindexOptions> {
+
+    private static final String DOT_CLASS = ReindexRepositoryAction.class.getName() + ".";
+
+    private static final String OPERATION_REINDEX = DOT_CLASS + "reindex";
+
+    @Override
+    public void execute() throws Exception {
+        ObjectQuery query;
+        if (options.getOid() != null) {
+            query = ObjectQuery.createObjectQuery(InOidFilter.createInOid(options.getOid()));
+        } else {
+            query = NinjaUtils.createObjectQuery(options.getFilter(), context);
+        }
+
+        OperationResult result = new OperationResult(OPERATION_REINDEX);
+
+        OperationStatus operation = new OperationStatus(context, result);
+        operation.start();
+
+        log.info("Starting reindex");
+
+        for (ObjectTypes type : NinjaUtils.getTypes(options.getType())) {
+            reindex(type, query, operation, result);
+        }
+
+        operation.finish();
+        handleResultOnFinish(operation, "Reindex finished");
+    }
+
+    private void reindex(ObjectTypes type, ObjectQuery query, OperationStatus operation, OperationResult result)
+            throws SchemaException, IOException {
+
+        RepositoryService repository = context.getRepository();
+        RepoModifyOptions modifyOptions = RepoModifyOptions.createExecuteIfNoChanges();
+
+        ResultHandler<ObjectType> handler = (prismObject, operationResult) -> {
+
+            try {
+                repository.modifyObject(prismObject.getCompileTimeClass(), prismObject.getOid(),
+                        Collections.emptyList(), modifyOptions, operationResult);
+
+                operation.incrementTotal();
+            } catch (ObjectNotFoundException ex) {
+                // object was already gone
+            } catch (Exception ex) {
+                context.getLog().error("Couldn't reindex object {}, reason: {}", ex, prismObject, ex.getMessage());
+                operation.incrementError();
+            }
+
+            return true;
+        };
+
+        Collection<SelectorOptions<GetOperationOptions>> opts = new ArrayList<>();
+        opts.add(new SelectorOptions<>(GetOperationOptions.createRaw()));
+
+        repository.searchObjectsIterative((Class<ObjectType>) type.getClassDefinition(), query, handler, opts, false, result);
+    }
+}
@@ -16,6 +16,8 @@ public enum Command {
 
     COUNT("count", CountOptions.class, CountRepositoryAction.class, null),
 
+    REINDEX("reindex", ReindexOptions.class, ReindexRepositoryAction.class, null),
+
 //    PASSWORD_RESET("password", PasswordResetOptions.class, PasswordResetRepositoryAction.class, null),
 //
 //    UNLOCK("unlock", UnlockOptions.class, UnlockRepositoryAction.class, null),
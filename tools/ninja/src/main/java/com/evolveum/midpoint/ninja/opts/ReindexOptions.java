@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2010-2018 Evolveum
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.evolveum.midpoint.ninja.opts;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.evolveum.midpoint.ninja.util.FileReference;
+import com.evolveum.midpoint.ninja.util.FileReferenceConverter;
+import com.evolveum.midpoint.ninja.util.ObjectTypesConverter;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Parameters(resourceBundle = "messages", commandDescriptionKey = "reindex")
+public class ReindexOptions {
+
+    public static final String P_OID = "-o";
+    public static final String P_OID_LONG = "--oid";
+
+    public static final String P_TYPE = "-t";
+    public static final String P_TYPE_LONG = "--type";
+
+    public static final String P_FILTER = "-f";
+    public static final String P_FILTER_LONG = "--filter";
+
+    @Parameter(names = {P_OID, P_OID_LONG}, descriptionKey = "reindex.oid")
+    private String oid;
+
+    @Parameter(names = {P_TYPE, P_TYPE_LONG}, descriptionKey = "reindex.type",
+            validateWith = ObjectTypesConverter.class, converter = ObjectTypesConverter.class)
+    private Set<ObjectTypes> type = new HashSet<>();
+
+    @Parameter(names = {P_FILTER, P_FILTER_LONG}, descriptionKey = "reindex.filter",
+            converter = FileReferenceConverter.class, validateWith = FileReferenceConverter.class)
+    private FileReference filter;
+
+    public String getOid() {
+        return oid;
+    }
+
+    public Set<ObjectTypes> getType() {
+        return type;
+    }
+
+    public FileReference getFilter() {
+        return filter;
+    }
+}